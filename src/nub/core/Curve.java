@@ -0,0 +1,315 @@
+/***************************************************************************************
+ * nub
+ * Copyright (c) 2019-2020 Universidad Nacional de Colombia
+ * @author Jean Pierre Charalambos, https://github.com/VisualComputing
+ *
+ * All rights reserved. A simple, expressive, language-agnostic, and extensible visual
+ * computing library, featuring interaction, visualization and animation frameworks and
+ * supporting advanced (onscreen/offscreen) (real/non-real time) rendering techniques.
+ * Released under the terms of the GPLv3, refer to: http://www.gnu.org/licenses/gpl.html
+ ***************************************************************************************/
+
+package nub.core;
+
+import nub.primitives.Quaternion;
+import nub.primitives.Vector;
+
+/**
+ * An immutable keyframe Catmull-Rom curve, i.e., the compiled form of an
+ * {@link Interpolator} path (see {@link Interpolator#curve()}).
+ * <p>
+ * The Hermite coefficients of the position and the squad tangents of the orientation
+ * of each segment are precomputed and kept in primitive arrays, so that evaluating the
+ * curve at a given time takes a binary search over the keyframe times (see
+ * {@link #segment(float)}) and allocates nothing. Since a curve is never modified once
+ * created, it may be freely shared (e.g., scrubbed) between threads.
+ * <p>
+ * Evaluating a curve at a time before the first keyframe (resp. after the last one) returns
+ * the first (resp. last) keyframe.
+ */
+public class Curve {
+  protected final float[] _times;
+  // per keyframe: position (3), orientation (4), squad tangent (4) and magnitude
+  protected final float[] _positions;
+  protected final float[] _orientations;
+  protected final float[] _tangents;
+  protected final float[] _magnitudes;
+  // per segment: p(alpha) = p0 + alpha * (c0 + alpha * (c1 + alpha * c2))
+  protected final float[] _coefficients;
+  // per segment: keyframes slerp angle, inverse sine and flip sign, and tangents slerp angle and inverse sine
+  protected final float[] _slerps;
+
+  /**
+   * Creates a curve passing through the given keyframes, defined by their (ascending)
+   * {@code times}, {@code positions}, {@code orientations} and {@code magnitudes}, which
+   * may be either world (see {@link Interpolator}) or local (see
+   * {@link nub.ik.animation.AnimationClip}) transformations. The arrays are not retained.
+   */
+  public Curve(float[] times, Vector[] positions, Quaternion[] orientations, float[] magnitudes) {
+    int n = times.length;
+    if (positions.length != n || orientations.length != n || magnitudes.length != n)
+      throw new IllegalArgumentException("Keyframe arrays should have the same length");
+    _times = times.clone();
+    _magnitudes = magnitudes.clone();
+    _positions = new float[3 * n];
+    _orientations = new float[4 * n];
+    _tangents = new float[4 * n];
+    _coefficients = new float[9 * Math.max(n - 1, 0)];
+    _slerps = new float[5 * Math.max(n - 1, 0)];
+    for (int i = 0; i < n; i++) {
+      System.arraycopy(positions[i]._vector, 0, _positions, 3 * i, 3);
+      System.arraycopy(orientations[i]._quaternion, 0, _orientations, 4 * i, 4);
+      // the first and last keyframes are their own neighbours
+      int previous = Math.max(i - 1, 0), next = Math.min(i + 1, n - 1);
+      Quaternion tangent = Quaternion.squadTangent(orientations[previous], orientations[i], orientations[next]);
+      System.arraycopy(tangent._quaternion, 0, _tangents, 4 * i, 4);
+    }
+    // position tangents and Hermite coefficients
+    float[] tangent = new float[3 * n];
+    for (int i = 0; i < n; i++) {
+      int previous = Math.max(i - 1, 0), next = Math.min(i + 1, n - 1);
+      for (int j = 0; j < 3; j++)
+        tangent[3 * i + j] = 0.5f * (_positions[3 * next + j] - _positions[3 * previous + j]);
+    }
+    for (int i = 0; i < n - 1; i++) {
+      for (int j = 0; j < 3; j++) {
+        float delta = _positions[3 * (i + 1) + j] - _positions[3 * i + j];
+        float t0 = tangent[3 * i + j], t1 = tangent[3 * (i + 1) + j];
+        _coefficients[9 * i + j] = t0;
+        _coefficients[9 * i + 3 + j] = 3.0f * delta - 2.0f * t0 - t1;
+        _coefficients[9 * i + 6 + j] = -2.0f * delta + t0 + t1;
+      }
+      float cos = _dot(_orientations, 4 * i, _orientations, 4 * (i + 1));
+      _slerps[5 * i] = _angle(cos);
+      _slerps[5 * i + 1] = _inverseSine(_slerps[5 * i]);
+      _slerps[5 * i + 2] = cos < 0 ? -1 : 1;
+      _slerps[5 * i + 3] = _angle(_dot(_tangents, 4 * i, _tangents, 4 * (i + 1)));
+      _slerps[5 * i + 4] = _inverseSine(_slerps[5 * i + 3]);
+    }
+  }
+
+  /**
+   * Returns the number of keyframes of the curve.
+   */
+  public int size() {
+    return _times.length;
+  }
+
+  /**
+   * Returns the time of the {@code i}-th keyframe.
+   */
+  public float time(int i) {
+    return _times[i];
+  }
+
+  /**
+   * Returns the time of the first keyframe or 0 if the curve is empty.
+   */
+  public float firstTime() {
+    return _times.length == 0 ? 0.0f : _times[0];
+  }
+
+  /**
+   * Returns the time of the last keyframe or 0 if the curve is empty.
+   */
+  public float lastTime() {
+    return _times.length == 0 ? 0.0f : _times[_times.length - 1];
+  }
+
+  /**
+   * Returns {@link #lastTime()} - {@link #firstTime()}.
+   */
+  public float duration() {
+    return lastTime() - firstTime();
+  }
+
+  /**
+   * Returns the index of the segment (i.e., of its first keyframe) at the given
+   * {@code time}, using a binary search. The result is clamped to the first and last
+   * segments.
+   */
+  public int segment(float time) {
+    int low = 0, high = _times.length - 2;
+    if (high <= 0 || time <= _times[0])
+      return 0;
+    if (time >= _times[high])
+      return high;
+    // invariant: _times[low] <= time < _times[high + 1]
+    while (low < high) {
+      int middle = (low + high + 1) >>> 1;
+      if (_times[middle] <= time)
+        low = middle;
+      else
+        high = middle - 1;
+    }
+    return low;
+  }
+
+  /**
+   * Returns the local parameter (clamped to {@code [0..1]}) of {@code time} within the
+   * given {@code segment}.
+   */
+  public float alpha(int segment, float time) {
+    if (segment + 1 >= _times.length)
+      return 0.0f;
+    float dt = _times[segment + 1] - _times[segment];
+    if (dt == 0)
+      return 0.0f;
+    return Math.min(Math.max((time - _times[segment]) / dt, 0.0f), 1.0f);
+  }
+
+  /**
+   * Stores the position at the given {@code time} into {@code result} and returns it.
+   */
+  public Vector position(float time, Vector result) {
+    int segment = segment(time);
+    return position(segment, alpha(segment, time), result);
+  }
+
+  /**
+   * Stores the position at {@code alpha} within {@code segment} into {@code result} and
+   * returns it.
+   */
+  public Vector position(int segment, float alpha, Vector result) {
+    int p = 3 * segment;
+    if (segment + 1 >= _times.length) {
+      result.set(_positions[p], _positions[p + 1], _positions[p + 2]);
+      return result;
+    }
+    int c = 9 * segment;
+    float[] k = _coefficients;
+    result.set(
+        _positions[p] + alpha * (k[c] + alpha * (k[c + 3] + alpha * k[c + 6])),
+        _positions[p + 1] + alpha * (k[c + 1] + alpha * (k[c + 4] + alpha * k[c + 7])),
+        _positions[p + 2] + alpha * (k[c + 2] + alpha * (k[c + 5] + alpha * k[c + 8])));
+    return result;
+  }
+
+  /**
+   * Stores the orientation at the given {@code time} into {@code result} and returns it.
+   */
+  public Quaternion orientation(float time, Quaternion result) {
+    int segment = segment(time);
+    return orientation(segment, alpha(segment, time), result);
+  }
+
+  /**
+   * Stores the squad interpolation of the orientation at {@code alpha} within
+   * {@code segment} into {@code result} and returns it. Same as
+   * {@link Quaternion#squad(Quaternion, Quaternion, Quaternion, Quaternion, float)}
+   * but allocation free.
+   */
+  public Quaternion orientation(int segment, float alpha, Quaternion result) {
+    int a = 4 * segment;
+    float[] r = result._quaternion;
+    if (segment + 1 >= _times.length) {
+      System.arraycopy(_orientations, a, r, 0, 4);
+      return result;
+    }
+    int b = a + 4, l = 5 * segment;
+    float[] q = _orientations, t = _tangents;
+    // slerp between the keyframes, using the shortest path
+    float c1 = _slerps[l + 2] * _weight(_slerps[l], _slerps[l + 1], 1.0f - alpha);
+    float c2 = _weight(_slerps[l], _slerps[l + 1], alpha);
+    float x = c1 * q[a] + c2 * q[b], y = c1 * q[a + 1] + c2 * q[b + 1],
+        z = c1 * q[a + 2] + c2 * q[b + 2], w = c1 * q[a + 3] + c2 * q[b + 3];
+    // slerp between the tangents
+    c1 = _weight(_slerps[l + 3], _slerps[l + 4], 1.0f - alpha);
+    c2 = _weight(_slerps[l + 3], _slerps[l + 4], alpha);
+    float tx = c1 * t[a] + c2 * t[b], ty = c1 * t[a + 1] + c2 * t[b + 1],
+        tz = c1 * t[a + 2] + c2 * t[b + 2], tw = c1 * t[a + 3] + c2 * t[b + 3];
+    // final slerp
+    float s = 2.0f * alpha * (1.0f - alpha);
+    float angle = _angle(x * tx + y * ty + z * tz + w * tw), inverseSine = _inverseSine(angle);
+    c1 = _weight(angle, inverseSine, 1.0f - s);
+    c2 = _weight(angle, inverseSine, s);
+    r[0] = c1 * x + c2 * tx;
+    r[1] = c1 * y + c2 * ty;
+    r[2] = c1 * z + c2 * tz;
+    r[3] = c1 * w + c2 * tw;
+    return result;
+  }
+
+  /**
+   * Stores the linear interpolation of the keyframe positions at {@code alpha} within
+   * {@code segment} into {@code result} and returns it.
+   */
+  public Vector lerp(int segment, float alpha, Vector result) {
+    int p = 3 * segment;
+    if (segment + 1 >= _times.length) {
+      result.set(_positions[p], _positions[p + 1], _positions[p + 2]);
+      return result;
+    }
+    result.set(
+        _positions[p] + alpha * (_positions[p + 3] - _positions[p]),
+        _positions[p + 1] + alpha * (_positions[p + 4] - _positions[p + 1]),
+        _positions[p + 2] + alpha * (_positions[p + 5] - _positions[p + 2]));
+    return result;
+  }
+
+  /**
+   * Stores the slerp interpolation (using the shortest path) of the keyframe orientations
+   * at {@code alpha} within {@code segment} into {@code result} and returns it. Same as
+   * {@link Quaternion#slerp(Quaternion, Quaternion, float)} but allocation free.
+   */
+  public Quaternion slerp(int segment, float alpha, Quaternion result) {
+    int a = 4 * segment;
+    float[] r = result._quaternion;
+    if (segment + 1 >= _times.length) {
+      System.arraycopy(_orientations, a, r, 0, 4);
+      return result;
+    }
+    int b = a + 4, l = 5 * segment;
+    float[] q = _orientations;
+    float c1 = _slerps[l + 2] * _weight(_slerps[l], _slerps[l + 1], 1.0f - alpha);
+    float c2 = _weight(_slerps[l], _slerps[l + 1], alpha);
+    r[0] = c1 * q[a] + c2 * q[b];
+    r[1] = c1 * q[a + 1] + c2 * q[b + 1];
+    r[2] = c1 * q[a + 2] + c2 * q[b + 2];
+    r[3] = c1 * q[a + 3] + c2 * q[b + 3];
+    return result;
+  }
+
+  /**
+   * Returns the magnitude at the given {@code time}.
+   */
+  public float magnitude(float time) {
+    int segment = segment(time);
+    return magnitude(segment, alpha(segment, time));
+  }
+
+  /**
+   * Returns the magnitude at {@code alpha} within {@code segment}.
+   */
+  public float magnitude(int segment, float alpha) {
+    if (segment + 1 >= _times.length)
+      return _magnitudes[segment];
+    return Vector.lerp(_magnitudes[segment], _magnitudes[segment + 1], alpha);
+  }
+
+  protected static float _dot(float[] a, int i, float[] b, int j) {
+    return a[i] * b[j] + a[i + 1] * b[j + 1] + a[i + 2] * b[j + 2] + a[i + 3] * b[j + 3];
+  }
+
+  /**
+   * Returns the slerp angle of two quaternions whose dot product is {@code cosAngle}, or 0
+   * for close orientations which are linearly interpolated, see
+   * {@link Quaternion#slerp(Quaternion, Quaternion, float, boolean)}.
+   */
+  protected static float _angle(float cosAngle) {
+    if ((1.0 - Math.abs(cosAngle)) < 0.01)
+      return 0;
+    return (float) Math.acos(Math.abs(cosAngle));
+  }
+
+  protected static float _inverseSine(float angle) {
+    return angle == 0 ? 0 : 1.0f / (float) Math.sin(angle);
+  }
+
+  /**
+   * Slerp weight of an endpoint at parameter {@code t}.
+   */
+  protected static float _weight(float angle, float inverseSine, float t) {
+    return angle == 0 ? t : (float) Math.sin(angle * t) * inverseSine;
+  }
+}
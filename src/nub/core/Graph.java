@@ -20,8 +20,10 @@ import nub.timing.TimingHandler;
 import nub.ik.solver.Solver;
 import nub.ik.solver.geometric.oldtrik.TRIKTree;
 import nub.ik.solver.geometric.TreeSolver;
+import nub.ik.solver.numerical.DLSTreeSolver;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -115,6 +117,10 @@ import java.util.List;
  * to call {@link #enableBoundaryEquations()} first, since update of the viewing volume
  * boundary equations are disabled by default (see {@link #enableBoundaryEquations()} and
  * {@link #areBoundaryEquationsEnabled()}).
+ * <p>
+ * The {@link #render()} algorithm may also cull the node branches lying outside the viewing
+ * volume automatically, see {@link #enableFrustumCulling()} and
+ * {@link Node#setBoundingSphere(Vector, float)}.
  * <h1>6. Matrix handling</h1>
  * The graph performs matrix handling through a matrix-handler. Refer to the {@link MatrixHandler}
  * documentation for details.
@@ -190,6 +196,19 @@ public class Graph {
   // 4. Graph
   protected static List<Node> _seeds = new ArrayList<Node>();
   protected long _lastNonEyeUpdate = 0;
+  // shared by all the graphs using it, see enableSpatialIndex
+  protected static SpatialIndex _index;
+  protected boolean _spatialIndex;
+
+  // Frustum culling
+  protected boolean _frustumCulling;
+  // pre-order of the node tree (shared by all the graphs) and subtree ends, see enableRenderCache
+  protected static Node[] _renderList = new Node[0];
+  protected static int[] _renderEnds = new int[0];
+  protected static int _renderListSize;
+  protected static boolean _renderListDirty = true;
+  protected boolean _renderCache;
+  protected List<Node> _candidates = new ArrayList<Node>();
 
   // 5. Interaction methods
   Vector _upVector;
@@ -197,6 +216,7 @@ public class Graph {
 
   // 6. IKinematics solvers
   protected static boolean _useTRIK = false; //TODO : remove this flag and solve only with TRIK when it is finished.
+  protected static boolean _useDLS = false;
   protected static List<Solver> _solvers = new ArrayList<Solver>();
   protected static HashMap<Solver, Task> _solverTasks = new HashMap<Solver, Task>();
 
@@ -730,6 +750,9 @@ public class Graph {
       return false;
     if (_isLeadingNode(node))
       return false;
+    if (_index != null)
+      _index._invalidate();
+    _renderListDirty = true;
     return _leadingNodes().add(node);
   }
 
@@ -746,6 +769,10 @@ public class Graph {
         break;
       }
     }
+    if (result && _index != null)
+      _index._invalidate();
+    if (result)
+      _renderListDirty = true;
     return result;
   }
 
@@ -788,6 +815,7 @@ public class Graph {
       if (node.reference() != null) {
         node.reference()._removeChild(node);
         node._reference = null;
+        node._modified();
       } else
         _removeLeadingNode(node);
       return true;
@@ -795,6 +823,7 @@ public class Graph {
       if (node.reference() != null) {
         node.reference()._removeChild(node);
         node._reference = null;
+        node._modified();
         return true;
       }
     }
@@ -2602,11 +2631,116 @@ public class Graph {
    */
   public Node updateTag(String tag, int pixelX, int pixelY) {
     removeTag(tag);
+    if (isSpatialIndexEnabled()) {
+      Node node = _pick(pixelX, pixelY);
+      if (node != null)
+        tag(tag, node);
+      return node(tag);
+    }
     for (Node node : _leadingNodes())
       _track(tag, node, pixelX, pixelY);
     return node(tag);
   }
 
+  /**
+   * Same as {@code enableSpatialIndex(true)}.
+   *
+   * @see #enableSpatialIndex(boolean)
+   */
+  public void enableSpatialIndex() {
+    enableSpatialIndex(true);
+  }
+
+  /**
+   * Same as {@code enableSpatialIndex(false)}.
+   *
+   * @see #enableSpatialIndex(boolean)
+   */
+  public void disableSpatialIndex() {
+    enableSpatialIndex(false);
+  }
+
+  /**
+   * Enables or disables the use of a {@link SpatialIndex} by {@link #updateTag(String, int, int)}
+   * according to {@code flag}. When enabled, only the nodes which world position (and picking
+   * radius) may be hit by the pixel ray are projected onto the screen, so that picking cost grows
+   * sub-linearly with the number of nodes. The index is incrementally updated as nodes are
+   * modified, which adds a small overhead to each node update, and hence is disabled by default.
+   * <p>
+   * The tagged node is the same as the one found by traversing the node hierarchy, i.e., the first
+   * tracked node in the {@link #render()} order (skipping the descendants of culled nodes).
+   *
+   * @see #isSpatialIndexEnabled()
+   * @see #tracks(Node, int, int)
+   */
+  public void enableSpatialIndex(boolean flag) {
+    _spatialIndex = flag;
+    if (flag && _index == null)
+      _index = new SpatialIndex();
+  }
+
+  /**
+   * Returns {@code true} if {@link #updateTag(String, int, int)} uses a {@link SpatialIndex}
+   * and {@code false} otherwise.
+   *
+   * @see #enableSpatialIndex(boolean)
+   */
+  public boolean isSpatialIndexEnabled() {
+    return _spatialIndex;
+  }
+
+  /**
+   * Used by {@link #updateTag(String, int, int)} when the spatial index is enabled. Returns the
+   * first candidate (in {@link #render()} order) tracked at pixel {@code (pixelX, pixelY)}.
+   */
+  protected Node _pick(int pixelX, int pixelY) {
+    _candidates.clear();
+    _index.query(this, pixelX, pixelY, _candidates);
+    Node picked = null;
+    for (Node node : _candidates)
+      if ((picked == null || _precedes(node, picked)) && node.isTaggingEnabled()
+          && node._bypass != TimingHandler.frameCount && !_isCulledBranch(node) && tracks(node, pixelX, pixelY))
+        picked = node;
+    return picked;
+  }
+
+  /**
+   * Returns {@code true} if some {@code node} ancestor is culled, i.e., if the node isn't reached
+   * by the {@link #render()} algorithm.
+   */
+  protected static boolean _isCulledBranch(Node node) {
+    for (Node ancestor = node.reference(); ancestor != null; ancestor = ancestor.reference())
+      if (ancestor.isCulled())
+        return true;
+    return false;
+  }
+
+  /**
+   * Returns {@code true} if {@code node} is visited before {@code other} by the {@link #render()}
+   * (pre-order) algorithm.
+   */
+  protected static boolean _precedes(Node node, Node other) {
+    List<Node> path = _path(node), otherPath = _path(other);
+    int i = 0;
+    while (i < path.size() && i < otherPath.size() && path.get(i) == otherPath.get(i))
+      i++;
+    // one node is an ancestor of the other
+    if (i == path.size() || i == otherPath.size())
+      return path.size() < otherPath.size();
+    List<Node> siblings = i == 0 ? _leadingNodes() : path.get(i - 1).children();
+    return siblings.indexOf(path.get(i)) < siblings.indexOf(otherPath.get(i));
+  }
+
+  /**
+   * Returns the list of nodes from the root of the {@code node} hierarchy to the {@code node}.
+   */
+  protected static List<Node> _path(Node node) {
+    ArrayList<Node> path = new ArrayList<Node>();
+    for (Node ancestor = node; ancestor != null; ancestor = ancestor.reference())
+      path.add(0, ancestor);
+    return path;
+  }
+
   /**
    * Use internally by {@link #updateTag(String, int, int)}.
    */
@@ -2734,8 +2868,11 @@ public class Graph {
    */
   protected void _renderBackBuffer() {
     _bbMatrixHandler.bind(projection(), view());
-    for (Node node : _leadingNodes())
-      _renderBackBuffer(node);
+    if (isRenderCacheEnabled())
+      _renderBackBufferCache();
+    else
+      for (Node node : _leadingNodes())
+        _renderBackBuffer(node);
     if (isOffscreen())
       _rays.clear();
   }
@@ -2744,22 +2881,65 @@ public class Graph {
    * Used by the {@link #_renderBackBuffer()} algorithm.
    */
   protected void _renderBackBuffer(Node node) {
+    _renderBackBuffer(node, false);
+  }
+
+  /**
+   * Used by the {@link #_renderBackBuffer()} algorithm. Culls the node branches lying outside
+   * the viewing volume as {@link #_render(Node, boolean)} does.
+   */
+  protected void _renderBackBuffer(Node node, boolean inside) {
     if (node._graph != null && node._graph != this)
       return;
     _bbMatrixHandler.pushMatrix();
     _bbMatrixHandler.applyTransformation(node);
     if (!node.isCulled()) {
-      if (node._bypass != TimingHandler.frameCount) {
-        _drawBackBuffer(node);
-        if (!isOffscreen())
-          _trackBackBuffer(node);
+      Visibility visibility = inside ? Visibility.VISIBLE : _branchVisibility(node);
+      if (visibility != Visibility.INVISIBLE) {
+        if (node._bypass != TimingHandler.frameCount && (visibility == Visibility.VISIBLE || _isNodeVisible(node))) {
+          _drawBackBuffer(node);
+          if (!isOffscreen())
+            _trackBackBuffer(node);
+        }
+        for (Node child : node.children())
+          _renderBackBuffer(child, visibility == Visibility.VISIBLE);
       }
-      for (Node child : node.children())
-        _renderBackBuffer(child);
     }
     _bbMatrixHandler.popMatrix();
   }
 
+  /**
+   * Same as {@link #_renderBackBuffer(Node)} on each leading node but the node transformations
+   * are taken from the world matrix cache (see {@link #enableRenderCache(boolean)}).
+   */
+  protected void _renderBackBufferCache() {
+    _updateRenderList();
+    Node[] nodes = _renderList;
+    int[] ends = _renderEnds;
+    int inside = 0;
+    for (int i = 0; i < _renderListSize; ) {
+      Node node = nodes[i];
+      int next = ends[i];
+      if ((node._graph == null || node._graph == this) && !node.isCulled()) {
+        Visibility visibility = i < inside ? Visibility.VISIBLE : _branchVisibility(node);
+        if (visibility != Visibility.INVISIBLE) {
+          if (visibility == Visibility.VISIBLE && inside <= i)
+            inside = ends[i];
+          if (node._bypass != TimingHandler.frameCount && (visibility == Visibility.VISIBLE || _isNodeVisible(node))) {
+            _bbMatrixHandler.pushMatrix();
+            _bbMatrixHandler.applyMatrix(node._cachedWorldMatrix());
+            _drawBackBuffer(node);
+            if (!isOffscreen())
+              _trackBackBuffer(node);
+            _bbMatrixHandler.popMatrix();
+          }
+          next = i + 1;
+        }
+      }
+      i = next;
+    }
+  }
+
   /**
    * Called before your main drawing and performs the following:
    * <ol>
@@ -2787,7 +2967,8 @@ public class Graph {
     if (isProjectionViewInverseCached())
       _projectionViewInverse = Matrix.inverse(_projectionView);
     _matrixHandler.bind(_projection, _view);
-    if (areBoundaryEquationsEnabled() && (eye().lastUpdate() > _lastEqUpdate || _lastEqUpdate == 0)) {
+    // the frustum may also change with the graph radius or size, which would lead to wrong culling
+    if (areBoundaryEquationsEnabled() && (isFrustumCullingEnabled() || eye().lastUpdate() > _lastEqUpdate || _lastEqUpdate == 0)) {
       updateBoundaryEquations();
       _lastEqUpdate = TimingHandler.frameCount;
     }
@@ -2937,33 +3118,243 @@ public class Graph {
    * @see Node#setShape(processing.core.PShape)
    */
   public void render() {
-    for (Node node : _leadingNodes())
-      _render(node);
+    if (isRenderCacheEnabled())
+      _renderCache();
+    else
+      for (Node node : _leadingNodes())
+        _render(node);
     _rays.clear();
   }
 
+  /**
+   * Same as {@link #_render(Node)} on each leading node, but the node tree is traversed in
+   * (cached) pre-order and the node transformations are taken from the world matrix cache,
+   * see {@link #enableRenderCache(boolean)}.
+   */
+  protected void _renderCache() {
+    _updateRenderList();
+    Node[] nodes = _renderList;
+    int[] ends = _renderEnds;
+    // the nodes before inside belong to a branch known to be within the viewing volume
+    int inside = 0;
+    for (int i = 0; i < _renderListSize; ) {
+      Node node = nodes[i];
+      int next = ends[i];
+      if (node._graph == null || node._graph == this) {
+        _matrixHandler.pushMatrix();
+        _matrixHandler.applyMatrix(node._cachedWorldMatrix());
+        node.visit();
+        if (!node.isCulled()) {
+          Visibility visibility = i < inside ? Visibility.VISIBLE : _branchVisibility(node);
+          if (visibility != Visibility.INVISIBLE) {
+            if (visibility == Visibility.VISIBLE && inside <= i)
+              inside = ends[i];
+            if (node._bypass != TimingHandler.frameCount && (visibility == Visibility.VISIBLE || _isNodeVisible(node))) {
+              _trackFrontBuffer(node);
+              if (isOffscreen())
+                _trackBackBuffer(node);
+              _drawFrontBuffer(node);
+            }
+            next = i + 1;
+          }
+        }
+        _matrixHandler.popMatrix();
+      }
+      i = next;
+    }
+  }
+
+  /**
+   * Flattens the node tree into the (pre-ordered) render list, together with the index right
+   * after the branch of each node, but only when nodes have been added to or removed from
+   * the tree since the last call.
+   */
+  protected static void _updateRenderList() {
+    if (!_renderListDirty)
+      return;
+    _renderListSize = 0;
+    for (Node node : _leadingNodes())
+      _flatten(node);
+    _renderListDirty = false;
+  }
+
+  /**
+   * Used by {@link #_updateRenderList()}.
+   */
+  protected static void _flatten(Node node) {
+    if (_renderListSize == _renderList.length) {
+      int length = Math.max(16, 2 * _renderList.length);
+      _renderList = Arrays.copyOf(_renderList, length);
+      _renderEnds = Arrays.copyOf(_renderEnds, length);
+    }
+    int index = _renderListSize++;
+    _renderList[index] = node;
+    for (Node child : node.children())
+      _flatten(child);
+    _renderEnds[index] = _renderListSize;
+  }
+
+  /**
+   * Same as {@code enableRenderCache(true)}.
+   *
+   * @see #enableRenderCache(boolean)
+   */
+  public void enableRenderCache() {
+    enableRenderCache(true);
+  }
+
+  /**
+   * Same as {@code enableRenderCache(false)}.
+   *
+   * @see #enableRenderCache(boolean)
+   */
+  public void disableRenderCache() {
+    enableRenderCache(false);
+  }
+
+  /**
+   * Enables or disables the retained-mode {@link #render()} algorithm according to
+   * {@code flag}. When enabled, the node tree is traversed from a flat (pre-ordered) list,
+   * which is only rebuilt when nodes are added to or removed from the tree, and each node is
+   * drawn with its cached world matrix, which is only recomputed when the node or any of its
+   * ancestors has been modified (see {@link Node#lastUpdate()}). Hence the per-frame cost of
+   * mostly static scenes is reduced to the draw calls themselves and the matrix stack depth no
+   * longer grows with the depth of the tree.
+   * <p>
+   * The order in which nodes are visited and drawn, together with the node culling, bypassing
+   * and tagging, are the same as with the default algorithm. The difference is that each node
+   * is drawn with {@link MatrixHandler#applyMatrix(Matrix)} on the current matrix (the one
+   * bound before rendering), instead of being drawn after the transformations of its ancestors
+   * have been applied, so that transformations applied within {@link Node#visit()} are not
+   * inherited by the node children.
+   *
+   * @see #isRenderCacheEnabled()
+   * @see #render()
+   */
+  public void enableRenderCache(boolean flag) {
+    _renderCache = flag;
+  }
+
+  /**
+   * Returns {@code true} if {@link #render()} uses the retained-mode algorithm and
+   * {@code false} otherwise.
+   *
+   * @see #enableRenderCache(boolean)
+   */
+  public boolean isRenderCacheEnabled() {
+    return _renderCache;
+  }
+
   /**
    * Used by the {@link #render()} algorithm.
    */
   protected void _render(Node node) {
+    _render(node, false);
+  }
+
+  /**
+   * Used by the {@link #render()} algorithm. The {@code inside} flag tells whether or not the
+   * branch of the node is known to lie completely within the viewing volume, in which case no
+   * further frustum culling tests are performed on it.
+   */
+  protected void _render(Node node, boolean inside) {
     if (node._graph != null && node._graph != this)
       return;
     _matrixHandler.pushMatrix();
     _matrixHandler.applyTransformation(node);
-    node.visit();
-    if (!node.isCulled()) {
-      if (node._bypass != TimingHandler.frameCount) {
-        _trackFrontBuffer(node);
-        if (isOffscreen())
-          _trackBackBuffer(node);
-        _drawFrontBuffer(node);
+    // branches lying outside the viewing volume are not even visited
+    Visibility visibility = inside ? Visibility.VISIBLE : _branchVisibility(node);
+    if (visibility != Visibility.INVISIBLE) {
+      node.visit();
+      if (!node.isCulled()) {
+        if (node._bypass != TimingHandler.frameCount && (visibility == Visibility.VISIBLE || _isNodeVisible(node))) {
+          _trackFrontBuffer(node);
+          if (isOffscreen())
+            _trackBackBuffer(node);
+          _drawFrontBuffer(node);
+        }
+        for (Node child : node.children())
+          _render(child, visibility == Visibility.VISIBLE);
       }
-      for (Node child : node.children())
-        _render(child);
     }
     _matrixHandler.popMatrix();
   }
 
+  /**
+   * Returns the visibility of the ball enclosing the {@code node} branch (see
+   * {@link Node#setBoundingSphere(Vector, float)}), or {@link Visibility#VISIBLE} when frustum
+   * culling is disabled. Unbounded branches are reported as {@link Visibility#SEMIVISIBLE}
+   * so that their descendants get tested.
+   *
+   * @see #enableFrustumCulling(boolean)
+   */
+  protected Visibility _branchVisibility(Node node) {
+    if (!isFrustumCullingEnabled() || !areBoundaryEquationsEnabled())
+      return Visibility.VISIBLE;
+    node._updateBounds();
+    if (node._subtreeBoundsRadius < 0)
+      return Visibility.SEMIVISIBLE;
+    return ballVisibility(node._subtreeBoundsCenter, node._subtreeBoundsRadius);
+  }
+
+  /**
+   * Tells whether or not the bounding sphere of the {@code node} itself (regardless of its
+   * descendants) intersects the viewing volume. Should be called after
+   * {@link #_branchVisibility(Node)}.
+   */
+  protected boolean _isNodeVisible(Node node) {
+    return node._worldBoundsRadius < 0 || ballVisibility(node._worldBoundsCenter, node._worldBoundsRadius) != Visibility.INVISIBLE;
+  }
+
+  /**
+   * Same as {@code enableFrustumCulling(true)}.
+   *
+   * @see #enableFrustumCulling(boolean)
+   */
+  public void enableFrustumCulling() {
+    enableFrustumCulling(true);
+  }
+
+  /**
+   * Same as {@code enableFrustumCulling(false)}.
+   *
+   * @see #enableFrustumCulling(boolean)
+   */
+  public void disableFrustumCulling() {
+    enableFrustumCulling(false);
+  }
+
+  /**
+   * Enables or disables automatic view frustum culling during {@link #render()} according to
+   * {@code flag}. When enabled, the node branches whose bounding ball (aggregated from the
+   * bounding spheres of their nodes, see {@link Node#setBoundingSphere(Vector, float)}) lies
+   * outside the viewing volume are neither visited nor drawn, and the branches lying completely
+   * within it are drawn without further tests. Nodes having no bounding sphere are always drawn.
+   * <p>
+   * Note that culled nodes are not picked by the {@link #render()} algorithm either (see
+   * {@link #tag(String, int, int)}). Enabling frustum culling also enables the boundary
+   * equations update (see {@link #enableBoundaryEquations()}) which is then performed every
+   * frame.
+   *
+   * @see #isFrustumCullingEnabled()
+   * @see #ballVisibility(Vector, float)
+   */
+  public void enableFrustumCulling(boolean flag) {
+    _frustumCulling = flag;
+    if (flag)
+      enableBoundaryEquations();
+  }
+
+  /**
+   * Returns {@code true} if the {@link #render()} algorithm culls the node branches lying
+   * outside the viewing volume and {@code false} otherwise.
+   *
+   * @see #enableFrustumCulling(boolean)
+   */
+  public boolean isFrustumCullingEnabled() {
+    return _frustumCulling;
+  }
+
   /**
    * Renders the node tree onto context from the {@code eye} viewpoint with the given frustum parameters.
    *
@@ -4560,6 +4951,15 @@ public class Graph {
     _useTRIK = trik;
   }
 
+  /**
+   * Solves each registered tree with a single stacked Jacobian over all its end effectors
+   * (see {@link DLSTreeSolver}) instead of FABRIK or TRIK. Takes precedence over
+   * {@link #enableTRIK(boolean)}.
+   */
+  public static void enableDLS(boolean dls){
+    _useDLS = dls;
+  }
+
   /**
    * Return registered solvers
    */
@@ -4575,6 +4975,7 @@ public class Graph {
       Node head = null;
       if(solver instanceof TreeSolver) head = ((TreeSolver) solver).head();
       else if(solver instanceof TRIKTree) head = ((TRIKTree) solver).head();
+      else if(solver instanceof DLSTreeSolver) head = ((DLSTreeSolver) solver).head();
       else return null;
       //If Head is Contained in any structure do nothing
       if (!((isReachable(head) && isReachable(node)) ? Node.path(head, node) : new ArrayList<Node>()).isEmpty())
@@ -4583,7 +4984,8 @@ public class Graph {
 
     Solver solver;
 
-    if(_useTRIK) solver = new TRIKTree(node);
+    if(_useDLS) solver = new DLSTreeSolver(node);
+    else if(_useTRIK) solver = new TRIKTree(node);
     else solver = new TreeSolver(node);
     _solvers.add(solver);
     //Add task
@@ -4593,6 +4995,8 @@ public class Graph {
         solver.solve();
       }
     };
+    // the solver reads its targets (see addIKTarget) and writes the branch
+    task.declareWrites(node);
     task.run(40);
     _solverTasks.put(solver, task);
     return solver;
@@ -4607,6 +5011,7 @@ public class Graph {
       Node head = null;
       if(solver instanceof TreeSolver) head = ((TreeSolver) solver).head();
       else if(solver instanceof TRIKTree) head = ((TRIKTree) solver).head();
+      else if(solver instanceof DLSTreeSolver) head = ((DLSTreeSolver) solver).head();
       else return false;
       if (head == node) {
         toRemove = solver;
@@ -4626,6 +5031,7 @@ public class Graph {
       Node head = null;
       if(solver instanceof TreeSolver) head = ((TreeSolver) solver).head();
       else if(solver instanceof TRIKTree) head = ((TRIKTree) solver).head();
+      else if(solver instanceof DLSTreeSolver) head = ((DLSTreeSolver) solver).head();
       else return null;
 
       if (head == node) {
@@ -4637,12 +5043,29 @@ public class Graph {
 
   public static boolean addIKTarget(Node endEffector, Node target) {
     for (Solver solver : _solvers) {
-      if (solver instanceof TreeSolver && ((TreeSolver)solver).addTarget(endEffector, target)) return true;
-      if (solver instanceof TRIKTree && ((TRIKTree)solver).addTarget(endEffector, target)) return true;
+      if ((solver instanceof TreeSolver && ((TreeSolver)solver).addTarget(endEffector, target))
+          || (solver instanceof TRIKTree && ((TRIKTree)solver).addTarget(endEffector, target))
+          || (solver instanceof DLSTreeSolver && ((DLSTreeSolver)solver).addTarget(endEffector, target))) {
+        _declareTarget(solver, target);
+        return true;
+      }
     }
     return false;
   }
 
+  /**
+   * Used by {@link #addIKTarget(Node, Node)} to declare the {@code target} as read by the
+   * solver task, see {@link nub.timing.TimingHandler#enableParallelExecution(boolean)}.
+   */
+  protected static void _declareTarget(Solver solver, Node target) {
+    Task task = _solverTasks.get(solver);
+    if (task == null || !task.areAccessesDeclared() || target == null)
+      return;
+    Object[] reads = Arrays.copyOf(task.reads(), task.reads().length + 1);
+    reads[reads.length - 1] = target;
+    task.declareReads(reads);
+  }
+
   /**
    * Same as {@code executeIKSolver(_solver, 40)}.
    *
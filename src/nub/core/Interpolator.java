@@ -81,7 +81,7 @@ public class Interpolator {
 
   /**
    * Internal protected class representing 2d and 3d key-frames. It's just
-   * a time-node pairing with vector and quaternion tangent caches.
+   * a time-node pairing.
    */
   protected class KeyFrame {
     /**
@@ -93,8 +93,6 @@ public class Interpolator {
       return node().matches(keyFrame._node) && _time == keyFrame._time;
     }
 
-    protected Quaternion _tangentQuaternion;
-    protected Vector _tangentVector;
     protected float _time;
     protected Node _node;
 
@@ -117,8 +115,7 @@ public class Interpolator {
   // Attention: We should go like this: protected Map<Float, Node> _list;
   // but Java doesn't allow to iterate backwards a map
   protected List<KeyFrame> _list;
-  protected ListIterator<KeyFrame> _backwards;
-  protected ListIterator<KeyFrame> _forwards;
+  protected Curve _curve;
   protected List<Node> _path;
 
   // Main node
@@ -135,9 +132,11 @@ public class Interpolator {
   // Cached values and flags
   protected boolean _pathIsValid;
   protected boolean _valuesAreValid;
-  protected boolean _currentKeyFrameValid;
-  protected boolean _splineCacheIsValid;
-  protected Vector _vector1, _vector2;
+  protected long _lastCheck = -1;
+
+  // Scratch objects used by interpolate() when the node ones can't be updated in place
+  protected Vector _position = new Vector();
+  protected Quaternion _rotation = new Quaternion();
 
   /**
    * Convenience constructor that simply calls {@code this(graph, new Node())}.
@@ -184,10 +183,7 @@ public class Interpolator {
     _recurrent = false;
     _pathIsValid = false;
     _valuesAreValid = false;
-    _currentKeyFrameValid = false;
-    _splineCacheIsValid = false;
-    _backwards = _list.listIterator();
-    _forwards = _list.listIterator();
+    _declareAccesses();
   }
 
   protected Interpolator(Interpolator other) {
@@ -213,10 +209,7 @@ public class Interpolator {
     this._recurrent = other._recurrent;
     this._pathIsValid = false;
     this._valuesAreValid = false;
-    this._currentKeyFrameValid = false;
-    this._splineCacheIsValid = false;
-    this._backwards = _list.listIterator();
-    this._forwards = _list.listIterator();
+    this._declareAccesses();
   }
 
   /**
@@ -240,6 +233,26 @@ public class Interpolator {
     if (node == _node)
       return;
     _node = node;
+    _declareAccesses();
+  }
+
+  /**
+   * Declares the {@link #task()} accesses, i.e., it reads the keyframes and writes the
+   * {@link #node()}, so that it may be executed in parallel with other tasks.
+   *
+   * @see nub.timing.TimingHandler#enableParallelExecution(boolean)
+   */
+  protected void _declareAccesses() {
+    if (_task == null)
+      return;
+    Node[] keyFrames = new Node[_list.size()];
+    for (int i = 0; i < keyFrames.length; i++)
+      keyFrames[i] = _list.get(i)._node;
+    _task.declareReads((Object[]) keyFrames);
+    if (_node == null)
+      _task.declareWrites();
+    else
+      _task.declareWrites(_node);
   }
 
   /**
@@ -605,9 +618,9 @@ public class Interpolator {
     if (node == null)
       return;
     _list.add(new KeyFrame(node, _list.isEmpty() ? time : _list.get(_list.size() - 1)._time + time));
+    _declareAccesses();
     _valuesAreValid = false;
     _pathIsValid = false;
-    _currentKeyFrameValid = false;
     reset();
   }
 
@@ -625,7 +638,6 @@ public class Interpolator {
       if (keyFrame._time == time) {
         _valuesAreValid = false;
         _pathIsValid = false;
-        _currentKeyFrameValid = false;
         if (_task.isActive())
           _task.stop();
         Graph.prune(keyFrame._node);
@@ -634,6 +646,8 @@ public class Interpolator {
         result = true;
       }
     }
+    if (result)
+      _declareAccesses();
     return result;
   }
 
@@ -650,89 +664,65 @@ public class Interpolator {
       Graph.prune(keyFrame._node);
     }
     _list.clear();
+    _declareAccesses();
     _pathIsValid = false;
     _valuesAreValid = false;
-    _currentKeyFrameValid = false;
   }
 
   /**
    * Interpolate {@link #node()} at time {@code time} (expressed in seconds).
    * {@link #time()} is set to {@code time} and {@link #node()} is set accordingly.
    * <p>
+   * The keyframes are checked for modifications (see {@link #curve()}) at most once per
+   * frame and, whenever possible, the {@link #node()} translation and rotation are
+   * updated in place, hence interpolating allocates nothing.
+   * <p>
    * If you simply want to change {@link #time()} but not the
    * {@link #node()} state, use {@link #setTime(float)} instead.
+   *
+   * @see #curve()
    */
   public void interpolate(float time) {
-    this._checkValidity();
     setTime(time);
     if ((_list.isEmpty()) || (node() == null))
       return;
+    if (_lastCheck != TimingHandler.frameCount) {
+      _lastCheck = TimingHandler.frameCount;
+      _checkValidity();
+    }
     if (!_valuesAreValid)
       _updateModifiedKeyFrames();
-    _updateCurrentKeyFrameForTime(time);
-    if (!_splineCacheIsValid)
-      _updateSplineCache();
-    float alpha;
-    float dt = _list.get(_forwards.nextIndex())._time - _list.get(_backwards.nextIndex())._time;
-    if (dt == 0)
-      alpha = 0.0f;
-    else
-      alpha = (time - _list.get(_backwards.nextIndex())._time) / dt;
-    Vector pos = Vector.add(_list.get(_backwards.nextIndex())._node.position(), Vector.multiply(
-        Vector.add(_list.get(_backwards.nextIndex())._tangentVector,
-            Vector.multiply(Vector.add(_vector1, Vector.multiply(_vector2, alpha)), alpha)), alpha));
-    float mag = Vector.lerp(_list.get(_backwards.nextIndex())._node.magnitude(),
-        _list.get(_forwards.nextIndex())._node.magnitude(), alpha);
-    Quaternion q = Quaternion.squad(_list.get(_backwards.nextIndex())._node.orientation(),
-        _list.get(_backwards.nextIndex())._tangentQuaternion,
-        _list.get(_forwards.nextIndex())._tangentQuaternion,
-        _list.get(_forwards.nextIndex())._node.orientation(), alpha);
-    node().setPosition(pos);
-    node().setRotation(q);
-    node().setMagnitude(mag);
-  }
-
-  /**
-   * Internal use.
-   */
-  protected void _updateCurrentKeyFrameForTime(float time) {
-    // TODO: Special case for loops when closed path is implemented !!
-    if (!_currentKeyFrameValid)
-      _backwards = _list.listIterator();
-    while (_list.get(_backwards.nextIndex())._time > time) {
-      _currentKeyFrameValid = false;
-      if (!_backwards.hasPrevious())
-        break;
-      _backwards.previous();
-    }
-    if (!_currentKeyFrameValid)
-      _forwards = _list.listIterator(_backwards.nextIndex());
-    while (_list.get(_forwards.nextIndex())._time < time) {
-      _currentKeyFrameValid = false;
-      if (!_forwards.hasNext())
-        break;
-      _forwards.next();
-    }
-    if (!_currentKeyFrameValid) {
-      _backwards = _list.listIterator(_forwards.nextIndex());
-      if ((_backwards.hasPrevious()) && (time < _list.get(_forwards.nextIndex())._time))
-        _backwards.previous();
-      _currentKeyFrameValid = true;
-      _splineCacheIsValid = false;
-    }
-  }
-
-  /**
-   * Internal use. Used by {@link #interpolate(float)}.
+    int segment = _curve.segment(time);
+    float alpha = _curve.alpha(segment, time);
+    Node node = node();
+    // the node keeps the references to its translation and rotation, so that they may only
+    // be reused when they are going to be set as they are
+    Vector position = node.reference() == null && node.constraint() == null ? node.translation() : _position;
+    node.setPosition(_curve.position(segment, alpha, position));
+    Quaternion rotation = node.constraint() == null ? node.rotation() : _rotation;
+    node.setRotation(_curve.orientation(segment, alpha, rotation));
+    node.setMagnitude(_curve.magnitude(segment, alpha));
+  }
+
+  /**
+   * Returns the compiled (immutable) form of the interpolator path, which is recomputed
+   * only when a keyframe is added, removed or modified. Use it to evaluate the path at
+   * random times (e.g., to scrub it) without modifying the {@link #node()}, possibly
+   * from several threads.
+   * <p>
+   * Note that this method scans all the keyframes to find out if any of them was modified.
+   * Keep the returned curve (and query it again only when the keyframes may have changed)
+   * to sample the path in {@code O(log n)}.
+   *
+   * @see Curve#position(float, Vector)
+   * @see Curve#orientation(float, Quaternion)
+   * @see Curve#magnitude(float)
    */
-  protected void _updateSplineCache() {
-    Vector deltaP = Vector.subtract(_list.get(_forwards.nextIndex())._node.position(),
-        _list.get(_backwards.nextIndex())._node.position());
-    _vector1 = Vector.add(Vector.multiply(deltaP, 3.0f), Vector.multiply(_list.get(_backwards.nextIndex())._tangentVector, (-2.0f)));
-    _vector1 = Vector.subtract(_vector1, _list.get(_forwards.nextIndex())._tangentVector);
-    _vector2 = Vector.add(Vector.multiply(deltaP, (-2.0f)), _list.get(_backwards.nextIndex())._tangentVector);
-    _vector2 = Vector.add(_vector2, _list.get(_forwards.nextIndex())._tangentVector);
-    _splineCacheIsValid = true;
+  public Curve curve() {
+    _checkValidity();
+    if (!_valuesAreValid)
+      _updateModifiedKeyFrames();
+    return _curve;
   }
 
   /**
@@ -760,65 +750,36 @@ public class Interpolator {
         return;
       if (!_valuesAreValid)
         _updateModifiedKeyFrames();
-      if (_list.get(0) == _list.get(_list.size() - 1))
-        _path.add(Node.detach(_list.get(0)._node.position(), _list.get(0)._node.orientation(), _list.get(0)._node.magnitude()));
-      else {
-        KeyFrame[] keyFrames = new KeyFrame[4];
-        keyFrames[0] = _list.get(0);
-        keyFrames[1] = keyFrames[0];
-        int index = 1;
-        keyFrames[2] = (index < _list.size()) ? _list.get(index) : null;
-        index++;
-        keyFrames[3] = (index < _list.size()) ? _list.get(index) : null;
-        while (keyFrames[2] != null) {
-          Vector pdiff = Vector.subtract(keyFrames[2]._node.position(), keyFrames[1]._node.position());
-          Vector pvec1 = Vector.add(Vector.multiply(pdiff, 3.0f), Vector.multiply(keyFrames[1]._tangentVector, (-2.0f)));
-          pvec1 = Vector.subtract(pvec1, keyFrames[2]._tangentVector);
-          Vector pvec2 = Vector.add(Vector.multiply(pdiff, (-2.0f)), keyFrames[1]._tangentVector);
-          pvec2 = Vector.add(pvec2, keyFrames[2]._tangentVector);
-          for (int step = 0; step < nbSteps; ++step) {
-            float alpha = step / (float) nbSteps;
-            _path.add(Node.detach(
-                Vector.add(keyFrames[1]._node.position(), Vector.multiply(Vector.add(keyFrames[1]._tangentVector, Vector.multiply(Vector.add(pvec1, Vector.multiply(pvec2, alpha)), alpha)), alpha)),
-                Quaternion.squad(keyFrames[1]._node.orientation(), keyFrames[1]._tangentQuaternion, keyFrames[2]._tangentQuaternion, keyFrames[2]._node.orientation(), alpha),
-                Vector.lerp(keyFrames[1]._node.magnitude(), keyFrames[2]._node.magnitude(), alpha))
-            );
-          }
-          // Shift
-          keyFrames[0] = keyFrames[1];
-          keyFrames[1] = keyFrames[2];
-          keyFrames[2] = keyFrames[3];
-          index++;
-          keyFrames[3] = (index < _list.size()) ? _list.get(index) : null;
+      for (int segment = 0; segment < _curve.size() - 1; segment++) {
+        for (int step = 0; step < nbSteps; ++step) {
+          float alpha = step / (float) nbSteps;
+          _path.add(Node.detach(_curve.position(segment, alpha, new Vector()), _curve.orientation(segment, alpha, new Quaternion()), _curve.magnitude(segment, alpha)));
         }
-        // Add last KeyFrame
-        _path.add(Node.detach(keyFrames[1]._node.position(), keyFrames[1]._node.orientation(), keyFrames[1]._node.magnitude()));
       }
+      // Add last KeyFrame
+      int last = _curve.size() - 1;
+      _path.add(Node.detach(_curve.position(last, 0, new Vector()), _curve.orientation(last, 0, new Quaternion()), _curve.magnitude(last, 0)));
       _pathIsValid = true;
     }
   }
 
   /**
-   * Internal use.
+   * Internal use. Compiles the keyframes into the {@link #curve()}.
    */
   protected void _updateModifiedKeyFrames() {
-    KeyFrame keyFrame;
-    KeyFrame prev = _list.get(0);
-    keyFrame = _list.get(0);
-    int index = 1;
-    while (keyFrame != null) {
-      KeyFrame next = (index < _list.size()) ? _list.get(index) : null;
-      index++;
-      if (next != null) {
-        keyFrame._tangentVector = Vector.multiply(Vector.subtract(next._node.position(), prev._node.position()), 0.5f);
-        keyFrame._tangentQuaternion = Quaternion.squadTangent(prev._node.orientation(), keyFrame._node.orientation(), next._node.orientation());
-      } else {
-        keyFrame._tangentVector = Vector.multiply(Vector.subtract(keyFrame._node.position(), prev._node.position()), 0.5f);
-        keyFrame._tangentQuaternion = Quaternion.squadTangent(prev._node.orientation(), keyFrame._node.orientation(), keyFrame._node.orientation());
-      }
-      prev = keyFrame;
-      keyFrame = next;
+    int n = _list.size();
+    float[] times = new float[n];
+    Vector[] positions = new Vector[n];
+    Quaternion[] orientations = new Quaternion[n];
+    float[] magnitudes = new float[n];
+    for (int i = 0; i < n; i++) {
+      KeyFrame keyFrame = _list.get(i);
+      times[i] = keyFrame._time;
+      positions[i] = keyFrame._node.position();
+      orientations[i] = keyFrame._node.orientation();
+      magnitudes[i] = keyFrame._node.magnitude();
     }
+    _curve = new Curve(times, positions, orientations, magnitudes);
     _valuesAreValid = true;
   }
 
@@ -837,7 +798,6 @@ public class Interpolator {
       _lastUpdate = TimingHandler.frameCount;
       _valuesAreValid = false;
       _pathIsValid = false;
-      _splineCacheIsValid = false;
     }
   }
 }
@@ -134,6 +134,26 @@ public class Node {
   protected Constraint _constraint;
   protected long _lastUpdate;
 
+  // World transformation cache, see _updateWorldCache()
+  protected Vector _worldPosition = new Vector();
+  protected Quaternion _worldOrientation = new Quaternion();
+  protected float _worldMagnitude = 1;
+  protected boolean _dirty = true;
+  // World matrix cache, see Graph.enableRenderCache
+  protected Matrix _worldMatrix;
+  protected boolean _matrixDirty = true;
+
+  // Spatial index slot, see Graph.enableSpatialIndex
+  protected int _indexSlot = -1;
+  protected boolean _indexDirty;
+
+  // Bounding sphere (local) and cached world bounds, see Graph.enableFrustumCulling
+  protected Vector _boundingCenter = new Vector();
+  protected float _boundingRadius = -1;
+  protected Vector _worldBoundsCenter = new Vector(), _subtreeBoundsCenter = new Vector();
+  protected float _worldBoundsRadius = -1, _subtreeBoundsRadius = -1;
+  protected boolean _boundsDirty = true;
+
   // Tagging & Precision
   protected float _threshold;
 
@@ -486,14 +506,87 @@ public class Node {
 
   /**
    * Internal use. Automatically call by all methods which change the node state.
+   * It also invalidates the world transformation cache of the node branch, see
+   * {@link #_updateWorldCache()}.
    */
   protected void _modified() {
     _lastUpdate = TimingHandler.frameCount;
+    _dirty = true;
+    _matrixDirty = true;
+    _invalidateBounds();
+    if (_indexSlot >= 0 && Graph._index != null)
+      Graph._index._touch(this);
     if (_children != null)
       for (Node child : _children)
         child._modified();
   }
 
+  /**
+   * Internal use. Recomputes the cached {@link #position()}, {@link #orientation()} and
+   * {@link #magnitude()} of the node, but only when the node (or any of its ancestors) has
+   * been {@link #_modified()} since the last query. Only the dirty ancestors are then
+   * recomputed (from the root down to this node), so that querying the world transformation
+   * of an unchanged node is O(1) and allocates nothing.
+   * <p>
+   * Note that modifying the {@link #translation()} or the {@link #rotation()} in place
+   * (e.g., {@code node.rotation().compose(quaternion)}) bypasses the cache invalidation.
+   * Use {@link #setTranslation(Vector)}, {@link #setRotation(Quaternion)} or the
+   * {@link #translate(Vector)} and {@link #rotate(Quaternion)} methods instead.
+   */
+  protected void _updateWorldCache() {
+    if (!_dirty)
+      return;
+    Node reference = reference();
+    if (reference == null) {
+      _worldPosition.set(translation());
+      _worldOrientation.set(rotation(), false);
+      _worldMagnitude = scaling();
+    } else {
+      reference._updateWorldCache();
+      Vector.multiply(translation(), reference._worldMagnitude, _worldPosition);
+      reference._worldOrientation.rotate(_worldPosition, _worldPosition);
+      _worldPosition.add(reference._worldPosition);
+      Quaternion.compose(reference._worldOrientation, rotation(), _worldOrientation);
+      _worldMagnitude = reference._worldMagnitude * scaling();
+    }
+    _dirty = false;
+  }
+
+  /**
+   * Internal use. Returns the cached {@link #worldMatrix()} of the node, which is only
+   * recomputed (from the cached {@link #position()}, {@link #orientation()} and
+   * {@link #magnitude()}) when the node (or any of its ancestors) has been
+   * {@link #_modified()} since the last query. Don't modify the returned matrix.
+   */
+  protected Matrix _cachedWorldMatrix() {
+    if (_worldMatrix == null)
+      _worldMatrix = new Matrix();
+    else if (!_matrixDirty)
+      return _worldMatrix;
+    _updateWorldCache();
+    float[] q = _worldOrientation._quaternion;
+    float x = q[0], y = q[1], z = q[2], w = q[3], s = _worldMagnitude;
+    float[] m = _worldMatrix._matrix;
+    m[0] = s * (1 - 2 * (y * y + z * z));
+    m[1] = s * 2 * (x * y + z * w);
+    m[2] = s * 2 * (x * z - y * w);
+    m[3] = 0;
+    m[4] = s * 2 * (x * y - z * w);
+    m[5] = s * (1 - 2 * (x * x + z * z));
+    m[6] = s * 2 * (y * z + x * w);
+    m[7] = 0;
+    m[8] = s * 2 * (x * z + y * w);
+    m[9] = s * 2 * (y * z - x * w);
+    m[10] = s * (1 - 2 * (x * x + y * y));
+    m[11] = 0;
+    m[12] = _worldPosition._vector[0];
+    m[13] = _worldPosition._vector[1];
+    m[14] = _worldPosition._vector[2];
+    m[15] = 1;
+    _matrixDirty = false;
+    return _worldMatrix;
+  }
+
   // reference
 
   /**
@@ -626,6 +719,7 @@ public class Node {
           reference()._removeChild(this);
         _reference = node;// reference() returns now the new value
         reference()._addChild(this);
+        _modified();
       }
       return;
     }
@@ -669,6 +763,7 @@ public class Node {
           translate(_x, _y, _z);
         }
       };
+      _translationTask.declareWrites(this);
     }
     if (!Graph.isTaskRegistered(_rotationTask)) {
       _rotationTask = new InertialTask() {
@@ -677,6 +772,7 @@ public class Node {
           rotate(new Quaternion(_x, _y, _z));
         }
       };
+      _rotationTask.declareWrites(this);
     }
     if (!Graph.isTaskRegistered(_orbitTask)) {
       _orbitTask = new InertialTask() {
@@ -685,6 +781,7 @@ public class Node {
           orbit(new Quaternion(_x, _y, _z), _center);
         }
       };
+      _orbitTask.declareWrites(this);
     }
     if (!Graph.isTaskRegistered(_scalingTask)) {
       _scalingTask = new InertialTask() {
@@ -694,6 +791,7 @@ public class Node {
           scale(_x >= 0 ? factor : 1 / factor);
         }
       };
+      _scalingTask.declareWrites(this);
     }
   }
 
@@ -719,6 +817,10 @@ public class Node {
       return false;
     if (_hasChild(node))
       return false;
+    if (_indexSlot >= 0 && Graph._index != null)
+      Graph._index._invalidate();
+    Graph._renderListDirty = true;
+    _invalidateBounds();
     return _children.add(node);
   }
 
@@ -735,6 +837,12 @@ public class Node {
         break;
       }
     }
+    if (result && _indexSlot >= 0 && Graph._index != null)
+      Graph._index._invalidate();
+    if (result) {
+      Graph._renderListDirty = true;
+      _invalidateBounds();
+    }
     return result;
   }
 
@@ -834,6 +942,8 @@ public class Node {
    */
   public void setPickingThreshold(float threshold) {
     _threshold = threshold;
+    if (_indexSlot >= 0 && Graph._index != null)
+      Graph._index._touch(this);
   }
 
   /**
@@ -1006,7 +1116,26 @@ public class Node {
    * @see #translation()
    */
   public Vector position() {
-    return worldLocation(new Vector(0, 0, 0));
+    return position(null);
+  }
+
+  /**
+   * Stores the node {@link #position()} into {@code target}. Since the world
+   * transformation is cached (see {@link #lastUpdate()}), this method allocates
+   * nothing when {@code target} is non-null and the node hierarchy has not been
+   * modified since the last query.
+   *
+   * @param target the target vector (if null, a new vector will be created)
+   * @return the node position
+   * @see #position()
+   * @see #orientation(Quaternion)
+   */
+  public Vector position(Vector target) {
+    _updateWorldCache();
+    if (target == null)
+      return _worldPosition.get();
+    target.set(_worldPosition);
+    return target;
   }
 
   /**
@@ -1281,14 +1410,26 @@ public class Node {
    * @see #rotation()
    */
   public Quaternion orientation() {
-    Quaternion quaternion = rotation().get();
-    Node reference = reference();
-    while (reference != null) {
-      quaternion = Quaternion.compose(reference.rotation(), quaternion);
-      quaternion.normalize();
-      reference = reference.reference();
-    }
-    return quaternion;
+    return orientation(null);
+  }
+
+  /**
+   * Stores the node {@link #orientation()} into {@code target}. Since the world
+   * transformation is cached (see {@link #lastUpdate()}), this method allocates
+   * nothing when {@code target} is non-null and the node hierarchy has not been
+   * modified since the last query.
+   *
+   * @param target the target quaternion (if null, a new quaternion will be created)
+   * @return the node orientation
+   * @see #orientation()
+   * @see #position(Vector)
+   */
+  public Quaternion orientation(Quaternion target) {
+    _updateWorldCache();
+    if (target == null)
+      return new Quaternion(_worldOrientation, false);
+    target.set(_worldOrientation, false);
+    return target;
   }
 
   /**
@@ -1400,10 +1541,8 @@ public class Node {
    * @see Graph#projection(Node, Graph.Type, float, float, float, float, boolean)
    */
   public float magnitude() {
-    if (reference() != null)
-      return reference().magnitude() * scaling();
-    else
-      return scaling();
+    _updateWorldCache();
+    return _worldMagnitude;
   }
 
   /**
@@ -2016,7 +2155,12 @@ public class Node {
    * @see #worldDisplacement(Vector)
    */
   public Vector displacement(Vector vector, Node node) {
-    return this == node ? vector : _displacement(reference() != null ? reference().displacement(vector, node) : node == null ? vector : node.worldDisplacement(vector));
+    if (this == node)
+      return vector;
+    _updateWorldCache();
+    Vector result = _worldOrientation.inverseRotate(node == null ? vector : node.worldDisplacement(vector));
+    result.divide(_worldMagnitude);
+    return result;
   }
 
   /**
@@ -2028,13 +2172,23 @@ public class Node {
    * @see #displacement(Vector, Node)
    */
   public Vector worldDisplacement(Vector vector) {
-    Node node = this;
-    Vector result = vector;
-    while (node != null) {
-      result = node._referenceDisplacement(result);
-      node = node.reference();
-    }
-    return result;
+    return worldDisplacement(vector, null);
+  }
+
+  /**
+   * Converts {@code vector} displacement from this node to world and stores the result
+   * into {@code target}, which may be {@code vector}. Allocates nothing when
+   * {@code target} is non-null.
+   *
+   * @param vector the displacement to convert
+   * @param target the target vector (if null, a new vector will be created)
+   * @see #worldDisplacement(Vector)
+   * @see #worldLocation(Vector, Vector)
+   */
+  public Vector worldDisplacement(Vector vector, Vector target) {
+    _updateWorldCache();
+    target = Vector.multiply(vector, _worldMagnitude, target);
+    return _worldOrientation.rotate(target, target);
   }
 
   /**
@@ -2099,7 +2253,13 @@ public class Node {
    * @see #worldLocation(Vector)
    */
   public Vector location(Vector vector, Node node) {
-    return this == node ? vector : _location(reference() != null ? reference().location(vector, node) : node == null ? vector : node.worldLocation(vector));
+    if (this == node)
+      return vector;
+    _updateWorldCache();
+    Vector result = Vector.subtract(node == null ? vector : node.worldLocation(vector), _worldPosition);
+    _worldOrientation.inverseRotate(result, result);
+    result.divide(_worldMagnitude);
+    return result;
   }
 
   /**
@@ -2111,13 +2271,25 @@ public class Node {
    * @see #location(Vector, Node)
    */
   public Vector worldLocation(Vector vector) {
-    Node node = this;
-    Vector result = vector;
-    while (node != null) {
-      result = node._referenceLocation(result);
-      node = node.reference();
-    }
-    return result;
+    return worldLocation(vector, null);
+  }
+
+  /**
+   * Converts {@code vector} location from this node to world and stores the result
+   * into {@code target}, which may be {@code vector}. Allocates nothing when
+   * {@code target} is non-null.
+   *
+   * @param vector the location to convert
+   * @param target the target vector (if null, a new vector will be created)
+   * @see #worldLocation(Vector)
+   * @see #worldDisplacement(Vector, Vector)
+   */
+  public Vector worldLocation(Vector vector, Vector target) {
+    _updateWorldCache();
+    target = Vector.multiply(vector, _worldMagnitude, target);
+    _worldOrientation.rotate(target, target);
+    target.add(_worldPosition);
+    return target;
   }
 
   /**
@@ -2244,6 +2416,8 @@ public class Node {
    * }
    * }
    * </pre>
+   * Note that this method is not called on the node branches culled by the graph automatic
+   * frustum culling (see {@link Graph#enableFrustumCulling(boolean)}).
    *
    * @see Graph#render()
    * @see nub.processing.Scene#draw(Object, Node)
@@ -2299,6 +2473,113 @@ public class Node {
     _bypass = TimingHandler.frameCount;
   }
 
+  /**
+   * Same as {@code setBoundingSphere(new Vector(), radius)}.
+   *
+   * @see #setBoundingSphere(Vector, float)
+   */
+  public void setBoundingRadius(float radius) {
+    setBoundingSphere(new Vector(), radius);
+  }
+
+  /**
+   * Sets the node bounding sphere, i.e., the ball (defined in the node coordinate system)
+   * enclosing the geometry drawn by the node. Use a negative {@code radius} (the default) for
+   * nodes whose geometry is unknown, and {@code 0} for nodes that do not draw anything, such as
+   * the ones merely used to group other nodes.
+   * <p>
+   * The bounding spheres of the node and its descendants are aggregated into a single ball
+   * which is used by {@link Graph#render()} to cull the whole branch when it lies outside the
+   * viewing volume (see {@link Graph#enableFrustumCulling()}). The branch ball is unbounded,
+   * i.e., the branch never gets culled as a whole, if any of its nodes has a negative radius.
+   *
+   * @see #boundingRadius()
+   * @see #boundingCenter()
+   * @see Graph#enableFrustumCulling()
+   */
+  public void setBoundingSphere(Vector center, float radius) {
+    _boundingCenter.set(center);
+    _boundingRadius = radius < 0 ? -1 : radius;
+    _invalidateBounds();
+  }
+
+  /**
+   * Returns the center of the node bounding sphere, defined in the node coordinate system.
+   *
+   * @see #setBoundingSphere(Vector, float)
+   */
+  public Vector boundingCenter() {
+    return _boundingCenter;
+  }
+
+  /**
+   * Returns the radius of the node bounding sphere, defined in the node coordinate system.
+   * A negative value means the node geometry is unknown.
+   *
+   * @see #setBoundingSphere(Vector, float)
+   */
+  public float boundingRadius() {
+    return _boundingRadius;
+  }
+
+  /**
+   * Internal use. Flags the world bounds of the node, and those of all its ancestors, to be
+   * recomputed (see {@link #_updateBounds()}). Since a dirty node is assumed to only have
+   * dirty ancestors, flagging stops at the first dirty one.
+   */
+  protected void _invalidateBounds() {
+    for (Node node = this; node != null && !node._boundsDirty; node = node.reference())
+      node._boundsDirty = true;
+  }
+
+  /**
+   * Internal use. Recomputes the world bounding sphere of the node and the one enclosing the
+   * whole branch (the node and all its descendants), visiting only the dirty nodes.
+   */
+  protected void _updateBounds() {
+    if (!_boundsDirty)
+      return;
+    if (_boundingRadius < 0) {
+      _worldBoundsRadius = -1;
+    } else {
+      worldLocation(_boundingCenter, _worldBoundsCenter);
+      _worldBoundsRadius = _boundingRadius * magnitude();
+    }
+    _subtreeBoundsCenter.set(_worldBoundsCenter);
+    _subtreeBoundsRadius = _worldBoundsRadius;
+    for (Node child : _children) {
+      child._updateBounds();
+      if (_subtreeBoundsRadius >= 0) {
+        if (child._subtreeBoundsRadius < 0)
+          _subtreeBoundsRadius = -1;
+        else
+          _subtreeBoundsRadius = _merge(_subtreeBoundsCenter, _subtreeBoundsRadius, child._subtreeBoundsCenter, child._subtreeBoundsRadius);
+      }
+    }
+    _boundsDirty = false;
+  }
+
+  /**
+   * Used by {@link #_updateBounds()}. Updates {@code center} to that of the smallest ball
+   * enclosing both balls and returns its radius.
+   */
+  protected static float _merge(Vector center, float radius, Vector otherCenter, float otherRadius) {
+    float dx = otherCenter._vector[0] - center._vector[0];
+    float dy = otherCenter._vector[1] - center._vector[1];
+    float dz = otherCenter._vector[2] - center._vector[2];
+    float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    if (distance + otherRadius <= radius)
+      return radius;
+    if (distance + radius <= otherRadius) {
+      center.set(otherCenter);
+      return otherRadius;
+    }
+    float result = (distance + radius + otherRadius) / 2;
+    float t = (result - radius) / distance;
+    center.set(center._vector[0] + t * dx, center._vector[1] + t * dy, center._vector[2] + t * dz);
+    return result;
+  }
+
   /**
    * Sets the node {@link #highlighting()} which should be a value in  {@code [0..1]}.
    * Default value is {@code 0.15}.
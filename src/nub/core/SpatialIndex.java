@@ -0,0 +1,328 @@
+/***************************************************************************************
+ * nub
+ * Copyright (c) 2019-2020 Universidad Nacional de Colombia
+ * @author Jean Pierre Charalambos, https://github.com/VisualComputing
+ *
+ * All rights reserved. A simple, expressive, language-agnostic, and extensible visual
+ * computing library, featuring interaction, visualization and animation frameworks and
+ * supporting advanced (onscreen/offscreen) (real/non-real time) rendering techniques.
+ * Released under the terms of the GPLv3, refer to: http://www.gnu.org/licenses/gpl.html
+ ***************************************************************************************/
+
+package nub.core;
+
+import nub.primitives.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounding sphere hierarchy over the world {@link Node#position()} and picking radius
+ * (see {@link Node#pickingThreshold()}) of all the nodes reachable by the
+ * {@link Graph#render()} algorithm, used to speed up ray picking (see
+ * {@link Graph#enableSpatialIndex(boolean)}).
+ * <p>
+ * The index is shared by all graphs (as is the node hierarchy) and maintained lazily, i.e.,
+ * it's refreshed before each query: nodes flagged from {@link Node#_modified()} since the
+ * previous query are refitted bottom-up, while changes to the node hierarchy (e.g., adding or
+ * pruning a node) schedule a full rebuild.
+ * <p>
+ * A query returns a conservative set of candidates, i.e., all nodes that may be tracked by
+ * the ray (see {@link Graph#tracks(Node, int, int)}), so that only those need to be projected
+ * onto the screen. Nodes picked against the back buffer (i.e., {@code pickingThreshold() == 0})
+ * can't be bounded in advance and are always returned as candidates, even when the graph has
+ * no back buffer (in which case they are tracked by their projection, see
+ * {@link Graph#tracks(Node, int, int)}), so that the index never changes the picking results.
+ */
+public class SpatialIndex {
+  protected static final int _leafSize = 4;
+  protected static final float _sqrt2 = (float) Math.sqrt(2);
+
+  protected List<Node> _nodes = new ArrayList<Node>();
+  protected List<Node> _shapes = new ArrayList<Node>();
+  protected List<Node> _dirty = new ArrayList<Node>();
+  protected boolean _rebuild = true;
+
+  // entries (one per indexed node, i.e., _nodes.get(e)._indexSlot == e)
+  protected float[] _positions = new float[0]; // x, y, z
+  protected float[] _worldRadii = new float[0];
+  protected float[] _pixelRadii = new float[0];
+  protected int[] _leaves = new int[0]; // bvh leaf containing the entry or -1
+
+  // bvh (pre-order, root at 0)
+  protected int _size;
+  protected float[] _centers = new float[0]; // x, y, z
+  protected float[] _radii = new float[0]; // bounding sphere of the entry positions
+  protected float[] _maxWorldRadii = new float[0];
+  protected float[] _maxPixelRadii = new float[0];
+  protected int[] _parents = new int[0];
+  protected int[] _lefts = new int[0], _rights = new int[0]; // -1 for leaves
+  protected int[] _items = new int[0]; // entries sorted by leaf
+  protected int[] _first = new int[0], _count = new int[0];
+
+  // query
+  protected Vector _origin = new Vector(), _direction = new Vector(), _eye = new Vector(), _view = new Vector();
+  protected boolean _perspective;
+  protected float _unitsPerPixel;
+  protected int[] _stack = new int[64];
+  // auxiliary variables
+  protected Vector _position = new Vector();
+  protected float[] _min = new float[3], _max = new float[3];
+
+  /**
+   * Internal use. Flags the node which world position (or picking radius) has changed.
+   * Synchronized since nodes may be modified by tasks executed in parallel, see
+   * {@link nub.timing.TimingHandler#enableParallelExecution(boolean)}.
+   */
+  protected synchronized void _touch(Node node) {
+    if (node._indexDirty)
+      return;
+    node._indexDirty = true;
+    _dirty.add(node);
+  }
+
+  /**
+   * Internal use. Schedules a rebuild of the index, e.g., when the node hierarchy changes.
+   */
+  protected void _invalidate() {
+    _rebuild = true;
+  }
+
+  /**
+   * Refreshes the index and returns the number of indexed nodes.
+   */
+  public int size() {
+    _refresh();
+    return _nodes.size();
+  }
+
+  /**
+   * Collects into {@code candidates} all the nodes that may be picked by {@code graph} at pixel
+   * {@code (pixelX, pixelY)}. The candidates are not sorted.
+   */
+  public void query(Graph graph, int pixelX, int pixelY, List<Node> candidates) {
+    _refresh();
+    candidates.addAll(_shapes);
+    if (_size == 0)
+      return;
+    graph.pixelToLine(pixelX, pixelY, _origin, _direction);
+    _perspective = graph.type() == Graph.Type.PERSPECTIVE;
+    if (_perspective) {
+      _eye.set(graph.eye().position());
+      _view.set(graph.viewDirection());
+      // graph units per pixel at a unit depth
+      _unitsPerPixel = graph.graphToPixelRatio(Vector.add(_eye, _view));
+    } else
+      _unitsPerPixel = graph.graphToPixelRatio(_origin);
+    int top = 0;
+    _stack[top++] = 0;
+    while (top > 0) {
+      int k = _stack[--top];
+      if (!_intersects(_centers, 3 * k, _radii[k], _maxWorldRadii[k], _maxPixelRadii[k]))
+        continue;
+      if (_lefts[k] < 0) {
+        for (int i = _first[k]; i < _first[k] + _count[k]; i++) {
+          int e = _items[i];
+          if (_intersects(_positions, 3 * e, 0, _worldRadii[e], _pixelRadii[e]))
+            candidates.add(_nodes.get(e));
+        }
+      } else {
+        if (top + 2 > _stack.length) {
+          int[] stack = new int[2 * _stack.length];
+          System.arraycopy(_stack, 0, stack, 0, top);
+          _stack = stack;
+        }
+        _stack[top++] = _rights[k];
+        _stack[top++] = _lefts[k];
+      }
+    }
+  }
+
+  /**
+   * Conservative test: a point at world distance {@code d} from the ray projects at most
+   * {@code d} (graph units) away from the pixel in the plane parallel to the screen, hence
+   * the sphere may hold a tracked node only if its distance to the ray is less than its radius
+   * plus the (diagonal of the) largest picking square.
+   */
+  protected boolean _intersects(float[] array, int i, float radius, float worldRadius, float pixelRadius) {
+    float vx = array[i] - _origin.x(), vy = array[i + 1] - _origin.y(), vz = array[i + 2] - _origin.z();
+    float t = vx * _direction.x() + vy * _direction.y() + vz * _direction.z();
+    float distance2 = Math.max(0, vx * vx + vy * vy + vz * vz - t * t);
+    float unitsPerPixel = _unitsPerPixel;
+    if (_perspective) {
+      float depth = (array[i] - _eye.x()) * _view.x() + (array[i + 1] - _eye.y()) * _view.y() + (array[i + 2] - _eye.z()) * _view.z();
+      unitsPerPixel *= Math.abs(depth) + radius;
+    }
+    float bound = radius + _sqrt2 * (worldRadius + pixelRadius * unitsPerPixel);
+    return distance2 <= bound * bound;
+  }
+
+  /**
+   * Rebuilds the index if the node hierarchy changed, or refits the (bounding spheres of the)
+   * nodes flagged since the last refresh otherwise.
+   */
+  protected void _refresh() {
+    // refitting most of the nodes degrades the hierarchy and costs about the same as rebuilding it
+    if (_dirty.size() > _nodes.size() / 2)
+      _rebuild = true;
+    if (!_rebuild) {
+      for (Node node : _dirty) {
+        node._indexDirty = false;
+        int e = node._indexSlot;
+        if (e < 0 || e >= _nodes.size() || _nodes.get(e) != node)
+          continue;
+        // moving between the shapes and the bvh requires a rebuild
+        if ((node.pickingThreshold() == 0) != (_leaves[e] < 0)) {
+          _rebuild = true;
+          break;
+        }
+        _update(node, e);
+        for (int k = _leaves[e]; k >= 0; k = _parents[k])
+          _fit(k);
+      }
+    }
+    if (_rebuild)
+      _build();
+    _dirty.clear();
+  }
+
+  protected void _update(Node node, int e) {
+    Vector position = node.position(_position);
+    _positions[3 * e] = position.x();
+    _positions[3 * e + 1] = position.y();
+    _positions[3 * e + 2] = position.z();
+    float threshold = node.pickingThreshold();
+    _worldRadii[e] = Math.abs(threshold) < 1 ? 100 * Math.abs(threshold) * node.scaling() : 0;
+    _pixelRadii[e] = Math.abs(threshold) < 1 ? 0 : Math.abs(threshold) / 2;
+  }
+
+  protected void _build() {
+    for (Node node : _nodes)
+      node._indexSlot = -1;
+    for (Node node : _dirty)
+      node._indexDirty = false;
+    _nodes = Graph.nodes();
+    _shapes.clear();
+    int n = _nodes.size();
+    if (_leaves.length < n) {
+      _positions = new float[3 * n];
+      _worldRadii = new float[n];
+      _pixelRadii = new float[n];
+      _leaves = new int[n];
+      _items = new int[n];
+    }
+    int m = 0;
+    for (int e = 0; e < n; e++) {
+      Node node = _nodes.get(e);
+      node._indexSlot = e;
+      node._indexDirty = false;
+      _update(node, e);
+      _leaves[e] = -1;
+      if (node.pickingThreshold() == 0)
+        _shapes.add(node);
+      else
+        _items[m++] = e;
+    }
+    // a binary tree with leaves of at most _leafSize items has less than 2 * m nodes
+    int capacity = Math.max(1, 2 * m);
+    if (_radii.length < capacity) {
+      _centers = new float[3 * capacity];
+      _radii = new float[capacity];
+      _maxWorldRadii = new float[capacity];
+      _maxPixelRadii = new float[capacity];
+      _parents = new int[capacity];
+      _lefts = new int[capacity];
+      _rights = new int[capacity];
+      _first = new int[capacity];
+      _count = new int[capacity];
+    }
+    _size = 0;
+    if (m > 0)
+      _build(-1, 0, m);
+    _rebuild = false;
+  }
+
+  protected int _build(int parent, int from, int to) {
+    int k = _size++;
+    _parents[k] = parent;
+    _first[k] = from;
+    _count[k] = to - from;
+    if (to - from <= _leafSize) {
+      _lefts[k] = _rights[k] = -1;
+      for (int i = from; i < to; i++)
+        _leaves[_items[i]] = k;
+    } else {
+      // split at the middle of the longest axis of the bounding box
+      float[] min = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+      float[] max = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+      for (int i = from; i < to; i++)
+        for (int j = 0; j < 3; j++) {
+          float value = _positions[3 * _items[i] + j];
+          min[j] = Math.min(min[j], value);
+          max[j] = Math.max(max[j], value);
+        }
+      int axis = 0;
+      for (int j = 1; j < 3; j++)
+        if (max[j] - min[j] > max[axis] - min[axis])
+          axis = j;
+      float middle = (min[axis] + max[axis]) / 2;
+      int i = from, last = to - 1;
+      while (i <= last) {
+        if (_positions[3 * _items[i] + axis] < middle)
+          i++;
+        else {
+          int item = _items[i];
+          _items[i] = _items[last];
+          _items[last--] = item;
+        }
+      }
+      // all positions (almost) coincide
+      if (i == from || i == to)
+        i = (from + to) >>> 1;
+      _lefts[k] = _build(k, from, i);
+      _rights[k] = _build(k, i, to);
+    }
+    _fit(k);
+    return k;
+  }
+
+  /**
+   * Computes the bounding sphere of the bvh node {@code k} from its items (leaves) or from its
+   * children bounding spheres.
+   */
+  protected void _fit(int k) {
+    float[] min = _min, max = _max;
+    for (int j = 0; j < 3; j++) {
+      min[j] = Float.MAX_VALUE;
+      max[j] = -Float.MAX_VALUE;
+    }
+    float worldRadius = 0, pixelRadius = 0;
+    boolean leaf = _lefts[k] < 0;
+    int count = leaf ? _count[k] : 2;
+    for (int c = 0; c < count; c++) {
+      int i = leaf ? _items[_first[k] + c] : c == 0 ? _lefts[k] : _rights[k];
+      float[] centers = leaf ? _positions : _centers;
+      float radius = leaf ? 0 : _radii[i];
+      for (int j = 0; j < 3; j++) {
+        min[j] = Math.min(min[j], centers[3 * i + j] - radius);
+        max[j] = Math.max(max[j], centers[3 * i + j] + radius);
+      }
+      worldRadius = Math.max(worldRadius, leaf ? _worldRadii[i] : _maxWorldRadii[i]);
+      pixelRadius = Math.max(pixelRadius, leaf ? _pixelRadii[i] : _maxPixelRadii[i]);
+    }
+    float x = (min[0] + max[0]) / 2, y = (min[1] + max[1]) / 2, z = (min[2] + max[2]) / 2;
+    float radius = 0;
+    for (int c = 0; c < count; c++) {
+      int i = leaf ? _items[_first[k] + c] : c == 0 ? _lefts[k] : _rights[k];
+      float[] centers = leaf ? _positions : _centers;
+      float dx = centers[3 * i] - x, dy = centers[3 * i + 1] - y, dz = centers[3 * i + 2] - z;
+      radius = Math.max(radius, (float) Math.sqrt(dx * dx + dy * dy + dz * dz) + (leaf ? 0 : _radii[i]));
+    }
+    _centers[3 * k] = x;
+    _centers[3 * k + 1] = y;
+    _centers[3 * k + 2] = z;
+    _radii[k] = radius;
+    _maxWorldRadii[k] = worldRadius;
+    _maxPixelRadii[k] = pixelRadius;
+  }
+}
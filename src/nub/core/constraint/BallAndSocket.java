@@ -45,6 +45,7 @@ public class BallAndSocket extends ConeConstraint {
 
   public void setDown(float down) {
     this._down = down;
+    _invalidateLookupTable();
   }
 
   public float up() {
@@ -53,6 +54,7 @@ public class BallAndSocket extends ConeConstraint {
 
   public void setUp(float up) {
     this._up = up;
+    _invalidateLookupTable();
   }
 
   public float left() {
@@ -61,6 +63,7 @@ public class BallAndSocket extends ConeConstraint {
 
   public void setLeft(float left) {
     this._left = left;
+    _invalidateLookupTable();
   }
 
   public float right() {
@@ -69,6 +72,7 @@ public class BallAndSocket extends ConeConstraint {
 
   public void setRight(float right) {
     this._right = right;
+    _invalidateLookupTable();
   }
 
   public BallAndSocket() {
@@ -108,7 +112,8 @@ public class BallAndSocket extends ConeConstraint {
   //TODO : rename, discard?
   //TODO : remove unnecessary calculations (consider this restriction only from 0 to PI)
   //TODO: look at https://wet-robots.ghost.io/simple-method-for-distance-to-ellipse/
-  public Vector apply(Vector target) {
+  @Override
+  protected Vector _apply(Vector target) {
     Vector uvec = new Vector(0, 1, 0);
     Vector rvec = new Vector(1, 0, 0);
     Vector line = new Vector(0, 0, 1);
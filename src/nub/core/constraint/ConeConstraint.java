@@ -19,6 +19,10 @@ import nub.primitives.Vector;
  * A Frame is constrained to disable translation and
  * allow 2-DOF rotation limiting Rotation in a Sphere to
  * laid inside an Ellipse.
+ * <p>
+ * The swing of the node is limited by {@link #apply(Vector)}, which may optionally be
+ * baked into a lookup table (see {@link #enableLookupTable(int)}), so that enforcing the
+ * constraint becomes a table lookup with a bounded error.
  */
 
 //TODO : Add Twist limit & check for unnecessary transformations
@@ -32,6 +36,15 @@ public abstract class ConeConstraint extends Constraint {
   protected AxisPlaneConstraint.Type transConstraintType = AxisPlaneConstraint.Type.FORBIDDEN;;
   protected Vector transConstraintDir = new Vector();
 
+  //lookup table: a cube map of resolution x resolution texels per face holding the constrained
+  //direction (x, y, z) of each texel center and whether it lies inside the cone (1), outside
+  //it (0) or next to a discontinuity of the exact projection (-1)
+  protected int _resolution;
+  protected volatile float[] _table;
+  //auxiliary variables
+  protected Quaternion _q1 = new Quaternion(), _q2 = new Quaternion(), _q3 = new Quaternion();
+  protected Vector _v1 = new Vector(), _v2 = new Vector();
+
 
   public Quaternion restRotation() {
     return _restRotation;
@@ -158,7 +171,292 @@ public abstract class ConeConstraint extends Constraint {
     return rot;
   }
 
-  public abstract Vector apply(Vector target);
+  /**
+   * Returns the closest vector to {@code target} (expressed w.r.t. the rest rotation, where the
+   * twist axis is the z-axis) whose direction lies inside the cone. Uses the lookup table if
+   * it's enabled.
+   *
+   * @see #enableLookupTable(int)
+   */
+  public Vector apply(Vector target) {
+    return _resolution > 0 ? _lookup(target, new Vector()) : _apply(target);
+  }
+
+  /**
+   * Exact version of {@link #apply(Vector)}.
+   */
+  protected abstract Vector _apply(Vector target);
+
+  /**
+   * Same as {@code enableLookupTable(32)}.
+   *
+   * @see #enableLookupTable(int)
+   */
+  public void enableLookupTable() {
+    enableLookupTable(32);
+  }
+
+  /**
+   * Bakes {@link #apply(Vector)} into a cube map lookup table with {@code resolution} x
+   * {@code resolution} texels per face (i.e., {@code 6 * resolution^2} evaluations of the
+   * exact constraint). Directions whose four nearest texels lie inside the cone are returned
+   * unchanged, while the rest are bilinearly interpolated from the constrained directions
+   * of the texels, hence the angular error is bounded by the texel size (about
+   * {@code (PI / 2) / resolution} radians) and only occurs next to the cone boundary.
+   * Directions next to a discontinuity of the exact projection (e.g., those opposite to the
+   * cone) are solved exactly. Note that only the constrained direction is looked up: the
+   * returned vector keeps the {@code target} magnitude.
+   * <p>
+   * The table is rebuilt lazily whenever the cone is modified. It is baked at most once
+   * and safely published, even when the constraint is applied by solvers running in parallel.
+   * Pass a non-positive {@code resolution} to disable it.
+   *
+   * @see #disableLookupTable()
+   */
+  public void enableLookupTable(int resolution) {
+    _resolution = Math.max(0, resolution);
+    _table = null;
+  }
+
+  /**
+   * Same as {@code enableLookupTable(0)}.
+   *
+   * @see #enableLookupTable(int)
+   */
+  public void disableLookupTable() {
+    enableLookupTable(0);
+  }
+
+  public boolean isLookupTableEnabled() {
+    return _resolution > 0;
+  }
+
+  public int lookupTableResolution() {
+    return _resolution;
+  }
+
+  /**
+   * Discards the lookup table (if any) so that it is rebuilt on the next
+   * {@link #apply(Vector)}. Should be called whenever the cone is modified.
+   */
+  protected void _invalidateLookupTable() {
+    _table = null;
+  }
+
+  //double-checked, so that solvers running in parallel bake the table only once
+  protected synchronized float[] _lookupTable(int resolution) {
+    float[] table = _table;
+    if (table == null || table.length != 24 * resolution * resolution) {
+      table = _bake(resolution);
+      _table = table;
+    }
+    return table;
+  }
+
+  protected float[] _bake(int resolution) {
+    float[] table = new float[24 * resolution * resolution];
+    Vector direction = new Vector();
+    for (int face = 0; face < 6; face++)
+      for (int j = 0; j < resolution; j++)
+        for (int i = 0; i < resolution; i++) {
+          _direction(face, 2 * (i + 0.5f) / resolution - 1, 2 * (j + 0.5f) / resolution - 1, direction);
+          direction.normalize();
+          Vector constrained = _apply(direction.get());
+          float magnitude = constrained.magnitude();
+          if (magnitude == 0)
+            constrained = direction.get();
+          else
+            constrained.multiply(1 / magnitude);
+          int k = 4 * ((face * resolution + j) * resolution + i);
+          table[k] = constrained.x();
+          table[k + 1] = constrained.y();
+          table[k + 2] = constrained.z();
+          table[k + 3] = Vector.distance(constrained, direction) < 1e-5f ? 1 : 0;
+        }
+    //texels whose constrained direction jumps w.r.t. a neighbor are solved exactly
+    float threshold = 3f / resolution;
+    for (int face = 0; face < 6; face++)
+      for (int j = 0; j < resolution; j++)
+        for (int i = 0; i < resolution; i++) {
+          int k = 4 * ((face * resolution + j) * resolution + i);
+          if (i + 1 < resolution)
+            _mark(table, k, k + 4, threshold);
+          if (j + 1 < resolution)
+            _mark(table, k, k + 4 * resolution, threshold);
+        }
+    return table;
+  }
+
+  protected static void _mark(float[] table, int k1, int k2, float threshold) {
+    float dx = table[k1] - table[k2], dy = table[k1 + 1] - table[k2 + 1], dz = table[k1 + 2] - table[k2 + 2];
+    if (dx * dx + dy * dy + dz * dz > threshold * threshold)
+      table[k1 + 3] = table[k2 + 3] = -1;
+  }
+
+  //cube map face (+x, -x, +y, -y, +z, -z) direction of the (u, v) coordinates in [-1, 1]
+  protected static void _direction(int face, float u, float v, Vector target) {
+    switch (face) {
+      case 0:
+        target.set(1, u, v);
+        break;
+      case 1:
+        target.set(-1, u, v);
+        break;
+      case 2:
+        target.set(u, 1, v);
+        break;
+      case 3:
+        target.set(u, -1, v);
+        break;
+      case 4:
+        target.set(u, v, 1);
+        break;
+      default:
+        target.set(u, v, -1);
+    }
+  }
+
+  //looks up the constrained target into result (which must be different than target)
+  protected Vector _lookup(Vector target, Vector result) {
+    float[] table = _table;
+    int resolution = _resolution;
+    if (table == null || table.length != 24 * resolution * resolution)
+      table = _lookupTable(resolution);
+    float x = target.x(), y = target.y(), z = target.z();
+    float ax = Math.abs(x), ay = Math.abs(y), az = Math.abs(z);
+    int face;
+    float u, v, m;
+    if (ax >= ay && ax >= az) {
+      face = x >= 0 ? 0 : 1;
+      m = ax;
+      u = y;
+      v = z;
+    } else if (ay >= az) {
+      face = y >= 0 ? 2 : 3;
+      m = ay;
+      u = x;
+      v = z;
+    } else {
+      face = z >= 0 ? 4 : 5;
+      m = az;
+      u = x;
+      v = y;
+    }
+    if (m == 0) {
+      result.set(target);
+      return result;
+    }
+    //texel coordinates (texel centers lie at integer values)
+    float s = (u / m + 1) * 0.5f * resolution - 0.5f;
+    float t = (v / m + 1) * 0.5f * resolution - 0.5f;
+    int i0 = Math.min(Math.max((int) Math.floor(s), 0), resolution - 1);
+    int j0 = Math.min(Math.max((int) Math.floor(t), 0), resolution - 1);
+    int i1 = Math.min(i0 + 1, resolution - 1);
+    int j1 = Math.min(j0 + 1, resolution - 1);
+    float fs = Math.min(Math.max(s - i0, 0), 1);
+    float ft = Math.min(Math.max(t - j0, 0), 1);
+    int base = face * resolution;
+    int k00 = 4 * ((base + j0) * resolution + i0), k10 = 4 * ((base + j0) * resolution + i1);
+    int k01 = 4 * ((base + j1) * resolution + i0), k11 = 4 * ((base + j1) * resolution + i1);
+    //inside the cone
+    if (table[k00 + 3] + table[k10 + 3] + table[k01 + 3] + table[k11 + 3] == 4) {
+      result.set(target);
+      return result;
+    }
+    //next to a discontinuity
+    if (table[k00 + 3] < 0 || table[k10 + 3] < 0 || table[k01 + 3] < 0 || table[k11 + 3] < 0) {
+      result.set(_apply(target.get()));
+      return result;
+    }
+    float w00 = (1 - fs) * (1 - ft), w10 = fs * (1 - ft), w01 = (1 - fs) * ft, w11 = fs * ft;
+    float rx = w00 * table[k00] + w10 * table[k10] + w01 * table[k01] + w11 * table[k11];
+    float ry = w00 * table[k00 + 1] + w10 * table[k10 + 1] + w01 * table[k01 + 1] + w11 * table[k11 + 1];
+    float rz = w00 * table[k00 + 2] + w10 * table[k10 + 2] + w01 * table[k01 + 2] + w11 * table[k11 + 2];
+    float norm = (float) Math.sqrt(rx * rx + ry * ry + rz * rz);
+    if (norm == 0) {
+      result.set(_apply(target.get()));
+      return result;
+    }
+    float scale = (float) Math.sqrt(x * x + y * y + z * z) / norm;
+    result.set(rx * scale, ry * scale, rz * scale);
+    return result;
+  }
+
+  /**
+   * Same as {@link #constrainRotation(Quaternion, Node)} but without allocations when the
+   * lookup table is enabled (see {@link #enableLookupTable(int)}). Note that the constrained
+   * rotation doesn't depend on the current node rotation.
+   */
+  @Override
+  public void constrainRotation(float[] rotations, float[] desired, float[] output, int offset) {
+    //change w.r.t. rest: rest^-1 * idle^-1 * desired * offset * rest
+    _q1.set(_idleRotation);
+    _q1.invert();
+    Quaternion.compose(_q1, _get(desired, offset, _q2), _q1);
+    Quaternion.compose(_q1, _offset, _q1);
+    _q2.set(_restRotation);
+    _q2.invert();
+    Quaternion.compose(_q2, _q1, _q1);
+    Quaternion.compose(_q1, _restRotation, _q1);
+    //twist (rotation component on the z-axis) and swing decomposition
+    float tz = _q1.z(), tw = _q1.w();
+    float norm = (float) Math.sqrt(tz * tz + tw * tw);
+    if (norm > 0) {
+      tz /= norm;
+      tw /= norm;
+    } else {
+      tw = 1;
+    }
+    _q2.setX(0);
+    _q2.setY(0);
+    _q2.setZ(-tz);
+    _q2.setW(tw);
+    Quaternion.compose(_q1, _q2, _q2);
+    //constrain the swing: rotate the z-axis and apply the cone
+    float x = _q2.x(), y = _q2.y(), z = _q2.z(), w = _q2.w();
+    _v1.set(2 * (x * z + w * y), 2 * (y * z - w * x), 1 - 2 * (x * x + y * y));
+    Vector constrained = _resolution > 0 ? _lookup(_v1, _v2) : _apply(_v1.get());
+    //swing from the z-axis to the constrained direction
+    float cx = constrained.x(), cy = constrained.y(), cz = constrained.z();
+    float axisSqNorm = cx * cx + cy * cy, toSqNorm = axisSqNorm + cz * cz;
+    if (toSqNorm == 0) {
+      _q2.setX(0);
+      _q2.setY(0);
+      _q2.setZ(0);
+      _q2.setW(1);
+    } else {
+      float angle = (float) Math.asin((float) Math.sqrt(axisSqNorm / toSqNorm));
+      if (cz < 0)
+        angle = (float) Math.PI - angle;
+      if (axisSqNorm == 0)
+        _v1.set(0, -1, 0);
+      else
+        _v1.set(-cy, cx, 0);
+      _q2.fromAxisAngle(_v1, angle);
+    }
+    //constrain the twist
+    float twistAngle = 2 * (float) Math.acos(Math.min(Math.max(tw, -1), 1));
+    if (tz < 0) twistAngle = -twistAngle;
+    if ((twistAngle < 0 && -twistAngle > _min) || (twistAngle > 0 && twistAngle > _max)) {
+      twistAngle = twistAngle < 0 ? (float) (twistAngle + 2 * Math.PI) : twistAngle;
+      twistAngle = twistAngle - _max < (float) (-_min + 2 * Math.PI) - twistAngle ? _max : -_min;
+    }
+    _q3.setX(0);
+    _q3.setY(0);
+    _q3.setZ((float) Math.sin(twistAngle / 2));
+    _q3.setW((float) Math.cos(twistAngle / 2));
+    //idle * rest * swing * twist * rest^-1 * offset^-1
+    Quaternion.compose(_q2, _q3, _q3);
+    Quaternion.compose(_restRotation, _q3, _q3);
+    Quaternion.compose(_idleRotation, _q3, _q3);
+    _q1.set(_restRotation);
+    _q1.invert();
+    Quaternion.compose(_q3, _q1, _q3);
+    _q1.set(_offset);
+    _q1.invert();
+    Quaternion.compose(_q3, _q1, _q3);
+    _set(_q3, output, offset);
+  }
 
   @Override
   public Vector constrainTranslation(Vector translation, Node node) {
@@ -59,4 +59,71 @@ public abstract class Constraint {
   public Quaternion constrainRotation(Quaternion rotation, Node node) {
     return rotation.get();
   }
+
+  /**
+   * Same as {@code constrainRotation(rotations, desired, desired, offset)}, i.e., the
+   * {@code desired} rotation is constrained in place.
+   *
+   * @see #constrainRotation(float[], float[], float[], int)
+   */
+  public void constrainRotation(float[] rotations, float[] desired, int offset) {
+    constrainRotation(rotations, desired, desired, offset);
+  }
+
+  /**
+   * Batch version of {@link #constrainRotation(Quaternion, Node)} which works on primitive
+   * buffers holding the local rotations (x, y, z, w) of several nodes, so that the rotations
+   * of a whole chain could be constrained in a single loop (see
+   * {@link #constrainRotations(Constraint[], float[], float[], float[])}).
+   * <p>
+   * Stores into {@code output} the rotation that a node whose current rotation is
+   * {@code rotations} would get after calling {@link Node#setRotation(Quaternion)} with the
+   * {@code desired} rotation, all of them stored at {@code offset}. {@code output} may be
+   * {@code desired}.
+   * <p>
+   * This default implementation calls {@link #constrainRotation(Quaternion, Node)} on a
+   * detached node, which is correct for constraints that only depend on the node rotation but
+   * allocates. Constraints overriding it ({@link Hinge}, {@link BallAndSocket},
+   * {@link SphericalPolygon}, {@link PlanarPolygon} and {@link FixedConstraint}) do not
+   * allocate (cone constraints require a lookup table for that, see
+   * {@link ConeConstraint#enableLookupTable(int)}), but they use auxiliary variables, hence
+   * a constraint must not be evaluated concurrently by several threads.
+   */
+  public void constrainRotation(float[] rotations, float[] desired, float[] output, int offset) {
+    Quaternion current = _get(rotations, offset, new Quaternion());
+    Node node = Node.detach(new Vector(), current.get(), 1);
+    Quaternion delta = Quaternion.compose(current.inverse(), _get(desired, offset, new Quaternion()));
+    _set(Quaternion.compose(current, constrainRotation(delta, node)), output, offset);
+  }
+
+  /**
+   * Constrains the rotations of a chain of nodes, i.e., calls
+   * {@link #constrainRotation(float[], float[], float[], int)} on each {@code constraints[i]}
+   * with {@code offset = 4 * i}. Rotations of the joints without a constraint are copied from
+   * {@code desired} to {@code output} (which may be {@code desired}).
+   */
+  public static void constrainRotations(Constraint[] constraints, float[] rotations, float[] desired, float[] output) {
+    for (int i = 0, offset = 0; i < constraints.length; i++, offset += 4) {
+      Constraint constraint = constraints[i];
+      if (constraint != null)
+        constraint.constrainRotation(rotations, desired, output, offset);
+      else if (output != desired)
+        System.arraycopy(desired, offset, output, offset, 4);
+    }
+  }
+
+  protected static Quaternion _get(float[] buffer, int offset, Quaternion target) {
+    target.setX(buffer[offset]);
+    target.setY(buffer[offset + 1]);
+    target.setZ(buffer[offset + 2]);
+    target.setW(buffer[offset + 3]);
+    return target;
+  }
+
+  protected static void _set(Quaternion quaternion, float[] buffer, int offset) {
+    buffer[offset] = quaternion.x();
+    buffer[offset + 1] = quaternion.y();
+    buffer[offset + 2] = quaternion.z();
+    buffer[offset + 3] = quaternion.w();
+  }
 }
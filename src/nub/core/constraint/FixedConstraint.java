@@ -22,6 +22,14 @@ public class FixedConstraint extends Constraint {
     return new Quaternion();
   }
 
+  /**
+   * The node keeps its current rotation.
+   */
+  @Override
+  public void constrainRotation(float[] rotations, float[] desired, float[] output, int offset) {
+    System.arraycopy(rotations, offset, output, offset, 4);
+  }
+
   @Override
   public Vector constrainTranslation(Vector translation, Node frame) {
     return new Vector();
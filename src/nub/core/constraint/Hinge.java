@@ -36,6 +36,8 @@ public class Hinge extends Constraint {
 
   protected AxisPlaneConstraint.Type transConstraintType = AxisPlaneConstraint.Type.FORBIDDEN;;
   protected Vector transConstraintDir = new Vector();
+  //auxiliary variables
+  protected Quaternion _q1 = new Quaternion(), _q2 = new Quaternion();
 
 
   public Hinge(float min, float max) {
@@ -129,6 +131,38 @@ public class Hinge extends Constraint {
     return rot;
   }
 
+  /**
+   * Same as {@link #constrainRotation(Quaternion, Node)} but without allocations. Note that
+   * the constrained rotation doesn't depend on the current node rotation.
+   */
+  @Override
+  public void constrainRotation(float[] rotations, float[] desired, float[] output, int offset) {
+    //desired w.r.t. rest: orientation^-1 * desired * rest
+    _q1.set(_orientation);
+    _q1.invert();
+    Quaternion.compose(_q1, _get(desired, offset, _q2), _q1);
+    Quaternion.compose(_q1, _restRotation, _q1);
+    //angle of the rotation component on the z-axis
+    float z = _q1.z(), w = _q1.w();
+    float norm = (float) Math.sqrt(z * z + w * w);
+    float change = norm > 0 ? 2 * (float) Math.acos(Math.min(Math.max(w / norm, -1), 1)) : 0;
+    if (z < 0) change *= -1;
+    if (-_min > change || change > _max) {
+      change = change < 0 ? (float) (change + 2 * Math.PI) : change;
+      change = change - _max < (float) (-_min + 2 * Math.PI) - change ? _max : -_min;
+    }
+    //orientation * twist(change) * rest^-1
+    _q2.setX(0);
+    _q2.setY(0);
+    _q2.setZ((float) Math.sin(change / 2));
+    _q2.setW((float) Math.cos(change / 2));
+    Quaternion.compose(_orientation, _q2, _q2);
+    _q1.set(_restRotation);
+    _q1.invert();
+    Quaternion.compose(_q2, _q1, _q2);
+    _set(_q2, output, offset);
+  }
+
   @Override
   public Vector constrainTranslation(Vector translation, Node node) {
     Vector res = new Vector(translation._vector[0], translation._vector[1], translation._vector[2]);
@@ -41,6 +41,7 @@ public class PlanarPolygon extends ConeConstraint {
     this._vertices = vertices;
     _setBoundingBox();
     _updateAngle();
+    _invalidateLookupTable();
   }
 
   public void setAngle(float angle) {
@@ -60,6 +61,7 @@ public class PlanarPolygon extends ConeConstraint {
     }
     _setBoundingBox();
     _angle = angle;
+    _invalidateLookupTable();
   }
 
   public PlanarPolygon() {
@@ -86,7 +88,8 @@ public class PlanarPolygon extends ConeConstraint {
     _updateAngle();
   }
 
-  public Vector apply(Vector target) {
+  @Override
+  protected Vector _apply(Vector target) {
     Vector point = target;
     if (point.z() == 0) point.setZ(0.5f);
     float alpha = Math.abs(1.f / point.z());
@@ -42,6 +42,7 @@ public class SphericalPolygon extends ConeConstraint {
     this._visiblePoint = _setVisiblePoint();
     _setBoundingBox();
     _init();
+    _invalidateLookupTable();
   }
 
   public SphericalPolygon() {
@@ -74,7 +75,8 @@ public class SphericalPolygon extends ConeConstraint {
     _init();
   }
 
-  public Vector apply(Vector target) {
+  @Override
+  protected Vector _apply(Vector target) {
     Vector point = target;
     if (!_isInside(point)) {
       Vector constrained = _closestPoint(point);
@@ -0,0 +1,132 @@
+package nub.ik.animation;
+
+import nub.core.Curve;
+import nub.core.Node;
+import nub.core.constraint.Constraint;
+import nub.primitives.Quaternion;
+import nub.primitives.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An AnimationClip is the compiled (immutable) form of a SkeletonAnimation (see SkeletonAnimation.compile()).
+ *
+ * The postures are turned into a curve per joint (see Curve) whose keys are the local translation, rotation and
+ * magnitude of the joint at each posture time, with their Catmull-Rom / squad tangents precomputed. Joints are
+ * identified by an index (see jointNames()) so that sampling a clip at a given time requires a single binary search
+ * over the posture times and no lookup by name, and writes the pose directly into the joints (see sample).
+ *
+ * Since the clip does not keep any reference to the skeleton it was compiled from, it may be shared by several
+ * characters with the same joint names (see bind).
+ * */
+public class AnimationClip {
+    protected final String[] _names;
+    protected final Curve[] _curves;
+    protected final SkeletonAnimation.InterpolationMode _mode;
+
+    public AnimationClip(SkeletonAnimation animation){
+        _mode = animation.mode();
+        Skeleton skeleton = animation.skeleton();
+        List<SkeletonAnimation.TimePosture> postures = animation.postures();
+        int n = postures.size();
+        float[] times = new float[n];
+        for(int k = 0; k < n; k++){
+            times[k] = postures.get(k).time();
+        }
+        List<String> names = new ArrayList<String>();
+        List<Curve> curves = new ArrayList<Curve>();
+        Vector[] translations = new Vector[n];
+        Quaternion[] rotations = new Quaternion[n];
+        float[] magnitudes = new float[n];
+        for(Node node : skeleton.BFS()){
+            if(node == skeleton.reference() || !skeleton._names.containsKey(node)) continue;
+            String name = skeleton.jointName(node);
+            boolean missing = false;
+            for(int k = 0; k < n && !missing; k++){
+                Node state = postures.get(k).posture().jointState(name);
+                if(state == null){
+                    missing = true;
+                    continue;
+                }
+                translations[k] = state.translation();
+                rotations[k] = state.rotation();
+                magnitudes[k] = state.magnitude();
+            }
+            if(missing) continue;
+            names.add(name);
+            curves.add(new Curve(times, translations, rotations, magnitudes));
+        }
+        _names = names.toArray(new String[0]);
+        _curves = curves.toArray(new Curve[0]);
+    }
+
+    public SkeletonAnimation.InterpolationMode mode(){
+        return _mode;
+    }
+
+    /**
+     * Returns the names of the animated joints, where the i-th name corresponds to the i-th joint
+     * expected by sample.
+     * */
+    public String[] jointNames(){
+        return _names.clone();
+    }
+
+    public int size(){
+        return _names.length;
+    }
+
+    public float firstTime(){
+        return _curves.length == 0 ? 0 : _curves[0].firstTime();
+    }
+
+    public float lastTime(){
+        return _curves.length == 0 ? 0 : _curves[0].lastTime();
+    }
+
+    public float duration(){
+        return lastTime() - firstTime();
+    }
+
+    /**
+     * Returns the joints of the given skeleton in the clip joint order (see jointNames()). Joints that are not found
+     * in the skeleton are kept as null and ignored by sample.
+     * */
+    public Node[] bind(Skeleton skeleton){
+        Node[] joints = new Node[_names.length];
+        for(int i = 0; i < _names.length; i++){
+            joints[i] = skeleton.joint(_names[i]);
+        }
+        return joints;
+    }
+
+    /**
+     * Sets the pose of the joints (see bind) at the given time (expressed in milliseconds, as the SkeletonAnimation
+     * posture times). Joint constraints are bypassed and their translation and rotation are updated in place, hence
+     * sampling allocates nothing.
+     * */
+    public void sample(float time, Node[] joints){
+        if(_curves.length == 0) return;
+        //all the curves share the posture times
+        int segment = _curves[0].segment(time);
+        float alpha = _curves[0].alpha(segment, time);
+        boolean linear = _mode == SkeletonAnimation.InterpolationMode.LINEAR;
+        for(int i = 0; i < _curves.length; i++){
+            Node joint = joints[i];
+            if(joint == null) continue;
+            Curve curve = _curves[i];
+            Constraint constraint = joint.constraint();
+            joint.setConstraint(null);
+            if(linear){
+                joint.setTranslation(curve.lerp(segment, alpha, joint.translation()));
+                joint.setRotation(curve.slerp(segment, alpha, joint.rotation()));
+            } else{
+                joint.setTranslation(curve.position(segment, alpha, joint.translation()));
+                joint.setRotation(curve.orientation(segment, alpha, joint.rotation()));
+                joint.setMagnitude(curve.magnitude(segment, alpha));
+            }
+            joint.setConstraint(constraint);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package nub.ik.animation;
+
+import nub.core.Node;
+import nub.core.constraint.Constraint;
+import nub.primitives.Quaternion;
+import nub.primitives.Vector;
+
+import java.util.List;
+
+/**
+    Compact representation of a skeleton pose. Local translations, rotations and scalings of
+    the joints are kept in contiguous float arrays indexed by the joint order given by
+    {@link Skeleton#BFS()}, so that a pose takes (3 + 4 + 1) floats per joint and copying a pose
+    is a single array copy per attribute.
+*/
+public class Pose {
+    protected int _size;
+    protected float[] _translations; // x, y, z
+    protected float[] _rotations; // x, y, z, w
+    protected float[] _scalings;
+
+    public Pose(int size){
+        _size = size;
+        _translations = new float[3 * size];
+        _rotations = new float[4 * size];
+        _scalings = new float[size];
+        for(int i = 0; i < size; i++){
+            _rotations[4 * i + 3] = 1;
+            _scalings[i] = 1;
+        }
+    }
+
+    public Pose(Skeleton skeleton){
+        this(skeleton.BFS());
+    }
+
+    public Pose(List<? extends Node> nodes){
+        this(nodes.size());
+        saveCurrentValues(nodes);
+    }
+
+    public Pose(Pose pose){
+        this(pose._size);
+        set(pose);
+    }
+
+    public Pose get(){
+        return new Pose(this);
+    }
+
+    public int size(){
+        return _size;
+    }
+
+    public float[] translations(){
+        return _translations;
+    }
+
+    public float[] rotations(){
+        return _rotations;
+    }
+
+    public float[] scalings(){
+        return _scalings;
+    }
+
+    /**
+     * Copies the given pose into this one. Both poses should have the same {@link #size()}.
+     */
+    public void set(Pose pose){
+        System.arraycopy(pose._translations, 0, _translations, 0, _translations.length);
+        System.arraycopy(pose._rotations, 0, _rotations, 0, _rotations.length);
+        System.arraycopy(pose._scalings, 0, _scalings, 0, _scalings.length);
+    }
+
+    public void setTranslation(int i, float x, float y, float z){
+        _translations[3 * i] = x;
+        _translations[3 * i + 1] = y;
+        _translations[3 * i + 2] = z;
+    }
+
+    public void setRotation(int i, float x, float y, float z, float w){
+        _rotations[4 * i] = x;
+        _rotations[4 * i + 1] = y;
+        _rotations[4 * i + 2] = z;
+        _rotations[4 * i + 3] = w;
+    }
+
+    public void setScaling(int i, float scaling){
+        _scalings[i] = scaling;
+    }
+
+    public Vector translation(int i, Vector target){
+        if(target == null) target = new Vector();
+        target.set(_translations[3 * i], _translations[3 * i + 1], _translations[3 * i + 2]);
+        return target;
+    }
+
+    public Quaternion rotation(int i, Quaternion target){
+        if(target == null) target = new Quaternion();
+        target.setX(_rotations[4 * i]);
+        target.setY(_rotations[4 * i + 1]);
+        target.setZ(_rotations[4 * i + 2]);
+        target.setW(_rotations[4 * i + 3]);
+        return target;
+    }
+
+    public float scaling(int i){
+        return _scalings[i];
+    }
+
+    public void saveCurrentValues(Skeleton skeleton){
+        saveCurrentValues(skeleton.BFS());
+    }
+
+    /**
+     * Stores the local transformations of the given nodes, i-th node at index i.
+     */
+    public void saveCurrentValues(List<? extends Node> nodes){
+        for(int i = 0; i < _size; i++){
+            Node node = nodes.get(i);
+            Vector t = node.translation();
+            Quaternion q = node.rotation();
+            setTranslation(i, t.x(), t.y(), t.z());
+            setRotation(i, q.x(), q.y(), q.z(), q.w());
+            _scalings[i] = node.scaling();
+        }
+    }
+
+    public void loadValues(Skeleton skeleton){
+        loadValues(skeleton.BFS());
+        skeleton.restoreTargetsState();
+    }
+
+    /**
+     * Sets the local transformations of the given nodes, i-th node from index i. As with
+     * {@link Posture#loadValues(Skeleton)} the node constraints are ignored.
+     */
+    public void loadValues(List<? extends Node> nodes){
+        for(int i = 0; i < _size; i++){
+            Node node = nodes.get(i);
+            Constraint constraint = node.constraint();
+            node.setConstraint(null);
+            node.setTranslation(_translations[3 * i], _translations[3 * i + 1], _translations[3 * i + 2]);
+            node.setRotation(_rotations[4 * i], _rotations[4 * i + 1], _rotations[4 * i + 2], _rotations[4 * i + 3]);
+            node.setScaling(_scalings[i]);
+            node.setConstraint(constraint);
+        }
+    }
+
+    /**
+     * Blends poses {@code a} and {@code b} and stores the result in {@code target} (which may
+     * be {@code a} or {@code b}). Translations and scalings are linearly interpolated while
+     * rotations are normalized-linearly interpolated along the shortest path.
+     */
+    public static Pose blend(Pose a, Pose b, float t, Pose target){
+        if(target == null) target = new Pose(a._size);
+        float s = 1 - t;
+        for(int i = 0; i < a._translations.length; i++)
+            target._translations[i] = s * a._translations[i] + t * b._translations[i];
+        for(int i = 0; i < a._scalings.length; i++)
+            target._scalings[i] = s * a._scalings[i] + t * b._scalings[i];
+        for(int i = 0; i < a._rotations.length; i += 4){
+            float dot = a._rotations[i] * b._rotations[i] + a._rotations[i + 1] * b._rotations[i + 1] +
+                    a._rotations[i + 2] * b._rotations[i + 2] + a._rotations[i + 3] * b._rotations[i + 3];
+            float tb = dot < 0 ? -t : t;
+            float x = s * a._rotations[i] + tb * b._rotations[i];
+            float y = s * a._rotations[i + 1] + tb * b._rotations[i + 1];
+            float z = s * a._rotations[i + 2] + tb * b._rotations[i + 2];
+            float w = s * a._rotations[i + 3] + tb * b._rotations[i + 3];
+            float norm = (float) Math.sqrt(x * x + y * y + z * z + w * w);
+            if(norm > 0){
+                x /= norm;
+                y /= norm;
+                z /= norm;
+                w /= norm;
+            }
+            target._rotations[i] = x;
+            target._rotations[i + 1] = y;
+            target._rotations[i + 2] = z;
+            target._rotations[i + 3] = w;
+        }
+        return target;
+    }
+
+    public void blend(Pose pose, float t){
+        blend(this, pose, t, this);
+    }
+}
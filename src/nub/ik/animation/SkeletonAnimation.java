@@ -56,6 +56,10 @@ public class SkeletonAnimation {
     protected float _time = 0;
     protected Task _task;
 
+    //compiled form of the animation (see compile)
+    protected AnimationClip _clip;
+    protected Node[] _joints;
+
     public SkeletonAnimation(Skeleton skeleton){
         _skeleton = skeleton;
         _postures = new ArrayList<TimePosture>();
@@ -73,6 +77,7 @@ public class SkeletonAnimation {
 
     public void setInterpolationMode(InterpolationMode mode){
         _mode = mode;
+        _clip = null;
     }
 
     public InterpolationMode mode(){
@@ -85,6 +90,26 @@ public class SkeletonAnimation {
 
     public void savePosture(float time){
         _postures.add(new TimePosture(new Posture(_skeleton), time));
+        _clip = null;
+    }
+
+    /**
+     * Compiles the postures into an AnimationClip which is then used to play the animation, so that each frame costs
+     * a binary search and a few operations per joint, instead of looking up the joint states by name and recomputing
+     * their tangents. The clip is discarded when a posture is saved or the interpolation mode changes, but it should be
+     * compiled again if the postures are modified by other means (see postures()).
+     * */
+    public AnimationClip compile(){
+        _clip = new AnimationClip(this);
+        _joints = _clip.bind(_skeleton);
+        return _clip;
+    }
+
+    /**
+     * Returns the compiled clip used to play the animation, or null if the animation is not compiled (see compile()).
+     * */
+    public AnimationClip clip(){
+        return _clip;
     }
 
     public List<TimePosture> postures(){
@@ -96,6 +121,11 @@ public class SkeletonAnimation {
             _task.stop();
             return;
         }
+        if(_clip != null){
+            _sampleClip();
+            _time += _task.period();
+            return;
+        }
         moveToNextPosture();
         if(_mode == InterpolationMode.LINEAR) {
             _linearInterpolation(_time);
@@ -113,6 +143,18 @@ public class SkeletonAnimation {
         _time = time;
     }
 
+    protected void _sampleClip(){
+        if(_time >= _clip.lastTime()){
+            if(_repeat){
+                setTime(0);
+            } else{
+                stop();
+            }
+        }
+        _clip.sample(_time, _joints);
+        _skeleton.restoreTargetsState();
+    }
+
     public void moveToNextPosture(){
         int next = _currentPosture;
         while(next < _postures.size() && _time >= _postures.get(next).time()){
@@ -237,7 +279,11 @@ public class SkeletonAnimation {
         }
         _time = 0;
         _currentPosture = 0;
-        loadPosture(_currentPosture);
+        if(_clip != null){
+            _clip.sample(_time, _joints);
+        } else {
+            loadPosture(_currentPosture);
+        }
         _skeleton.restoreTargetsState();
         _task.run();
     }
@@ -23,6 +23,10 @@ import java.util.Map;
  * This class must be used to load a bvh file and
  * generate an animation.
  * <p>
+ * The motion section is parsed into a compact table of primitive floats (one value per
+ * channel per frame) instead of keeping a node per joint per frame. Poses are built on demand
+ * from this table (see {@link #poseAt(int)} and {@link #nextPose()}).
+ * <p>
  * For more info look at http://www.dcs.shef.ac.uk/intranet/research/public/resmes/CS0111.pdf
  * Created by sebchaparr on 23/03/18.
  */
@@ -37,8 +41,18 @@ public class BVHLoader {
   protected Class<? extends Node> _class;
   protected Node _root;
   protected List<Node> _branch;
-  protected HashMap<Integer, ArrayList<Node>> _poses;
+  //Motion table: channel values of each frame stored contiguously (rotations in radians)
+  protected float[] _motion;
+  protected int _channels; //number of channels per frame
+  protected int _poseCount;
+  protected int[] _channelCodes; //type of each channel within a frame
+  protected int[] _offsets; //first channel of each node of the branch
+  protected Vector[] _restTranslations;
+  protected Quaternion[] _restRotations;
   protected int _currentPose;
+  //auxiliary variables
+  protected Vector _axis = new Vector(), _translation = new Vector();
+  protected Quaternion _channelRotation = new Quaternion(), _rotation = new Quaternion();
   protected boolean _loop;
 
 
@@ -89,8 +103,11 @@ public class BVHLoader {
     return _branch;
   }
 
+  /**
+   * Returns the number of frames (poses) loaded.
+   */
   public int poses(){
-    return _poses.size();
+    return _poseCount;
   }
 
   public Node root() {
@@ -102,9 +119,9 @@ public class BVHLoader {
     _period = 0;
     _currentPose = 0;
     _joint = new HashMap<>();
-    _poses = new HashMap<>();
     _loop = true;
     _readHeader(path, scene, reference);
+    _setupMotion();
     _saveFrames();
   }
 
@@ -185,7 +202,6 @@ public class BVHLoader {
           ((Joint) current).setName(expression[1]);
         }
         _joint.put(current.id(), currentProperties);
-        _poses.put(current.id(), new ArrayList<>());
         boneBraceOpened = true;
       } else if (expression[0].equals("OFFSET")) {
         if (!boneBraceOpened) continue;
@@ -214,7 +230,6 @@ public class BVHLoader {
         currentRoot = current;
         currentProperties = new Properties(expression[1]);
         _joint.put(current.id(), currentProperties);
-        _poses.put(current.id(), new ArrayList<>());
         boneBraceOpened = true;
       } else if (expression[0].equals("END_SITE")) {
         boneBraceOpened = false;
@@ -224,8 +239,8 @@ public class BVHLoader {
         } else {
           boneBraceOpened = true;
         }
-      } else if (expression[0].equals("FRAMES")) {
-        _frames = Integer.valueOf(expression[1]);
+      } else if (expression[0].equals("FRAMES") || expression[0].equals("FRAMES:")) {
+        _frames = Integer.valueOf(expression[expression.length - 1]);
       } else if (expression[0].equals("FRAME_TIME")) {
         _period = Integer.valueOf(expression[1]);
       } else if (expression.length >= 2) {
@@ -245,134 +260,169 @@ public class BVHLoader {
     return root;
   }
 
+  protected static final int XPOSITION = 0, YPOSITION = 1, ZPOSITION = 2, XROTATION = 3, YROTATION = 4, ZROTATION = 5;
+
+  /*Prepares the motion table according to the channels defined in the header*/
+  protected void _setupMotion() {
+    _offsets = new int[_branch.size()];
+    _restTranslations = new Vector[_branch.size()];
+    _restRotations = new Quaternion[_branch.size()];
+    _channels = 0;
+    for (int j = 0; j < _branch.size(); j++) {
+      Node node = _branch.get(j);
+      _offsets[j] = _channels;
+      _channels += _joint.get(node.id()).channels;
+      _restTranslations[j] = node.translation().get();
+      _restRotations[j] = node.rotation().get();
+    }
+    _channelCodes = new int[_channels];
+    int i = 0;
+    for (Node node : _branch) {
+      for (String channel : _joint.get(node.id())._channelType) {
+        switch (channel) {
+          case "XPOSITION": _channelCodes[i] = XPOSITION; break;
+          case "YPOSITION": _channelCodes[i] = YPOSITION; break;
+          case "ZPOSITION": _channelCodes[i] = ZPOSITION; break;
+          case "XROTATION": _channelCodes[i] = XROTATION; break;
+          case "YROTATION": _channelCodes[i] = YROTATION; break;
+          case "ZROTATION": _channelCodes[i] = ZROTATION; break;
+          default: _channelCodes[i] = -1;
+        }
+        i++;
+      }
+    }
+    _poseCount = 0;
+    _motion = new float[Math.max(_frames, 1) * _channels];
+  }
+
   /*Saves Frame info to be read in a later stage*/
 
   protected void _saveFrames() {
     boolean next = true;
     while (next)
       next = _readNextFrame();
+    _buffer = null;
   }
 
   protected boolean _readNextFrame() {
     //READ JUST ONE LINE
-    String line = "";
+    String line;
     try {
       line = _buffer.readLine();
       if (line == null) return false;
-      line = line.toUpperCase();
     } catch (IOException e) {
       e.printStackTrace();
       return false;
     }
+    int length = line.length();
+    int offset = _poseCount * _channels;
+    if (offset + _channels > _motion.length) {
+      float[] motion = new float[Math.max(2 * _motion.length, offset + _channels)];
+      System.arraycopy(_motion, 0, motion, 0, offset);
+      _motion = motion;
+    }
+    //tokenize the line without splitting it
+    int i = 0, start = 0;
+    while (i < _channels) {
+      while (start < length && Character.isWhitespace(line.charAt(start))) start++;
+      if (start >= length) break;
+      int end = start;
+      while (end < length && !Character.isWhitespace(line.charAt(end))) end++;
+      float value = Float.parseFloat(line.substring(start, end));
+      _motion[offset + i] = _channelCodes[i] >= XROTATION ? PApplet.radians(value) : value;
+      start = end;
+      i++;
+    }
+    //skip blank lines
+    if (i == 0) return true;
+    //drop incomplete (e.g., truncated) lines, which would leave channels of the pose unset
+    if (i < _channels) {
+      System.err.println("Dropping incomplete BVH frame " + _poseCount + ": " + i + " of " + _channels + " channel values");
+      return true;
+    }
+    _poseCount++;
+    return true;
+  }
 
-    //clean line
-    line.replace("\t", " ");
-    line.replace("\n", "");
-    line.replace("\r", "");
-    line = line.trim();
-    //split
-    String[] expression = line.split(" ");
-    //traverse each line
-    int i = 0;
-    for (Node current : _branch) {
-      Properties properties = _joint.get(current.id());
-      boolean translationInfo = false;
-      boolean rotationInfo = false;
-      Vector translation = new Vector();
-      Quaternion rotation = new Quaternion();
-      Vector euler_params = new Vector();
-
-      for (String channel : properties._channelType) {
-        float value = Float.valueOf(expression[i]);
-        switch (channel) {
-          case "XPOSITION": {
-            translationInfo = true;
-            translation.setX(value);
-            break;
-          }
-          case "YPOSITION": {
-            translation.setY(value);
-            break;
-          }
-          case "ZPOSITION": {
-            translation.setZ(value);
-            break;
-          }
-          case "ZROTATION": {
-            rotationInfo = true;
-            rotation.compose(new Quaternion(new Vector(0, 0, 1), PApplet.radians(value)));
-            euler_params.setZ(PApplet.radians(value));
-            break;
-          }
-          case "YROTATION": {
-            rotation.compose(new Quaternion(new Vector(0, 1, 0), PApplet.radians(value)));
-            euler_params.setY(PApplet.radians(value));
-            break;
-          }
-          case "XROTATION": {
-            rotation.compose(new Quaternion(new Vector(1, 0, 0), PApplet.radians(value)));
-            euler_params.setX(PApplet.radians(value));
-            break;
-          }
-        }
-        i++;
-      }
-      Node next = Node.detach(current.translation().get(), current.rotation().get(), 1);
-
-      switch (properties._parametrization) {
-        case "XYZ": {
-          if (current.reference() != null) {
-            Quaternion newRotation = _poses.get(current.reference().id()).get(_poses.get(current.reference().id()).size() - 1).rotation();
-            Quaternion delta = Quaternion.compose(newRotation, current.reference().rotation().inverse());
-            Vector v = delta.multiply(translation.get());
-            _joint.get(current.reference().id())._feasibleRegion.add(v);
-          }
-          break;
-        }
-        case "Euler": {
-          properties._feasibleRegion.add(euler_params);
-          break;
-        }
+  /**
+   * Returns the local translation of the j-th node of the {@link #branch()} at the given pose.
+   */
+  protected Vector _translation(int j, int pose, Vector target) {
+    if (target == null) target = new Vector();
+    boolean translationInfo = false;
+    int offset = pose * _channels + _offsets[j];
+    int channels = _joint.get(_branch.get(j).id()).channels;
+    for (int i = offset; i < offset + channels; i++) {
+      int code = _channelCodes[i - pose * _channels];
+      if (code == XPOSITION) {
+        if (!translationInfo) target.set(0, 0, 0);
+        translationInfo = true;
+        target.setX(_motion[i]);
+      } else if (code == YPOSITION) {
+        target.setY(_motion[i]);
+      } else if (code == ZPOSITION) {
+        target.setZ(_motion[i]);
       }
+    }
+    if (!translationInfo) target.set(_restTranslations[j]);
+    return target;
+  }
 
-      if (rotationInfo) {
-        next.setRotation(rotation);
-      }
-      if (translationInfo) {
-        next.setTranslation(translation);
+  /**
+   * Returns the local rotation of the j-th node of the {@link #branch()} at the given pose.
+   */
+  protected Quaternion _rotation(int j, int pose, Quaternion target) {
+    if (target == null) target = new Quaternion();
+    boolean rotationInfo = false;
+    int offset = pose * _channels + _offsets[j];
+    int channels = _joint.get(_branch.get(j).id()).channels;
+    for (int i = offset; i < offset + channels; i++) {
+      int code = _channelCodes[i - pose * _channels];
+      if (code < XROTATION) continue;
+      if (!rotationInfo) {
+        target.setX(0);
+        target.setY(0);
+        target.setZ(0);
+        target.setW(1);
       }
-      _poses.get(current.id()).add(next);
+      rotationInfo = true;
+      _axis.set(code == XROTATION ? 1 : 0, code == YROTATION ? 1 : 0, code == ZROTATION ? 1 : 0);
+      _channelRotation.fromAxisAngle(_axis, _motion[i]);
+      Quaternion.compose(target, _channelRotation, target);
     }
-    return true;
+    if (!rotationInfo) target.set(_restRotations[j]);
+    return target;
   }
 
   public void nextPose() {
-    if (_currentPose >= _poses.get(_root.id()).size()) {
+    if (_currentPose >= _poseCount) {
       if (_loop) _currentPose = 0;
       else return;
     }
-    for (Node node : _branch) {
+    for (int j = 0; j < _branch.size(); j++) {
+      Node node = _branch.get(j);
       Constraint c = node.constraint();
       if(node == _root)node.setConstraint(null);
-      node.setRotation(_poses.get(node.id()).get(_currentPose).rotation().get());
-      node.setTranslation(_poses.get(node.id()).get(_currentPose).translation().get());
+      node.setRotation(_rotation(j, _currentPose, _rotation).get());
+      node.setTranslation(_translation(j, _currentPose, _translation).get());
       node.setConstraint(c);
     }
     _currentPose++;
   }
 
   public void poseAt(int idx) {
-    if (idx >= _poses.get(_root.id()).size()) {
+    if (idx >= _poseCount) {
       return;
     }
-    for (Node node : _branch) {
-      node.setRotation(_poses.get(node.id()).get(idx).rotation().get());
-      node.setTranslation(_poses.get(node.id()).get(idx).translation().get());
+    for (int j = 0; j < _branch.size(); j++) {
+      Node node = _branch.get(j);
+      node.setRotation(_rotation(j, idx, _rotation).get());
+      node.setTranslation(_translation(j, idx, _translation).get());
     }
   }
 
   protected Vector findRestVector(Node node){
-    List<Node> poses = _poses.get(node.id());
+    int j = _branch.indexOf(node);
     Vector init = new Vector(0,1,0); //use any vector
     //if(node.children().size() == 1){
       //init = node.children().get(0).translation().get();
@@ -384,8 +434,8 @@ public class BVHLoader {
 
     Vector rest = init.get();
     System.out.println("init " + init);
-    for(Node keyNode : poses){
-      Quaternion delta = Quaternion.compose(restRotation.inverse(), keyNode.rotation());
+    for(int pose = 0; pose < _poseCount; pose++){
+      Quaternion delta = Quaternion.compose(restRotation.inverse(), _rotation(j, pose, _rotation));
       delta.normalize();
       rest.add(delta.rotate(init));
       //System.out.println("delta " + delta.axis() + delta.angle() + " "  + " rest " + rest);
@@ -395,7 +445,7 @@ public class BVHLoader {
       rest = init;
 
 
-    rest.multiply(1f / (poses.size() + 1));
+    rest.multiply(1f / (_poseCount + 1));
 
 
     return rest;
@@ -411,7 +461,7 @@ public class BVHLoader {
 
   protected void generateConstraint(Node node){
     Vector rest = findRestVector(node);
-    List<Node> poses = _poses.get(node.id());
+    int j = _branch.indexOf(node);
     Quaternion restRotation = node.rotation().get();
     Vector up = rest.orthogonalVector();
     Vector right = Vector.cross(rest, up, null);
@@ -423,8 +473,8 @@ public class BVHLoader {
     float minTwist = 0, maxTwist = 0;
     float upAngle = 0, downAngle = 0, leftAngle = 0, rightAngle = 0;
 
-    for(Node keyNode : poses){
-      Quaternion delta = Quaternion.compose(restRotation.inverse(), keyNode.rotation());
+    for(int pose = 0; pose < _poseCount; pose++){
+      Quaternion delta = Quaternion.compose(restRotation.inverse(), _rotation(j, pose, _rotation));
       delta.normalize();
       Vector local_rest = delta.inverseRotate(rest);
       Vector local_up = delta.inverseRotate(up);
@@ -11,6 +11,9 @@ import nub.primitives.Matrix;
 import nub.processing.Scene;
 import processing.core.PImage;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 public class BlenderLoader {
   /**
    * Load a Collada model from Blender
@@ -18,27 +21,26 @@ public class BlenderLoader {
    */
 
   public static Model loadColladaModel(String colladaFile, String dae, String tex, Scene scene, int maxWeights) {
-    XmlNode node = XmlParser.loadXmlFile(colladaFile + dae);
-
     Model model = new Model(scene);
+    Map<String, Mesh.Buffer> meshes = ModelCache.load(colladaFile + dae, maxWeights, model);
+    if (meshes == null) {
+      XmlNode node = XmlParser.loadXmlFile(colladaFile + dae);
 
-    SkinLoader skinLoader = new SkinLoader(node.getChild("library_controllers"), maxWeights);
-    SkinningData skinningData = skinLoader.extractSkinData();
-    SkeletonLoader jointsLoader = new SkeletonLoader(node.getChild("library_visual_scenes"), skinningData.jointOrder, skinningData.bindMatrices);
-    jointsLoader.extractBoneData(model, true);
+      SkinLoader skinLoader = new SkinLoader(node.getChild("library_controllers"), maxWeights);
+      SkinningData skinningData = skinLoader.extractSkinData();
+      SkeletonLoader jointsLoader = new SkeletonLoader(node.getChild("library_visual_scenes"), skinningData.jointOrder, skinningData.bindMatrices);
+      jointsLoader.extractBoneData(model, true);
 
-    XmlNode bind = node.getChild("library_controllers").getChild("controller").getChild("skin").getChild("bind_shape_matrix");
-    String[] bind_data = bind.getData().split(" ");
-    float[] mat = new float[bind_data.length];
+      XmlNode bind = node.getChild("library_controllers").getChild("controller").getChild("skin").getChild("bind_shape_matrix");
+      Matrix m = new Matrix(bind.getFloats(), false);
 
-    for (int i = 0; i < bind_data.length; i++) {
-      mat[i] = Float.parseFloat(bind_data[i]);
+      GeometryLoader g = new GeometryLoader(node.getChild("library_geometries"), skinningData.verticesSkinData, m);
+      Mesh meshData = g.extractBlenderModelData(model.scaling());
+      meshes = new LinkedHashMap<String, Mesh.Buffer>();
+      meshes.put(null, meshData.buffer());
+      ModelCache.save(colladaFile + dae, maxWeights, model, meshes);
     }
-    Matrix m = new Matrix(mat, false);
-
-    GeometryLoader g = new GeometryLoader(node.getChild("library_geometries"), skinningData.verticesSkinData, m);
-    Mesh meshData = g.extractBlenderModelData(model.scaling());
-    model.addModel(null, meshData.generatePShape(scene.context(), tex == null ? null : colladaFile + tex));
+    model.addModel(null, meshes.get(null).generatePShape(scene.context(), tex == null ? null : colladaFile + tex));
 
 
     if (tex == null) {
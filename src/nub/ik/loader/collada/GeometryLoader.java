@@ -59,12 +59,12 @@ public class GeometryLoader {
 
   private List<Mesh.Vertex> readPositions(boolean blender, XmlNode positionsData, float scaling) {
     int count = Integer.parseInt(positionsData.getAttribute("count"));
-    String[] posData = positionsData.getData().split(" ");
+    float[] posData = positionsData.getFloats();
     List<Mesh.Vertex> vertices = new ArrayList<>();
     for (int i = 0; i < posData.length / 3; i++) {
-      float x = Float.parseFloat(posData[i * 3]) * 1;
-      float y = Float.parseFloat(posData[i * 3 + 1]) * 1;
-      float z = Float.parseFloat(posData[i * 3 + 2]) * 1;
+      float x = posData[i * 3];
+      float y = posData[i * 3 + 1];
+      float z = posData[i * 3 + 2];
       Vector position = new Vector(x, y, z);
       if (bind != null) position = this.bind.multiply(position);
       position.multiply(scaling);
@@ -80,11 +80,11 @@ public class GeometryLoader {
     XmlNode normalsData = meshData.getChildWithAttribute("source", "id", normalsId).getChild("float_array");
 
     int count = Integer.parseInt(normalsData.getAttribute("count"));
-    String[] normData = normalsData.getData().split(" ");
+    float[] normData = normalsData.getFloats();
     for (int i = 0; i < count / 3; i++) {
-      float x = Float.parseFloat(normData[i * 3]);
-      float y = Float.parseFloat(normData[i * 3 + 1]);
-      float z = Float.parseFloat(normData[i * 3 + 2]);
+      float x = normData[i * 3];
+      float y = normData[i * 3 + 1];
+      float z = normData[i * 3 + 2];
       PVector norm = new PVector(x, y, z);
       normals.add(norm);
     }
@@ -95,10 +95,10 @@ public class GeometryLoader {
         .getAttribute("source").substring(1);
     XmlNode texCoordsData = meshData.getChildWithAttribute("source", "id", texCoordsId).getChild("float_array");
     int count = Integer.parseInt(texCoordsData.getAttribute("count"));
-    String[] texData = texCoordsData.getData().split(" ");
+    float[] texData = texCoordsData.getFloats();
     for (int i = 0; i < count / 2; i++) {
-      float s = Float.parseFloat(texData[i * 2]);
-      float t = Float.parseFloat(texData[i * 2 + 1]);
+      float s = texData[i * 2];
+      float t = texData[i * 2 + 1];
       PVector uv = new PVector(s, t);
       textures.add(uv);
     }
@@ -115,12 +115,12 @@ public class GeometryLoader {
       }
       total += 1;
       int offset = Integer.parseInt(triangles.getChildWithAttribute("input", "semantic", "VERTEX").getAttribute("offset"));
-      String[] rawIndexData = triangles.getChild("p").getData().split(" ");
+      int[] rawIndexData = triangles.getChild("p").getInts();
 
       int[] indexData = new int[rawIndexData.length / total];
 
       for (int i = offset; i < indexData.length; i++) {
-        indexData[i] = Integer.parseInt(rawIndexData[i * total]);
+        indexData[i] = rawIndexData[i * total];
       }
       for (int i = 0; i < indexData.length; i += 3) {
         Mesh.Face face = new Mesh.Face();
@@ -151,22 +151,18 @@ public class GeometryLoader {
   private Mesh assembleVertices(List<Mesh.Vertex> vertices) {
     XmlNode poly = meshData.getChild("polylist");
     int typeCount = poly.getChildren("input").size();
-    String[] rawSides = poly.getChild("vcount").getData().split(" ");
-    int[] sides = new int[rawSides.length];
-    for (int i = 0; i < rawSides.length; i++) {
-      sides[i] = Integer.parseInt(rawSides[i]);
-    }
+    int[] sides = poly.getChild("vcount").getInts();
     int faceCounter = 0;
     int currentSide = 0;
-    String[] indexData = poly.getChild("p").getData().split(" ");
+    int[] indexData = poly.getChild("p").getInts();
 
     Mesh mesh = new Mesh();
 
     Mesh.Face currentFace = new Mesh.Face();
     for (int i = 0; i < indexData.length / typeCount; i++) {
-      int positionIndex = Integer.parseInt(indexData[i * typeCount]);
-      int normalIndex = Integer.parseInt(indexData[i * typeCount + 1]);
-      int texCoordIndex = Integer.parseInt(indexData[i * typeCount + 2]);
+      int positionIndex = indexData[i * typeCount];
+      int normalIndex = indexData[i * typeCount + 1];
+      int texCoordIndex = indexData[i * typeCount + 2];
       //Create a Vertex
       Mesh.Vertex v = new Mesh.Vertex(vertices.get(positionIndex));
       v.setNormal(normals.get(normalIndex));
@@ -0,0 +1,410 @@
+package nub.ik.loader.collada;
+
+import nub.core.Node;
+import nub.core.constraint.BallAndSocket;
+import nub.core.constraint.Constraint;
+import nub.core.constraint.Hinge;
+import nub.ik.loader.collada.data.Mesh;
+import nub.ik.loader.collada.data.Model;
+import nub.ik.visual.Joint;
+import nub.primitives.Quaternion;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A binary cache of a loaded {@link Model}, i.e., its skeleton hierarchy (names, rest pose,
+ * constraints, joint colors and skinning indices) and its mesh buffers (see {@link Mesh.Buffer}),
+ * so that the XML parsing and the mesh and skinning data assembly are performed only the
+ * first time a model is loaded (see {@link BlenderLoader} and {@link URDFLoader}).
+ * <p>
+ * By default the cache of a source file is kept next to it. Use {@link #setCacheDirectory(String)}
+ * to keep the caches somewhere else, or {@link #disableCache()} to neither read nor write them.
+ * A cache is discarded whenever the source file (its length or modification time), the loading
+ * options or the cache version change. All the values are stored big-endian and 4-byte aligned,
+ * and the whole file is read at once into a heap buffer (which, unlike a mapped one, doesn't keep
+ * the file open), so that the float arrays of the meshes are bulk copied.
+ * <p>
+ * Only {@link Hinge} and {@link BallAndSocket} constraints are kept (as in
+ * {@link nub.ik.animation.Skeleton#save(String)}), any other is dropped.
+ */
+public class ModelCache {
+  public static final String EXTENSION = ".nubcache";
+  protected static final int MAGIC = 0x4E55424D; // NUBM
+  protected static final int VERSION = 1;
+  // joint flags
+  protected static final int NAMED = 1, ROOT = 2, INDEXED = 4;
+  // constraint types
+  protected static final int NONE = 0, HINGE = 1, BALL_AND_SOCKET = 2;
+  protected static boolean _enabled = true;
+  protected static String _directory;
+
+  /**
+   * Enables the model caches, which is the default.
+   *
+   * @see #disableCache()
+   * @see #isCacheEnabled()
+   */
+  public static void enableCache() {
+    _enabled = true;
+  }
+
+  /**
+   * Disables the model caches, i.e., the models are always loaded from their source files and
+   * no cache is written.
+   *
+   * @see #enableCache()
+   * @see #isCacheEnabled()
+   */
+  public static void disableCache() {
+    _enabled = false;
+  }
+
+  /**
+   * Returns {@code true} if the model caches are read and written and {@code false} otherwise.
+   *
+   * @see #enableCache()
+   * @see #disableCache()
+   */
+  public static boolean isCacheEnabled() {
+    return _enabled;
+  }
+
+  /**
+   * Sets the directory where the caches are kept (it is created when needed). Pass
+   * {@code null} (the default) to keep the cache of each source file next to it.
+   *
+   * @see #file(String)
+   */
+  public static void setCacheDirectory(String directory) {
+    _directory = directory;
+  }
+
+  /**
+   * Returns the directory where the caches are kept, or {@code null} if they are kept next to
+   * their source files.
+   *
+   * @see #setCacheDirectory(String)
+   */
+  public static String cacheDirectory() {
+    return _directory;
+  }
+
+  /**
+   * Returns the cache file of the given {@code source} file. Within a {@link #cacheDirectory()}
+   * the name also encodes the source path, so that same-named sources don't share a cache.
+   */
+  public static String file(String source) {
+    if (_directory == null) {
+      return source + EXTENSION;
+    }
+    File sourceFile = new File(source).getAbsoluteFile();
+    return new File(_directory, sourceFile.getName() + "." + Integer.toHexString(sourceFile.getPath().hashCode()) + EXTENSION).getPath();
+  }
+
+  /**
+   * Writes the cache of the {@code source} file, from which the (just loaded) {@code model} and
+   * its {@code meshes} were generated with the given {@code options}. Errors are reported but
+   * otherwise ignored, since the cache is only an optimization.
+   */
+  public static void save(String source, int options, Model model, Map<String, Mesh.Buffer> meshes) {
+    if (!_enabled) {
+      return;
+    }
+    File sourceFile = new File(source);
+    File file = new File(file(source));
+    File temporary = new File(file.getPath() + ".tmp");
+    try {
+      File directory = file.getAbsoluteFile().getParentFile();
+      if (directory != null && !directory.isDirectory()) {
+        Files.createDirectories(directory.toPath());
+      }
+      try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary), 1 << 16))) {
+        _write(output, sourceFile.length(), sourceFile.lastModified(), options, model, meshes);
+      }
+      // replace any previous cache at once
+      Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      System.err.println("Unable to write the model cache " + file + ": " + e.getMessage());
+      temporary.delete();
+    }
+  }
+
+  /**
+   * Fills the (empty) {@code model} with the skeleton kept in the cache of the {@code source}
+   * file and returns its mesh buffers, or returns {@code null} (leaving the model untouched) if
+   * the cache doesn't exist, is invalid or is outdated w.r.t. the source file or the given
+   * {@code options}.
+   */
+  public static Map<String, Mesh.Buffer> load(String source, int options, Model model) {
+    File sourceFile = new File(source);
+    File file = new File(file(source));
+    if (!_enabled || !file.isFile()) {
+      return null;
+    }
+    try {
+      ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+      if (buffer.remaining() < 28 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        return null;
+      }
+      if (buffer.getLong() != sourceFile.length() || buffer.getLong() != sourceFile.lastModified() || buffer.getInt() != options) {
+        return null;
+      }
+      return _read(buffer, model);
+    } catch (IOException | RuntimeException e) {
+      System.err.println("Unable to read the model cache " + file + ": " + e);
+      return null;
+    }
+  }
+
+  protected static void _write(DataOutputStream output, long length, long modified, int options, Model model, Map<String, Mesh.Buffer> meshes) throws IOException {
+    output.writeInt(MAGIC);
+    output.writeInt(VERSION);
+    output.writeLong(length);
+    output.writeLong(modified);
+    output.writeInt(options);
+    output.writeFloat(model.scaling());
+    output.writeInt(model.jointCount());
+    // skeleton, in pre-order so that the references are read before their children
+    List<Joint> joints = new ArrayList<Joint>();
+    if (model.root() instanceof Joint) {
+      _collect((Joint) model.root(), joints);
+    }
+    Map<Node, Integer> indices = new IdentityHashMap<Node, Integer>();
+    Map<Node, String> names = new IdentityHashMap<Node, String>();
+    for (Map.Entry<String, Node> entry : model.skeleton().entrySet()) {
+      names.put(entry.getValue(), entry.getKey());
+    }
+    output.writeInt(joints.size());
+    for (Joint joint : joints) {
+      indices.put(joint, indices.size());
+      Integer index = model.getIdxs().get(joint.id());
+      _writeString(output, names.get(joint));
+      output.writeInt((names.containsKey(joint) ? NAMED : 0) | (joint.isRoot() ? ROOT : 0) | (index != null ? INDEXED : 0));
+      Integer reference = indices.get(joint.reference());
+      output.writeInt(reference == null ? -1 : reference);
+      output.writeInt(index == null ? 0 : index);
+      output.writeInt(joint.red());
+      output.writeInt(joint.green());
+      output.writeInt(joint.blue());
+      output.writeFloat(joint.radius());
+      output.writeFloat(joint.translation().x());
+      output.writeFloat(joint.translation().y());
+      output.writeFloat(joint.translation().z());
+      _writeQuaternion(output, joint.rotation());
+      output.writeFloat(joint.magnitude());
+      _writeConstraint(output, joint.constraint());
+    }
+    // nodes holding a mesh
+    List<Map.Entry<String, Node>> meshMap = new ArrayList<Map.Entry<String, Node>>();
+    for (Map.Entry<String, Node> entry : model.meshMap().entrySet()) {
+      if (indices.containsKey(entry.getValue())) meshMap.add(entry);
+    }
+    output.writeInt(meshMap.size());
+    for (Map.Entry<String, Node> entry : meshMap) {
+      _writeString(output, entry.getKey());
+      output.writeInt(indices.get(entry.getValue()));
+    }
+    // meshes
+    output.writeInt(meshes.size());
+    for (Map.Entry<String, Mesh.Buffer> entry : meshes.entrySet()) {
+      Mesh.Buffer mesh = entry.getValue();
+      _writeString(output, entry.getKey());
+      output.writeInt(mesh.size());
+      output.writeInt((mesh.normals() != null ? 1 : 0) | (mesh.uvs() != null ? 2 : 0) | (mesh.joints() != null ? 4 : 0));
+      _writeFloats(output, mesh.positions());
+      _writeFloats(output, mesh.normals());
+      _writeFloats(output, mesh.uvs());
+      _writeFloats(output, mesh.joints());
+      _writeFloats(output, mesh.weights());
+    }
+  }
+
+  protected static Map<String, Mesh.Buffer> _read(ByteBuffer buffer, Model model) {
+    float scaling = buffer.getFloat();
+    int jointCount = buffer.getInt();
+    // read all the data before instantiating any node
+    int size = buffer.getInt();
+    String[] names = new String[size];
+    int[] flags = new int[size], references = new int[size], indices = new int[size], colors = new int[3 * size];
+    float[] values = new float[9 * size];
+    Constraint[] constraints = new Constraint[size];
+    for (int i = 0; i < size; i++) {
+      names[i] = _readString(buffer);
+      flags[i] = buffer.getInt();
+      references[i] = buffer.getInt();
+      if (references[i] >= i) throw new IllegalStateException("Invalid joint reference");
+      indices[i] = buffer.getInt();
+      colors[3 * i] = buffer.getInt();
+      colors[3 * i + 1] = buffer.getInt();
+      colors[3 * i + 2] = buffer.getInt();
+      _readFloats(buffer, values, 9 * i, 9);
+      constraints[i] = _readConstraint(buffer);
+    }
+    int mapped = buffer.getInt();
+    String[] ids = new String[mapped];
+    int[] nodes = new int[mapped];
+    for (int i = 0; i < mapped; i++) {
+      ids[i] = _readString(buffer);
+      nodes[i] = buffer.getInt();
+      if (nodes[i] < 0 || nodes[i] >= size) throw new IllegalStateException("Invalid mesh joint");
+    }
+    int count = buffer.getInt();
+    Map<String, Mesh.Buffer> meshes = new LinkedHashMap<String, Mesh.Buffer>();
+    for (int i = 0; i < count; i++) {
+      String id = _readString(buffer);
+      int vertices = buffer.getInt();
+      int attributes = buffer.getInt();
+      float[] positions = _readFloats(buffer, 3 * vertices);
+      float[] normals = (attributes & 1) != 0 ? _readFloats(buffer, 3 * vertices) : null;
+      float[] uvs = (attributes & 2) != 0 ? _readFloats(buffer, 2 * vertices) : null;
+      float[] joints = (attributes & 4) != 0 ? _readFloats(buffer, 3 * vertices) : null;
+      float[] weights = (attributes & 4) != 0 ? _readFloats(buffer, 3 * vertices) : null;
+      meshes.put(id, new Mesh.Buffer(vertices, positions, normals, uvs, joints, weights));
+    }
+    // build the model
+    Joint[] joints = new Joint[size];
+    for (int i = 0; i < size; i++) {
+      Joint joint = new Joint(colors[3 * i], colors[3 * i + 1], colors[3 * i + 2], values[9 * i]);
+      if (references[i] >= 0) joint.setReference(joints[references[i]]);
+      joint.setRoot((flags[i] & ROOT) != 0);
+      joint.setTranslation(values[9 * i + 1], values[9 * i + 2], values[9 * i + 3]);
+      joint.setRotation(new Quaternion(values[9 * i + 4], values[9 * i + 5], values[9 * i + 6], values[9 * i + 7], false));
+      joint.setMagnitude(values[9 * i + 8]);
+      joint.setConstraint(constraints[i]);
+      if ((flags[i] & NAMED) != 0) model.skeleton().put(names[i], joint);
+      if ((flags[i] & INDEXED) != 0) model.getIdxs().put(joint.id(), indices[i]);
+      joints[i] = joint;
+    }
+    for (int i = 0; i < mapped; i++) {
+      model.meshMap().put(ids[i], joints[nodes[i]]);
+    }
+    model.set_root(size > 0 ? joints[0] : null);
+    model.setJointCount(jointCount);
+    model.setScaling(scaling);
+    return meshes;
+  }
+
+  protected static void _collect(Joint joint, List<Joint> joints) {
+    joints.add(joint);
+    for (Node child : joint.children()) {
+      if (child instanceof Joint) _collect((Joint) child, joints);
+    }
+  }
+
+  protected static void _writeConstraint(DataOutputStream output, Constraint constraint) throws IOException {
+    if (constraint instanceof Hinge) {
+      Hinge hinge = (Hinge) constraint;
+      output.writeInt(HINGE);
+      _writeQuaternion(output, hinge.idleRotation());
+      _writeQuaternion(output, hinge.restRotation());
+      output.writeFloat(hinge.minAngle());
+      output.writeFloat(hinge.maxAngle());
+    } else if (constraint instanceof BallAndSocket) {
+      BallAndSocket ballAndSocket = (BallAndSocket) constraint;
+      output.writeInt(BALL_AND_SOCKET);
+      _writeQuaternion(output, ballAndSocket.idleRotation());
+      _writeQuaternion(output, ballAndSocket.restRotation());
+      output.writeFloat(ballAndSocket.minTwistAngle());
+      output.writeFloat(ballAndSocket.maxTwistAngle());
+      output.writeFloat(ballAndSocket.down());
+      output.writeFloat(ballAndSocket.up());
+      output.writeFloat(ballAndSocket.left());
+      output.writeFloat(ballAndSocket.right());
+    } else {
+      output.writeInt(NONE);
+    }
+  }
+
+  protected static Constraint _readConstraint(ByteBuffer buffer) {
+    int type = buffer.getInt();
+    if (type == NONE) {
+      return null;
+    }
+    Quaternion idle = _readQuaternion(buffer);
+    Quaternion rest = _readQuaternion(buffer);
+    float min = buffer.getFloat();
+    float max = buffer.getFloat();
+    if (type == HINGE) {
+      Hinge hinge = new Hinge(min, max);
+      hinge.setRotations(idle, rest);
+      return hinge;
+    }
+    if (type == BALL_AND_SOCKET) {
+      float down = buffer.getFloat();
+      float up = buffer.getFloat();
+      float left = buffer.getFloat();
+      float right = buffer.getFloat();
+      BallAndSocket ballAndSocket = new BallAndSocket(down, up, left, right);
+      ballAndSocket.setRotations(idle, rest);
+      ballAndSocket.setTwistLimits(min, max);
+      return ballAndSocket;
+    }
+    throw new IllegalStateException("Unknown constraint type: " + type);
+  }
+
+  protected static void _writeQuaternion(DataOutputStream output, Quaternion quaternion) throws IOException {
+    output.writeFloat(quaternion.x());
+    output.writeFloat(quaternion.y());
+    output.writeFloat(quaternion.z());
+    output.writeFloat(quaternion.w());
+  }
+
+  protected static Quaternion _readQuaternion(ByteBuffer buffer) {
+    float x = buffer.getFloat(), y = buffer.getFloat(), z = buffer.getFloat(), w = buffer.getFloat();
+    return new Quaternion(x, y, z, w, false);
+  }
+
+  // Strings are kept as their (UTF-8) length (-1 for null) followed by their bytes, padded to 4 bytes
+  protected static void _writeString(DataOutputStream output, String string) throws IOException {
+    if (string == null) {
+      output.writeInt(-1);
+      return;
+    }
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+    for (int i = bytes.length; i % 4 != 0; i++)
+      output.writeByte(0);
+  }
+
+  protected static String _readString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    buffer.position(buffer.position() + (4 - length % 4) % 4);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  protected static void _writeFloats(DataOutputStream output, float[] values) throws IOException {
+    if (values == null) return;
+    for (float value : values)
+      output.writeFloat(value);
+  }
+
+  protected static float[] _readFloats(ByteBuffer buffer, int length) {
+    float[] values = new float[length];
+    _readFloats(buffer, values, 0, length);
+    return values;
+  }
+
+  protected static void _readFloats(ByteBuffer buffer, float[] values, int offset, int length) {
+    buffer.asFloatBuffer().get(values, offset, length);
+    buffer.position(buffer.position() + 4 * length);
+  }
+}
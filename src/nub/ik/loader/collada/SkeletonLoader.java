@@ -8,6 +8,7 @@ import nub.primitives.Matrix;
 import nub.primitives.Quaternion;
 import nub.primitives.Vector;
 
+import java.util.Arrays;
 import java.util.List;
 
 public class SkeletonLoader {
@@ -71,8 +72,7 @@ public class SkeletonLoader {
     }
     //if not apply usual transfomation
     else {
-      String[] matrixRawData = jointNode.getChild("matrix").getData().split(" ");
-      float[] matrixData = convertData(matrixRawData);
+      float[] matrixData = convertData(jointNode.getChild("matrix").getFloats());
       Matrix jmat = new Matrix(matrixData);
       joint.fromWorldMatrix(jmat);
     }
@@ -92,10 +92,10 @@ public class SkeletonLoader {
     String nameId = jointNode.getAttribute("sid");
     for (XmlNode transformations : jointNode.getChildren()) {
       if (transformations.getName().equals("translate")) {
-        float[] translation = convertData(transformations.getData().split(" "));
+        float[] translation = convertData(transformations.getFloats());
         joint.translate(translation[0], translation[1], translation[2]);
       } else if (transformations.getName().equals("rotate")) {
-        float[] rotation = convertData(transformations.getData().split(" "));
+        float[] rotation = convertData(transformations.getFloats());
         joint.rotate(new Quaternion(new Vector(rotation[0], rotation[1], rotation[2]), (float) Math.toRadians(rotation[3])));
       }
     }
@@ -110,12 +110,8 @@ public class SkeletonLoader {
     return joint;
   }
 
-  private float[] convertData(String[] rawData) {
-    float[] matrixData = new float[Math.min(rawData.length, 16)];
-    for (int i = 0; i < matrixData.length; i++) {
-      matrixData[i] = Float.parseFloat(rawData[i]);
-    }
-    return matrixData;
+  private float[] convertData(float[] rawData) {
+    return Arrays.copyOf(rawData, Math.min(rawData.length, 16));
   }
 
 }
\ No newline at end of file
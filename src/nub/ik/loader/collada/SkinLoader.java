@@ -32,7 +32,7 @@ public class SkinLoader {
     String jointDataId = inputNode.getChildWithAttribute("input", "semantic", "JOINT").getAttribute("source")
         .substring(1);
     XmlNode jointsNode = skinningData.getChildWithAttribute("source", "id", jointDataId).getChild("Name_array");
-    String[] names = jointsNode.getData().split(" ");
+    String[] names = jointsNode.getData().split("\\s+");
 
     List<String> jointsList = new ArrayList<String>();
     for (String name : names) {
@@ -46,32 +46,22 @@ public class SkinLoader {
     String weightsDataId = inputNode.getChildWithAttribute("input", "semantic", "WEIGHT").getAttribute("source")
         .substring(1);
     XmlNode weightsNode = skinningData.getChildWithAttribute("source", "id", weightsDataId).getChild("float_array");
-    String[] rawData = weightsNode.getData().split(" ");
-    float[] weights = new float[rawData.length];
-    for (int i = 0; i < weights.length; i++) {
-      weights[i] = Float.parseFloat(rawData[i]);
-    }
-    return weights;
+    return weightsNode.getFloats();
   }
 
   private int[] getEffectiveJointsCounts(XmlNode weightsDataNode) {
-    String[] rawData = weightsDataNode.getChild("vcount").getData().split(" ");
-    int[] counts = new int[rawData.length];
-    for (int i = 0; i < rawData.length; i++) {
-      counts[i] = Integer.parseInt(rawData[i]);
-    }
-    return counts;
+    return weightsDataNode.getChild("vcount").getInts();
   }
 
   private List<SkinningData.VertexSkinData> getSkinData(XmlNode weightsDataNode, int[] counts, float[] weights) {
-    String[] rawData = weightsDataNode.getChild("v").getData().split(" ");
+    int[] rawData = weightsDataNode.getChild("v").getInts();
     List<SkinningData.VertexSkinData> skinningData = new ArrayList<SkinningData.VertexSkinData>();
     int pointer = 0;
     for (int count : counts) {
       SkinningData.VertexSkinData skinData = new SkinningData.VertexSkinData();
       for (int i = 0; i < count; i++) {
-        int jointId = Integer.parseInt(rawData[pointer++]);
-        int weightId = Integer.parseInt(rawData[pointer++]);
+        int jointId = rawData[pointer++];
+        int weightId = rawData[pointer++];
         skinData.addJointEffect(jointId, weights[weightId]);
       }
       skinData.limitJointNumber(maxWeights);
@@ -85,11 +75,11 @@ public class SkinLoader {
     String jointDataId = inputNode.getChildWithAttribute("input", "semantic", "INV_BIND_MATRIX").getAttribute("source")
         .substring(1);
     XmlNode bindsNode = skinningData.getChildWithAttribute("source", "id", jointDataId).getChild("float_array");
-    String[] rawData = bindsNode.getData().split(" ");
+    float[] rawData = bindsNode.getFloats();
     List<Matrix> bindMatrices = new ArrayList<>();
     float[] m = new float[16];
     for (int i = 0; i < rawData.length; i++) {
-      m[i % 16] = Float.parseFloat(rawData[i]);
+      m[i % 16] = rawData[i];
       if (i % 16 == 15) {
         Matrix mat = new Matrix(m, false);
         mat.invert();
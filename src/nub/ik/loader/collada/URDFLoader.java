@@ -9,24 +9,34 @@ import nub.ik.visual.Joint;
 import nub.processing.Scene;
 import processing.core.PShape;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class URDFLoader {
   public static Model loadColladaModel(String colladaFile, String dae, Scene scene) {
-    XmlNode node = XmlParser.loadXmlFile(colladaFile + dae);
     Model model = new Model(scene);
-
-    SkeletonLoader jointsLoader = new SkeletonLoader(node.getChild("library_visual_scenes"), null);
-    jointsLoader.extractBoneData(model, false);
-
-    GeometryLoader g = new GeometryLoader(node.getChild("library_geometries"), null);
-    List<Mesh> meshes = g.extractURDFModelData(model.scaling());
-    int i = 0;
-    List<XmlNode> xmlNodes = node.getChild("library_geometries").getChildren("geometry");
+    Map<String, Mesh.Buffer> buffers = ModelCache.load(colladaFile + dae, -1, model);
+    if (buffers == null) {
+      XmlNode node = XmlParser.loadXmlFile(colladaFile + dae);
+
+      SkeletonLoader jointsLoader = new SkeletonLoader(node.getChild("library_visual_scenes"), null);
+      jointsLoader.extractBoneData(model, false);
+
+      GeometryLoader g = new GeometryLoader(node.getChild("library_geometries"), null);
+      List<Mesh> meshes = g.extractURDFModelData(model.scaling());
+      int i = 0;
+      List<XmlNode> xmlNodes = node.getChild("library_geometries").getChildren("geometry");
+      buffers = new LinkedHashMap<String, Mesh.Buffer>();
+      for (Mesh mesh : meshes) {
+        buffers.put(xmlNodes.get(i++).getAttribute("id"), mesh.buffer());
+      }
+      ModelCache.save(colladaFile + dae, -1, model, buffers);
+    }
     float max = -1;
-    for (Mesh mesh : meshes) {
-      PShape pshape = mesh.generatePShape(scene.context(), null);
-      String id = xmlNodes.get(i++).getAttribute("id");
+    for (Map.Entry<String, Mesh.Buffer> entry : buffers.entrySet()) {
+      PShape pshape = entry.getValue().generatePShape(scene.context(), null);
+      String id = entry.getKey();
       model.addModel(id, pshape);
       max = max < pshape.getWidth() ? pshape.getWidth() : max;
       Joint joint = ((Joint) model.meshMap().get(id));
@@ -73,48 +73,138 @@ public class Mesh {
     faces = new ArrayList<Face>();
   }
 
-  public PShape generatePShape(PGraphics g, String tex) {
-    g.textureMode(PConstants.NORMAL);
-    //TODO: USE PSHAPE IN GROUP MODE
-    //Don't use GROUP while https://github.com/processing/processing/issues/5560 is fixed
-    //PShape shape = g.createShape(PConstants.GROUP);
-    PShape shape = g.createShape();
-    shape.beginShape(PConstants.TRIANGLES);
+  /**
+   * Flattens the faces into a {@link Buffer}, i.e., the per vertex arrays the
+   * PShape is generated from.
+   */
+  public Buffer buffer() {
+    int size = 0;
+    boolean normals = false, uvs = false, skin = false;
+    for (Face face : faces) {
+      for (Vertex v : face.vertices) {
+        size++;
+        normals |= v.normal != null;
+        uvs |= v.uv != null;
+        skin |= v.skinData != null;
+      }
+    }
+    Buffer buffer = new Buffer(size, normals, uvs, skin);
+    int i = 0;
     for (Face face : faces) {
-      //PShape child = g.createShape();
-      //child.beginShape(PConstants.TRIANGLE);
       for (Vertex v : face.vertices) {
-        //change child by shape
+        buffer.positions[3 * i] = v.vector.x;
+        buffer.positions[3 * i + 1] = v.vector.y;
+        buffer.positions[3 * i + 2] = v.vector.z;
+        //missing attributes are kept as NaN
+        if (normals) {
+          buffer.normals[3 * i] = v.normal != null ? v.normal.x : Float.NaN;
+          buffer.normals[3 * i + 1] = v.normal != null ? v.normal.y : Float.NaN;
+          buffer.normals[3 * i + 2] = v.normal != null ? v.normal.z : Float.NaN;
+        }
+        if (uvs) {
+          buffer.uvs[2 * i] = v.uv != null ? v.uv.x : Float.NaN;
+          buffer.uvs[2 * i + 1] = v.uv != null ? v.uv.y : Float.NaN;
+        }
+        if (skin) {
+          for (int j = 0; j < 3; j++) {
+            buffer.joints[3 * i + j] = v.skinData != null ? v.skinData.jointIds.get(j) * 1.f : Float.NaN;
+            buffer.weights[3 * i + j] = v.skinData != null ? v.skinData.weights.get(j).floatValue() : Float.NaN;
+          }
+        }
+        i++;
+      }
+    }
+    return buffer;
+  }
+
+  public PShape generatePShape(PGraphics g, String tex) {
+    return buffer().generatePShape(g, tex);
+  }
+
+  /**
+   * A triangle list with the position, normal, uv and skinning (3 joints and 3 weights)
+   * arrays of its vertices. Attributes not present in the mesh are null, and attributes
+   * not set for a single vertex are kept as NaN.
+   * <p>
+   * Contrary to the {@link Mesh}, a buffer holds no objects per vertex, hence it is
+   * cheap to keep and to (de)serialize (see {@link nub.ik.loader.collada.ModelCache}).
+   */
+  public static class Buffer {
+    int size;
+    float[] positions, normals, uvs, joints, weights;
+
+    public Buffer(int size, boolean normals, boolean uvs, boolean skin) {
+      this(size, new float[3 * size], normals ? new float[3 * size] : null, uvs ? new float[2 * size] : null,
+          skin ? new float[3 * size] : null, skin ? new float[3 * size] : null);
+    }
+
+    public Buffer(int size, float[] positions, float[] normals, float[] uvs, float[] joints, float[] weights) {
+      this.size = size;
+      this.positions = positions;
+      this.normals = normals;
+      this.uvs = uvs;
+      this.joints = joints;
+      this.weights = weights;
+    }
+
+    /**
+     * @return The number of vertices, i.e., 3 times the number of triangles.
+     */
+    public int size() {
+      return size;
+    }
+
+    public float[] positions() {
+      return positions;
+    }
+
+    public float[] normals() {
+      return normals;
+    }
+
+    public float[] uvs() {
+      return uvs;
+    }
+
+    public float[] joints() {
+      return joints;
+    }
+
+    public float[] weights() {
+      return weights;
+    }
+
+    public PShape generatePShape(PGraphics g, String tex) {
+      g.textureMode(PConstants.NORMAL);
+      //TODO: USE PSHAPE IN GROUP MODE
+      //Don't use GROUP while https://github.com/processing/processing/issues/5560 is fixed
+      //PShape shape = g.createShape(PConstants.GROUP);
+      PShape shape = g.createShape();
+      shape.beginShape(PConstants.TRIANGLES);
+      for (int i = 0; i < size; i++) {
         //add attrib to set weights
-        if (v.normal != null) shape.normal(v.normal.x, v.normal.y, v.normal.z);
-        if (v.skinData != null) {
-          shape.attrib("joints",
-              v.skinData.jointIds.get(0) * 1.f,
-              v.skinData.jointIds.get(1) * 1.f,
-              v.skinData.jointIds.get(2) * 1.f);
-          shape.attrib("weights",
-              v.skinData.weights.get(0).floatValue(),
-              v.skinData.weights.get(1).floatValue(),
-              v.skinData.weights.get(2).floatValue());
+        if (normals != null && !Float.isNaN(normals[3 * i]))
+          shape.normal(normals[3 * i], normals[3 * i + 1], normals[3 * i + 2]);
+        if (joints != null && !Float.isNaN(joints[3 * i])) {
+          shape.attrib("joints", joints[3 * i], joints[3 * i + 1], joints[3 * i + 2]);
+          shape.attrib("weights", weights[3 * i], weights[3 * i + 1], weights[3 * i + 2]);
         }
-        if (v.uv != null)
-          shape.vertex(v.vector.x, v.vector.y, v.vector.z, v.uv.x, 1 - v.uv.y);
+        if (uvs != null && !Float.isNaN(uvs[2 * i]))
+          shape.vertex(positions[3 * i], positions[3 * i + 1], positions[3 * i + 2], uvs[2 * i], 1 - uvs[2 * i + 1]);
         else
-          shape.vertex(v.vector.x, v.vector.y, v.vector.z);
+          shape.vertex(positions[3 * i], positions[3 * i + 1], positions[3 * i + 2]);
       }
-      //child.endShape(PConstants.CLOSE);
-      //shape.addChild(child);
-    }
-    shape.endShape();
-    shape.setStroke(false);
-    if (tex != null) {
-      PImage texture = g.parent.loadImage(tex);
-      shape.setTextureMode(PConstants.NORMAL);
-      shape.setTexture(texture);
-    } else {
-      shape.setStroke(g.color(255));
-      shape.setFill(g.color(255));
-    }
-    return shape;
+      shape.endShape();
+      shape.setStroke(false);
+      if (tex != null) {
+        PImage texture = g.parent.loadImage(tex);
+        shape.setTextureMode(PConstants.NORMAL);
+        shape.setTexture(texture);
+      } else {
+        shape.setStroke(g.color(255));
+        shape.setFill(g.color(255));
+      }
+      return shape;
+    }
   }
 }
@@ -48,6 +48,10 @@ public class Model {
     this.jointCount = jointCount;
   }
 
+  public int jointCount() {
+    return jointCount;
+  }
+
   public Map<String, Node> skeleton() {
     return _skeleton;
   }
@@ -18,6 +18,8 @@ public class XmlNode {
   private String name;
   private Map<String, String> attributes;
   private String data;
+  private float[] floats;
+  private int[] ints;
   private Map<String, List<XmlNode>> childNodes;
   private List<XmlNode> childNodesList;
 
@@ -37,9 +39,66 @@ public class XmlNode {
    * node.
    */
   public String getData() {
+    if (data == null) {
+      if (floats != null) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < floats.length; i++)
+          builder.append(i == 0 ? "" : " ").append(floats[i]);
+        data = builder.toString();
+      } else if (ints != null) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < ints.length; i++)
+          builder.append(i == 0 ? "" : " ").append(ints[i]);
+        data = builder.toString();
+      }
+    }
     return data;
   }
 
+  /**
+   * Numeric elements (e.g., {@code float_array} or {@code matrix}) are parsed
+   * by the {@link XmlParser} directly into a float array. For any other node
+   * the data is parsed (and kept) on demand.
+   *
+   * @return The whitespace separated numbers contained between the start and
+   * end tag of the node. The returned array should not be modified.
+   */
+  public float[] getFloats() {
+    if (floats == null) {
+      String[] values = split();
+      floats = new float[values.length];
+      for (int i = 0; i < values.length; i++)
+        floats[i] = Float.parseFloat(values[i]);
+    }
+    return floats;
+  }
+
+  /**
+   * Integer elements (e.g., {@code p}, {@code v} or {@code vcount}) are parsed
+   * by the {@link XmlParser} directly into an int array. For any other node
+   * the data is parsed (and kept) on demand.
+   *
+   * @return The whitespace separated integers contained between the start
+   * and end tag of the node. The returned array should not be modified.
+   */
+  public int[] getInts() {
+    if (ints == null) {
+      String[] values = split();
+      ints = new int[values.length];
+      for (int i = 0; i < values.length; i++)
+        ints[i] = Integer.parseInt(values[i]);
+    }
+    return ints;
+  }
+
+  private String[] split() {
+    String data = getData();
+    if (data == null || data.trim().isEmpty()) {
+      return new String[0];
+    }
+    return data.trim().split("\\s+");
+  }
+
   /**
    * Gets the value of a certain attribute of the node. Returns {@code null}
    * if the attribute doesn't exist.
@@ -169,4 +228,18 @@ public class XmlNode {
     this.data = data;
   }
 
+  /**
+   * Sets the numeric data of this node, see {@link #getFloats()}.
+   */
+  protected void setFloats(float[] floats) {
+    this.floats = floats;
+  }
+
+  /**
+   * Sets the integer data of this node, see {@link #getInts()}.
+   */
+  protected void setInts(int[] ints) {
+    this.ints = ints;
+  }
+
 }
\ No newline at end of file
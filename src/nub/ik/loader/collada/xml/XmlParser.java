@@ -1,26 +1,55 @@
 package nub.ik.loader.collada.xml;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 
 /**
  * Acquired from https://github.com/TheThinMatrix/OpenGL-Animation
  * Reads an XML file and stores all the data in {@link XmlNode} objects,
  * allowing for easy access to the data contained in the XML file.
+ * <p>
+ * The file is read as a stream of characters, i.e., it does not depend on
+ * the line layout. The content of the (potentially huge) numeric Collada
+ * elements, such as {@code float_array} or {@code p}, is parsed directly into
+ * primitive arrays without creating intermediate strings (see
+ * {@link XmlNode#getFloats()} and {@link XmlNode#getInts()}). Elements with those names
+ * whose content turns out not to be numeric are kept as text.
  *
  * @author Karl
  */
 
 public class XmlParser {
-  private static final Pattern DATA = Pattern.compile(">(.+?)<");
-  private static final Pattern START_TAG = Pattern.compile("<(.+?)>");
-  private static final Pattern ATTR_NAME = Pattern.compile("(.+?)=");
-  private static final Pattern ATTR_VAL = Pattern.compile("\"(.*?)\"");
-  private static final Pattern CLOSED = Pattern.compile("(</|/>)");
+  private static final Set<String> FLOAT_ELEMENTS = new HashSet<String>(Arrays.asList(
+      "float_array", "matrix", "bind_shape_matrix", "translate", "rotate", "scale", "lookat", "skew"));
+  private static final Set<String> INT_ELEMENTS = new HashSet<String>(Arrays.asList(
+      "int_array", "p", "v", "vcount", "h"));
+  // powers of ten exactly representable as floats
+  private static final float[] POWERS = new float[11];
+
+  static {
+    POWERS[0] = 1;
+    for (int i = 1; i < POWERS.length; i++)
+      POWERS[i] = POWERS[i - 1] * 10;
+  }
+
+  private final Reader reader;
+  private final char[] buffer = new char[1 << 16];
+  private int position, limit;
+  private final char[] token = new char[64];
+  private boolean truncated;
+  private int child = -1;
+  private final StringBuilder text = new StringBuilder();
+
+  private XmlParser(Reader reader) {
+    this.reader = reader;
+  }
 
   /**
    * Reads an XML file and stores all the data in {@link XmlNode} objects,
@@ -30,17 +59,8 @@ public class XmlParser {
    * @return The root node of the XML structure.
    */
   public static XmlNode loadXmlFile(String path) {
-    BufferedReader reader = null;
-    try {
-      reader = new BufferedReader(new FileReader(path));
-    } catch (FileNotFoundException e) {
-      e.printStackTrace();
-    }
-    try {
-      String s = reader.readLine();
-      XmlNode node = loadNode(reader);
-      reader.close();
-      return node;
+    try (Reader reader = new InputStreamReader(new FileInputStream(path), StandardCharsets.UTF_8)) {
+      return load(reader);
     } catch (Exception e) {
       e.printStackTrace();
       System.err.println("Error with XML file format for: " + path);
@@ -49,52 +69,420 @@ public class XmlParser {
     }
   }
 
-  private static XmlNode loadNode(BufferedReader reader) throws Exception {
-    String line = reader.readLine().trim();
-    if (line.startsWith("</")) {
-      return null;
+  /**
+   * Reads the XML document provided by {@code reader} and returns its root node.
+   * The reader is not closed.
+   */
+  public static XmlNode load(Reader reader) throws IOException {
+    return new XmlParser(reader).loadDocument();
+  }
+
+  private XmlNode loadDocument() throws IOException {
+    int c;
+    while ((c = read()) != -1) {
+      if (c != '<') continue;
+      c = read();
+      if (c == '?' || c == '!') {
+        skipMarkup(c);
+      } else {
+        return loadNode(c);
+      }
     }
-    String[] startTagParts = getStartTag(line).split("[ ]+(?=([^\"]*\"[^\"]*\")*[^\"]*$)");
-    XmlNode node = new XmlNode(startTagParts[0].replace("/", ""));
-    addAttributes(startTagParts, node);
-    addData(line, node);
-    if (CLOSED.matcher(line).find()) {
+    throw new IOException("No root element found");
+  }
+
+  // Parses an element whose '<' and first name character have already been read
+  private XmlNode loadNode(int first) throws IOException {
+    String name = readName(first);
+    XmlNode node = new XmlNode(name);
+    if (readAttributes(node)) {
       return node;
     }
-    XmlNode child = null;
-    while ((child = loadNode(reader)) != null) {
-      node.addChild(child);
+    boolean floats = FLOAT_ELEMENTS.contains(name), ints = INT_ELEMENTS.contains(name);
+    if (floats || ints) {
+      String count = node.getAttribute("count");
+      int capacity = 16;
+      if (count != null) {
+        try {
+          capacity = Math.max(Integer.parseInt(count.trim()), 1);
+        } catch (NumberFormatException e) {
+          capacity = 16;
+        }
+      }
+      if (floats) {
+        float[] values = readFloats(capacity);
+        if (values != null) {
+          node.setFloats(values);
+          return node;
+        }
+      } else {
+        int[] values = readInts(capacity);
+        if (values != null) {
+          node.setInts(values);
+          return node;
+        }
+      }
+      // not numeric after all (e.g., a generic "scale" element): text holds what was read so far
+      if (child != -1) {
+        String before = text.toString();
+        int start = child;
+        child = -1;
+        node.addChild(loadNode(start));
+        text.setLength(0);
+        text.append(before);
+      }
+    } else {
+      text.setLength(0);
     }
+    readContent(node);
     return node;
   }
 
-  private static void addData(String line, XmlNode node) {
-    Matcher matcher = DATA.matcher(line);
-    if (matcher.find()) {
-      node.setData(matcher.group(1));
+  // Reads the text and children of node up to its end tag, appending the text to the one
+  // already kept in the text buffer
+  private void readContent(XmlNode node) throws IOException {
+    int c;
+    while ((c = read()) != -1) {
+      if (c == '&') {
+        text.append(readEntity());
+      } else if (c != '<') {
+        text.append((char) c);
+      } else {
+        c = read();
+        if (c == '/') {
+          skipEndTag();
+          break;
+        } else if (c == '!') {
+          if (peek() == '[') {
+            readCData(text);
+          } else {
+            skipMarkup(c);
+          }
+        } else if (c == '?') {
+          skipMarkup(c);
+        } else {
+          // the text buffer is shared, keep what was read so far
+          String before = text.toString();
+          node.addChild(loadNode(c));
+          text.setLength(0);
+          text.append(before);
+        }
+      }
+    }
+    String data = text.toString().trim();
+    if (!data.isEmpty()) {
+      node.setData(data);
+    }
+  }
+
+  // Returns null if the content isn't numeric, see keepText
+  private float[] readFloats(int capacity) throws IOException {
+    float[] values = new float[capacity];
+    int size = 0;
+    int length;
+    while ((length = readToken()) != -1) {
+      if (length == 0) continue;
+      if (length == -2) {
+        keepText(values, size, length);
+        return null;
+      }
+      if (size == values.length) values = Arrays.copyOf(values, 2 * size);
+      float value;
+      try {
+        value = parseFloat(length);
+      } catch (NumberFormatException e) {
+        keepText(values, size, length);
+        return null;
+      }
+      values[size++] = value;
+    }
+    return size == values.length ? values : Arrays.copyOf(values, size);
+  }
+
+  // Returns null if the content isn't made of integers, see keepText
+  private int[] readInts(int capacity) throws IOException {
+    int[] values = new int[capacity];
+    int size = 0;
+    int length;
+    while ((length = readToken()) != -1) {
+      if (length == 0) continue;
+      if (length == -2) {
+        keepText(values, size, length);
+        return null;
+      }
+      if (size == values.length) values = Arrays.copyOf(values, 2 * size);
+      int value;
+      try {
+        value = parseInt(length);
+      } catch (NumberFormatException e) {
+        keepText(values, size, length);
+        return null;
+      }
+      values[size++] = value;
+    }
+    return size == values.length ? values : Arrays.copyOf(values, size);
+  }
+
+  // Keeps the values parsed so far and the token that couldn't be parsed (if any) in the text
+  // buffer, so that the content of the element is read on as text
+  private void keepText(float[] values, int size, int length) {
+    text.setLength(0);
+    for (int i = 0; i < size; i++)
+      text.append(values[i]).append(' ');
+    keepToken(length);
+  }
+
+  private void keepText(int[] values, int size, int length) {
+    text.setLength(0);
+    for (int i = 0; i < size; i++)
+      text.append(values[i]).append(' ');
+    keepToken(length);
+  }
+
+  private void keepToken(int length) {
+    if (length < 0) {
+      return;
+    }
+    text.append(token, 0, length);
+    if (!truncated) {
+      text.append(' ');
+    }
+  }
+
+  // Reads the next whitespace separated token of a numeric element into the token buffer and
+  // returns its length, or -1 once the end tag has been consumed, or -2 if a child element
+  // starts (its first name character is kept in child). Tokens longer than the buffer are
+  // truncated, leaving the rest of their characters unread
+  private int readToken() throws IOException {
+    truncated = false;
+    int c = read();
+    while (c == ' ' || c == '\n' || c == '\r' || c == '\t')
+      c = read();
+    if (c == -1) {
+      throw new IOException("Unexpected end of file");
+    }
+    if (c == '<') {
+      c = read();
+      if (c == '/') {
+        skipEndTag();
+        return -1;
+      }
+      if (c != '!' && c != '?') {
+        // a child element, the content is not numeric after all
+        child = c;
+        return -2;
+      }
+      skipMarkup(c);
+      return 0;
+    }
+    int length = 0;
+    while (c != -1 && c != ' ' && c != '\n' && c != '\r' && c != '\t' && c != '<') {
+      if (length == token.length) {
+        truncated = true;
+        break;
+      }
+      token[length++] = (char) c;
+      c = read();
+    }
+    if (c == '<' || truncated) {
+      position--;
+    }
+    return length;
+  }
+
+  // Parses the token buffer. Values whose digits and power of ten are both exact floats need a
+  // single (correctly rounded) float operation, the others (e.g., more than 7 significant digits,
+  // large exponents, NaN) fall back to Float.parseFloat
+  private float parseFloat(int length) {
+    if (truncated) {
+      throw new NumberFormatException("Numeric value too long");
+    }
+    int i = 0;
+    boolean negative = false;
+    if (token[0] == '-' || token[0] == '+') {
+      negative = token[0] == '-';
+      i++;
+    }
+    long mantissa = 0;
+    int digits = 0, exponent = 0;
+    boolean valid = i < length;
+    for (; i < length && token[i] >= '0' && token[i] <= '9'; i++) {
+      mantissa = 10 * mantissa + (token[i] - '0');
+      if (mantissa != 0) digits++;
+    }
+    if (i < length && token[i] == '.') {
+      for (i++; i < length && token[i] >= '0' && token[i] <= '9'; i++) {
+        mantissa = 10 * mantissa + (token[i] - '0');
+        if (mantissa != 0) digits++;
+        exponent--;
+      }
+    }
+    if (i < length && (token[i] == 'e' || token[i] == 'E')) {
+      i++;
+      boolean negativeExponent = false;
+      if (i < length && (token[i] == '-' || token[i] == '+')) {
+        negativeExponent = token[i] == '-';
+        i++;
+      }
+      int value = 0;
+      valid &= i < length;
+      for (; i < length && token[i] >= '0' && token[i] <= '9'; i++)
+        value = Math.min(10 * value + (token[i] - '0'), 1000);
+      exponent += negativeExponent ? -value : value;
     }
+    if (!valid || i != length || digits > 8 || mantissa >= 1 << 24 || exponent < -10 || exponent > 10) {
+      return Float.parseFloat(new String(token, 0, length));
+    }
+    float value = exponent < 0 ? (float) mantissa / POWERS[-exponent] : (float) mantissa * POWERS[exponent];
+    return negative ? -value : value;
   }
 
-  private static void addAttributes(String[] titleParts, XmlNode node) {
-    for (int i = 1; i < titleParts.length; i++) {
-      if (titleParts[i].contains("=")) {
-        addAttribute(titleParts[i], node);
+  private int parseInt(int length) {
+    if (truncated) {
+      throw new NumberFormatException("Numeric value too long");
+    }
+    int i = 0;
+    boolean negative = false;
+    if (token[0] == '-' || token[0] == '+') {
+      negative = token[0] == '-';
+      i++;
+    }
+    if (i == length || length - i > 9) {
+      return Integer.parseInt(new String(token, 0, length));
+    }
+    int value = 0;
+    for (; i < length; i++) {
+      char c = token[i];
+      if (c < '0' || c > '9') {
+        return Integer.parseInt(new String(token, 0, length));
       }
+      value = 10 * value + (c - '0');
     }
+    return negative ? -value : value;
   }
 
-  private static void addAttribute(String attributeLine, XmlNode node) {
-    Matcher nameMatch = ATTR_NAME.matcher(attributeLine);
-    nameMatch.find();
-    Matcher valMatch = ATTR_VAL.matcher(attributeLine);
-    valMatch.find();
-    node.addAttribute(nameMatch.group(1), valMatch.group(1));
+  private String readName(int first) throws IOException {
+    text.setLength(0);
+    int c = first;
+    while (c != -1 && c != ' ' && c != '\n' && c != '\r' && c != '\t' && c != '>' && c != '/') {
+      text.append((char) c);
+      c = read();
+    }
+    if (c != -1) {
+      position--;
+    }
+    return text.toString();
   }
 
-  private static String getStartTag(String line) {
-    Matcher match = START_TAG.matcher(line);
-    match.find();
-    return match.group(1);
+  // Reads the attributes of a start tag, returns true if the element is empty (i.e., "/>")
+  private boolean readAttributes(XmlNode node) throws IOException {
+    int c;
+    while ((c = read()) != -1) {
+      if (c == '>') {
+        return false;
+      }
+      if (c == '/') {
+        if (read() != '>') throw new IOException("Malformed empty element: " + node.getName());
+        return true;
+      }
+      if (c == ' ' || c == '\n' || c == '\r' || c == '\t') continue;
+      text.setLength(0);
+      while (c != -1 && c != '=' && c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+        text.append((char) c);
+        c = read();
+      }
+      String attribute = text.toString();
+      while (c != -1 && c != '=')
+        c = read();
+      c = read();
+      while (c == ' ' || c == '\n' || c == '\r' || c == '\t')
+        c = read();
+      if (c != '"' && c != '\'') throw new IOException("Malformed attribute " + attribute + " of " + node.getName());
+      int quote = c;
+      text.setLength(0);
+      while ((c = read()) != -1 && c != quote) {
+        if (c == '&') {
+          text.append(readEntity());
+        } else {
+          text.append((char) c);
+        }
+      }
+      node.addAttribute(attribute, text.toString());
+    }
+    throw new IOException("Unexpected end of file");
   }
 
-}
\ No newline at end of file
+  private char readEntity() throws IOException {
+    StringBuilder entity = new StringBuilder();
+    int c;
+    while ((c = read()) != -1 && c != ';' && entity.length() < 10)
+      entity.append((char) c);
+    String name = entity.toString();
+    if (name.equals("lt")) return '<';
+    if (name.equals("gt")) return '>';
+    if (name.equals("amp")) return '&';
+    if (name.equals("quot")) return '"';
+    if (name.equals("apos")) return '\'';
+    if (name.startsWith("#x")) return (char) Integer.parseInt(name.substring(2), 16);
+    if (name.startsWith("#")) return (char) Integer.parseInt(name.substring(1));
+    throw new IOException("Unknown entity: &" + name + ";");
+  }
+
+  private void readCData(StringBuilder target) throws IOException {
+    // "<!" was already read
+    for (int i = 0; i < 7; i++)
+      read(); // [CDATA[
+    int c;
+    int brackets = 0;
+    while ((c = read()) != -1) {
+      if (c == '>' && brackets >= 2) {
+        target.setLength(target.length() - 2);
+        return;
+      }
+      brackets = c == ']' ? brackets + 1 : 0;
+      target.append((char) c);
+    }
+  }
+
+  // Skips a comment, a processing instruction or a declaration whose "<" and next char were already read
+  private void skipMarkup(int c) throws IOException {
+    if (c == '!' && peek() == '-') {
+      read();
+      read(); // --
+      int dashes = 0;
+      while ((c = read()) != -1) {
+        if (c == '>' && dashes >= 2) return;
+        dashes = c == '-' ? dashes + 1 : 0;
+      }
+      return;
+    }
+    int depth = 1;
+    while (depth > 0 && (c = read()) != -1) {
+      if (c == '<') depth++;
+      else if (c == '>') depth--;
+    }
+  }
+
+  private void skipEndTag() throws IOException {
+    int c;
+    while ((c = read()) != -1 && c != '>') ;
+  }
+
+  private int peek() throws IOException {
+    if (position == limit && !fill()) return -1;
+    return buffer[position];
+  }
+
+  private int read() throws IOException {
+    if (position == limit && !fill()) return -1;
+    return buffer[position++];
+  }
+
+  private boolean fill() throws IOException {
+    int read = reader.read(buffer, 0, buffer.length);
+    if (read <= 0) return false;
+    position = 0;
+    limit = read;
+    return true;
+  }
+}
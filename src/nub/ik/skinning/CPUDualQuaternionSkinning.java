@@ -0,0 +1,150 @@
+package nub.ik.skinning;
+
+import nub.core.Node;
+import nub.ik.animation.Skeleton;
+import nub.primitives.Quaternion;
+import nub.primitives.Vector;
+import processing.core.PGraphics;
+
+import java.util.List;
+
+/**
+ * Dual quaternion skinning on the CPU.
+ * <p>
+ * Same as {@link CPULinearBlendSkinning} but the joint transformations are blended as dual
+ * quaternions instead of matrices, which preserves the volume of the mesh around twisted and
+ * bent joints (i.e., no candy-wrapper artifacts), so helper joints are no longer required.
+ * <p>
+ * Each joint rigid transformation is computed once per frame with the {@link Quaternion}
+ * primitives and stored as 8 floats (real and dual parts). Each vertex then blends the dual
+ * quaternions of its joints, normalizes the result and applies it, which costs about the same
+ * as blending matrices.
+ * <p>
+ * Look at https://www.cs.utah.edu/~ladislav/kavan07skinning/kavan07skinning.pdf
+ */
+public class CPUDualQuaternionSkinning extends CPULinearBlendSkinning {
+  protected float[] _dualQuaternions; //real (x, y, z, w) and dual (x, y, z, w) parts per joint
+  //auxiliary variables
+  protected Vector _translation;
+
+  public CPUDualQuaternionSkinning(List<Node> skeleton, PGraphics pg, String shape, String texture, float factor) {
+    super(skeleton, pg, shape, texture, factor);
+  }
+
+  public CPUDualQuaternionSkinning(Skeleton skeleton, String shape, String texture, float factor) {
+    super(skeleton, shape, texture, factor);
+  }
+
+  public CPUDualQuaternionSkinning(Skeleton skeleton, String shape, String texture, float factor, boolean quad) {
+    super(skeleton, shape, texture, factor, quad);
+  }
+
+  public CPUDualQuaternionSkinning(List<Node> skeleton, PGraphics pg, String shape, String texture, float factor, boolean quad) {
+    super(skeleton, pg, shape, texture, factor, quad);
+  }
+
+  /**
+   * Computes the rigid transformation of each joint with respect to its initial state,
+   * i.e. {@code v' = q (v - p0) + p}, as a unit dual quaternion.
+   */
+  @Override
+  protected void _updateJointTransformations() {
+    if (_dualQuaternions == null) {
+      _dualQuaternions = new float[8 * _skeleton.size()];
+      _translation = new Vector();
+    }
+    for (int i = 0; i < _skeleton.size(); i++) {
+      Node joint = _skeleton.get(i);
+      Vector p = joint.position(_position);
+      Quaternion q = _currentOrientations[i];
+      Quaternion.compose(joint.orientation(_orientation), _inverseInitialOrientations[i], q);
+      Vector.subtract(p, _initialPositions[i], _currentPositions[i]);
+      //translation t = p - q * p0
+      Vector t = q.rotate(_initialPositions[i], _translation);
+      t.set(p.x() - t.x(), p.y() - t.y(), p.z() - t.z());
+      //dual part = 0.5 * t * q
+      float x = q.x(), y = q.y(), z = q.z(), w = q.w();
+      float tx = t.x(), ty = t.y(), tz = t.z();
+      int d = 8 * i;
+      _dualQuaternions[d] = x;
+      _dualQuaternions[d + 1] = y;
+      _dualQuaternions[d + 2] = z;
+      _dualQuaternions[d + 3] = w;
+      _dualQuaternions[d + 4] = 0.5f * (w * tx + ty * z - tz * y);
+      _dualQuaternions[d + 5] = 0.5f * (w * ty + tz * x - tx * z);
+      _dualQuaternions[d + 6] = 0.5f * (w * tz + tx * y - ty * x);
+      _dualQuaternions[d + 7] = -0.5f * (tx * x + ty * y + tz * z);
+    }
+  }
+
+  @Override
+  protected void _skin(int from, int to) {
+    float[] Q = _dualQuaternions;
+    for (int v = from; v < to; v++) {
+      //blend the dual quaternions
+      float rx = 0, ry = 0, rz = 0, rw = 0, dx = 0, dy = 0, dz = 0, dw = 0;
+      int pivot = -1;
+      for (int i = v * _influences, last = i + _influences; i < last; i++) {
+        float weight = _weights[i];
+        int joint = _jointIds[i];
+        if (weight == 0 || joint < 0) continue;
+        int d = 8 * joint;
+        //keep all the real parts in the same hemisphere as the first one
+        if (pivot < 0) pivot = d;
+        else if (Q[pivot] * Q[d] + Q[pivot + 1] * Q[d + 1] + Q[pivot + 2] * Q[d + 2] + Q[pivot + 3] * Q[d + 3] < 0)
+          weight = -weight;
+        rx += weight * Q[d];
+        ry += weight * Q[d + 1];
+        rz += weight * Q[d + 2];
+        rw += weight * Q[d + 3];
+        dx += weight * Q[d + 4];
+        dy += weight * Q[d + 5];
+        dz += weight * Q[d + 6];
+        dw += weight * Q[d + 7];
+      }
+      int k = 3 * v;
+      float norm = (float) Math.sqrt(rx * rx + ry * ry + rz * rz + rw * rw);
+      if (norm == 0) {
+        _positions[k] = _restPositions[k];
+        _positions[k + 1] = _restPositions[k + 1];
+        _positions[k + 2] = _restPositions[k + 2];
+        if (_skinNormals) {
+          _normals[k] = _restNormals[k];
+          _normals[k + 1] = _restNormals[k + 1];
+          _normals[k + 2] = _restNormals[k + 2];
+        }
+        continue;
+      }
+      float inv = 1 / norm;
+      rx *= inv;
+      ry *= inv;
+      rz *= inv;
+      rw *= inv;
+      dx *= inv;
+      dy *= inv;
+      dz *= inv;
+      dw *= inv;
+      //translation = 2 * (rw * d - dw * r + r x d)
+      float tx = 2 * (rw * dx - dw * rx + ry * dz - rz * dy);
+      float ty = 2 * (rw * dy - dw * ry + rz * dx - rx * dz);
+      float tz = 2 * (rw * dz - dw * rz + rx * dy - ry * dx);
+      //rotation: v + 2 * r x (r x v + rw * v)
+      float x = _restPositions[k], y = _restPositions[k + 1], z = _restPositions[k + 2];
+      float cx = ry * z - rz * y + rw * x, cy = rz * x - rx * z + rw * y, cz = rx * y - ry * x + rw * z;
+      _positions[k] = x + 2 * (ry * cz - rz * cy) + tx;
+      _positions[k + 1] = y + 2 * (rz * cx - rx * cz) + ty;
+      _positions[k + 2] = z + 2 * (rx * cy - ry * cx) + tz;
+      if (_skinNormals) {
+        x = _restNormals[k];
+        y = _restNormals[k + 1];
+        z = _restNormals[k + 2];
+        cx = ry * z - rz * y + rw * x;
+        cy = rz * x - rx * z + rw * y;
+        cz = rx * y - ry * x + rw * z;
+        _normals[k] = x + 2 * (ry * cz - rz * cy);
+        _normals[k + 1] = y + 2 * (rz * cx - rx * cz);
+        _normals[k + 2] = z + 2 * (rx * cy - ry * cx);
+      }
+    }
+  }
+}
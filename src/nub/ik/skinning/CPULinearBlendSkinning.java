@@ -15,62 +15,40 @@ import java.util.Map;
 
 /**
  * Created by sebchaparr on 11/03/18.
+ * <p>
+ * Vertices, normals, joint indices and weights are kept in flat primitive arrays. On each
+ * {@link #updateParams()} a 3x4 skinning matrix per joint is computed once (see
+ * {@link #_updateJointTransformations()}) and then the vertices are skinned into a reusable
+ * output buffer (see {@link #_skin(int, int)}) that is finally uploaded to the shape (see
+ * {@link #_upload()}). No object is allocated per vertex.
  */
 public class CPULinearBlendSkinning implements Skinning {
   //Skeleton & Geometry information
   protected List<PShape> _shapes;
   protected List<Node> _skeleton;
-  //Shader information
-  protected Quaternion[] _initialOrientations;
+  //Joint information
+  protected Quaternion[] _initialOrientations, _inverseInitialOrientations;
   protected Vector[] _initialPositions;
   protected Quaternion[] _currentOrientations;
   protected Vector[] _currentPositions;
+  protected float[] _matrices; //3x4 row-major skinning matrix per joint
   protected Map<Node, Integer> _ids;
-  protected List<Vertex> _vertices;
+  //Vertex information
+  protected int _influences = 3; //joints per vertex
+  protected int _vertexCount;
+  protected float[] _restPositions, _restNormals; //x, y, z per vertex
+  protected int[] _jointIds; //_influences per vertex
+  protected float[] _weights; //_influences per vertex
+  protected PShape[] _vertexShapes;
+  protected int[] _vertexIds;
+  //Output buffers
+  protected float[] _positions, _normals;
+  protected boolean _skinNormals;
   protected PGraphics _pg;
   protected Node _reference;
-
-  protected class Vertex {
-    protected int[] _joints;
-    protected float[] _weights;
-    protected int _vertexId;
-    protected PVector _initial;
-    protected PShape _shape;
-
-    protected Vertex(PShape shape, int vertexId, int[] joints, float[] weights) {
-      _shape = shape;
-      _vertexId = vertexId;
-      _joints = joints;
-      _weights = weights;
-      _initial = shape.getVertex(_vertexId).copy();
-    }
-
-    protected void _applyTransformation() {
-      Vector curPos = new Vector(_initial.x, _initial.y, _initial.z);
-
-      Vector normal = new Vector(_shape.getNormalX(_vertexId),
-          _shape.getNormalY(_vertexId), _shape.getNormalZ(_vertexId));
-
-      Vector v = new Vector();
-      Vector n = new Vector();
-      for (int i = 0; i < _joints.length; i++) {
-        int idx = _joints[i];
-        if (_weights[i] == 0) continue;
-        Quaternion quat = _currentOrientations[idx];
-        Vector pos = _initialPositions[idx];
-        Vector off = _currentPositions[idx];
-        Vector u = Vector.subtract(curPos, pos);
-        u = quat.rotate(u);
-        u.add(pos);
-        u.add(off);
-        u.multiply(_weights[i]);
-        v.add(u);
-        n.add(Vector.multiply(quat.rotate(normal), _weights[i]));
-      }
-
-      _shape.setVertex(_vertexId, v.x(), v.y(), v.z());
-    }
-  }
+  //auxiliary variables
+  protected Quaternion _orientation = new Quaternion();
+  protected Vector _position = new Vector();
 
   public CPULinearBlendSkinning(List<Node> skeleton, PGraphics pg, String shape, String texture, float factor) {
     this(skeleton, pg, shape, texture, factor, false);
@@ -99,12 +77,17 @@ public class CPULinearBlendSkinning implements Skinning {
             }*/
     }
     _initialOrientations = new Quaternion[joints];
+    _inverseInitialOrientations = new Quaternion[joints];
     _initialPositions = new Vector[joints];
     _currentOrientations = new Quaternion[joints];
     _currentPositions = new Vector[joints];
+    for (int i = 0; i < joints; i++) {
+      _currentOrientations[i] = new Quaternion();
+      _currentPositions[i] = new Vector();
+    }
+    _matrices = new float[12 * joints];
 
-
-    _vertices = new ArrayList<Vertex>();
+    _allocate(1024);
     _shapes.add(createShape(pg, pg.loadShape(shape), texture, factor, quad));
     _pg = pg;
     initParams();
@@ -131,29 +114,178 @@ public class CPULinearBlendSkinning implements Skinning {
     _reference = reference;
   }
 
+  /**
+   * Whether or not to skin the vertex normals as well. Default is {@code false}, i.e., shape
+   * normals are kept untouched.
+   */
+  public void enableNormals(boolean enable) {
+    _skinNormals = enable;
+  }
+
+  public int vertexCount() {
+    return _vertexCount;
+  }
+
+  /**
+   * Returns the skinned vertex positions buffer (x, y, z per vertex) computed by the last
+   * call to {@link #updateParams()}.
+   */
+  public float[] positions() {
+    return _positions;
+  }
+
+  /**
+   * Returns the skinned vertex normals buffer (x, y, z per vertex) computed by the last call
+   * to {@link #updateParams()}. Only meaningful if normals are enabled.
+   *
+   * @see #enableNormals(boolean)
+   */
+  public float[] normals() {
+    return _normals;
+  }
+
   @Override
   public void initParams() {
     for (int i = 0; i < _skeleton.size(); i++) {
       Vector v = _skeleton.get(i).position();
       Quaternion q = _skeleton.get(i).orientation();
       _initialOrientations[i] = q;
+      _inverseInitialOrientations[i] = q.inverse();
       _initialPositions[i] = v.get();
     }
   }
 
   @Override
   public void updateParams() {
-    //TODO: IT COULD BE DONE WITH LESS OPERATIONS
+    _updateJointTransformations();
+    _skin(0, _vertexCount);
+    _upload();
+  }
+
+  /**
+   * Computes the displacement and the rotation of each joint with respect to its initial
+   * state and the resulting 3x4 skinning matrix, i.e. {@code v' = R (v - p0) + p}.
+   */
+  protected void _updateJointTransformations() {
     for (int i = 0; i < _skeleton.size(); i++) {
-      Vector v = Vector.subtract(_skeleton.get(i).position(), _initialPositions[i]);
-      Quaternion q = Quaternion.compose(_skeleton.get(i).orientation(), _initialOrientations[i].inverse());
-      _currentPositions[i] = v;
-      _currentOrientations[i] = q;
+      Node joint = _skeleton.get(i);
+      Vector p = joint.position(_position);
+      Vector p0 = _initialPositions[i];
+      Quaternion q = _currentOrientations[i];
+      Quaternion.compose(joint.orientation(_orientation), _inverseInitialOrientations[i], q);
+      Vector.subtract(p, p0, _currentPositions[i]);
+      //rotation matrix
+      float x = q.x(), y = q.y(), z = q.z(), w = q.w();
+      float r00 = 1 - 2 * (y * y + z * z), r01 = 2 * (x * y - z * w), r02 = 2 * (x * z + y * w);
+      float r10 = 2 * (x * y + z * w), r11 = 1 - 2 * (x * x + z * z), r12 = 2 * (y * z - x * w);
+      float r20 = 2 * (x * z - y * w), r21 = 2 * (y * z + x * w), r22 = 1 - 2 * (x * x + y * y);
+      int m = 12 * i;
+      _matrices[m] = r00;
+      _matrices[m + 1] = r01;
+      _matrices[m + 2] = r02;
+      _matrices[m + 3] = p.x() - (r00 * p0.x() + r01 * p0.y() + r02 * p0.z());
+      _matrices[m + 4] = r10;
+      _matrices[m + 5] = r11;
+      _matrices[m + 6] = r12;
+      _matrices[m + 7] = p.y() - (r10 * p0.x() + r11 * p0.y() + r12 * p0.z());
+      _matrices[m + 8] = r20;
+      _matrices[m + 9] = r21;
+      _matrices[m + 10] = r22;
+      _matrices[m + 11] = p.z() - (r20 * p0.x() + r21 * p0.y() + r22 * p0.z());
     }
-    for (Vertex vertex : _vertices) {
-      vertex._applyTransformation();
+  }
+
+  /**
+   * Skins the vertices in [from, to) into the output buffers. Each vertex is only written by
+   * the call that contains it, so disjoint ranges may be skinned concurrently.
+   */
+  protected void _skin(int from, int to) {
+    float[] M = _matrices;
+    for (int v = from; v < to; v++) {
+      int k = 3 * v;
+      float x = _restPositions[k], y = _restPositions[k + 1], z = _restPositions[k + 2];
+      float nx = _restNormals[k], ny = _restNormals[k + 1], nz = _restNormals[k + 2];
+      float px = 0, py = 0, pz = 0, qx = 0, qy = 0, qz = 0;
+      for (int i = v * _influences, last = i + _influences; i < last; i++) {
+        float weight = _weights[i];
+        int joint = _jointIds[i];
+        if (weight == 0 || joint < 0) continue;
+        int m = 12 * joint;
+        px += weight * (M[m] * x + M[m + 1] * y + M[m + 2] * z + M[m + 3]);
+        py += weight * (M[m + 4] * x + M[m + 5] * y + M[m + 6] * z + M[m + 7]);
+        pz += weight * (M[m + 8] * x + M[m + 9] * y + M[m + 10] * z + M[m + 11]);
+        if (_skinNormals) {
+          qx += weight * (M[m] * nx + M[m + 1] * ny + M[m + 2] * nz);
+          qy += weight * (M[m + 4] * nx + M[m + 5] * ny + M[m + 6] * nz);
+          qz += weight * (M[m + 8] * nx + M[m + 9] * ny + M[m + 10] * nz);
+        }
+      }
+      _positions[k] = px;
+      _positions[k + 1] = py;
+      _positions[k + 2] = pz;
+      if (_skinNormals) {
+        _normals[k] = qx;
+        _normals[k + 1] = qy;
+        _normals[k + 2] = qz;
+      }
     }
+  }
 
+  /**
+   * Writes the output buffers back to the shapes.
+   */
+  protected void _upload() {
+    for (int v = 0; v < _vertexCount; v++) {
+      int k = 3 * v;
+      PShape shape = _vertexShapes[v];
+      shape.setVertex(_vertexIds[v], _positions[k], _positions[k + 1], _positions[k + 2]);
+      if (_skinNormals) shape.setNormal(_vertexIds[v], _normals[k], _normals[k + 1], _normals[k + 2]);
+    }
+  }
+
+  protected void _allocate(int capacity) {
+    _restPositions = _resize(_restPositions, 3 * capacity);
+    _restNormals = _resize(_restNormals, 3 * capacity);
+    _positions = _resize(_positions, 3 * capacity);
+    _normals = _resize(_normals, 3 * capacity);
+    _weights = _resize(_weights, _influences * capacity);
+    int[] jointIds = new int[_influences * capacity];
+    int[] vertexIds = new int[capacity];
+    PShape[] vertexShapes = new PShape[capacity];
+    if (_jointIds != null) {
+      System.arraycopy(_jointIds, 0, jointIds, 0, _influences * _vertexCount);
+      System.arraycopy(_vertexIds, 0, vertexIds, 0, _vertexCount);
+      System.arraycopy(_vertexShapes, 0, vertexShapes, 0, _vertexCount);
+    }
+    _jointIds = jointIds;
+    _vertexIds = vertexIds;
+    _vertexShapes = vertexShapes;
+  }
+
+  protected float[] _resize(float[] array, int length) {
+    float[] result = new float[length];
+    if (array != null) System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+    return result;
+  }
+
+  /**
+   * Appends a vertex (see {@link #addWeights(List, PVector)} for the {@code params} layout).
+   */
+  protected void _addVertex(PShape shape, int vertexId, PVector position, PVector normal, float[] params) {
+    if (_vertexCount == _vertexIds.length) _allocate(2 * _vertexIds.length);
+    int v = _vertexCount++;
+    _vertexShapes[v] = shape;
+    _vertexIds[v] = vertexId;
+    _restPositions[3 * v] = position.x;
+    _restPositions[3 * v + 1] = position.y;
+    _restPositions[3 * v + 2] = position.z;
+    _restNormals[3 * v] = normal.x;
+    _restNormals[3 * v + 1] = normal.y;
+    _restNormals[3 * v + 2] = normal.z;
+    for (int i = 0; i < _influences; i++) {
+      _jointIds[_influences * v + i] = (int) params[i];
+      _weights[_influences * v + i] = params[_influences + i];
+    }
   }
 
   public float[] addWeights(List<Node> branch, PVector vector) {
@@ -263,8 +395,7 @@ public class CPULinearBlendSkinning implements Skinning {
         float[] params = addWeights(_skeleton, p);
         s.vertex(p.x, p.y, p.z, u, v);
         //create vertex
-        _vertices.add(new Vertex(s, j, new int[]{(int) params[0],
-            (int) params[1], (int) params[2]}, new float[]{params[3], params[4], params[5]}));
+        _addVertex(s, j, p, n, params);
       }
     } else {
       int vc = 0;
@@ -279,8 +410,7 @@ public class CPULinearBlendSkinning implements Skinning {
           float[] params = addWeights(_skeleton, p);
           s.vertex(p.x, p.y, p.z, u, v);
           //create vertex
-          _vertices.add(new Vertex(s, vc, new int[]{(int) params[0],
-              (int) params[1], (int) params[2]}, new float[]{params[3], params[4], params[5]}));
+          _addVertex(s, vc, p, n, params);
           vc++;
         }
       }
@@ -0,0 +1,89 @@
+package nub.ik.skinning;
+
+import nub.core.Node;
+import nub.ik.animation.Skeleton;
+import processing.core.PGraphics;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Multithreaded version of {@link CPULinearBlendSkinning}.
+ * <p>
+ * The vertex set is split into contiguous chunks of {@link #chunkSize()} vertices which are
+ * skinned on a {@link ForkJoinPool}. Each vertex is written by a single task and the joint
+ * matrices are computed beforehand on the calling thread, so the output buffers are the same
+ * as in the single threaded version regardless of the scheduling. The results are uploaded to
+ * the shapes on the calling thread.
+ */
+public class ParallelLinearBlendSkinning extends CPULinearBlendSkinning {
+  protected ForkJoinPool _pool = ForkJoinPool.commonPool();
+  protected int _chunkSize = 4096;
+
+  public ParallelLinearBlendSkinning(List<Node> skeleton, PGraphics pg, String shape, String texture, float factor) {
+    super(skeleton, pg, shape, texture, factor);
+  }
+
+  public ParallelLinearBlendSkinning(Skeleton skeleton, String shape, String texture, float factor) {
+    super(skeleton, shape, texture, factor);
+  }
+
+  public ParallelLinearBlendSkinning(Skeleton skeleton, String shape, String texture, float factor, boolean quad) {
+    super(skeleton, shape, texture, factor, quad);
+  }
+
+  public ParallelLinearBlendSkinning(List<Node> skeleton, PGraphics pg, String shape, String texture, float factor, boolean quad) {
+    super(skeleton, pg, shape, texture, factor, quad);
+  }
+
+  public ForkJoinPool pool() {
+    return _pool;
+  }
+
+  public void setPool(ForkJoinPool pool) {
+    _pool = pool;
+  }
+
+  public int chunkSize() {
+    return _chunkSize;
+  }
+
+  /**
+   * Sets the maximum number of (contiguous) vertices skinned by a single task.
+   */
+  public void setChunkSize(int chunkSize) {
+    _chunkSize = Math.max(1, chunkSize);
+  }
+
+  protected class Chunk extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    protected int _from, _to;
+
+    protected Chunk(int from, int to) {
+      _from = from;
+      _to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (_to - _from <= _chunkSize) {
+        _skin(_from, _to);
+      } else {
+        //split at a chunk boundary
+        int middle = _from + ((_to - _from) / _chunkSize / 2) * _chunkSize;
+        if (middle == _from) middle += _chunkSize;
+        invokeAll(new Chunk(_from, middle), new Chunk(middle, _to));
+      }
+    }
+  }
+
+  @Override
+  public void updateParams() {
+    _updateJointTransformations();
+    if (_vertexCount <= _chunkSize) _skin(0, _vertexCount);
+    else _pool.invoke(new Chunk(0, _vertexCount));
+    _upload();
+  }
+}
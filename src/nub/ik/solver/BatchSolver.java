@@ -0,0 +1,215 @@
+/****************************************************************************************
+ * nub
+ * Copyright (c) 2019 National University of Colombia, https://visualcomputing.github.io/
+ * @author Sebastian Chaparro, https://github.com/sechaparroc
+ * @author Jean Pierre Charalambos, https://github.com/VisualComputing
+ *
+ * All rights reserved. A 2D or 3D scene graph library providing eye, input and timing
+ * handling to a third party (real or non-real time) renderer. Released under the terms
+ * of the GPL v3.0 which is available at http://www.gnu.org/licenses/gpl.html
+ ****************************************************************************************/
+
+package nub.ik.solver;
+
+import nub.core.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A BatchSolver runs many independent solvers (e.g. one per character of a crowd) on a
+ * {@link ForkJoinPool} and publishes their results back to the scene graph at a single
+ * synchronization point.
+ * <p>
+ * Each call to {@link #solve()} forks the iterations of all the solvers (see
+ * {@link Solver#_solve()}) and once all of them have finished, it calls their
+ * {@link Solver#_update()} sequentially on the calling thread. Solvers that work on a
+ * detached copy of their structure (e.g. {@link nub.ik.solver.geometric.ChainSolver} or
+ * {@link nub.ik.solver.trik.implementations.SimpleTRIK}) never modify the scene graph while
+ * running in parallel.
+ * <p>
+ * The solvers must be independent, i.e. they must not share any node. Since the node world
+ * transformations are cached and lazily updated, nodes shared by several structures (such as
+ * a common reference) should be up to date (e.g. by querying their position) before calling
+ * {@link #solve()}.
+ * <p>
+ * A BatchSolver is itself a {@link Solver} so that it can be scheduled with
+ * {@link nub.core.Graph#executeSolver(Solver, long)}.
+ * <p>
+ * Its time budget (see {@link #setTimeBudget(long)}) is the per frame budget of the whole
+ * group. It is split evenly among the solvers that are still running (taking into account the
+ * pool parallelism) and takes precedence over their own budgets, so that the frame time of the
+ * group remains stable as characters become (in)active. Once the group budget is spent the
+ * remaining solvers carry over their iterations to the next frame, in which they are executed
+ * first.
+ */
+public class BatchSolver extends Solver {
+  protected List<Solver> _solvers = new ArrayList<Solver>();
+  protected boolean[] _finished = new boolean[0];
+  protected ForkJoinPool _pool;
+  //number of solvers handled by a single task
+  protected int _threshold = 4;
+  //index of the first solver to be executed, rotated when the time budget is enabled
+  protected int _offset;
+
+  /**
+   * Same as {@code this(ForkJoinPool.commonPool())}.
+   */
+  public BatchSolver() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  public BatchSolver(ForkJoinPool pool) {
+    super();
+    _pool = pool;
+  }
+
+  public BatchSolver(List<? extends Solver> solvers) {
+    this();
+    for (Solver solver : solvers)
+      add(solver);
+  }
+
+  public List<Solver> solvers() {
+    return _solvers;
+  }
+
+  public ForkJoinPool pool() {
+    return _pool;
+  }
+
+  /**
+   * Sets the maximum number of solvers that are executed sequentially by a single fork-join
+   * task.
+   */
+  public void setThreshold(int threshold) {
+    _threshold = Math.max(1, threshold);
+  }
+
+  public void add(Solver solver) {
+    _solvers.add(solver);
+    _finished = new boolean[_solvers.size()];
+  }
+
+  public boolean remove(Solver solver) {
+    boolean removed = _solvers.remove(solver);
+    if (removed) _finished = new boolean[_solvers.size()];
+    return removed;
+  }
+
+  protected class Batch extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    protected int _from, _to;
+
+    protected Batch(int from, int to) {
+      _from = from;
+      _to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (_to - _from <= _threshold) {
+        for (int i = _from; i < _to; i++) {
+          int index = (i + _offset) % _solvers.size();
+          _finished[index] = _solvers.get(index)._solve();
+        }
+      } else {
+        int middle = (_from + _to) >>> 1;
+        invokeAll(new Batch(_from, middle), new Batch(middle, _to));
+      }
+    }
+  }
+
+  //splits the group budget among the running solvers
+  protected void _shareBudget() {
+    long share = 0, deadline = 0;
+    if (_timeBudget > 0) {
+      deadline = System.nanoTime() + _timeBudget;
+      int running = 0;
+      for (Solver solver : _solvers)
+        if (solver._iterations < solver._maxIterations || solver._change_temp || solver._changed())
+          running++;
+      running = Math.max(1, running);
+      share = Math.max(1, _timeBudget * Math.min(_pool.getParallelism(), running) / running);
+    }
+    for (Solver solver : _solvers) {
+      solver._groupBudget = share;
+      solver._deadline = deadline;
+    }
+  }
+
+  /**
+   * Runs the iterations of all the solvers in parallel. Returns {@code true} only if all of
+   * them had already finished.
+   */
+  @Override
+  protected boolean _solve() {
+    if (_solvers.isEmpty()) return true;
+    _shareBudget();
+    _pool.invoke(new Batch(0, _solvers.size()));
+    //the group budget only applies within the batch
+    for (Solver solver : _solvers) {
+      solver._groupBudget = 0;
+      solver._deadline = 0;
+    }
+    //solvers skipped by the budget are executed first in the next frame
+    for (int i = 0; i < _solvers.size(); i++) {
+      int index = (i + _offset) % _solvers.size();
+      if (_solvers.get(index)._skipped) {
+        _offset = index;
+        break;
+      }
+    }
+    for (boolean finished : _finished)
+      if (!finished) return false;
+    return true;
+  }
+
+  /**
+   * Single synchronization point: publishes the results of the solvers that performed some
+   * iteration on the calling thread.
+   */
+  @Override
+  protected void _update() {
+    for (int i = 0; i < _solvers.size(); i++) {
+      if (!_finished[i]) {
+        _solvers.get(i)._update();
+        _solvers.get(i)._restoreBestPose();
+      }
+    }
+  }
+
+  //Iterations are handled by each solver (see _solve)
+  @Override
+  protected boolean _iterate() {
+    return true;
+  }
+
+  @Override
+  protected boolean _changed() {
+    return false;
+  }
+
+  @Override
+  protected void _reset() {
+  }
+
+  @Override
+  public float error() {
+    float error = 0;
+    for (Solver solver : _solvers)
+      error += solver.error();
+    return error;
+  }
+
+  /**
+   * Targets must be set on each of the batched {@link #solvers()}, since most chain solvers
+   * ignore the {@code endEffector} param.
+   */
+  @Override
+  public void setTarget(Node endEffector, Node target) {
+  }
+}
@@ -12,9 +12,12 @@
 package nub.ik.solver;
 
 import nub.core.Node;
+import nub.core.constraint.Constraint;
 import nub.ik.visualization.VisualizerMediator;
+import nub.primitives.Quaternion;
 
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * A Solver is a convenient class to solve IK problem,
@@ -37,6 +40,15 @@ public abstract class Solver {
   protected boolean _accumulate = false;
   protected float _accumulatedError = 0; //TODO : Remove this
   protected float _timePerIteration = 0;
+  protected SolverMetrics _metrics;
+  //per frame time budgets (in nanoseconds), 0 means disabled
+  protected long _timeBudget = 0;
+  protected long _groupBudget = 0;
+  protected long _deadline = 0; //System.nanoTime() at which the group budget is spent
+  protected boolean _skipped = false; //true if the last frame was skipped due to the deadline
+  //best pose found within the current budgeted frame by the solvers that modify their structure in place
+  protected Quaternion[] _bestRotations = new Quaternion[0];
+  protected float _bestError = Float.NaN; //NaN if no best pose is kept
 
   protected VisualizerMediator _mediator;
   protected boolean _enableMediator = false;
@@ -66,6 +78,43 @@ public abstract class Solver {
     _timesPerFrame = timesPerFrame;
   }
 
+  /**
+   * Sets a per frame time budget (in microseconds). When the budget is enabled (i.e., when
+   * {@code microseconds > 0}) {@link #setTimesPerFrame(float)} is ignored and each call to
+   * {@link #solve()} performs iterations (at least one) until the budget is spent, the error
+   * tolerance is reached or the max number of iterations is reached. The remaining iterations
+   * are carried over to the next frames. Pass 0 to disable the budget (the default).
+   * <p>
+   * A solve interrupted by the budget never leaves a pose worse than the best one seen in the
+   * frame: solvers that work on a copy of the structure (such as
+   * {@link nub.ik.solver.geometric.ChainSolver}) publish only their best-so-far pose, while
+   * those that modify the structure in place (see {@link #_pose()}) restore the rotations of the
+   * pose with the lowest {@link #error()} at the end of the frame.
+   *
+   * @see BatchSolver
+   */
+  public void setTimeBudget(long microseconds) {
+    _timeBudget = Math.max(0, microseconds) * 1000;
+  }
+
+  /**
+   * Returns the per frame time budget in microseconds, or 0 if it's disabled.
+   *
+   * @see #setTimeBudget(long)
+   */
+  public long timeBudget() {
+    return _timeBudget / 1000;
+  }
+
+  public boolean isTimeBudgetEnabled() {
+    return _timeBudget > 0;
+  }
+
+  //the budget shared by a BatchSolver takes precedence over the solver own budget
+  protected long _budget() {
+    return _groupBudget > 0 ? _groupBudget : _timeBudget;
+  }
+
   public void hasChanged(boolean change) {
     _change_temp = change;
   }
@@ -74,6 +123,58 @@ public abstract class Solver {
     return _accumulatedError;
   }
 
+  /**
+   * Returns the mean time (in nanoseconds) of the iterations performed in the last frame.
+   * Only computed while the metrics are enabled (see {@link #enableMetrics()}).
+   */
+  public float timePerIteration() {
+    return _timePerIteration;
+  }
+
+  /**
+   * Same as {@code enableMetrics(true)}.
+   *
+   * @see #enableMetrics(boolean)
+   * @see #disableMetrics()
+   */
+  public void enableMetrics() {
+    enableMetrics(true);
+  }
+
+  /**
+   * Enables or disables the solver {@link SolverMetrics} (disabled by default), i.e., the
+   * per solve wall time, iterations, convergence status, final error and the optional error
+   * trajectory and allocation counters, together with their histograms.
+   *
+   * @see #metrics()
+   */
+  public void enableMetrics(boolean enable) {
+    if (enable && _metrics == null) _metrics = new SolverMetrics();
+    else if (!enable) _metrics = null;
+  }
+
+  /**
+   * Same as {@code enableMetrics(false)}.
+   *
+   * @see #enableMetrics(boolean)
+   */
+  public void disableMetrics() {
+    enableMetrics(false);
+  }
+
+  public boolean isMetricsEnabled() {
+    return _metrics != null;
+  }
+
+  /**
+   * Returns the solver metrics, or {@code null} if they are disabled.
+   *
+   * @see #enableMetrics(boolean)
+   */
+  public SolverMetrics metrics() {
+    return _metrics;
+  }
+
   /*Performs an Iteration of Solver Algorithm */
   protected abstract boolean _iterate();
 
@@ -90,8 +191,74 @@ public abstract class Solver {
   }
 
   public boolean solve() {
+    if (_solve()) return true;
+    //update positions
+    _update();
+    _restoreBestPose();
+    return false;
+  }
+
+  /**
+   * Returns the nodes whose rotations are modified in place by the iterations (or by
+   * {@link #_update()}), or {@code null} (the default) if the solver works on a copy of the
+   * structure and publishes only its best pose. The best pose of these nodes is kept while a
+   * time budget is enabled (see {@link #setTimeBudget(long)}).
+   */
+  protected List<? extends Node> _pose() {
+    return null;
+  }
+
+  /**
+   * Called once the best rotations of the {@link #_pose()} nodes have been restored, e.g., to
+   * refresh a cache of their world transformations.
+   */
+  protected void _restored() {
+  }
+
+  protected void _storeBestPose(List<? extends Node> pose, float error) {
+    if (_bestRotations.length != pose.size()) {
+      _bestRotations = new Quaternion[pose.size()];
+      for (int i = 0; i < _bestRotations.length; i++)
+        _bestRotations[i] = new Quaternion();
+    }
+    for (int i = 0; i < _bestRotations.length; i++)
+      _bestRotations[i].set(pose.get(i).rotation(), false);
+    _bestError = error;
+  }
+
+  /**
+   * Restores the best pose kept during the last budgeted frame (see {@link #_pose()}) if the
+   * current one is worse. Constraints are bypassed since the kept rotations already satisfy them.
+   */
+  protected void _restoreBestPose() {
+    if (Float.isNaN(_bestError)) return;
+    List<? extends Node> pose = _pose();
+    if (pose != null && pose.size() == _bestRotations.length && error() > _bestError) {
+      for (int i = 0; i < _bestRotations.length; i++) {
+        Node node = pose.get(i);
+        Constraint constraint = node.constraint();
+        node.setConstraint(null);
+        node.rotation().set(_bestRotations[i], false);
+        node.setRotation(node.rotation());
+        node.setConstraint(constraint);
+      }
+      _restored();
+    }
+    _bestError = Float.NaN;
+  }
+
+  /**
+   * Performs the iterations scheduled for the current frame without publishing the results
+   * (see {@link #_update()}). Returns {@code true} if the solver had already finished, i.e.
+   * when there is nothing to publish.
+   *
+   * @see BatchSolver
+   */
+  protected boolean _solve() {
     //Reset counter
     if (_changed() || _change_temp) {
+      //a solve interrupted by a reset didn't converge
+      if (_metrics != null) _metrics._end(this, false);
       _reset();
       _last_iteration = 0;
       _accumulate = true;
@@ -102,19 +269,53 @@ public abstract class Solver {
       return true;
     }
 
-    _frameCounter += _timesPerFrame;
+    //the group budget was spent by other solvers: carry over the iterations
+    _skipped = _deadline > 0 && System.nanoTime() >= _deadline;
+    if (_skipped) {
+      return false;
+    }
 
+    long budget = _budget();
+    if (budget > 0)
+      _frameCounter = 1;
+    else
+      _frameCounter += _timesPerFrame;
+
+    List<? extends Node> pose = budget > 0 ? _pose() : null;
+    if (pose != null) _storeBestPose(pose, error());
+    SolverMetrics metrics = _metrics;
+    if (metrics != null) metrics._beginFrame();
+    long start = budget > 0 ? System.nanoTime() : 0;
+    boolean converged = false;
+    int iterations = 0;
     while (Math.floor(_frameCounter) > 0) {
+      iterations++;
       //Returns a boolean that indicates if a termination condition has been accomplished
       if (_iterate()) {
         _last_iteration = _iterations + 1;
         _iterations = _maxIterations;
         _frameCounter = 0;
+        converged = true;
       } else {
         _iterations += 1;
         _last_iteration = _iterations;
         _frameCounter -= 1;
       }
+      if (pose != null) {
+        float error = error();
+        if (error < _bestError) _storeBestPose(pose, error);
+      }
+      if (metrics != null) metrics._iteration(this);
+      //keep on iterating while there's time left
+      if (budget > 0 && !converged && _iterations < _maxIterations) {
+        long now = System.nanoTime();
+        if (now - start < budget && (_deadline == 0 || now < _deadline))
+          _frameCounter = 1;
+      }
+    }
+    if (metrics != null) {
+      metrics._endFrame();
+      if (iterations > 0) _timePerIteration = (float) metrics.frameTime() / iterations;
     }
 
     if (_iterations >= _maxIterations) {
@@ -122,10 +323,8 @@ public abstract class Solver {
         _accumulatedError += error();
         _accumulate = false;
       }
+      if (metrics != null) metrics._end(this, converged);
     }
-
-    //update positions
-    _update();
     return false;
   }
 
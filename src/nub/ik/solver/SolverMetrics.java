@@ -0,0 +1,398 @@
+/****************************************************************************************
+ * nub
+ * Copyright (c) 2019 National University of Colombia, https://visualcomputing.github.io/
+ * @author Sebastian Chaparro, https://github.com/sechaparroc
+ * @author Jean Pierre Charalambos, https://github.com/VisualComputing
+ *
+ * All rights reserved. A 2D or 3D scene graph library providing eye, input and timing
+ * handling to a third party (real or non-real time) renderer. Released under the terms
+ * of the GPL v3.0 which is available at http://www.gnu.org/licenses/gpl.html
+ ****************************************************************************************/
+
+package nub.ik.solver;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Metrics of a {@link Solver} (see {@link Solver#enableMetrics()}).
+ * <p>
+ * A solve spans from the first iteration after the solver is reset (e.g., when its target
+ * changes) until it converges or reaches its maximum number of iterations, which may take
+ * several frames (see {@link Solver#setTimesPerFrame(float)}). For the last solve the metrics
+ * keep its wall time ({@link #solveTime()}), the number of frames and iterations it took, its
+ * convergence status, its final error and, optionally, its error trajectory (the error after
+ * each iteration, see {@link #enableTrajectory(boolean)}) and the number of bytes it allocated
+ * (see {@link #enableAllocationTracking(boolean)}).
+ * <p>
+ * These values are also accumulated into {@link Histogram}s, which together with the
+ * {@link Listener}s notified after each solve (see {@link #addListener(Listener)}) allow to
+ * export them, e.g., to find which solvers of a crowd exceed the frame budget. By default
+ * only two {@code System.nanoTime()} calls per frame and a single {@link Solver#error()}
+ * call per solve are performed, so the metrics are cheap enough to be left enabled.
+ */
+public class SolverMetrics {
+  /**
+   * Notified each time a solve finishes (see {@link SolverMetrics#addListener(Listener)}).
+   * Note that solvers executed by a {@link BatchSolver} notify their listeners from the
+   * pool threads.
+   */
+  public interface Listener {
+    void solved(Solver solver, SolverMetrics metrics);
+  }
+
+  /**
+   * A histogram with log2 sized buckets, i.e., the i-th bucket holds the values in
+   * [2^(i + MIN_EXPONENT), 2^(i + MIN_EXPONENT + 1)), so that adding a value costs a few
+   * operations and no allocation. Non positive values are kept in the first bucket.
+   */
+  public static class Histogram {
+    public static final int MIN_EXPONENT = -32;
+    public static final int MAX_EXPONENT = 63;
+    protected long[] _buckets = new long[MAX_EXPONENT - MIN_EXPONENT + 1];
+    protected long _count;
+    protected double _sum, _min = Double.POSITIVE_INFINITY, _max = Double.NEGATIVE_INFINITY;
+
+    public void add(double value) {
+      _buckets[bucket(value)]++;
+      _count++;
+      _sum += value;
+      if (value < _min) _min = value;
+      if (value > _max) _max = value;
+    }
+
+    /**
+     * Adds the values of {@code other} to this histogram.
+     */
+    public void merge(Histogram other) {
+      for (int i = 0; i < _buckets.length; i++)
+        _buckets[i] += other._buckets[i];
+      _count += other._count;
+      _sum += other._sum;
+      _min = Math.min(_min, other._min);
+      _max = Math.max(_max, other._max);
+    }
+
+    public void clear() {
+      Arrays.fill(_buckets, 0);
+      _count = 0;
+      _sum = 0;
+      _min = Double.POSITIVE_INFINITY;
+      _max = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Returns the index of the bucket where {@code value} is kept.
+     */
+    public static int bucket(double value) {
+      if (!(value > 0)) return 0;
+      int exponent = Math.getExponent(value);
+      return Math.min(Math.max(exponent, MIN_EXPONENT), MAX_EXPONENT) - MIN_EXPONENT;
+    }
+
+    /**
+     * Returns the (exclusive) upper bound of the i-th bucket.
+     */
+    public static double upperBound(int i) {
+      return Math.scalb(1.0, i + MIN_EXPONENT + 1);
+    }
+
+    /**
+     * Returns the counts of the buckets. The returned array should not be modified.
+     */
+    public long[] buckets() {
+      return _buckets;
+    }
+
+    public long count() {
+      return _count;
+    }
+
+    public double sum() {
+      return _sum;
+    }
+
+    public double mean() {
+      return _count == 0 ? 0 : _sum / _count;
+    }
+
+    public double min() {
+      return _count == 0 ? 0 : _min;
+    }
+
+    public double max() {
+      return _count == 0 ? 0 : _max;
+    }
+
+    /**
+     * Returns an upper bound of the given {@code percentile} (in [0..1]), i.e., the upper
+     * bound of the bucket holding it, clamped to {@link #max()}.
+     */
+    public double percentile(double percentile) {
+      if (_count == 0) return 0;
+      long rank = (long) Math.ceil(Math.min(Math.max(percentile, 0), 1) * _count);
+      long accumulated = 0;
+      for (int i = 0; i < _buckets.length; i++) {
+        accumulated += _buckets[i];
+        if (accumulated >= Math.max(rank, 1))
+          return Math.min(upperBound(i), _max);
+      }
+      return _max;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("count: %d, mean: %.3f, min: %.3f, p50: %.3f, p99: %.3f, max: %.3f",
+          _count, mean(), min(), percentile(0.5), percentile(0.99), max());
+    }
+  }
+
+  protected static com.sun.management.ThreadMXBean _allocationBean;
+
+  static {
+    try {
+      java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      if (bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported())
+        _allocationBean = (com.sun.management.ThreadMXBean) bean;
+    } catch (Throwable throwable) {
+      _allocationBean = null;
+    }
+  }
+
+  protected List<Listener> _listeners = new ArrayList<Listener>();
+  protected boolean _trajectory, _allocations;
+  //last solve
+  protected boolean _active, _converged;
+  protected long _solveTime, _frameTime, _bytes, _frameBytes;
+  protected int _frames, _iterations;
+  protected float _error;
+  protected float[] _errors = new float[0];
+  //totals
+  protected long _solves, _convergedSolves;
+  protected Histogram _solveTimes = new Histogram(), _frameTimes = new Histogram(),
+      _iterationCounts = new Histogram(), _allocatedBytes = new Histogram(), _finalErrors = new Histogram();
+  //auxiliary variables
+  protected long _start, _startBytes;
+
+  public void addListener(Listener listener) {
+    if (!_listeners.contains(listener)) _listeners.add(listener);
+  }
+
+  public void removeListener(Listener listener) {
+    _listeners.remove(listener);
+  }
+
+  public List<Listener> listeners() {
+    return _listeners;
+  }
+
+  /**
+   * Records (or not) the error after each iteration (see {@link #trajectory()}). Note that
+   * this calls {@link Solver#error()} once per iteration, whose cost depends on the solver.
+   */
+  public void enableTrajectory(boolean enable) {
+    _trajectory = enable;
+  }
+
+  public boolean isTrajectoryEnabled() {
+    return _trajectory;
+  }
+
+  /**
+   * Records (or not) the number of bytes allocated by the solver threads (see
+   * {@link #allocatedBytes()}). Requires a JVM supporting
+   * {@code com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}, see
+   * {@link #isAllocationTrackingSupported()}.
+   */
+  public void enableAllocationTracking(boolean enable) {
+    _allocations = enable && isAllocationTrackingSupported();
+  }
+
+  public boolean isAllocationTrackingEnabled() {
+    return _allocations;
+  }
+
+  public static boolean isAllocationTrackingSupported() {
+    return _allocationBean != null && _allocationBean.isThreadAllocatedMemoryEnabled();
+  }
+
+  /**
+   * Clears all the recorded values (but the listeners).
+   */
+  public void clear() {
+    _active = _converged = false;
+    _solveTime = _frameTime = _bytes = _frameBytes = 0;
+    _frames = _iterations = 0;
+    _error = 0;
+    _solves = _convergedSolves = 0;
+    _solveTimes.clear();
+    _frameTimes.clear();
+    _iterationCounts.clear();
+    _allocatedBytes.clear();
+    _finalErrors.clear();
+  }
+
+  // Last solve
+
+  /**
+   * Returns {@code true} while a solve is in progress.
+   */
+  public boolean isActive() {
+    return _active;
+  }
+
+  /**
+   * Returns the wall time (in nanoseconds) of the last (or current) solve, i.e., the sum
+   * of the time spent by the solver in each frame.
+   */
+  public long solveTime() {
+    return _solveTime;
+  }
+
+  /**
+   * Returns the time (in nanoseconds) spent by the solver in the last frame.
+   */
+  public long frameTime() {
+    return _frameTime;
+  }
+
+  public int frames() {
+    return _frames;
+  }
+
+  public int iterations() {
+    return _iterations;
+  }
+
+  /**
+   * Returns {@code true} if the last solve reached the {@link Solver} max error, and
+   * {@code false} if it ran out of iterations (or if it was interrupted by a reset).
+   */
+  public boolean converged() {
+    return _converged;
+  }
+
+  public float error() {
+    return _error;
+  }
+
+  /**
+   * Returns the bytes allocated by the last (or current) solve, or -1 if allocation
+   * tracking is disabled.
+   */
+  public long allocatedBytes() {
+    return _allocations ? _bytes : -1;
+  }
+
+  /**
+   * Returns the error after each iteration of the last (or current) solve, or an empty
+   * array if the trajectory is disabled.
+   */
+  public float[] trajectory() {
+    return _trajectory ? Arrays.copyOf(_errors, _iterations) : new float[0];
+  }
+
+  // Totals
+
+  public long solves() {
+    return _solves;
+  }
+
+  public long convergedSolves() {
+    return _convergedSolves;
+  }
+
+  /**
+   * Histogram of the solve wall times (in nanoseconds).
+   */
+  public Histogram solveTimes() {
+    return _solveTimes;
+  }
+
+  /**
+   * Histogram of the time spent (in nanoseconds) by the solver per frame.
+   */
+  public Histogram frameTimes() {
+    return _frameTimes;
+  }
+
+  /**
+   * Histogram of the number of iterations per solve.
+   */
+  public Histogram iterationCounts() {
+    return _iterationCounts;
+  }
+
+  /**
+   * Histogram of the bytes allocated per solve (empty if allocation tracking is disabled).
+   */
+  public Histogram allocationSizes() {
+    return _allocatedBytes;
+  }
+
+  /**
+   * Histogram of the final error per solve.
+   */
+  public Histogram finalErrors() {
+    return _finalErrors;
+  }
+
+  // Called by the solver
+
+  protected void _beginFrame() {
+    if (!_active) {
+      _active = true;
+      _converged = false;
+      _solveTime = _bytes = 0;
+      _frames = _iterations = 0;
+    }
+    if (_allocations) _startBytes = _allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    _start = System.nanoTime();
+  }
+
+  protected void _iteration(Solver solver) {
+    if (_trajectory) {
+      if (_errors.length <= _iterations) _errors = Arrays.copyOf(_errors, Math.max(2 * _errors.length, 16));
+      _errors[_iterations] = solver.error();
+    }
+    _iterations++;
+  }
+
+  protected void _endFrame() {
+    _frameTime = System.nanoTime() - _start;
+    _solveTime += _frameTime;
+    _frames++;
+    _frameTimes.add(_frameTime);
+    if (_allocations) {
+      _frameBytes = _allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - _startBytes;
+      _bytes += _frameBytes;
+    }
+  }
+
+  protected void _end(Solver solver, boolean converged) {
+    if (!_active) return;
+    _active = false;
+    _converged = converged;
+    _error = solver.error();
+    _solves++;
+    if (converged) _convergedSolves++;
+    _solveTimes.add(_solveTime);
+    _iterationCounts.add(_iterations);
+    if (_allocations) _allocatedBytes.add(_bytes);
+    _finalErrors.add(_error);
+    for (int i = 0; i < _listeners.size(); i++)
+      _listeners.get(i).solved(solver, this);
+  }
+
+  @Override
+  public String toString() {
+    return "solves: " + _solves + ", converged: " + _convergedSolves
+        + "\nsolve time (ns) " + _solveTimes
+        + "\nframe time (ns) " + _frameTimes
+        + "\niterations " + _iterationCounts
+        + (_allocations ? "\nallocated bytes " + _allocatedBytes : "")
+        + "\nfinal error " + _finalErrors;
+  }
+}
@@ -41,8 +41,16 @@ public class BioIk extends Solver {
   protected HashMap<Integer, Float> _chain_length; //Key : Target
   protected List<HashMap<Integer, Float>> _chain_eff_length; // Key : Target
 
+  protected ForwardKinematics _kinematics;
   protected List<Individual> _population, _sorted_population;
+  //reused buffers: individuals not in the population and intermediate offspring
+  protected List<Individual> _spare, _children, _pool;
+  protected Individual _recombination;
+  //the best individual found so far is kept in its own buffer
   protected Individual _best;
+  //auxiliary variables
+  protected Quaternion _rotation = new Quaternion(), _q_plus = new Quaternion(), _q_minus = new Quaternion();
+  protected Vector _position = new Vector();
 
 
   protected List<Statistics> _statistics;
@@ -55,15 +63,12 @@ public class BioIk extends Solver {
     this._elitism_size = elitism_size;
     this._target = new HashMap<Integer, Node>();
     this._previousTarget = new HashMap<Integer, Node>();
+    this._kinematics = new ForwardKinematics(_structure);
     _updateChainLength();
   }
 
-  public BioIk(Node root, int population_size, int _elitism_size) {
-    this._structure = Graph.branch(root);
-    this._population_size = population_size;
-    this._target = new HashMap<Integer, Node>();
-    this._previousTarget = new HashMap<Integer, Node>();
-    _updateChainLength();
+  public BioIk(Node root, int population_size, int elitism_size) {
+    this(Graph.branch(root), population_size, elitism_size);
   }
 
   public int populationSize() {
@@ -116,17 +121,9 @@ public class BioIk extends Solver {
 
   public float execute() {
     _updateChainLength();
-    this._best = null;
     this._statistics = new ArrayList<Statistics>();
-    //1. Generate population
-    _population = Util.generatePopulation(_structure, _population_size);
-    //2. Update Fitness
-    for (Individual individual : _population) {
-      individual.updateFitness(_target);
-      _best = _best == null ? individual : _best.fitness() > individual.fitness() ? individual : _best;
-    }
-    _sorted_population = Util.sort(false, false, _population);
-    _updateExtinction();
+    //1. Generate population and 2. Update Fitness
+    _initPopulation();
     //3. Iterate a given number of times.
     int k = 0;
     while (k < _maxIterations) {
@@ -147,34 +144,37 @@ public class BioIk extends Solver {
     if (_debug) System.out.println("------- Iteration: " + _iterations);
     Individual best = _sorted_population.get(0), worst = _sorted_population.get(_sorted_population.size() - 1);
     //2. Mating pool is same as population
-    List<Individual> pool = new ArrayList<Individual>(_sorted_population);
-    //3. Get remaining offspring
-    List<Individual> children = new ArrayList<>();
+    List<Individual> pool = _pool;
+    pool.clear();
+    pool.addAll(_sorted_population);
+    //3. Get remaining offspring (written into the spare buffers)
+    List<Individual> children = _children;
+    children.clear();
     for (int i = 0; i < _population.size() - _elitism_size; i++) {
+      Individual child = _spare.get(i);
       if (!pool.isEmpty()) {
-        Individual child;
         //Choose 2 Parents
         List<Individual> parents = _selection.choose(true, pool, 2);
         //Generate an individual
         if (_random.nextFloat() < _cross_probability) {
-          Individual recombination = _crossover.apply(parents.get(0), parents.get(1));
+          Individual recombination = _crossover.applyTo(_recombination, parents.get(0), parents.get(1));
           if (_mutation instanceof OperatorMethods.Mutation) {
             ((OperatorMethods.Mutation) _mutation).setExtinction(parents.get(0), parents.get(1));
           }
-          Individual mutation = _mutation.apply(recombination);
+          Individual mutation = _mutation.applyTo(child, recombination);
           if (_adoption instanceof OperatorMethods.Adoption) {
             ((OperatorMethods.Adoption) _adoption).setParents(parents.get(0), parents.get(1));
             ((OperatorMethods.Adoption) _adoption).setBest(_best);
           }
-          child = _adoption.apply(mutation);
+          _adoption.applyTo(child, mutation);
           //Clipping is not necessary since solutions are kept in feasible regions (see Frame setRotation())
+          child.updateFitness(_target);
           best = best == null ? child : best.fitness() > child.fitness() ? child : best;
           worst = worst == null ? child : worst.fitness() < child.fitness() ? child : worst;
-          child.updateFitness(_target);
-          child.arrayParams().put("Evolution_Gradient", _calculateGradient(child, recombination));
+          _calculateGradient(child, recombination);
           children.add(child);
         } else {
-          child = parents.get(0);
+          child.set(parents.get(0));
           children.add(child);
           child.updateFitness(_target);
           best = best == null ? child : best.fitness() > child.fitness() ? child : best;
@@ -185,7 +185,8 @@ public class BioIk extends Solver {
         if (parents.get(1).fitness() < child.fitness()) pool.remove(parents.get(1));
       } else {
         //Get a random individual
-        Individual child = Util.generateIndividual(_structure);
+        child.setChain(_structure);
+        Util.setupIndividual(child, (float) Math.toRadians(359));
         children.add(child);
         child.updateFitness(_target);
         best = best == null ? child : best.fitness() > child.fitness() ? child : best;
@@ -196,7 +197,12 @@ public class BioIk extends Solver {
     for (Individual ind : _sorted_population) {
       if (_debug) System.out.println(ind);
     }
-    _population = Util.concatenate(_sorted_population.subList(0, _elitism_size), children);
+    //discarded individuals become spare buffers
+    _spare.clear();
+    _spare.addAll(_sorted_population.subList(_elitism_size, _sorted_population.size()));
+    _population.clear();
+    _population.addAll(_sorted_population.subList(0, _elitism_size));
+    _population.addAll(children);
 
 
     //Sort population
@@ -213,18 +219,22 @@ public class BioIk extends Solver {
 
     _sorted_population = Util.sort(false, false, _population);
     //Execute Wipe - Reinitialize population
-    if (_wipe(_best, best)) {
-      _population = Util.generatePopulation(best.fitness() < _best.fitness() ? best.structure() : _best.structure(), _population_size);
-      for (Individual individual : _population) {
+    boolean wipe = _wipe(_best, best);
+    //best may be overwritten by the wipe, hence it is kept beforehand
+    if (best.fitness() < _best.fitness()) _best.set(best);
+    if (wipe) {
+      //the first individual keeps the best solution and the remaining ones a perturbation of it
+      for (int i = 0; i < _population.size(); i++) {
+        Individual individual = _population.get(i);
+        individual.set(_best);
+        if (i > 0) Util.setupIndividual(individual, (float) Math.toRadians(60));
         individual.updateFitness(_target);
-        _best = _best == null ? individual : _best.fitness() > individual.fitness() ? individual : _best;
+        if (_best.fitness() > individual.fitness()) _best.set(individual);
       }
       _sorted_population = Util.sort(false, false, _population);
     }
     //Update extinction Factor
     _updateExtinction();
-
-    _best = best.fitness() < _best.fitness() ? best : _best;
     return _best.fitness() < _minDistance;
   }
 
@@ -240,15 +250,16 @@ public class BioIk extends Solver {
   @Override
   protected void _update() {
     if (_max_v != 0) {
+      _kinematics.evaluate(_best.genome());
       for (int i = 0; i < _structure.size(); i++) {
-        Quaternion delta = Quaternion.compose(_structure.get(i).orientation().inverse(), _best.structure().get(i).orientation());
+        Quaternion delta = Quaternion.compose(_structure.get(i).orientation().inverse(), _kinematics.orientation(i, null));
         float angle = delta.angle() > _max_v ? _max_v : delta.angle() < -_max_v ? -_max_v : delta.angle();
         delta = new Quaternion(delta.axis(), angle);
         _structure.get(i).setOrientation(Quaternion.compose(_structure.get(i).orientation(), delta));
       }
     } else {
       for (int i = 0; i < _structure.size(); i++) {
-        _structure.get(i).setRotation(_best.structure().get(i).rotation().get());
+        _structure.get(i).setRotation(_best.rotation(i, null));
       }
     }
   }
@@ -258,15 +269,16 @@ public class BioIk extends Solver {
     float f_min = _sorted_population.get(0).fitness();
     for (int i = 0; i < _population_size; i++) {
       Individual individual = _population.get(i);
-      individual._floatParams.put("Extinction", (individual.fitness() + f_min * (i / (_population_size - 1.f) - 1.f)) / f_max);
+      individual.setExtinction((individual.fitness() + f_min * (i / (_population_size - 1.f) - 1.f)) / f_max);
     }
   }
 
 
+  //stores the evolution gradient into amr
   protected float[] _calculateGradient(Individual amr, Individual r) {
-    float[] g = new float[amr.structure().size() * 3];
-    for (int i = 0; i < amr.structure().size(); i++) {
-      Vector v = Vector.subtract(amr.structure().get(i).rotation().eulerAngles(), r.structure().get(i).rotation().eulerAngles());
+    float[] g = amr.gradient();
+    for (int i = 0; i < amr.size(); i++) {
+      Vector v = Vector.subtract(amr.rotation(i, _rotation).eulerAngles(), r.rotation(i, _rotation).eulerAngles());
       //Simple gradient g = 0 or Keeping information of previous gradient (Momentum)
       g[3 * i] = v.x();
       g[3 * i + 1] = v.y();
@@ -284,35 +296,35 @@ public class BioIk extends Solver {
       if (_debug) System.out.println("Ind " + individual);
       float new_fitness = 0;
       int idx = 0;
-      int f = 0;
-      for (Node joint : individual.structure()) {
+      int last = individual.size() - 1;
+      for (int f = 0; f < individual.size(); f++) {
         if (_debug) System.out.println("<<<<<<< Joint >>>>>>>");
         for (int i = 0; i < 3; i++) {
           individual.updateFitness(_target);
           float fitness = individual.balancedFitness();
           float error = 0;
           for (int index : _chain_eff_length.get(f).keySet()) {
-            float dist = Vector.distance(individual.structure().get(individual.structure().size() - 1).position(), _target.get(index).position());
+            float dist = _kinematics.distance(last, _target.get(index).position(_position));
             float l = _chain_eff_length.get(f).get(index);
-            float d = Vector.distance(individual.structure().get(individual.structure().size() - 1).position(), individual.structure().get(f).position());
+            float d = _kinematics.distance(last, f);
             error += (Math.PI * dist) / (Math.sqrt(l * d));
           }
-          Vector euler = joint.rotation().eulerAngles();
-          Quaternion q = joint.rotation().get();
+          Quaternion q = individual.rotation(f, _rotation);
+          Vector euler = q.eulerAngles();
           Vector angles = euler.get();
           float r = Util.random.nextFloat() * error;
           float plus = (float) Math.min(r + euler._vector[i], Math.PI);
           angles._vector[i] = plus;
-          Quaternion q_plus = new Quaternion(angles._vector[0], angles._vector[1], angles._vector[2]);
-          joint.setRotation(q_plus);
+          _q_plus.fromEulerAngles(angles._vector[0], angles._vector[1], angles._vector[2]);
+          individual.setRotation(f, _q_plus);
           individual.updateFitness(_target);
           if (_debug) System.out.println("plus " + individual);
 
           float f_plus = individual.balancedFitness();
           float minus = (float) Math.max(euler._vector[i] - r, -Math.PI);
           angles._vector[i] = minus;
-          Quaternion q_minus = new Quaternion(angles._vector[0], angles._vector[1], angles._vector[2]);
-          joint.setRotation(q_minus);
+          _q_minus.fromEulerAngles(angles._vector[0], angles._vector[1], angles._vector[2]);
+          individual.setRotation(f, _q_minus);
           individual.updateFitness(_target);
 
           if (_debug) System.out.println("minus " + individual);
@@ -320,18 +332,18 @@ public class BioIk extends Solver {
 
           if (f_plus < fitness && f_plus <= f_minus) {
             if (_debug) System.out.println("Entra plus");
-            joint.setRotation(q_plus);
-            individual.arrayParams().get("Evolution_Gradient")[idx] = euler._vector[i] * Util.random.nextFloat() + plus - euler._vector[i];
+            individual.setRotation(f, _q_plus);
+            individual.gradient()[idx] = euler._vector[i] * Util.random.nextFloat() + plus - euler._vector[i];
             individual.setFitness(f_plus);
           } else if (f_minus < fitness && f_minus <= f_plus) {
             if (_debug) System.out.println("Entra minus");
-            joint.setRotation(q_minus);
-            individual.arrayParams().get("Evolution_Gradient")[idx] = euler._vector[i] * Util.random.nextFloat() + minus - euler._vector[i];
+            individual.setRotation(f, _q_minus);
+            individual.gradient()[idx] = euler._vector[i] * Util.random.nextFloat() + minus - euler._vector[i];
             individual.setFitness(f_minus);
           } else {
             if (_debug) System.out.println("Entra normal");
-            joint.setRotation(q);
-            individual.arrayParams().get("Evolution_Gradient")[idx] = euler._vector[i];
+            individual.setRotation(f, q);
+            individual.gradient()[idx] = euler._vector[i];
             individual.setFitness(fitness);
           }
           if (_debug) System.out.println("final " + individual);
@@ -339,38 +351,37 @@ public class BioIk extends Solver {
           new_fitness += individual.balancedFitness();
           assert individual.fitness() - fitness < 1e-3 : String.format("new Individual must have a lower fitness than previous one: " + (individual.fitness() - fitness));
         }
-        f++;
       }
-      //individual.setFitness(new_fitness/individual.structure().size());
+      //individual.setFitness(new_fitness/individual.size());
     }
   }
 
   protected boolean _wipe(Individual current, Individual next) {
-    for (Node joint : next.structure()) {
+    for (int f = 0; f < next.size(); f++) {
       for (int i = 0; i < 3; i++) {
-        Vector euler = joint.rotation().eulerAngles();
-        Quaternion q = joint.rotation().get();
+        Quaternion q = next.rotation(f, _rotation);
+        Vector euler = q.eulerAngles();
         Vector angles = euler.get();
         float r = Util.random.nextFloat() * next.fitness();
         float plus = (float) Math.min(r + euler._vector[i], Math.PI);
         angles._vector[i] = plus;
-        Quaternion q_plus = new Quaternion(angles._vector[0], angles._vector[1], angles._vector[2]);
-        joint.setRotation(q_plus);
+        _q_plus.fromEulerAngles(angles._vector[0], angles._vector[1], angles._vector[2]);
+        next.setRotation(f, _q_plus);
         next.updateFitness(_target);
         float f_plus = next.balancedFitness();
         float minus = (float) Math.max(euler._vector[i] - r, -Math.PI);
         angles._vector[i] = minus;
-        Quaternion q_minus = new Quaternion(angles._vector[0], angles._vector[1], angles._vector[2]);
-        joint.setRotation(q_minus);
+        _q_minus.fromEulerAngles(angles._vector[0], angles._vector[1], angles._vector[2]);
+        next.setRotation(f, _q_minus);
         next.updateFitness(_target);
         float f_minus = next.balancedFitness();
 
         if ((f_plus < next.fitness() && f_plus <= f_minus) || (f_minus < next.fitness() && f_minus <= f_plus)) {
-          joint.setRotation(q);
+          next.setRotation(f, q);
           next.updateFitness(_target);
           return false;
         }
-        joint.setRotation(q);
+        next.setRotation(f, q);
         next.updateFitness(_target);
       }
     }
@@ -421,7 +432,6 @@ public class BioIk extends Solver {
   @Override
   protected void _reset() {
     _updateChainLength();
-    _best = null;
     _iterations = 0;
     if (_target == null) {
       _previousTarget = null;
@@ -430,13 +440,28 @@ public class BioIk extends Solver {
     for (Integer endEffector : _target.keySet()) {
       _previousTarget.put(endEffector, Node.detach(_target.get(endEffector).position(), _target.get(endEffector).orientation(), 1));
     }
-    //If there is no population then generate one
-    _population = Util.generatePopulation(_structure, _population_size);
+    _initPopulation();
+  }
+
+  /**
+   * (Re)allocates the population buffers whenever the population size changes, then generates
+   * a population from the current state of the structure and updates its fitness.
+   */
+  protected void _initPopulation() {
+    _kinematics.update();
+    _population = Util.allocatePopulation(_kinematics, _population, _population_size);
+    _spare = Util.allocatePopulation(_kinematics, _spare, _population_size - _elitism_size);
+    if (_children == null) _children = new ArrayList<Individual>();
+    if (_pool == null) _pool = new ArrayList<Individual>();
+    if (_recombination == null) _recombination = new Individual(_kinematics);
+    if (_best == null) _best = new Individual(_kinematics);
+    Util.setupPopulation(_structure, _population);
+    Individual best = null;
     for (Individual individual : _population) {
       individual.updateFitness(_target);
-      _best = _best == null ? individual : _best.fitness() > individual.fitness() ? individual : _best;
+      best = best == null ? individual : best.fitness() > individual.fitness() ? individual : best;
     }
-
+    _best.set(best);
     _sorted_population = Util.sort(false, false, _population);
     _updateExtinction();
   }
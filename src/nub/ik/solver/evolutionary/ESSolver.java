@@ -6,7 +6,6 @@ import nub.primitives.Quaternion;
 import nub.primitives.Vector;
 
 import java.io.PrintWriter;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
@@ -17,7 +16,12 @@ public class ESSolver extends Solver {
   protected Random random = new Random();
   protected Node _target;
   protected Node _previousTarget;
-  protected List<? extends Node> _chain, _x_i;
+  protected List<? extends Node> _chain;
+  protected ForwardKinematics _kinematics;
+  //current solution and candidate buffers
+  protected Individual _x_i, _x_i1;
+  //auxiliary variables
+  protected Quaternion _rotation = new Quaternion();
   protected boolean _powerLaw;
   protected double _sigma;
   protected double _alpha = 2;
@@ -27,7 +31,9 @@ public class ESSolver extends Solver {
     this._powerLaw = false;
     this._sigma = sigma;
     this._chain = chain;
-    _x_i = _copy(chain);
+    _kinematics = new ForwardKinematics(chain);
+    _x_i = new Individual(_kinematics);
+    _x_i1 = new Individual(_kinematics);
   }
 
   public ESSolver(double alpha, double sigma, List<? extends Node> chain) {
@@ -35,7 +41,9 @@ public class ESSolver extends Solver {
     this._alpha = alpha;
     this._sigma = sigma;
     this._chain = chain;
-    _x_i = _copy(chain);
+    _kinematics = new ForwardKinematics(chain);
+    _x_i = new Individual(_kinematics);
+    _x_i1 = new Individual(_kinematics);
   }
 
   public double sigma() {
@@ -53,7 +61,8 @@ public class ESSolver extends Solver {
   public double[] execute() {
     double[] results = new double[_maxIterations];
     int k = 0;
-    _x_i = _copy(_chain);
+    _kinematics.update();
+    _x_i.setChain(_chain);
     while (k < _maxIterations) {
       _iterate();
       results[k] = _distanceToTarget(_x_i);
@@ -82,33 +91,21 @@ public class ESSolver extends Solver {
     return Vector.distance(chain.get(chain.size() - 1).position(), _target.position());
   }
 
+  protected double _distanceToTarget(Individual individual) {
+    _kinematics.evaluate(individual.genome());
+    return _kinematics.distance(_kinematics.size() - 1, _target.position());
+  }
+
   protected double _powerLawGenerator(double x, double alpha) {
     double coarse_alpha = 1.0 / (1.0 - alpha);
     return Math.pow(1.0 - x, coarse_alpha);
   }
 
-  protected ArrayList<Node> _copy(List<? extends Node> chain) {
-    ArrayList<Node> copy = new ArrayList<Node>();
-    Node reference = chain.get(0).reference();
-    if (reference != null) {
-      reference = Node.detach(reference.position().get(), reference.orientation().get(), 1);
-    }
-    for (Node joint : chain) {
-      Node newJoint = Node.detach(new Vector(), new Quaternion(), 1f);
-      newJoint.setReference(reference);
-      newJoint.setPosition(joint.position().get());
-      newJoint.setOrientation(joint.orientation().get());
-      newJoint.setConstraint(joint.constraint());
-      copy.add(newJoint);
-      reference = newJoint;
-    }
-    return copy;
-  }
-
   @Override
   protected boolean _iterate() {
-    ArrayList<Node> x_i1 = _copy(_x_i);
-    for (int i = 0; i < _x_i.size(); i++) {
+    Individual x_i1 = _x_i1;
+    x_i1.set(_x_i);
+    for (int i = 0; i < x_i1.size(); i++) {
       int invert = random.nextDouble() >= 0.5 ? 1 : -1;
       //rotate
       float roll;
@@ -124,11 +121,13 @@ public class ESSolver extends Solver {
         yaw = (float) (random.nextGaussian() * _sigma);
       }
       //rotate method consider constraints
-      x_i1.get(i).rotate(new Quaternion(roll, pitch, yaw));
+      _rotation.fromEulerAngles(roll, pitch, yaw);
+      x_i1.rotate(i, _rotation);
     }
 
     double d1 = _distanceToTarget(x_i1), d2 = _distanceToTarget(_x_i);
     if (d1 < d2) {
+      _x_i1 = _x_i;
       _x_i = x_i1;
       d1 = d2;
     }
@@ -146,7 +145,7 @@ public class ESSolver extends Solver {
   @Override
   protected void _update() {
     for (int i = 0; i < _chain.size(); i++) {
-      _chain.get(i).setRotation(_x_i.get(i).rotation().get());
+      _chain.get(i).setRotation(_x_i.rotation(i, null));
     }
   }
 
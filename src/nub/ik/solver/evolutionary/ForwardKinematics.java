@@ -0,0 +1,299 @@
+package nub.ik.solver.evolutionary;
+
+import nub.core.Node;
+import nub.core.constraint.Constraint;
+import nub.primitives.Quaternion;
+import nub.primitives.Vector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Forward kinematics evaluator shared by all the {@link Individual}s of a solver.
+ * <p>
+ * The structure is flattened once into parent indices and (unit scaled) local translations,
+ * so that a genome, i.e. a {@code float[]} with the local rotation (x, y, z, w) of each joint,
+ * could be evaluated with plain array arithmetic instead of keeping a node graph per
+ * individual. The world positions and orientations of the last evaluated genome are kept in
+ * reusable buffers (see {@link #evaluate(float[])}).
+ * <p>
+ * Joints must be given in an order where each joint appears after its reference (as in a
+ * chain or in {@link nub.core.Graph#branch(Node)}). Constraints are applied by means of a
+ * single detached copy of the structure (see {@link #rotate(float[], int, Quaternion)}), hence
+ * an evaluator must not be shared among threads.
+ */
+public class ForwardKinematics {
+  protected List<? extends Node> _structure;
+  protected int _size;
+  protected int[] _parents; //index of the joint reference or -1
+  protected float[] _translations; // x, y, z
+  protected float[] _lengths;
+  protected Vector _referencePosition = new Vector();
+  protected Quaternion _referenceOrientation = new Quaternion();
+  //world transformations of the last evaluated genome
+  protected float[] _positions; // x, y, z
+  protected float[] _orientations; // x, y, z, w
+  //detached copy used to constraint the rotations
+  protected List<Node> _scratch;
+  //auxiliary variables
+  protected Quaternion _rotation = new Quaternion(), _orientation = new Quaternion();
+  protected Vector _position = new Vector(), _translation = new Vector();
+
+  public ForwardKinematics(List<? extends Node> structure) {
+    _structure = structure;
+    _size = structure == null ? 0 : structure.size();
+    _parents = new int[_size];
+    _translations = new float[3 * _size];
+    _lengths = new float[_size];
+    _positions = new float[3 * _size];
+    _orientations = new float[4 * _size];
+    HashMap<Node, Integer> indices = new HashMap<Node, Integer>();
+    for (int i = 0; i < _size; i++) {
+      Node joint = structure.get(i);
+      Integer parent = indices.get(joint.reference());
+      _parents[i] = parent == null ? -1 : parent;
+      indices.put(joint, i);
+    }
+    update();
+  }
+
+  public List<? extends Node> structure() {
+    return _structure;
+  }
+
+  public int size() {
+    return _size;
+  }
+
+  public int parent(int i) {
+    return _parents[i];
+  }
+
+  /**
+   * Returns the distance from the i-th joint to its reference.
+   */
+  public float length(int i) {
+    return _lengths[i];
+  }
+
+  /**
+   * Updates the local translations of the joints (and the world transformation of the
+   * structure reference) from the current state of the {@link #structure()}. Should be
+   * called whenever the structure is modified by other means than its rotations.
+   */
+  public void update() {
+    if (_size == 0) return;
+    Node reference = _structure.get(0).reference();
+    if (reference != null) {
+      reference.position(_referencePosition);
+      reference.orientation(_referenceOrientation);
+    } else {
+      _referencePosition.set(0, 0, 0);
+      _identity(_referenceOrientation);
+    }
+    for (int i = 0; i < _size; i++) {
+      Node joint = _structure.get(i);
+      //translation w.r.t. the (unit scaled) reference
+      Vector.subtract(joint.position(_position), _parentPosition(i, _translation), _translation);
+      _parentOrientation(i, _orientation).inverseRotate(_translation, _translation);
+      _translations[3 * i] = _translation.x();
+      _translations[3 * i + 1] = _translation.y();
+      _translations[3 * i + 2] = _translation.z();
+      _lengths[i] = _translation.magnitude();
+    }
+    _scratch = null;
+  }
+
+  protected Vector _parentPosition(int i, Vector target) {
+    int parent = _parents[i];
+    if (parent >= 0) return _structure.get(parent).position(target);
+    if (i == 0) target.set(_referencePosition);
+    else target.set(0, 0, 0);
+    return target;
+  }
+
+  protected Quaternion _parentOrientation(int i, Quaternion target) {
+    int parent = _parents[i];
+    if (parent >= 0) return _structure.get(parent).orientation(target);
+    if (i == 0) target.set(_referenceOrientation);
+    else _identity(target);
+    return target;
+  }
+
+  /**
+   * Stores the rotations of the given nodes (which must have the same layout as the
+   * {@link #structure()}) into {@code genome}.
+   */
+  public void read(List<? extends Node> nodes, float[] genome) {
+    for (int i = 0; i < _size; i++) {
+      Node joint = nodes.get(i);
+      //joints without a reference in the structure hang from the world
+      if (_parents[i] >= 0 || i == 0) _rotation.set(joint.rotation());
+      else joint.orientation(_rotation);
+      _set(genome, i, _rotation);
+    }
+  }
+
+  /**
+   * Sets the rotations of the given nodes (which must have the same layout as the
+   * {@link #structure()}) from {@code genome}. Constraints are ignored.
+   */
+  public void write(float[] genome, List<? extends Node> nodes) {
+    for (int i = 0; i < _size; i++) {
+      Node joint = nodes.get(i);
+      Constraint constraint = joint.constraint();
+      joint.setConstraint(null);
+      joint.setRotation(genome[4 * i], genome[4 * i + 1], genome[4 * i + 2], genome[4 * i + 3]);
+      joint.setConstraint(constraint);
+    }
+  }
+
+  /**
+   * Returns a detached copy of the structure, i.e. a node graph with the same layout whose
+   * rotations could be set with {@link #write(float[], List)}.
+   */
+  public List<Node> copy() {
+    List<Node> copy = new ArrayList<Node>(_size);
+    Node reference = null;
+    if (_size > 0 && _structure.get(0).reference() != null)
+      reference = Node.detach(_referencePosition.get(), _referenceOrientation.get(), 1);
+    for (int i = 0; i < _size; i++) {
+      Node joint = Node.detach(new Vector(_translations[3 * i], _translations[3 * i + 1], _translations[3 * i + 2]), new Quaternion(), 1);
+      joint.setReference(_parents[i] >= 0 ? copy.get(_parents[i]) : i == 0 ? reference : null);
+      joint.setConstraint(_structure.get(i).constraint());
+      copy.add(joint);
+    }
+    return copy;
+  }
+
+  /**
+   * Computes the world position and orientation of each joint for the given {@code genome}.
+   * Results could be queried with {@link #position(int, Vector)} and
+   * {@link #orientation(int, Quaternion)} until the next evaluation.
+   */
+  public void evaluate(float[] genome) {
+    float[] T = _translations, P = _positions, O = _orientations;
+    for (int i = 0; i < _size; i++) {
+      float px, py, pz, qx, qy, qz, qw;
+      int parent = _parents[i];
+      if (parent >= 0) {
+        px = P[3 * parent];
+        py = P[3 * parent + 1];
+        pz = P[3 * parent + 2];
+        qx = O[4 * parent];
+        qy = O[4 * parent + 1];
+        qz = O[4 * parent + 2];
+        qw = O[4 * parent + 3];
+      } else if (i == 0) {
+        px = _referencePosition.x();
+        py = _referencePosition.y();
+        pz = _referencePosition.z();
+        qx = _referenceOrientation.x();
+        qy = _referenceOrientation.y();
+        qz = _referenceOrientation.z();
+        qw = _referenceOrientation.w();
+      } else {
+        px = py = pz = qx = qy = qz = 0;
+        qw = 1;
+      }
+      //position = parent position + parent orientation * translation
+      float x = T[3 * i], y = T[3 * i + 1], z = T[3 * i + 2];
+      float cx = qy * z - qz * y + qw * x, cy = qz * x - qx * z + qw * y, cz = qx * y - qy * x + qw * z;
+      P[3 * i] = px + x + 2 * (qy * cz - qz * cy);
+      P[3 * i + 1] = py + y + 2 * (qz * cx - qx * cz);
+      P[3 * i + 2] = pz + z + 2 * (qx * cy - qy * cx);
+      //orientation = parent orientation * rotation
+      float rx = genome[4 * i], ry = genome[4 * i + 1], rz = genome[4 * i + 2], rw = genome[4 * i + 3];
+      O[4 * i] = qw * rx + qx * rw + qy * rz - qz * ry;
+      O[4 * i + 1] = qw * ry + qy * rw + qz * rx - qx * rz;
+      O[4 * i + 2] = qw * rz + qz * rw + qx * ry - qy * rx;
+      O[4 * i + 3] = qw * rw - qx * rx - qy * ry - qz * rz;
+    }
+  }
+
+  public Vector position(int i, Vector target) {
+    if (target == null) target = new Vector();
+    target.set(_positions[3 * i], _positions[3 * i + 1], _positions[3 * i + 2]);
+    return target;
+  }
+
+  public Quaternion orientation(int i, Quaternion target) {
+    return _get(_orientations, i, target);
+  }
+
+  public float distance(int i, Vector point) {
+    float dx = _positions[3 * i] - point.x(), dy = _positions[3 * i + 1] - point.y(), dz = _positions[3 * i + 2] - point.z();
+    return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+  }
+
+  public float distance(int i, int j) {
+    float dx = _positions[3 * i] - _positions[3 * j], dy = _positions[3 * i + 1] - _positions[3 * j + 1], dz = _positions[3 * i + 2] - _positions[3 * j + 2];
+    return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+  }
+
+  /**
+   * Rotates the i-th joint of {@code genome} by {@code rotation}, considering the joint
+   * constraint as {@link Node#rotate(Quaternion)} does.
+   */
+  public void rotate(float[] genome, int i, Quaternion rotation) {
+    Constraint constraint = _structure.get(i).constraint();
+    if (constraint == null) {
+      Quaternion.compose(_get(genome, i, _rotation), rotation, _rotation);
+      _set(genome, i, _rotation);
+      return;
+    }
+    Node joint = _scratch(i, genome);
+    joint.rotate(rotation);
+    _set(genome, i, joint.rotation());
+  }
+
+  /**
+   * Sets the rotation of the i-th joint of {@code genome}, considering the joint constraint
+   * as {@link Node#setRotation(Quaternion)} does.
+   */
+  public void setRotation(float[] genome, int i, Quaternion rotation) {
+    Constraint constraint = _structure.get(i).constraint();
+    if (constraint == null) {
+      _set(genome, i, rotation);
+      return;
+    }
+    Node joint = _scratch(i, genome);
+    joint.setRotation(rotation);
+    _set(genome, i, joint.rotation());
+  }
+
+  //loads the i-th rotation of the genome into the scratch joint, bypassing its constraint
+  protected Node _scratch(int i, float[] genome) {
+    if (_scratch == null) _scratch = copy();
+    Node joint = _scratch.get(i);
+    Constraint constraint = joint.constraint();
+    joint.setConstraint(null);
+    joint.setRotation(genome[4 * i], genome[4 * i + 1], genome[4 * i + 2], genome[4 * i + 3]);
+    joint.setConstraint(constraint);
+    return joint;
+  }
+
+  protected static void _identity(Quaternion target) {
+    target.setX(0);
+    target.setY(0);
+    target.setZ(0);
+    target.setW(1);
+  }
+
+  protected static Quaternion _get(float[] array, int i, Quaternion target) {
+    if (target == null) target = new Quaternion();
+    target.setX(array[4 * i]);
+    target.setY(array[4 * i + 1]);
+    target.setZ(array[4 * i + 2]);
+    target.setW(array[4 * i + 3]);
+    return target;
+  }
+
+  protected static void _set(float[] array, int i, Quaternion rotation) {
+    array[4 * i] = rotation.x();
+    array[4 * i + 1] = rotation.y();
+    array[4 * i + 2] = rotation.z();
+    array[4 * i + 3] = rotation.w();
+  }
+}
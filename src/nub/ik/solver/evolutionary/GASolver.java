@@ -31,6 +31,7 @@ public class GASolver extends Solver {
   protected HashMap<Integer, Node> _previousTarget;
   protected HashMap<Integer, Node> _targets;
   protected List<Node> _structure;
+  protected ForwardKinematics _kinematics;
   protected List<Individual> _population, _children;
   protected Individual _best;
   protected List<Statistics> _statistics;
@@ -41,9 +42,10 @@ public class GASolver extends Solver {
     this._population_size = population_size;
     this._targets = new HashMap<Integer, Node>();
     this._previousTarget = new HashMap<Integer, Node>();
+    _kinematics = new ForwardKinematics(structure);
     _population = _initList();
     _children = _initList();
-    _best = new Individual(_structure, true);
+    _best = new Individual(_kinematics);
     _selection = new SelectionMethods.Tournament();
     _mutation = new OperatorMethods.UniformMutation();
     _crossover = new OperatorMethods.ConvexCombination();
@@ -52,7 +54,7 @@ public class GASolver extends Solver {
   protected List<Individual> _initList(){
     List<Individual> list = new ArrayList<Individual>();
     for(int i = 0; i < _population_size; i++){
-      list.add(new Individual(_structure, true));
+      list.add(new Individual(_kinematics));
     }
     return list;
   }
@@ -173,7 +175,8 @@ public class GASolver extends Solver {
       }
 
       if (_random.nextFloat() < _cross_probability) {
-          Individual child1 = _crossover.apply(parents.get(i), parents.get(i + 1));
+        //children are written into the reused buffers
+        Individual child1 = _crossover.applyTo(_children.get(i), parents.get(i), parents.get(i + 1));
         if (_debug) {
           System.out.println("\t Best " + _best);
           System.out.println("\t P1 " + parents.get(i));
@@ -181,9 +184,8 @@ public class GASolver extends Solver {
           child1.updateFitness(_targets);
           System.out.println("\t Child " + child1);
         }
-        child1 = _mutation.apply(child1);
+        _mutation.applyTo(child1, child1);
         child1.updateFitness(_targets);
-        _children.get(i).set(child1);
 
         if(_enableMediator){
           InterestingEvent event = mediator().addEventStartingAfterLast("CHILD1", "UpdateStructure", 0, 1);
@@ -205,10 +207,9 @@ public class GASolver extends Solver {
         }
 
 
-        Individual child2 = _crossover.apply(parents.get(i), parents.get(i + 1));
-        child2 = _mutation.apply(child2);
+        Individual child2 = _crossover.applyTo(_children.get(i + 1), parents.get(i), parents.get(i + 1));
+        _mutation.applyTo(child2, child2);
         child2.updateFitness(_targets);
-        _children.get(i+1).set(child2);
 
         if(_enableMediator){
           InterestingEvent event = mediator().addEventStartingWith("CHILD1","CHILD2", "UpdateStructure", 0, 1);
@@ -373,8 +374,9 @@ public class GASolver extends Solver {
   @Override
   protected void _update() {
     for (int i = 0; i < _structure.size(); i++) {
-      _structure.get(i).setRotation(_best.structure().get(i).rotation().get());
+      _structure.get(i).setRotation(_best.rotation(i, null));
     }
+    if (!_enableMediator) return;
     InterestingEvent event = mediator().addEventStartingAfterLast("structure", "UpdateStructure",1, 1);
     Vector[] translations = new Vector[_structure.size()];
     Quaternion[] rotations = new Quaternion[_structure.size()];
@@ -421,6 +423,7 @@ public class GASolver extends Solver {
       _previousTarget.put(endEffector, Node.detach(_targets.get(endEffector).position(), _targets.get(endEffector).orientation(), 1));
     }
 
+    _kinematics.update();
     _best.setChain(_structure);
     _best.updateFitness(_targets);
     //1. Generate population
@@ -488,13 +491,13 @@ public class GASolver extends Solver {
     @Override
     public void registerStructure(VisualizerMediator mediator){
         mediator.registerStructure(_structure);
-        mediator.registerStructure(_best._structure);
+        mediator.registerStructure(_best.structure());
 
         for(Individual i : _population){
-            mediator.registerStructure(i._structure);
+            mediator.registerStructure(i.structure());
         }
         for(Individual i : _children){
-            mediator.registerStructure(i._structure);
+            mediator.registerStructure(i.structure());
         }
         for(Map.Entry<Integer, Node> entry : _targets.entrySet()){
             mediator.registerStructure(entry.getValue());
@@ -36,14 +36,31 @@ public class HAEASolver extends Solver {
       generateRates(random, operators);
     }
 
+    public HAEAIndividual(ForwardKinematics kinematics) {
+      super(kinematics);
+    }
+
     public HAEAIndividual(Individual individual) {
-      super(individual.structure());
-      this._fitness = individual.fitness();
-      //this._parameters = individual.parameters();
+      super(individual.kinematics());
+      set(individual);
+    }
+
+    public float[] operatorRates() {
+      return _operatorRates;
+    }
+
+    /**
+     * Copies the rates of the given individual into this one.
+     */
+    public void setRates(HAEAIndividual individual) {
+      if (_operatorRates == null || _operatorRates.length != individual._operatorRates.length)
+        _operatorRates = new float[individual._operatorRates.length];
+      System.arraycopy(individual._operatorRates, 0, _operatorRates, 0, _operatorRates.length);
     }
 
     public void generateRates(Random random, List<Operator> operators) {
-      _operatorRates = new float[operators.size()];
+      if (_operatorRates == null || _operatorRates.length != operators.size())
+        _operatorRates = new float[operators.size()];
       for (int i = 0; i < operators.size(); i++) {
         _operatorRates[i] = random.nextFloat();
       }
@@ -73,7 +90,12 @@ public class HAEASolver extends Solver {
   protected HashMap<Integer, Node> _previousTarget;
   protected HashMap<Integer, Node> _target;
   protected List<Node> _structure;
-  protected List<Individual> _population;
+  protected ForwardKinematics _kinematics;
+  //each individual of the population has an offspring buffer (i-th individual, i-th offspring)
+  protected List<Individual> _population, _offspring;
+  protected boolean[] _replaced;
+  protected Individual[] _pair = new Individual[2];
+  //the best individual found so far is kept in its own buffer
   protected Individual _best;
   protected List<Statistics> _statistics;
   protected float[][] _operatorsValues;
@@ -84,6 +106,7 @@ public class HAEASolver extends Solver {
     this._population_size = population_size;
     this._target = new HashMap<Integer, Node>();
     this._previousTarget = new HashMap<Integer, Node>();
+    this._kinematics = new ForwardKinematics(structure);
     this._selection = new SelectionMethods.Tournament();
     //Default operators
     this._operators.add(new OperatorMethods.UniformMutation());
@@ -132,18 +155,10 @@ public class HAEASolver extends Solver {
   }
 
   public float execute() {
-    this._best = null;
     this._statistics = new ArrayList<Statistics>();
     _operatorsValues = new float[_operators.size()][_maxIterations];
-    //1. Generate population
-    _population = Util.generatePopulation(_structure, _population_size);
-    //2. Update Fitness
-    for (int i = 0; i < _population.size(); i++) {
-      _population.get(i).updateFitness(_target);
-      _population.set(i, new HAEAIndividual(_population.get(i)));
-      ((HAEAIndividual) _population.get(i)).generateRates(_random, _operators);
-      _best = _best == null ? _population.get(i) : _best.fitness() > _population.get(i).fitness() ? _population.get(i) : _best;
-    }
+    //1. Generate population and 2. Update Fitness
+    _initPopulation();
     //3. Iterate a given number of times.
     int k = 0;
     while (k < _maxIterations) {
@@ -164,14 +179,13 @@ public class HAEASolver extends Solver {
 
   @Override
   protected boolean _iterate() {
-    List<Individual> next = new ArrayList<>();
-
-    for (Individual individual : _population) {
+    for (int j = 0; j < _population.size(); j++) {
+      HAEAIndividual individual = (HAEAIndividual) _population.get(j);
+      HAEAIndividual child = (HAEAIndividual) _offspring.get(j);
       //learning rate
       float delta = _random.nextFloat() * 0.5f;
-      int index = ((HAEAIndividual) individual).chooseOperator(_random);
+      int index = individual.chooseOperator(_random);
       Operator operator = _operators.get(index);
-      List<Individual> children = new ArrayList<>();
       //TODO: Consider when output is more than 1 Individual and when operator requires selection
       if (_debug) {
         System.out.println("P1 : \n \t" + individual);
@@ -180,51 +194,50 @@ public class HAEASolver extends Solver {
       if (operator instanceof OperatorMethods.ConvexCombination) {
         List<Individual> parents = _selection.choose(true, _population, 1);
         //If individual has a worst fitness - it's better to choose the selected parent
-        parents.add(individual);
+        _pair[0] = parents.get(0);
+        _pair[1] = individual;
         if (_debug) {
           System.out.println("Cross ");
           System.out.println("P2 : \n \t" + parents.get(0));
         }
-        children.add(operator.apply(parents.toArray(new Individual[parents.size()])));
+        operator.applyTo(child, _pair);
       } else {
-        children.add(operator.apply(individual));
-      }
-      //Find best between children and individual
-      Individual replacement = individual;
-      boolean better = false;
-      for (Individual child : children) {
-        child.updateFitness(_target);
-        if (child.fitness() < replacement.fitness()) {
-          replacement = child;
-          better = true;
-        }
+        operator.applyTo(child, individual);
       }
+      //Find best between child and individual
+      child.updateFitness(_target);
+      boolean better = child.fitness() < individual.fitness();
       if (_debug) {
-        System.out.println("Child : \n \t" + children.get(0));
+        System.out.println("Child : \n \t" + child);
       }
 
+      HAEAIndividual replacement = individual;
       if (better) {
-        replacement = new HAEAIndividual(replacement);
-        ((HAEAIndividual) replacement)._operatorRates = ((HAEAIndividual) individual)._operatorRates;
+        replacement = child;
+        replacement.setRates(individual);
         //reward
-        ((HAEAIndividual) replacement)._operatorRates[index] *= (1 + delta);
-        ((HAEAIndividual) replacement)._operatorRates = ((HAEAIndividual) replacement)._operatorRates.clone();
+        replacement._operatorRates[index] *= (1 + delta);
       } else {
         //punish
-        ((HAEAIndividual) replacement)._operatorRates[index] *= (1 - delta);
-        ((HAEAIndividual) replacement)._operatorRates = ((HAEAIndividual) replacement)._operatorRates.clone();
-
+        replacement._operatorRates[index] *= (1 - delta);
       }
 
       if (_debug) {
         System.out.println("Replacement : \n \t" + replacement);
       }
 
-      ((HAEAIndividual) replacement).normalizeRates();
-      next.add(replacement);
-      _best = _best == null ? replacement : _best.fitness() > replacement.fitness() ? replacement : _best;
+      replacement.normalizeRates();
+      //the population is replaced once all the individuals are processed
+      _replaced[j] = better;
+      if (_best.fitness() > replacement.fitness()) _best.set(replacement);
+    }
+    //swap the replaced individuals with their offspring buffers
+    for (int j = 0; j < _population.size(); j++) {
+      if (!_replaced[j]) continue;
+      Individual individual = _population.get(j);
+      _population.set(j, _offspring.get(j));
+      _offspring.set(j, individual);
     }
-    _population = next;
     if (_debug) {
       System.out.println("Population ");
       for (Individual ind : _population) {
@@ -250,7 +263,7 @@ public class HAEASolver extends Solver {
   @Override
   protected void _update() {
     for (int i = 0; i < _structure.size(); i++) {
-      _structure.get(i).setRotation(_best.structure().get(i).rotation().get());
+      _structure.get(i).setRotation(_best.rotation(i, null));
     }
   }
 
@@ -274,7 +287,6 @@ public class HAEASolver extends Solver {
 
   @Override
   protected void _reset() {
-    _best = null;
     _iterations = 0;
     if (_target == null) {
       _previousTarget = null;
@@ -284,13 +296,33 @@ public class HAEASolver extends Solver {
       _previousTarget.put(endEffector, Node.detach(_target.get(endEffector).position(), _target.get(endEffector).orientation(), 1));
     }
     //If there is no population then genereate one
-    _population = Util.generatePopulation(_structure, _population_size);
+    _initPopulation();
+  }
+
+  /**
+   * (Re)allocates the population and offspring buffers whenever the population size changes,
+   * then generates a population from the current state of the structure.
+   */
+  protected void _initPopulation() {
+    _kinematics.update();
+    if (_population == null || _population.size() != _population_size) {
+      _population = new ArrayList<Individual>(_population_size);
+      _offspring = new ArrayList<Individual>(_population_size);
+      for (int i = 0; i < _population_size; i++) {
+        _population.add(new HAEAIndividual(_kinematics));
+        _offspring.add(new HAEAIndividual(_kinematics));
+      }
+      _replaced = new boolean[_population_size];
+    }
+    if (_best == null) _best = new Individual(_kinematics);
+    Util.setupPopulation(_structure, _population);
+    Individual best = null;
     for (int i = 0; i < _population.size(); i++) {
       _population.get(i).updateFitness(_target);
-      _population.set(i, new HAEAIndividual(_population.get(i)));
       ((HAEAIndividual) _population.get(i)).generateRates(_random, _operators);
-      _best = _best == null ? _population.get(i) : _best.fitness() > _population.get(i).fitness() ? _population.get(i) : _best;
+      best = best == null ? _population.get(i) : best.fitness() > _population.get(i).fitness() ? _population.get(i) : best;
     }
+    _best.set(best);
   }
 
   @Override
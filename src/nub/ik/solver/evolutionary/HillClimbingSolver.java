@@ -5,7 +5,6 @@ import nub.ik.solver.Solver;
 import nub.primitives.Quaternion;
 import nub.primitives.Vector;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
@@ -16,7 +15,12 @@ public class HillClimbingSolver extends Solver {
   protected Random random = new Random();
   protected Node _target;
   protected Node _previousTarget;
-  protected List<? extends Node> _chain, _x_i;
+  protected List<? extends Node> _chain;
+  protected ForwardKinematics _kinematics;
+  //current solution and candidate buffers
+  protected Individual _x_i, _x_i1;
+  //auxiliary variables
+  protected Quaternion _rotation = new Quaternion();
   protected boolean _powerLaw;
   protected double _sigma;
   protected double _alpha = 2;
@@ -25,7 +29,9 @@ public class HillClimbingSolver extends Solver {
     this._powerLaw = false;
     this._sigma = sigma;
     this._chain = chain;
-    _x_i = _copy(chain);
+    _kinematics = new ForwardKinematics(chain);
+    _x_i = new Individual(_kinematics);
+    _x_i1 = new Individual(_kinematics);
   }
 
   public HillClimbingSolver(double alpha, double sigma, List<? extends Node> chain) {
@@ -33,7 +39,9 @@ public class HillClimbingSolver extends Solver {
     this._alpha = alpha;
     this._sigma = sigma;
     this._chain = chain;
-    _x_i = _copy(chain);
+    _kinematics = new ForwardKinematics(chain);
+    _x_i = new Individual(_kinematics);
+    _x_i1 = new Individual(_kinematics);
   }
 
   public double sigma() {
@@ -51,7 +59,8 @@ public class HillClimbingSolver extends Solver {
   public double[] execute() {
     double[] results = new double[_maxIterations];
     int k = 0;
-    _x_i = _copy(_chain);
+    _kinematics.update();
+    _x_i.setChain(_chain);
     while (k < _maxIterations) {
       _iterate();
       results[k] = _distanceToTarget(_x_i);
@@ -80,6 +89,11 @@ public class HillClimbingSolver extends Solver {
     return Vector.distance(chain.get(chain.size() - 1).position(), _target.position());
   }
 
+  protected double _distanceToTarget(Individual individual) {
+    _kinematics.evaluate(individual.genome());
+    return _kinematics.distance(_kinematics.size() - 1, _target.position());
+  }
+
   public double distanceToTarget() {
     return _distanceToTarget(_chain);
   }
@@ -89,28 +103,11 @@ public class HillClimbingSolver extends Solver {
     return Math.pow(1.0 - x, coarse_alpha);
   }
 
-  protected ArrayList<Node> _copy(List<? extends Node> chain) {
-    ArrayList<Node> copy = new ArrayList<Node>();
-    Node reference = chain.get(0).reference();
-    if (reference != null) {
-      reference = Node.detach(reference.position().get(), reference.orientation().get(), 1);
-    }
-    for (Node joint : chain) {
-      Node newJoint = Node.detach(new Vector(), new Quaternion(), 1f);
-      newJoint.setReference(reference);
-      newJoint.setPosition(joint.position().get());
-      newJoint.setOrientation(joint.orientation().get());
-      newJoint.setConstraint(joint.constraint());
-      copy.add(newJoint);
-      reference = newJoint;
-    }
-    return copy;
-  }
-
   @Override
   protected boolean _iterate() {
-    ArrayList<Node> x_i1 = _copy(_x_i);
-    for (int i = 0; i < _x_i.size(); i++) {
+    Individual x_i1 = _x_i1;
+    x_i1.set(_x_i);
+    for (int i = 0; i < x_i1.size(); i++) {
       int invert = random.nextDouble() >= 0.5 ? 1 : -1;
       //rotate
       float roll;
@@ -126,11 +123,13 @@ public class HillClimbingSolver extends Solver {
         yaw = (float) (random.nextGaussian() * _sigma);
       }
       //rotate method consider constraints
-      x_i1.get(i).rotate(new Quaternion(roll, pitch, yaw));
+      _rotation.fromEulerAngles(roll, pitch, yaw);
+      x_i1.rotate(i, _rotation);
     }
 
     double d1 = _distanceToTarget(x_i1), d2 = _distanceToTarget(_x_i);
     if (d1 < d2) {
+      _x_i1 = _x_i;
       _x_i = x_i1;
       d1 = d2;
     }
@@ -148,7 +147,7 @@ public class HillClimbingSolver extends Solver {
   @Override
   protected void _update() {
     for (int i = 0; i < _chain.size(); i++) {
-      _chain.get(i).setRotation(_x_i.get(i).rotation().get());
+      _chain.get(i).setRotation(_x_i.rotation(i, null));
     }
   }
 
@@ -165,7 +164,8 @@ public class HillClimbingSolver extends Solver {
 
   @Override
   protected void _reset() {
-    _x_i = _copy(_chain);
+    _kinematics.update();
+    _x_i.setChain(_chain);
     _previousTarget = _target == null ? null : Node.detach(_target.position().get(), _target.orientation().get(), 1);
     _iterations = 0;
   }
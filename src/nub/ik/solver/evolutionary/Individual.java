@@ -4,44 +4,86 @@ import nub.core.Node;
 import nub.primitives.Quaternion;
 import nub.primitives.Vector;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
 /**
  * Created by sebchaparr on 29/10/18.
+ * <p>
+ * An individual is a flat genome, i.e. the local rotation (x, y, z, w) of each joint of the
+ * structure, whose fitness is computed by a {@link ForwardKinematics} evaluator shared by the
+ * whole population. Hence copying an individual is a single array copy and no node graph is
+ * required per individual (see {@link #structure()}).
  */
 public class Individual {
   public enum FitnessFunction {
     POSITION, ORIENTATION, POSE
   }
 
+  protected ForwardKinematics _kinematics;
+  protected float[] _genome; // x, y, z, w
+  protected float[] _gradient; // euler angles (evolution gradient)
+  protected float _extinction;
+  //node graph only used for visualization purposes
   protected List<Node> _structure;
-  protected HashMap<String, Float> _floatParams = new HashMap<String, Float>();
-  protected HashMap<String, float[]> _arrayParams = new HashMap<String, float[]>();
   protected float _fitness;
   protected float _balanced_fitness;
   protected float _dr, _dt;
   protected FitnessFunction _fitness_function = FitnessFunction.POSITION;
+  //auxiliary variables
+  protected Quaternion _rotation = new Quaternion();
+  protected Vector _position = new Vector();
+
+  /**
+   * Creates an individual whose genome is given by the current rotations of the
+   * {@code kinematics} structure.
+   */
+  public Individual(ForwardKinematics kinematics) {
+    int size = kinematics == null ? 0 : kinematics.size();
+    _kinematics = kinematics;
+    _genome = new float[4 * size];
+    _gradient = new float[3 * size];
+    _fitness = Float.NaN;
+    if (size > 0) _kinematics.read(_kinematics.structure(), _genome);
+  }
 
   public Individual(List<Node> structure) {
-    this(structure, false);
+    this(new ForwardKinematics(structure));
   }
 
-  public Individual(List<Node> structure, boolean copy){
-    if(!copy) _structure = structure;
-    else _structure = _copy(structure);
-    _fitness = Float.NaN;
-    arrayParams().put("Evolution_Gradient", new float[structure.size() * 3]);
+  public ForwardKinematics kinematics() {
+    return _kinematics;
   }
 
+  public int size() {
+    return _genome.length / 4;
+  }
 
-  public List<Node> structure() {
-    return _structure;
+  public float[] genome() {
+    return _genome;
+  }
+
+  public float[] gradient() {
+    return _gradient;
   }
 
-  public void setStructure(List<Node> _structure) {
-    this._structure = _structure;
+  public float extinction() {
+    return _extinction;
+  }
+
+  public void setExtinction(float extinction) {
+    _extinction = extinction;
+  }
+
+  /**
+   * Returns a node graph with the current state of the genome. The graph is detached from
+   * the scene, allocated on the first call and kept for the individual lifetime, which is
+   * convenient for visualization purposes but should be avoided while solving.
+   */
+  public List<Node> structure() {
+    if (_structure == null) _structure = _kinematics.copy();
+    _kinematics.write(_genome, _structure);
+    return _structure;
   }
 
   public float fitness() {
@@ -52,41 +94,48 @@ public class Individual {
     return _balanced_fitness;
   }
 
-  public HashMap<String, Float> floatParams() {
-    return _floatParams;
+  public void setFitness(float fitness) {
+    _fitness = fitness;
   }
 
-  public HashMap<String, float[]> arrayParams() {
-    return _arrayParams;
+  public Quaternion rotation(int i, Quaternion target) {
+    return ForwardKinematics._get(_genome, i, target);
   }
 
-  public void setFitness(float fitness) {
-    _fitness = fitness;
+  /**
+   * Sets the rotation of the i-th joint (the joint constraint is satisfied).
+   */
+  public void setRotation(int i, Quaternion rotation) {
+    _kinematics.setRotation(_genome, i, rotation);
+  }
+
+  /**
+   * Rotates the i-th joint by {@code rotation} (the joint constraint is satisfied).
+   */
+  public void rotate(int i, Quaternion rotation) {
+    _kinematics.rotate(_genome, i, rotation);
   }
 
   public void updateFitness(HashMap<Integer, Node> targets) {
     _dt = _dr = 0;
-    //TODO : optimize calculations (cache positions and orientations)
+    _kinematics.evaluate(_genome);
     for (Integer index : targets.keySet()) {
+      Node target = targets.get(index);
       if (_fitness_function == FitnessFunction.POSITION || _fitness_function == FitnessFunction.POSE) {
-        float dist = Vector.distance(structure().get(index).position(), targets.get(index).position());
+        float dist = _kinematics.distance(index, target.position(_position));
         if (_fitness_function == FitnessFunction.POSE) {
+          //length of the path from the first joint to the indexed one
           float l = 0;
-          float d = Vector.distance(_structure.get(0).position(), _structure.get(index).position());
-          Node prev = null;
-          for (Node f : Node.path(_structure.get(0), _structure.get(index))) {
-            if (prev != null) l += Vector.distance(f.position(), prev.position());
-            prev = f;
-          }
+          for (int j = index; j > 0 && _kinematics.parent(j) >= 0; j = _kinematics.parent(j))
+            l += _kinematics.distance(j, _kinematics.parent(j));
+          float d = _kinematics.distance(0, index);
           _dt += (Math.PI * dist) / (Math.sqrt(l * d));
         } else {
           _dt += dist;
         }
       }
       if (_fitness_function == FitnessFunction.ORIENTATION || _fitness_function == FitnessFunction.POSE) {
-        Quaternion q1 = structure().get(index).orientation();
-        Quaternion q2 = targets.get(index).orientation();
-        float q_dot = Quaternion.dot(q1, q2);
+        float q_dot = Quaternion.dot(_kinematics.orientation(index, _rotation), target.orientation());
         _dr += 2 * Math.acos(q_dot);
       }
     }
@@ -123,64 +172,33 @@ public class Individual {
     return error;
   }
 
-  protected ArrayList<Node> _copy(List<Node> chain) {
-    HashMap<Node, Node> map = new HashMap<>();
-    ArrayList<Node> copy = new ArrayList<Node>();
-    Node reference = chain.get(0).reference();
-    if (reference != null) {
-      reference = Node.detach(reference.position().get(), reference.orientation().get(), 1);
-    }
-    map.put(chain.get(0).reference(), reference);
-    for (Node joint : chain) {
-      Node newJoint = Node.detach(new Vector(), new Quaternion(), 1);
-      newJoint.setReference(map.get(joint.reference()));
-      newJoint.setPosition(joint.position().get());
-      newJoint.setOrientation(joint.orientation().get());
-      newJoint.setConstraint(joint.constraint());
-      copy.add(newJoint);
-      map.put(joint, newJoint);
-    }
-    return copy;
-  }
-
-  //here we assume that chain and copy has the same structure
-  public void setChain(List<Node> chain) {
-    for(int i = 0; i < chain.size(); i++){
-      _structure.get(i).setTranslation(chain.get(i).translation().get());
-      _structure.get(i).setRotation(chain.get(i).rotation().get());
-    }
-  }
-
-  protected void _cloneAttributes(Individual individual){
-    _fitness = individual._fitness;
-    if (_floatParams != null) {
-      for (String name : _floatParams.keySet()) {
-        _floatParams.put(name, individual._floatParams.get(name).floatValue());
-      }
-    }
-    if (_arrayParams != null) {
-      for (String name : _arrayParams.keySet()) {
-        _arrayParams.put(name, individual._arrayParams.get(name).clone());
-      }
-    }
+  //here we assume that chain and the kinematics structure has the same layout
+  public void setChain(List<? extends Node> chain) {
+    _kinematics.read(chain, _genome);
   }
 
   public Individual clone() {
-    Individual individual = new Individual(_copy(_structure));
-    individual._cloneAttributes(this);
+    Individual individual = new Individual(_kinematics);
+    individual.set(this);
     return individual;
   }
 
-  public void set(Individual individual){
-    setChain(individual._structure);
-    _cloneAttributes(individual);
+  public void set(Individual individual) {
+    if (individual == this) return;
+    System.arraycopy(individual._genome, 0, _genome, 0, _genome.length);
+    System.arraycopy(individual._gradient, 0, _gradient, 0, _gradient.length);
+    _extinction = individual._extinction;
+    _fitness = individual._fitness;
+    _balanced_fitness = individual._balanced_fitness;
+    _dr = individual._dr;
+    _dt = individual._dt;
   }
 
   public String toString() {
     String s = "";
     s += "Individual : [";
-    for (Node frame : _structure) {
-      s += frame.rotation().eulerAngles() + ", ";
+    for (int i = 0; i < size(); i++) {
+      s += rotation(i, _rotation).eulerAngles() + ", ";
     }
     s += "] Fitness " + this._fitness;
     return s;
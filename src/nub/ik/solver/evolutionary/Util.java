@@ -4,6 +4,7 @@ import nub.core.Node;
 import nub.primitives.Quaternion;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Random;
@@ -44,31 +45,26 @@ public class Util {
 
   public static Individual generateIndividual(Individual original, float max_angle) {
     Individual individual = original.clone();
-    for (Node frame : individual.structure()) {
-      float roll = 2 * max_angle * random.nextFloat() - max_angle;
-      float pitch = 2 * max_angle * random.nextFloat() - max_angle;
-      float yaw = 2 * max_angle * random.nextFloat() - max_angle;
-      frame.rotate(new Quaternion(roll, pitch, yaw));
-    }
-    individual.arrayParams().put("Evolution_Gradient", new float[individual.structure().size() * 3]);
+    setupIndividual(individual, max_angle);
     return individual;
   }
 
   public static void setupIndividual(Individual individual, float max_angle) {
-    for (Node frame : individual.structure()) {
+    Quaternion rotation = new Quaternion();
+    for (int i = 0; i < individual.size(); i++) {
       float roll = 2 * max_angle * random.nextFloat() - max_angle;
       float pitch = 2 * max_angle * random.nextFloat() - max_angle;
       float yaw = 2 * max_angle * random.nextFloat() - max_angle;
-      frame.rotate(new Quaternion(roll, pitch, yaw));
+      rotation.fromEulerAngles(roll, pitch, yaw);
+      individual.rotate(i, rotation);
     }
-    individual.arrayParams().put("Evolution_Gradient", new float[individual.structure().size() * 3]);
+    Arrays.fill(individual.gradient(), 0);
   }
 
 
   public static List<Individual> generatePopulation(List<Node> structure, int n, float max_angle) {
     List<Individual> population = new ArrayList<>();
     Individual original = new Individual(structure);
-    original.arrayParams().put("Evolution_Gradient", new float[original.structure().size() * 3]);
     for (int i = 0; i < n - 1; i++) {
       population.add(generateIndividual(original, max_angle));
     }
@@ -80,15 +76,31 @@ public class Util {
     return generatePopulation(structure, n, (float) Math.toRadians(60));
   }
 
-  public static void setupPopulation(List<Node> structure, List<Individual> population){
+  /**
+   * Same as {@link #generatePopulation(List, int)} but reusing the given individuals, i.e.
+   * the first one gets the current state of the structure and the remaining ones a random
+   * perturbation of it.
+   */
+  public static void setupPopulation(List<? extends Node> structure, List<Individual> population){
     population.get(0).setChain(structure);
-    population.get(0).arrayParams().put("Evolution_Gradient", new float[population.get(0).structure().size() * 3]);
+    Arrays.fill(population.get(0).gradient(), 0);
     for (int i = 1; i < population.size(); i++) {
       population.get(i).setChain(structure);
       setupIndividual(population.get(i), (float) Math.toRadians(60));
     }
   }
 
+  /**
+   * Fills {@code population} with {@code n} individuals sharing the given {@code kinematics}
+   * evaluator. Already allocated individuals are reused.
+   */
+  public static List<Individual> allocatePopulation(ForwardKinematics kinematics, List<Individual> population, int n) {
+    if (population == null) population = new ArrayList<Individual>(n);
+    while (population.size() > n) population.remove(population.size() - 1);
+    while (population.size() < n) population.add(new Individual(kinematics));
+    return population;
+  }
+
 
   public static List<Individual> concatenate(List<Individual>... lists) {
     List<Individual> concatenation = new ArrayList<>();
@@ -111,7 +123,7 @@ public class Util {
     Random r = new Random();
     List<Individual> l = new ArrayList<Individual>();
     for (int i = 0; i < 15; i++) {
-      Individual ind = new Individual(null);
+      Individual ind = new Individual((ForwardKinematics) null);
       ind.setFitness(r.nextFloat() * 100);
       l.add(ind);
     }
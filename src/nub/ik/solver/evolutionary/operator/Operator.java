@@ -16,5 +16,18 @@ public abstract class Operator {
     _arity = arity;
   }
 
-  public abstract Individual apply(Individual... individuals);
+  /**
+   * Same as {@code applyTo(individuals[0].clone(), individuals)}.
+   */
+  public Individual apply(Individual... individuals) {
+    return applyTo(individuals[0].clone(), individuals);
+  }
+
+  /**
+   * Applies the operator to the given {@code individuals} and stores the result in
+   * {@code target}, which is returned. The target could be the first of the
+   * {@code individuals} (e.g. to mutate an individual in place), so that population buffers
+   * are reused between generations.
+   */
+  public abstract Individual applyTo(Individual target, Individual... individuals);
 }
@@ -1,6 +1,5 @@
 package nub.ik.solver.evolutionary.operator;
 
-import nub.core.Node;
 import nub.ik.solver.evolutionary.Individual;
 import nub.ik.solver.evolutionary.Util;
 import nub.primitives.Quaternion;
@@ -13,25 +12,27 @@ public class OperatorMethods {
   //TODO : Keep cache of euler angles or do computations in terms of Quaternions
   public static class UniformMutation extends Operator {
     protected float _delta = (float) Math.toRadians(30);
+    protected Quaternion _rotation = new Quaternion();
 
     @Override
-    public Individual apply(Individual... individuals) {
-      Individual individual = individuals[0].clone();
-      int n = individual.structure().size();
+    public Individual applyTo(Individual target, Individual... individuals) {
+      Individual individual = target;
+      individual.set(individuals[0]);
+      int n = individual.size();
       //Define how many genes mutate on average
       float alpha = 1.0f / n;
       float beta = _delta;
 
-      for (int i = 0; i < individual.structure().size(); i++) {
+      for (int i = 0; i < n; i++) {
         if (Util.random.nextFloat() > alpha) continue;
-        Node joint = individual.structure().get(i);
         //modify each Euler Angle
         //rotate
         float roll = 2 * beta * Util.random.nextFloat() - beta;
         float pitch = 2 * beta * Util.random.nextFloat() - beta;
         float yaw = 2 * beta * Util.random.nextFloat() - beta;
         //rotate method consider constraints
-        joint.rotate(new Quaternion(roll, pitch, yaw));
+        _rotation.fromEulerAngles(roll, pitch, yaw);
+        individual.rotate(i, _rotation);
       }
       return individual;
     }
@@ -39,25 +40,27 @@ public class OperatorMethods {
 
   public static class GaussianMutation extends Operator {
     protected float _sigma = (float) Math.toRadians(30);
+    protected Quaternion _rotation = new Quaternion();
 
     @Override
-    public Individual apply(Individual... individuals) {
-      Individual individual = individuals[0].clone();
-      int n = individual.structure().size();
+    public Individual applyTo(Individual target, Individual... individuals) {
+      Individual individual = target;
+      individual.set(individuals[0]);
+      int n = individual.size();
       //Define how many genes mutate on average
       float alpha = 1.0f / n;
       float beta = _sigma;
 
-      for (int i = 0; i < individual.structure().size(); i++) {
+      for (int i = 0; i < n; i++) {
         if (Util.random.nextFloat() > alpha) continue;
-        Node joint = individual.structure().get(i);
         //modify each Euler Angle
         //rotate
         float roll = (float) (Util.random.nextGaussian() * beta);
         float pitch = (float) (Util.random.nextGaussian() * beta);
         float yaw = (float) (Util.random.nextGaussian() * beta);
         //rotate method consider constraints
-        joint.rotate(new Quaternion(roll, pitch, yaw));
+        _rotation.fromEulerAngles(roll, pitch, yaw);
+        individual.rotate(i, _rotation);
       }
       return individual;
     }
@@ -66,6 +69,7 @@ public class OperatorMethods {
   public static class ConvexCombination extends Operator {
     protected float[] _weights;
     protected boolean _randomWeights = true;
+    protected Quaternion _rotation = new Quaternion();
 
     public ConvexCombination() {
       _arity = 2;
@@ -77,15 +81,14 @@ public class OperatorMethods {
     }
 
     @Override
-    public Individual apply(Individual... individuals) {
+    public Individual applyTo(Individual target, Individual... individuals) {
       if (_weights != null) {
         _weights = _weights.length != individuals.length ? null : _weights;
       }
-      Individual combination = individuals[0].clone();
+      Individual combination = target;
+      combination.set(individuals[0]);
 
-      // Set<String> params = individuals[0].parameters().keySet();
-
-      for (int i = 0; i < individuals[0].structure().size(); i++) {
+      for (int i = 0; i < combination.size(); i++) {
         float roll = 0;
         float pitch = 0;
         float yaw = 0;
@@ -93,13 +96,14 @@ public class OperatorMethods {
         float sum = 0;
         for (Individual individual : individuals) {
           float w = _weights != null ? _weights[j] : _randomWeights ? Util.random.nextFloat() : 1;
-          Vector euler = individual.structure().get(i).rotation().eulerAngles();
+          Vector euler = individual.rotation(i, _rotation).eulerAngles();
           roll += w * euler.x();
           pitch += w * euler.y();
           yaw += w * euler.z();
           sum += w;
         }
-        combination.structure().get(i).setRotation(new Quaternion(roll / sum, pitch / sum, yaw / sum));
+        _rotation.fromEulerAngles(roll / sum, pitch / sum, yaw / sum);
+        combination.setRotation(i, _rotation);
       }
       return combination;
     }
@@ -120,41 +124,46 @@ public class OperatorMethods {
   //Operators based on Sebastian Stark's Thesis
   public static class Mutation extends Operator {
     protected float _extinction;
+    protected Quaternion _rotation = new Quaternion();
 
     public void setExtinction(Individual... individuals) {
       _extinction = 0;
       for (Individual ind : individuals) {
-        _extinction += ind.floatParams().get("Extinction");
+        _extinction += ind.extinction();
       }
       _extinction /= individuals.length;
     }
 
     @Override
-    public Individual apply(Individual... individuals) {
-      Individual individual = individuals[0].clone();
-      int n = individual.structure().size();
+    public Individual applyTo(Individual target, Individual... individuals) {
+      Individual individual = target;
+      individual.set(individuals[0]);
+      int n = individual.size();
       //Define how many genes mutate on average
       float alpha = (_extinction * (n - 1f) + 1f) / n;
       float beta = _extinction * (float) Math.PI;
 
-      for (int i = 0; i < individual.structure().size(); i++) {
+      for (int i = 0; i < n; i++) {
         if (Util.random.nextFloat() > alpha) continue;
-        Node joint = individual.structure().get(i);
-        if (i < individuals[0].structure().size() - 1)
-          if (individuals[0].structure().get(i + 1).reference().translation().magnitude() < 0.0001) continue;
+        //skip joints placed at the same position of their reference
+        if (i < n - 1 && individual.kinematics().length(i) < 0.0001) continue;
         //modify each Euler Angle
         //rotate
         float roll = 2 * beta * Util.random.nextFloat() - beta;
         float pitch = 2 * beta * Util.random.nextFloat() - beta;
         float yaw = 2 * beta * Util.random.nextFloat() - beta;
         //rotate method consider constraints
-        joint.rotate(new Quaternion(roll, pitch, yaw));
+        _rotation.fromEulerAngles(roll, pitch, yaw);
+        individual.rotate(i, _rotation);
       }
       return individual;
     }
   }
 
   public static class Recombination extends Operator {
+    protected float[] _r = new float[0];
+    protected Quaternion _rotation = new Quaternion();
+
     public Recombination() {
       _arity = 2;
     }
@@ -164,23 +173,23 @@ public class OperatorMethods {
     }
 
     @Override
-    public Individual apply(Individual... individuals) {
-      Individual combination = individuals[0].clone();
-      float[] r = new float[individuals.length];
+    public Individual applyTo(Individual target, Individual... individuals) {
+      if (_r.length != individuals.length) _r = new float[individuals.length];
       for (int i = 0; i < individuals.length; i++) {
-        r[i] = Util.random.nextFloat();
+        _r[i] = Util.random.nextFloat();
       }
-
-      for (int i = 0; i < individuals[0].structure().size(); i++) {
-        if (i < individuals[0].structure().size() - 1)
-          if (individuals[0].structure().get(i + 1).reference().translation().magnitude() < 0.0001) continue;
+      Individual combination = target;
+      combination.set(individuals[0]);
+      int n = combination.size();
+      for (int i = 0; i < n; i++) {
+        if (i < n - 1 && combination.kinematics().length(i) < 0.0001) continue;
         float roll = 0;
         float pitch = 0;
         float yaw = 0;
         float sum = 0;
         for (Individual individual : individuals) {
           float w = Util.random.nextFloat();
-          Vector euler = individual.structure().get(i).rotation().eulerAngles();
+          Vector euler = individual.rotation(i, _rotation).eulerAngles();
           roll += w * euler.x();
           pitch += w * euler.y();
           yaw += w * euler.z();
@@ -192,17 +201,17 @@ public class OperatorMethods {
 
         int c = 0;
         for (Individual individual : individuals) {
-          float[] g = individual.arrayParams().get("Evolution_Gradient");
-          if (g == null) continue;
-          roll += r[c] * g[3 * i];
-          pitch += r[c] * g[3 * i + 1];
-          yaw += r[c] * g[3 * i + 2];
+          float[] g = individual.gradient();
+          roll += _r[c] * g[3 * i];
+          pitch += _r[c] * g[3 * i + 1];
+          yaw += _r[c] * g[3 * i + 2];
           //roll += Util.random.nextFloat() * g[3*i];
           //pitch += Util.random.nextFloat() * g[3*i + 1];
           //yaw += Util.random.nextFloat() * g[3*i + 2];
           c++;
         }
-        combination.structure().get(i).setRotation(new Quaternion(roll, pitch, yaw));
+        _rotation.fromEulerAngles(roll, pitch, yaw);
+        combination.setRotation(i, _rotation);
       }
       return combination;
     }
@@ -211,6 +220,8 @@ public class OperatorMethods {
   public static class Adoption extends Operator {
     protected Individual[] _parents;
     protected Individual _best;
+    protected Vector _mean = new Vector(), _mine = new Vector(), _result = new Vector();
+    protected Quaternion _rotation = new Quaternion();
 
     public Adoption() {
       _arity = 1;
@@ -225,33 +236,32 @@ public class OperatorMethods {
     }
 
     @Override
-    public Individual apply(Individual... individuals) {
-      Individual combination = individuals[0].clone();
-      Vector parents = new Vector();
+    public Individual applyTo(Individual target, Individual... individuals) {
+      Individual combination = target;
+      combination.set(individuals[0]);
       float rp = Util.random.nextFloat();
       float rb = Util.random.nextFloat();
-      for (int i = 0; i < individuals[0].structure().size(); i++) {
-        if (i < individuals[0].structure().size() - 1)
-          if (individuals[0].structure().get(i + 1).reference().translation().magnitude() < 0.0001) continue;
+      int n = combination.size();
+      for (int i = 0; i < n; i++) {
+        if (i < n - 1 && combination.kinematics().length(i) < 0.0001) continue;
+        _mean.set(0, 0, 0);
         for (Individual parent : _parents) {
-          parents.add(parent.structure().get(i).rotation().eulerAngles());
+          _mean.add(parent.rotation(i, _rotation).eulerAngles());
         }
-        parents.divide(_parents.length);
-        Vector mine = individuals[0].structure().get(i).rotation().eulerAngles();
-        Vector best = _best.structure().get(i).rotation().eulerAngles();
-
-        Vector result = new Vector();
+        _mean.divide(_parents.length);
+        _mine.set(combination.rotation(i, _rotation).eulerAngles());
+        Vector best = _best.rotation(i, _rotation).eulerAngles();
 
         for (int j = 0; j < 3; j++) {
           float wi = Util.random.nextFloat();
-          result._vector[j] = mine._vector[j] + wi * rp * (parents._vector[j] - mine._vector[j]) + (1 - wi) * rb * (best._vector[j] - mine._vector[j]);
+          _result._vector[j] = _mine._vector[j] + wi * rp * (_mean._vector[j] - _mine._vector[j]) + (1 - wi) * rb * (best._vector[j] - _mine._vector[j]);
         }
-        combination.structure().get(i).setRotation(new Quaternion(result.x(), result.y(), result.z()));
+        _rotation.fromEulerAngles(_result.x(), _result.y(), _result.z());
+        combination.setRotation(i, _rotation);
       }
       return combination;
     }
   }
-
   /*TODO : Greedy operator
    * Axis of Rotation is cross product defined by (EF - Joint) X (Target - Joint)
    * Find angle by means of dot product (EF - Joint) dot (Target - Joint).
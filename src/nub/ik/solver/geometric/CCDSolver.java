@@ -28,6 +28,7 @@ public class CCDSolver extends Solver {
   public boolean _enable_kinematic_structure = true;
   //Using a Kinematic Structure decreases the number of transformations
   protected List<KinematicStructure.KNode> _structure;
+  protected List<Node> _nodes; //nodes of the structure, see _pose()
   protected Node _target;
   protected Node _previousTarget;
 
@@ -182,6 +183,23 @@ public class CCDSolver extends Solver {
     /*Not required, since chain is updated inside iterate step*/
   }
 
+  //the chain is modified in place
+  @Override
+  protected List<? extends Node> _pose() {
+    if (_target == null) return null;
+    if (!_enable_kinematic_structure) return _chain;
+    if (_nodes == null) {
+      _nodes = new ArrayList<Node>();
+      for (KinematicStructure.KNode knode : _structure) _nodes.add(knode.node());
+    }
+    return _nodes;
+  }
+
+  @Override
+  protected void _restored() {
+    if (_enable_kinematic_structure) _structure.get(_structure.size() - 1).updatePath(null);
+  }
+
   @Override
   protected boolean _changed() {
     if (_target == null) {
@@ -12,6 +12,7 @@
 package nub.ik.solver.geometric;
 
 import nub.core.Node;
+import nub.core.constraint.Constraint;
 import nub.core.constraint.BallAndSocket;
 import nub.ik.visualization.VisualizerMediator;
 import nub.ik.solver.trik.Context;
@@ -290,10 +291,12 @@ public class ChainSolver extends FABRIKSolver {
   protected void _update() {
     if (_current < _best) {
       for (int i = 0; i < _original.size(); i++) {
-        _original.get(i).rotation()._quaternion[0] = _chain.get(i).rotation()._quaternion[0];
-        _original.get(i).rotation()._quaternion[1] = _chain.get(i).rotation()._quaternion[1];
-        _original.get(i).rotation()._quaternion[2] = _chain.get(i).rotation()._quaternion[2];
-        _original.get(i).rotation()._quaternion[3] = _chain.get(i).rotation()._quaternion[3];
+        //bypass the constraint (chain rotations already satisfy it) but keep the node cache updated
+        Node node = _original.get(i);
+        Constraint constraint = node.constraint();
+        node.setConstraint(null);
+        node.setRotation(_chain.get(i).rotation().get());
+        node.setConstraint(constraint);
       }
       _best = _current;
     }
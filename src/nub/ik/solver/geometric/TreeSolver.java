@@ -19,6 +19,9 @@ import nub.processing.Scene;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 public class TreeSolver extends FABRIKSolver {
   //TODO : How to apply proposed heuristics to this solver?
@@ -75,6 +78,8 @@ public class TreeSolver extends FABRIKSolver {
   protected boolean _keepDirection = true;
   protected boolean _explore = true;
   protected boolean _is3D;
+  //pool on which sibling subtrees are solved, null if they're solved sequentially
+  protected ForkJoinPool _pool;
 
   public Node head() {
     return (Node) root._solver().head();
@@ -151,19 +156,121 @@ public class TreeSolver extends FABRIKSolver {
     this._is3D = true;
   }
 
+  /**
+   * Same as {@code enableParallelSolving(enable ? ForkJoinPool.commonPool() : null)}.
+   */
+  public void enableParallelSolving(boolean enable) {
+    enableParallelSolving(enable ? ForkJoinPool.commonPool() : null);
+  }
+
+  /**
+   * Solves the sibling subtrees (e.g. the limbs of a skeleton) concurrently on the given
+   * {@code pool}, or sequentially if it is {@code null} (the default). Each subtree works on its
+   * own detached copy of its chains, and the results are merged at the branching joint in the
+   * children order, so that both modes give the same solution. When the solver is itself
+   * executed on a fork-join pool (e.g. by a {@link nub.ik.solver.BatchSolver}) the subtrees are
+   * forked on that pool instead.
+   */
+  public void enableParallelSolving(ForkJoinPool pool) {
+    _pool = pool;
+  }
+
+  public boolean isParallelSolvingEnabled() {
+    return _pool != null;
+  }
+
+  public ForkJoinPool pool() {
+    return _pool;
+  }
+
+  protected class ForwardReaching extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    protected TreeNode _treeNode;
+    protected int _chains;
+    protected List<ArrayList<Vector>> _previous = new ArrayList<>(), _reached = new ArrayList<>();
+
+    protected ForwardReaching(TreeNode treeNode) {
+      _treeNode = treeNode;
+    }
+
+    @Override
+    protected void compute() {
+      _chains = _forwardReaching(_treeNode, _previous, _reached);
+    }
+  }
+
+  protected class BackwardReaching extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    protected TreeNode _treeNode;
+    protected float _change;
+
+    protected BackwardReaching(TreeNode treeNode) {
+      _treeNode = treeNode;
+    }
+
+    @Override
+    protected void compute() {
+      _change = _backwardReaching(_treeNode);
+    }
+  }
+
+  //Debug copies (attached to the graph) are always solved sequentially
+  protected boolean _forkable(TreeNode treeNode) {
+    return _pool != null && !debug && treeNode._children().size() > 1;
+  }
+
+  //Solves the children subtrees of treeNode
+  protected void _invoke(TreeNode treeNode, final RecursiveAction[] tasks) {
+    //the world transformation cache of the nodes shared by the subtrees must be updated before forking
+    for (TreeNode child : treeNode._children()) {
+      Node reference = child._solver()._chain.get(0).reference();
+      if (reference != null) reference.position();
+    }
+    if (ForkJoinTask.inForkJoinPool()) {
+      ForkJoinTask.invokeAll(tasks);
+    } else {
+      _pool.invoke(new RecursiveAction() {
+        @Override
+        protected void compute() {
+          invokeAll(tasks);
+        }
+      });
+    }
+  }
+
   protected int _forwardReaching(TreeNode treeNode) {
+    return _forwardReaching(treeNode, aux_prev, aux_p);
+  }
+
+  protected int _forwardReaching(TreeNode treeNode, List<ArrayList<Vector>> previous, List<ArrayList<Vector>> reached) {
     ArrayList<Vector> list_a = new ArrayList<>();
     for (Node f : treeNode._solver._chain) list_a.add(f.worldLocation(new Vector()));
-    aux_prev.add(list_a);
+    previous.add(list_a);
     float totalWeight = 0;
     int chains = 0;
 
     /*int n = treeNode._children().size();
     int idx = n > 0 ? (int) Math.round(Math.random() * (n - 1)) : 0; //TODO: Randomization not important
     for (int c = 0 ; c < n ; c++, idx = (idx + 1) % n){*/
-    for (TreeNode child : treeNode._children()) {
-      chains += _forwardReaching(child);
-      if (child._solver().target() != null) totalWeight += child._weight();
+    if (_forkable(treeNode)) {
+      ForwardReaching[] tasks = new ForwardReaching[treeNode._children().size()];
+      for (int i = 0; i < tasks.length; i++)
+        tasks[i] = new ForwardReaching(treeNode._children().get(i));
+      _invoke(treeNode, tasks);
+      //merge the results in the children order
+      for (ForwardReaching task : tasks) {
+        previous.addAll(task._previous);
+        reached.addAll(task._reached);
+        chains += task._chains;
+        if (task._treeNode._solver().target() != null) totalWeight += task._treeNode._weight();
+      }
+    } else {
+      for (TreeNode child : treeNode._children()) {
+        chains += _forwardReaching(child, previous, reached);
+        if (child._solver().target() != null) totalWeight += child._weight();
+      }
     }
     //Stage 1: Forward Reaching
     ChainSolver solver = treeNode._solver();
@@ -232,7 +339,7 @@ public class TreeSolver extends FABRIKSolver {
     for (Vector v : solver._positions()) {
       list.add(v.get());
     }
-    aux_p.add(list);
+    reached.add(list);
     //As the root could rotate it's better to apply backward step on parent
     if(treeNode._parent != null)treeNode._parent._modified = true;
     treeNode._modified = true;
@@ -243,8 +350,8 @@ public class TreeSolver extends FABRIKSolver {
     return chains + 1;
   }
 
-  public static ArrayList<ArrayList<Vector>> aux_p = new ArrayList<>();
-  public static ArrayList<ArrayList<Vector>> aux_prev = new ArrayList<>();
+  public ArrayList<ArrayList<Vector>> aux_p = new ArrayList<>();
+  public ArrayList<ArrayList<Vector>> aux_prev = new ArrayList<>();
 
   protected float _backwardReaching(TreeNode treeNode) {
     float change = _minDistance;
@@ -332,14 +439,28 @@ public class TreeSolver extends FABRIKSolver {
       }
     }
 
-    for (TreeNode child : treeNode._children()) {
-      change += _backwardReaching(child);
+    if (_forkable(treeNode)) {
+      BackwardReaching[] tasks = new BackwardReaching[treeNode._children().size()];
+      for (int i = 0; i < tasks.length; i++)
+        tasks[i] = new BackwardReaching(treeNode._children().get(i));
+      _invoke(treeNode, tasks);
+      for (BackwardReaching task : tasks)
+        change += task._change;
+    } else {
+      for (TreeNode child : treeNode._children()) {
+        change += _backwardReaching(child);
+      }
     }
+    return change;
+  }
 
+  //Accumulates the distance from each end effector to its target into _current
+  protected void _updateError(TreeNode treeNode) {
     if (treeNode._solver().target() != null && treeNode._children.isEmpty())
       _current += Vector.distance(treeNode._solver()._chain.get(treeNode._solver()._chain.size() - 1).position(), treeNode._solver().target().position());
-
-    return change;
+    for (TreeNode child : treeNode._children()) {
+      _updateError(child);
+    }
   }
 
   @Override
@@ -349,6 +470,7 @@ public class TreeSolver extends FABRIKSolver {
     _current = 0;
     int modifiedChains = _forwardReaching(root);
     float change = _backwardReaching(root);
+    _updateError(root);
     change = modifiedChains > 0 ? change / (modifiedChains * 1.f) : change;
     //Check total position change
     _update();
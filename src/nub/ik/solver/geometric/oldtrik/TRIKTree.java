@@ -1,6 +1,7 @@
 package nub.ik.solver.geometric.oldtrik;
 
 import nub.core.Node;
+import nub.ik.solver.BatchSolver;
 import nub.ik.solver.Solver;
 import nub.ik.solver.trik.implementations.SimpleTRIK;
 import nub.primitives.Quaternion;
@@ -10,6 +11,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 public class TRIKTree extends Solver {
     protected static class TreeNode {
@@ -58,6 +60,9 @@ public class TRIKTree extends Solver {
     protected SimpleTRIK.HeuristicMode _mode = SimpleTRIK.HeuristicMode.EXPRESSIVE_FINAL;
     protected float _current = 10e10f, _best = 10e10f;
     protected HashMap<Node, Node> _endEffectorMap = new HashMap<>();
+    //pool on which the leaf chains are solved, null if they're solved sequentially
+    protected ForkJoinPool _pool;
+    protected BatchSolver _leaves;
 
     public TRIKTree(Node root){
         this(root, SimpleTRIK.HeuristicMode.EXPRESSIVE_FINAL);
@@ -94,13 +99,67 @@ public class TRIKTree extends Solver {
         }
     }
 
+    /**
+     * Same as {@code enableParallelSolving(enable ? ForkJoinPool.commonPool() : null)}.
+     * */
+    public void enableParallelSolving(boolean enable){
+        enableParallelSolving(enable ? ForkJoinPool.commonPool() : null);
+    }
+
+    /**
+     * Solves the leaf chains of the tree (e.g. the limbs of a skeleton) concurrently on the given pool,
+     * or sequentially if it is null (the default). Each leaf chain is solved by a SimpleTRIK on its own
+     * detached copy (see BatchSolver) and the results are merged at the branching joints (from the
+     * leaves to the root) on the calling thread, hence both modes give the same solution.
+     * */
+    public void enableParallelSolving(ForkJoinPool pool){
+        _pool = pool;
+        _leaves = null;
+    }
+
+    public boolean isParallelSolvingEnabled(){
+        return _pool != null;
+    }
+
+    public ForkJoinPool pool(){
+        return _pool;
+    }
+
+    //collects the solvers of the leaf chains that have a target
+    protected void _collectLeaves(TreeNode treeNode, BatchSolver batch){
+        if(treeNode._children().isEmpty()){
+            if(treeNode._solver.target() != null) batch.add(treeNode._solver);
+            return;
+        }
+        for(TreeNode child : treeNode._children()){
+            _collectLeaves(child, batch);
+        }
+    }
+
+    protected void _solveLeaves(){
+        if(_leaves == null){
+            _leaves = new BatchSolver(_pool);
+            //a limb per task
+            _leaves.setThreshold(1);
+            _collectLeaves(_root, _leaves);
+        }
+        //resets read the scene graph, hence they're performed before forking
+        for(Solver solver : _leaves.solvers()){
+            ((SimpleTRIK) solver).reset();
+        }
+        _leaves.solve();
+    }
+
     protected boolean _solve(TreeNode treeNode){
         if(treeNode._children == null || treeNode._children.isEmpty()){
             SimpleTRIK solver = treeNode._solver;
             if(solver.target() == null) return false;
-            //solve ik for current chain
-            solver.reset();
-            solver.solve(); //Perform a given number of iterations
+            //in parallel mode the leaf chains were already solved (see _solveLeaves)
+            if(_pool == null) {
+                //solve ik for current chain
+                solver.reset();
+                solver.solve(); //Perform a given number of iterations
+            }
             return true;
         }
 
@@ -144,6 +203,7 @@ public class TRIKTree extends Solver {
 
     @Override
     protected boolean _iterate() {
+        if(_pool != null) _solveLeaves();
         _solve(_root);
         return false;
     }
@@ -221,6 +281,7 @@ public class TRIKTree extends Solver {
             if (node == endEffector) {
                 treeNode._solver().setTarget(target);
                 _endEffectorMap.put(endEffector, target);
+                _leaves = null;
                 return true;
             }
         }
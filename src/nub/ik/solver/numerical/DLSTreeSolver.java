@@ -0,0 +1,304 @@
+/****************************************************************************************
+ * nub
+ * Copyright (c) 2019 National University of Colombia, https://visualcomputing.github.io/
+ * @author Sebastian Chaparro, https://github.com/sechaparroc
+ * @author Jean Pierre Charalambos, https://github.com/VisualComputing
+ *
+ * All rights reserved. A 2D or 3D scene graph library providing eye, input and timing
+ * handling to a third party (real or non-real time) renderer. Released under the terms
+ * of the GPL v3.0 which is available at http://www.gnu.org/licenses/gpl.html
+ ****************************************************************************************/
+
+package nub.ik.solver.numerical;
+
+import nub.core.Node;
+import nub.ik.solver.Solver;
+import nub.primitives.Quaternion;
+import nub.primitives.Vector;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.CommonOps_DDRM;
+import org.ejml.dense.row.factory.LinearSolverFactory_DDRM;
+import org.ejml.interfaces.linsol.LinearSolver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DLSTreeSolver solves a whole tree structure (e.g. a skeleton) with several end effectors
+ * at once, instead of solving each limb with an independent solver.
+ * <p>
+ * A single stacked Jacobian is built whose rows are the positional degrees of freedom of all
+ * the end effectors that have a target, and whose columns are three rotational degrees of
+ * freedom (around the world x, y and z axes) per joint that is an ancestor of some of these
+ * end effectors. An entry is zero whenever the joint does not belong to the path from the
+ * {@link #head()} to the end effector, so that joints shared by several limbs (e.g. the
+ * pelvis or the spine) receive a single compromise update.
+ * <p>
+ * Each iteration performs a damped least squares step, i.e.
+ * {@code delta = J^T (J J^T + lambda^2 I)^-1 e}. Since the system to solve has as many rows
+ * as end effector degrees of freedom it remains small even for large skeletons. All the
+ * buffers as well as the EJML linear solver are allocated only when the set of targets
+ * changes (see {@link #addTarget(Node, Node)}).
+ * <p>
+ * Look at https://www.math.ucsd.edu/~sbuss/ResearchWeb/ikmethods/iksurvey.pdf
+ */
+public class DLSTreeSolver extends Solver {
+  protected Node _head;
+  //nodes of the tree in pre-order, i.e. a node is always placed before its descendants
+  protected List<Node> _nodes = new ArrayList<Node>();
+  protected List<Node> _endEffectors = new ArrayList<Node>();
+  protected List<Node> _targets = new ArrayList<Node>();
+  protected List<Vector> _previousTargets = new ArrayList<Vector>();
+  protected boolean _build = true;
+
+  //stacked problem
+  protected List<Node> _joints = new ArrayList<Node>();
+  protected int[][] _paths; //joints (indices) on the path from the head to each end effector
+  protected Vector[] _jointPositions, _endEffectorPositions, _targetPositions;
+  protected DMatrixRMaj _J, _JJT, _error, _f, _delta;
+  protected LinearSolver<DMatrixRMaj, DMatrixRMaj> _linearSolver;
+
+  protected int _dof = 3; //TODO : Consider EF with ORIENTATIONAL DOF
+  protected float _max_d;
+  protected float _damping = 0.5f;
+  protected float _max_change = (float) Math.toRadians(45);
+
+  //auxiliary variables
+  protected Vector _r = new Vector(), _e = new Vector(), _axis = new Vector();
+  protected Quaternion _orientation = new Quaternion(), _rotation = new Quaternion();
+
+  public DLSTreeSolver(Node head) {
+    super();
+    _head = head;
+    _collect(head);
+  }
+
+  protected void _collect(Node node) {
+    _nodes.add(node);
+    for (Node child : node.children())
+      _collect(child);
+  }
+
+  public Node head() {
+    return _head;
+  }
+
+  public List<Node> endEffectors() {
+    return _endEffectors;
+  }
+
+  public List<Node> targets() {
+    return _targets;
+  }
+
+  /**
+   * Returns the target associated to the given {@code endEffector}, or {@code null} if
+   * the end effector has not been registered.
+   */
+  public Node target(Node endEffector) {
+    int i = _endEffectors.indexOf(endEffector);
+    return i < 0 ? null : _targets.get(i);
+  }
+
+  /**
+   * Sets the damping factor relative to the longest bone of the tree. Larger values make
+   * the solver more stable near singularities at the cost of a slower convergence.
+   */
+  public void setDamping(float damping) {
+    _damping = damping;
+  }
+
+  public float damping() {
+    return _damping;
+  }
+
+  /**
+   * Associates the {@code target} to the {@code endEffector}. Returns {@code false} if the
+   * end effector doesn't belong to this solver tree. A {@code null} target removes the end
+   * effector from the problem.
+   */
+  public boolean addTarget(Node endEffector, Node target) {
+    if (endEffector == _head || !_nodes.contains(endEffector)) return false;
+    int i = _endEffectors.indexOf(endEffector);
+    if (target == null) {
+      if (i >= 0) {
+        _endEffectors.remove(i);
+        _targets.remove(i);
+        _previousTargets.remove(i);
+        _build = true;
+      }
+      return true;
+    }
+    if (i >= 0) {
+      _targets.set(i, target);
+    } else {
+      _endEffectors.add(endEffector);
+      _targets.add(target);
+      _previousTargets.add(null);
+      _build = true;
+    }
+    change(true);
+    return true;
+  }
+
+  @Override
+  public void setTarget(Node endEffector, Node target) {
+    addTarget(endEffector, target);
+  }
+
+  /**
+   * Collects the joints influencing any end effector and allocates the stacked problem
+   * buffers accordingly.
+   */
+  protected void _build() {
+    _joints.clear();
+    //keep the pre-order so that iterating backwards visits descendants first
+    for (Node node : _nodes) {
+      for (Node endEffector : _endEffectors) {
+        if (node != endEffector && endEffector.isAncestor(node)) {
+          _joints.add(node);
+          break;
+        }
+      }
+    }
+    _paths = new int[_endEffectors.size()][];
+    for (int i = 0; i < _endEffectors.size(); i++) {
+      List<Node> path = Node.path(_head, _endEffectors.get(i));
+      _paths[i] = new int[path.size() - 1];
+      for (int j = 0; j < path.size() - 1; j++)
+        _paths[i][j] = _joints.indexOf(path.get(j));
+    }
+    _max_d = 0;
+    for (Node node : _nodes) {
+      if (node == _head) continue;
+      float d = Vector.distance(node.position(), node.reference().position());
+      _max_d = _max_d < d ? d : _max_d;
+    }
+
+    int rows = _dof * _endEffectors.size();
+    int cols = 3 * _joints.size();
+    _jointPositions = new Vector[_joints.size()];
+    for (int j = 0; j < _jointPositions.length; j++)
+      _jointPositions[j] = new Vector();
+    _endEffectorPositions = new Vector[_endEffectors.size()];
+    _targetPositions = new Vector[_endEffectors.size()];
+    for (int i = 0; i < _endEffectorPositions.length; i++) {
+      _endEffectorPositions[i] = new Vector();
+      _targetPositions[i] = new Vector();
+    }
+    _J = new DMatrixRMaj(rows, cols);
+    _JJT = new DMatrixRMaj(rows, rows);
+    _error = new DMatrixRMaj(rows, 1);
+    _f = new DMatrixRMaj(rows, 1);
+    _delta = new DMatrixRMaj(cols, 1);
+    //J J^T + lambda^2 I is symmetric positive definite
+    _linearSolver = LinearSolverFactory_DDRM.symmPosDef(rows);
+    _build = false;
+  }
+
+  @Override
+  protected boolean _iterate() {
+    //As no target is specified there is no need to perform an iteration
+    if (_endEffectors.isEmpty()) return true;
+    if (_build) _build();
+    for (int j = 0; j < _joints.size(); j++)
+      _joints.get(j).position(_jointPositions[j]);
+    for (int i = 0; i < _endEffectors.size(); i++) {
+      _endEffectors.get(i).position(_endEffectorPositions[i]);
+      _targets.get(i).position(_targetPositions[i]);
+    }
+
+    //Fill the stacked Jacobian and the (clamped) error vector
+    CommonOps_DDRM.fill(_J, 0);
+    for (int i = 0; i < _endEffectors.size(); i++) {
+      Vector ef = _endEffectorPositions[i];
+      int row = _dof * i;
+      for (int j : _paths[i]) {
+        Vector.subtract(ef, _jointPositions[j], _r);
+        int col = 3 * j;
+        //columns are x cross r, y cross r and z cross r
+        _J.unsafe_set(row + 1, col, -_r.z());
+        _J.unsafe_set(row + 2, col, _r.y());
+        _J.unsafe_set(row, col + 1, _r.z());
+        _J.unsafe_set(row + 2, col + 1, -_r.x());
+        _J.unsafe_set(row, col + 2, -_r.y());
+        _J.unsafe_set(row + 1, col + 2, _r.x());
+      }
+      Vector e = Vector.subtract(_targetPositions[i], ef, _e);
+      if (e.magnitude() > _max_d) {
+        e.normalize();
+        e.multiply(_max_d);
+      }
+      _error.unsafe_set(row, 0, e.x());
+      _error.unsafe_set(row + 1, 0, e.y());
+      _error.unsafe_set(row + 2, 0, e.z());
+    }
+
+    //delta = J^T (J J^T + lambda^2 I)^-1 e
+    CommonOps_DDRM.multTransB(_J, _J, _JJT);
+    double lambda = _damping * _max_d;
+    for (int k = 0; k < _JJT.numRows; k++)
+      _JJT.unsafe_set(k, k, _JJT.unsafe_get(k, k) + lambda * lambda);
+    if (!_linearSolver.setA(_JJT)) return true;
+    _linearSolver.solve(_error, _f);
+    CommonOps_DDRM.multTransA(_J, _f, _delta);
+
+    double max = CommonOps_DDRM.elementMaxAbs(_delta);
+    if (max > _max_change) CommonOps_DDRM.scale(_max_change / max, _delta);
+
+    //Apply the rotations from the leaves to the head so that the orientation of each joint
+    //is not yet affected by the rotations applied in this step
+    for (int j = _joints.size() - 1; j >= 0; j--) {
+      _axis.set((float) _delta.unsafe_get(3 * j, 0), (float) _delta.unsafe_get(3 * j + 1, 0), (float) _delta.unsafe_get(3 * j + 2, 0));
+      float angle = _axis.magnitude();
+      if (angle < 1e-6f) continue;
+      Node joint = _joints.get(j);
+      //axis is defined in world coordinates
+      joint.orientation(_orientation).inverseRotate(_axis, _r);
+      _rotation.fromAxisAngle(_r, angle);
+      joint.rotate(_rotation);
+    }
+
+    //Execute Until the distance between each end effector and its target is below a threshold
+    for (int i = 0; i < _endEffectors.size(); i++) {
+      if (Vector.distance(_endEffectors.get(i).position(_endEffectorPositions[i]), _targetPositions[i]) > super._maxError)
+        return false;
+    }
+    return true;
+  }
+
+  //Update must be done at each iteration step
+  @Override
+  protected void _update() {
+  }
+
+  //the joints are modified in place
+  @Override
+  protected List<? extends Node> _pose() {
+    return _joints;
+  }
+
+  @Override
+  protected boolean _changed() {
+    for (int i = 0; i < _targets.size(); i++) {
+      Vector previous = _previousTargets.get(i);
+      if (previous == null || !previous.matches(_targets.get(i).position())) return true;
+    }
+    return false;
+  }
+
+  @Override
+  protected void _reset() {
+    for (int i = 0; i < _targets.size(); i++)
+      _previousTargets.set(i, _targets.get(i).position().get());
+    _iterations = 0;
+  }
+
+  @Override
+  public float error() {
+    float error = 0;
+    for (int i = 0; i < _endEffectors.size(); i++)
+      error += Vector.distance(_targets.get(i).position(), _endEffectors.get(i).position());
+    return error;
+  }
+}
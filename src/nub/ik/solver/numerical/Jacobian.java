@@ -0,0 +1,217 @@
+/****************************************************************************************
+ * nub
+ * Copyright (c) 2019 National University of Colombia, https://visualcomputing.github.io/
+ * @author Sebastian Chaparro, https://github.com/sechaparroc
+ * @author Jean Pierre Charalambos, https://github.com/VisualComputing
+ *
+ * All rights reserved. A 2D or 3D scene graph library providing eye, input and timing
+ * handling to a third party (real or non-real time) renderer. Released under the terms
+ * of the GPL v3.0 which is available at http://www.gnu.org/licenses/gpl.html
+ ****************************************************************************************/
+
+package nub.ik.solver.numerical;
+
+import nub.core.Node;
+import nub.primitives.Quaternion;
+import nub.primitives.Vector;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.factory.DecompositionFactory_DDRM;
+import org.ejml.dense.row.factory.LinearSolverFactory_DDRM;
+import org.ejml.interfaces.decomposition.SingularValueDecomposition_F64;
+import org.ejml.interfaces.linsol.LinearSolver;
+
+import java.util.List;
+
+/**
+ * A Jacobian is a reusable workspace used by the numerical solvers to build and solve the
+ * positional Jacobian of a kinematic chain (see {@link #update(Vector)}).
+ * <p>
+ * All the buffers (joint positions, rotation axes, the Jacobian matrix, the error and delta
+ * vectors) as well as the EJML pseudo-inverse solver and SVD decomposition are allocated once
+ * and reused on each iteration, so that once warmed up an iteration allocates nothing.
+ * <p>
+ * Joint world positions are computed in a single root-to-tip sweep, taking advantage of the
+ * {@link Node} world transformation cache.
+ */
+public class Jacobian {
+  protected List<? extends Node> _chain;
+  protected int _dof = 3; //TODO : Consider EF with ORIENTATIONAL DOF
+  protected Vector[] _positions;
+  protected Vector[] _axes;
+  protected DMatrixRMaj _J, _error, _delta;
+  //EJML solvers are kept alive across iterations
+  protected LinearSolver<DMatrixRMaj, DMatrixRMaj> _pseudoInverse;
+  protected SingularValueDecomposition_F64<DMatrixRMaj> _svd;
+  protected DMatrixRMaj _svdInput, _U, _V, _W;
+  //auxiliary variables
+  protected Vector _je = new Vector(), _jt = new Vector(), _change = new Vector();
+  protected Quaternion _orientation = new Quaternion(), _rotation = new Quaternion();
+
+  public Jacobian(List<? extends Node> chain) {
+    _chain = chain;
+    int joints = chain.size() - 1; //Don't care about End Effector
+    _positions = new Vector[chain.size()];
+    for (int i = 0; i < _positions.length; i++)
+      _positions[i] = new Vector();
+    _axes = new Vector[joints];
+    for (int i = 0; i < joints; i++)
+      _axes[i] = new Vector();
+    _J = new DMatrixRMaj(_dof, joints);
+    _error = new DMatrixRMaj(_dof, 1);
+    _delta = new DMatrixRMaj(joints, 1);
+  }
+
+  public List<? extends Node> chain() {
+    return _chain;
+  }
+
+  public Node endEffector() {
+    return _chain.get(_chain.size() - 1);
+  }
+
+  /**
+   * Returns the rotation axes (defined in the world coordinate system) computed by the last
+   * call to {@link #update(Vector)}.
+   */
+  public Vector[] axes() {
+    return _axes;
+  }
+
+  /**
+   * Returns the world position of the i-th joint computed by the last call to
+   * {@link #updatePositions()}.
+   */
+  public Vector position(int i) {
+    return _positions[i];
+  }
+
+  public DMatrixRMaj matrix() {
+    return _J;
+  }
+
+  public DMatrixRMaj error() {
+    return _error;
+  }
+
+  public DMatrixRMaj delta() {
+    return _delta;
+  }
+
+  /**
+   * Computes the world positions of all the chain joints in a single root-to-tip sweep.
+   */
+  public void updatePositions() {
+    for (int i = 0; i < _chain.size(); i++)
+      _chain.get(i).position(_positions[i]);
+  }
+
+  /**
+   * Fills the Jacobian matrix in place according to the current chain configuration and
+   * the given {@code target}. The i-th column is the change of the end effector position when
+   * rotating the i-th joint around its {@link #axes()} axis, i.e., the one normal to the
+   * plane defined by the joint, the end effector and the target.
+   */
+  public DMatrixRMaj update(Vector target) {
+    updatePositions();
+    Vector ef = _positions[_positions.length - 1];
+    for (int j = 0; j < _axes.length; j++) {
+      Vector joint = _positions[j];
+      Vector.subtract(ef, joint, _je);
+      Vector.subtract(target, joint, _jt);
+      Vector axis = Vector.cross(_je, _jt, _axes[j]);
+      if (axis.magnitude() < 1E-2) axis.set(Vector.orthogonalVector(_je));
+      axis.normalize();
+      Vector.cross(axis, _je, _change);
+      _J.unsafe_set(0, j, _change.x());
+      _J.unsafe_set(1, j, _change.y());
+      _J.unsafe_set(2, j, _change.z());
+    }
+    return _J;
+  }
+
+  /**
+   * Same as {@code updateError(target, maxMagnitude, maxMagnitude)}, i.e., the magnitude of the
+   * error is clamped to {@code maxMagnitude}.
+   *
+   * @see #updateError(Vector, float, float)
+   */
+  public DMatrixRMaj updateError(Vector target, float maxMagnitude) {
+    return updateError(target, maxMagnitude, maxMagnitude);
+  }
+
+  /**
+   * Fills the error vector with the displacement from the end effector (see
+   * {@link #updatePositions()}) to the {@code target}. If its magnitude is greater than
+   * {@code threshold} it is rescaled to {@code length}.
+   */
+  public DMatrixRMaj updateError(Vector target, float threshold, float length) {
+    Vector e = Vector.subtract(target, _positions[_positions.length - 1], _change);
+    if (e.magnitude() > threshold) {
+      e.normalize();
+      e.multiply(length);
+    }
+    _error.unsafe_set(0, 0, e.x());
+    _error.unsafe_set(1, 0, e.y());
+    _error.unsafe_set(2, 0, e.z());
+    return _error;
+  }
+
+  /**
+   * Solves {@code J * delta = error} by means of the Jacobian pseudo-inverse and returns the
+   * {@link #delta()} vector. The EJML solver is instantiated only once.
+   */
+  public DMatrixRMaj solvePseudoinverse() {
+    if (_pseudoInverse == null)
+      _pseudoInverse = LinearSolverFactory_DDRM.pseudoInverse(true);
+    _pseudoInverse.setA(_J);
+    _pseudoInverse.solve(_error, _delta);
+    return _delta;
+  }
+
+  /**
+   * Computes the (non compact) singular value decomposition of the Jacobian matrix. Use
+   * {@link #U()}, {@link #W()} and {@link #V()} to retrieve the results. The EJML
+   * decomposition and the resulting matrices are instantiated only once.
+   */
+  public void svd() {
+    if (_svd == null) {
+      _svd = DecompositionFactory_DDRM.svd(_J.numRows, _J.numCols, true, true, false);
+      _svdInput = new DMatrixRMaj(_J.numRows, _J.numCols);
+      _U = new DMatrixRMaj(_J.numRows, _J.numRows);
+      _W = new DMatrixRMaj(_J.numRows, _J.numCols);
+      _V = new DMatrixRMaj(_J.numCols, _J.numCols);
+    }
+    //the decomposition may modify its input
+    _svdInput.set(_J);
+    _svd.decompose(_svdInput);
+    _svd.getU(_U, false);
+    _svd.getW(_W);
+    _svd.getV(_V, false);
+  }
+
+  public DMatrixRMaj U() {
+    return _U;
+  }
+
+  public DMatrixRMaj W() {
+    return _W;
+  }
+
+  public DMatrixRMaj V() {
+    return _V;
+  }
+
+  /**
+   * Rotates each joint of the chain by its {@link #delta()} angle around its rotation axis
+   * (see {@link Util#updateChain(List, org.ejml.simple.SimpleMatrix, Vector[])}).
+   */
+  public void updateChain() {
+    for (int i = 0; i < _delta.numRows; i++) {
+      Node node = _chain.get(i);
+      //axis is defined in world coordinates
+      node.orientation(_orientation).inverseRotate(_axes[i], _je);
+      _rotation.fromAxisAngle(_je, (float) _delta.unsafe_get(i, 0));
+      node.rotate(_rotation);
+    }
+  }
+}
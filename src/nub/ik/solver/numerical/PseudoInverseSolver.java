@@ -14,7 +14,8 @@ package nub.ik.solver.numerical;
 import nub.core.Node;
 import nub.ik.solver.Solver;
 import nub.primitives.Vector;
-import org.ejml.simple.SimpleMatrix;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.CommonOps_DDRM;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -24,9 +25,8 @@ public class PseudoInverseSolver extends Solver {
   protected List<? extends Node> _chain;
   protected Node _target;
   protected Node _previousTarget;
-  protected SimpleMatrix _J;
-  protected Vector[] _axes;
-  protected SimpleMatrix _delta;
+  protected Jacobian _jacobian;
+  protected Vector _targetPosition = new Vector(), _endEffectorPosition = new Vector();
   protected float _d_max;
 
   public PseudoInverseSolver(List<? extends Node> chain) {
@@ -36,7 +36,7 @@ public class PseudoInverseSolver extends Solver {
       float d = Vector.distance(f.position(), f.reference() != null ? f.reference().position() : new Vector(0, 0, 0));
       _d_max = _d_max < d ? d : _d_max;
     }
-    _axes = new Vector[_chain.size() - 1];
+    _jacobian = new Jacobian(_chain);
   }
 
   public PseudoInverseSolver(ArrayList<? extends Node> chain, Node target) {
@@ -45,7 +45,7 @@ public class PseudoInverseSolver extends Solver {
     this._target = target;
     this._previousTarget =
         target == null ? null : Node.detach(target.position().get(), target.orientation().get(), 1);
-    _axes = new Vector[_chain.size() - 1];
+    _jacobian = new Jacobian(_chain);
   }
 
   public List<? extends Node> chain() {
@@ -76,28 +76,18 @@ public class PseudoInverseSolver extends Solver {
   protected boolean _iterate() {
     //As no target is specified there is no need to perform an iteration
     if (_target == null || _chain.size() < 2) return true;
+    _target.position(_targetPosition);
+    _jacobian.update(_targetPosition);
     //Clamp _maxError
-    Vector e = Vector.subtract(_target.position(), endEffector().position());
-    if (e.magnitude() > _d_max) {
-      e.normalize();
-      e.multiply(_d_max);
-    }
-
-    SimpleMatrix error = SimpleMatrix.wrap(
-        Util.vectorToMatrix(e, true));
-
-    _J = SimpleMatrix.wrap(Util.jacobian(_chain, endEffector(), _target.position(), _axes));
-    _delta = SimpleMatrix.wrap(Util.solvePseudoinverse(_J.getDDRM(), error.getDDRM()));
-    double max = 0;
-    for (int i = 0; i < _delta.numRows(); i++) {
-      max = Math.abs(_delta.get(i, 0)) > max ? Math.abs(_delta.get(i, 0)) : max;
-    }
+    _jacobian.updateError(_targetPosition, _d_max);
+    DMatrixRMaj delta = _jacobian.solvePseudoinverse();
+    double max = CommonOps_DDRM.elementMaxAbs(delta);
     if (max > Math.toRadians(10))
-      _delta = _delta.scale(Math.toRadians(10) / max); //TODO: check for a better scaling value
+      CommonOps_DDRM.scale(Math.toRadians(10) / max, delta); //TODO: check for a better scaling value
 
-    Util.updateChain(_chain, _delta, _axes);
+    _jacobian.updateChain();
     //Execute Until the distance between the end effector and the target is below a threshold
-    if (Vector.distance(endEffector().position(), _target.position()) <= super._maxError) {
+    if (Vector.distance(endEffector().position(_endEffectorPosition), _targetPosition) <= super._maxError) {
       return true;
     }
     //Check total rotation change
@@ -110,6 +100,12 @@ public class PseudoInverseSolver extends Solver {
   protected void _update() {
   }
 
+  //the chain is modified in place
+  @Override
+  protected List<? extends Node> _pose() {
+    return _target == null ? null : _chain;
+  }
+
   @Override
   protected boolean _changed() {
     if (_target == null) {
@@ -124,7 +120,6 @@ public class PseudoInverseSolver extends Solver {
   @Override
   protected void _reset() {
     _previousTarget = _target == null ? null : Node.detach(_target.position().get(), _target.orientation().get(), 1);
-    _axes = new Vector[_chain.size() - 1];
     _iterations = 0;
   }
 
@@ -15,8 +15,7 @@ import nub.core.Node;
 import nub.ik.solver.Solver;
 import nub.primitives.Vector;
 import org.ejml.data.DMatrixRMaj;
-import org.ejml.simple.SimpleMatrix;
-import org.ejml.simple.SimpleSVD;
+import org.ejml.dense.row.CommonOps_DDRM;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -28,9 +27,11 @@ public class SDLSSolver extends Solver {
   protected List<? extends Node> _chain;
   protected Node _target;
   protected Node _previousTarget;
-  protected SimpleMatrix _J;
-  protected Vector[] _axes;
-  protected SimpleMatrix _delta;
+  protected Jacobian _jacobian;
+  protected Vector _targetPosition = new Vector(), _endEffectorPosition = new Vector();
+  //auxiliary buffers
+  protected double[][] _p_lj;
+  protected double[] _delta_i;
   protected int _dof; //TODO : Consider EF with ORIENTATIONAL DOF
   protected float _max_d, _max_change = (float) Math.toRadians(45);
 
@@ -41,8 +42,8 @@ public class SDLSSolver extends Solver {
       float d = Vector.distance(f.position(), f.reference() != null ? f.reference().position() : new Vector(0, 0, 0));
       _max_d = _max_d < d ? d : _max_d;
     }
-    _axes = new Vector[_chain.size() - 1];
     _dof = 3; //chain.get(0).graph().is3D() ? 3 : 2;
+    _init();
   }
 
   public SDLSSolver(ArrayList<? extends Node> chain, Node target) {
@@ -51,8 +52,15 @@ public class SDLSSolver extends Solver {
     this._target = target;
     this._previousTarget =
         target == null ? null : Node.detach(target.position().get(), target.orientation().get(), 1);
-    _axes = new Vector[_chain.size() - 1];
     _dof = 3; //chain.get(0).graph().is3D() ? 3 : 2;
+    _init();
+  }
+
+  protected void _init() {
+    _jacobian = new Jacobian(_chain);
+    DMatrixRMaj J = _jacobian.matrix();
+    _p_lj = new double[J.numRows / _dof][J.numCols];
+    _delta_i = new double[J.numCols];
   }
 
   public List<? extends Node> chain() {
@@ -84,43 +92,39 @@ public class SDLSSolver extends Solver {
   protected boolean _iterate() {
     //As no target is specified there is no need to perform an iteration
     if (_target == null || _chain.size() < 2) return true;
+    _target.position(_targetPosition);
+    DMatrixRMaj J = _jacobian.update(_targetPosition);
     //Clamp _maxError
-    Vector e = Vector.subtract(_target.position(), endEffector().position());
-    if (e.magnitude() > _max_d) {
-      e.normalize();
-      e.multiply(_max_d);
-    }
-
-    SimpleMatrix error = SimpleMatrix.wrap(
-        Util.vectorToMatrix(e, true));
-
-    _J = SimpleMatrix.wrap(Util.jacobian(_chain, endEffector(), _target.position(), _axes));
-    _delta = SimpleMatrix.wrap(new DMatrixRMaj(new double[_J.numCols()]));
+    DMatrixRMaj error = _jacobian.updateError(_targetPosition, _max_d);
+    DMatrixRMaj delta = _jacobian.delta();
+    CommonOps_DDRM.fill(delta, 0);
 
     //Get SVD
-    SimpleSVD<SimpleMatrix> svd = _J.svd();
-    SimpleMatrix U = svd.getU();
-    SimpleMatrix V = svd.getV();
-    SimpleMatrix w = svd.getW();
-
-    double p_lj[][] = new double[_J.numRows() / _dof][_J.numCols()];
-    for (int i = 0; i < _J.numCols(); i++) {
-      for (int k = 0; k < _J.numRows() / _dof; k++) {
+    _jacobian.svd();
+    DMatrixRMaj U = _jacobian.U();
+    DMatrixRMaj V = _jacobian.V();
+    DMatrixRMaj w = _jacobian.W();
+
+    for (int i = 0; i < J.numCols; i++) {
+      for (int k = 0; k < J.numRows / _dof; k++) {
+        _p_lj[k][i] = 0;
         for (int d = 0; d < _dof; d++) {
-          p_lj[k][i] += _J.get(_dof * k + d, i) * _J.get(_dof * k + d, i);
+          _p_lj[k][i] += J.get(_dof * k + d, i) * J.get(_dof * k + d, i);
         }
-        p_lj[k][i] = Math.sqrt(p_lj[k][i]);
+        _p_lj[k][i] = Math.sqrt(_p_lj[k][i]);
       }
     }
 
-    for (int i = 0; i < _J.numRows(); i++) {
+    //there are as many singular values as min(rows, cols)
+    int singularValues = Math.min(J.numRows, J.numCols);
+    for (int i = 0; i < singularValues; i++) {
       if (Math.abs(w.get(i, i)) < 10e-6) {
         continue;
       }
       double N_i = 0, alpha_i = 0;
       double w_inv = 1 / w.get(i, i);
       //Get N_i and alpha_i
-      for (int k = 0; k < _J.numRows() / _dof; k++) {
+      for (int k = 0; k < J.numRows / _dof; k++) {
         double aux = 0;
         for (int d = 0; d < _dof; d++) {
           alpha_i += U.get(_dof * k + d, i) * error.get(_dof * k + d, 0);
@@ -131,33 +135,31 @@ public class SDLSSolver extends Solver {
       //Calculate M_i
       double max_abs = 0, M_i = 0;
       double scale = w_inv * alpha_i;
-      SimpleMatrix delta_i = SimpleMatrix.wrap(new DMatrixRMaj(new double[_J.numCols()]));
-      for (int j = 0; j < _J.numCols(); j++) {
+      for (int j = 0; j < J.numCols; j++) {
         double p = 0;
-        for (int k = 0; k < _J.numRows() / _dof; k++) {
-          p += p_lj[k][j];
+        for (int k = 0; k < J.numRows / _dof; k++) {
+          p += _p_lj[k][j];
         }
         M_i += Math.abs(V.get(j, i)) * p;
         double d_i = V.get(j, i) * scale;
-        delta_i.set(j, 0, d_i);
+        _delta_i[j] = d_i;
         max_abs = max_abs < Math.abs(d_i) ? Math.abs(d_i) : max_abs;
       }
       M_i *= Math.abs(w_inv);
       double gamma_i = _max_change * Math.min(1, N_i / M_i);
       //Clamp max abs
-      delta_i = delta_i.scale(gamma_i / (gamma_i + max_abs));
-      _delta = _delta.plus(delta_i);
+      double clamp = gamma_i / (gamma_i + max_abs);
+      for (int j = 0; j < J.numCols; j++) {
+        delta.set(j, 0, delta.get(j, 0) + _delta_i[j] * clamp);
+      }
     }
 
-    double max = 0;
-    for (int i = 0; i < _delta.numRows(); i++) {
-      max = Math.abs(_delta.get(i, 0)) > max ? Math.abs(_delta.get(i, 0)) : max;
-    }
-    if (max > Math.toRadians(_max_change)) _delta = _delta.scale(Math.toRadians(_max_change) / max);
+    double max = CommonOps_DDRM.elementMaxAbs(delta);
+    if (max > Math.toRadians(_max_change)) CommonOps_DDRM.scale(Math.toRadians(_max_change) / max, delta);
 
-    Util.updateChain(_chain, _delta, _axes);
+    _jacobian.updateChain();
     //Execute Until the distance between the end effector and the target is below a threshold
-    if (Vector.distance(endEffector().position(), _target.position()) <= super._maxError) {
+    if (Vector.distance(endEffector().position(_endEffectorPosition), _targetPosition) <= super._maxError) {
       return true;
     }
     //Check total rotation change
@@ -170,6 +172,12 @@ public class SDLSSolver extends Solver {
   protected void _update() {
   }
 
+  //the chain is modified in place
+  @Override
+  protected List<? extends Node> _pose() {
+    return _target == null ? null : _chain;
+  }
+
   @Override
   protected boolean _changed() {
     if (_target == null) {
@@ -184,7 +192,6 @@ public class SDLSSolver extends Solver {
   @Override
   protected void _reset() {
     _previousTarget = _target == null ? null : Node.detach(_target.position().get(), _target.orientation().get(), 1);
-    _axes = new Vector[_chain.size() - 1];
     _iterations = 0;
   }
 
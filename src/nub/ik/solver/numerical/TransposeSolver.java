@@ -14,7 +14,8 @@ package nub.ik.solver.numerical;
 import nub.core.Node;
 import nub.ik.solver.Solver;
 import nub.primitives.Vector;
-import org.ejml.simple.SimpleMatrix;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.CommonOps_DDRM;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -24,9 +25,9 @@ public class TransposeSolver extends Solver {
   protected List<? extends Node> _chain;
   protected Node _target;
   protected Node _previousTarget;
-  protected SimpleMatrix _J;
-  protected SimpleMatrix _delta;
-  protected Vector[] _axes;
+  protected Jacobian _jacobian;
+  protected DMatrixRMaj _JJTe;
+  protected Vector _targetPosition = new Vector();
   //protected float _alpha = 0.00001f;
   protected float _d_max;
 
@@ -36,7 +37,8 @@ public class TransposeSolver extends Solver {
   public TransposeSolver(List<? extends Node> chain) {
     super();
     this._chain = chain;
-    _axes = new Vector[_chain.size() - 1];
+    _jacobian = new Jacobian(_chain);
+    _JJTe = new DMatrixRMaj(_jacobian.error().numRows, 1);
     for (Node f : _chain) {
       float d = Vector.distance(f.position(), f.reference() != null ? f.reference().position() : new Vector(0, 0, 0));
       _d_max = _d_max < d ? d : _d_max;
@@ -49,7 +51,8 @@ public class TransposeSolver extends Solver {
     this._target = target;
     this._previousTarget =
         target == null ? null : Node.detach(target.position().get(), target.orientation().get(), 1);
-    _axes = new Vector[_chain.size() - 1];
+    _jacobian = new Jacobian(_chain);
+    _JJTe = new DMatrixRMaj(_jacobian.error().numRows, 1);
   }
 
     /*
@@ -86,29 +89,23 @@ public class TransposeSolver extends Solver {
   protected boolean _iterate() {
     //As no target is specified there is no need to perform an iteration
     if (_target == null || _chain.size() < 2) return true;
+    _target.position(_targetPosition);
+    DMatrixRMaj J = _jacobian.update(_targetPosition);
     //Clamp _maxError
-    Vector e = Vector.subtract(_target.position(), endEffector().position());
-    if (e.magnitude() > _d_max) {
-      e.normalize();
-      e.multiply(_d_max * 2);
-    }
-
-    SimpleMatrix error = SimpleMatrix.wrap(
-        Util.vectorToMatrix(e, true));
-    _J = SimpleMatrix.wrap(Util.jacobian(_chain, endEffector(), _target.position(), _axes));
-
-    _delta = _J.transpose().mult(error);
+    DMatrixRMaj error = _jacobian.updateError(_targetPosition, _d_max, _d_max * 2);
+    DMatrixRMaj delta = _jacobian.delta();
+    CommonOps_DDRM.multTransA(J, error, delta);
 
     //choosing alpha according to _maxError magnitude
-    SimpleMatrix JJTe = _J.mult(_delta);
-    double div = JJTe.dot(JJTe);
+    CommonOps_DDRM.mult(J, delta, _JJTe);
+    double div = CommonOps_DDRM.dot(_JJTe, _JJTe);
     if (div > 1E-3)
-      _delta = _delta.scale(error.dot(JJTe) / div);
+      CommonOps_DDRM.scale(CommonOps_DDRM.dot(error, _JJTe) / div, delta);
     else
-      _delta = _delta.scale(0);
+      CommonOps_DDRM.fill(delta, 0);
 
     //Execute Until the distance between the end effector and the target is below a threshold
-    if (Vector.distance(endEffector().position(), _target.position()) <= super._maxError) {
+    if (Vector.distance(_jacobian.position(_chain.size() - 1), _targetPosition) <= super._maxError) {
       return true;
     }
     //Check total rotation change
@@ -118,10 +115,16 @@ public class TransposeSolver extends Solver {
 
   @Override
   protected void _update() {
-    Util.updateChain(_chain, _delta, _axes);
+    _jacobian.updateChain();
   }
 
 
+  //the chain is modified in place
+  @Override
+  protected List<? extends Node> _pose() {
+    return _target == null ? null : _chain;
+  }
+
   @Override
   protected boolean _changed() {
     if (_target == null) {
@@ -137,7 +140,7 @@ public class TransposeSolver extends Solver {
   protected void _reset() {
     _previousTarget = _target == null ? null : Node.detach(_target.position().get(), _target.orientation().get(), 1);
     _iterations = 0;
-    _axes = new Vector[_chain.size() - 1];
+    CommonOps_DDRM.fill(_jacobian.delta(), 0);
   }
 
   @Override
@@ -36,34 +36,22 @@ public class Util {
     }
   }
 
-  //Here it is assumed a kinematic chain
+  /**
+   * Returns the positional Jacobian of the {@code chain} w.r.t. the {@code target} and fills
+   * {@code axes} with the joint rotation axes (defined in the world coordinate system). The
+   * {@code endEffector} is assumed to be the last node of the {@code chain}.
+   *
+   * @deprecated Allocates a new matrix and workspace per call, keep a {@link Jacobian} and use
+   * {@link Jacobian#update(Vector)} instead.
+   */
+  @Deprecated
   public static DMatrixRMaj jacobian(List<? extends Node> chain, Node endEffector, Vector target, Vector[] axes) {
     if (chain == null) return null;
-    int dim = 3; //endEffector.graph().is3D() ? 3 : 2;
-    double[][] J = new double[dim][(chain.size() - 1)];
-    //TODO: Make it in an efficient way (calculate global transformations)
-    Vector z = new Vector(0, 0, 1);
-    Vector ef = endEffector.position();
-    for (int j = 0; j < chain.size() - 1; j++) {//Don't care about End Effector
-      Vector joint = chain.get(j).position();
-      Vector je = Vector.subtract(ef, joint);
-      Vector change_z = Vector.cross(z, je, null);
-      if (dim == 2) {
-        J[0][j] = change_z.x();
-        J[1][j] = change_z.y();
-      } else {
-        Vector jt = Vector.subtract(target, joint);
-        Vector axis = Vector.cross(je, jt, null);
-        if (axis.magnitude() < 1E-2) axis = Vector.orthogonalVector(je);
-        axis.normalize();
-        axes[j] = axis;
-        Vector change = Vector.cross(axis, je, null);
-        J[0][j] = change.x();
-        J[1][j] = change.y();
-        J[2][j] = change.z();
-      }
-    }
-    return new DMatrixRMaj(J);
+    Jacobian jacobian = new Jacobian(chain);
+    DMatrixRMaj J = jacobian.update(target);
+    for (int j = 0; j < jacobian.axes().length; j++)
+      axes[j] = jacobian.axes()[j];
+    return J;
   }
 
   //Here it is assumed a kinematic chain
@@ -95,6 +83,11 @@ public class Util {
     return new DMatrixRMaj(J);
   }
 
+  /**
+   * @deprecated Instantiates a new EJML solver per call, keep a {@link Jacobian} and use
+   * {@link Jacobian#solvePseudoinverse()} instead.
+   */
+  @Deprecated
   public static DMatrixRMaj solvePseudoinverse(DMatrixRMaj J, DMatrixRMaj error) {
     LinearSolver<DMatrixRMaj, DMatrixRMaj> solver = LinearSolverFactory_DDRM.pseudoInverse(true);
     solver.setA(J);
@@ -103,6 +96,11 @@ public class Util {
     return delta;
   }
 
+  /**
+   * @deprecated Allocates a new matrix per call, use {@link Jacobian#updateError(Vector, float)}
+   * instead.
+   */
+  @Deprecated
   public static DMatrixRMaj vectorToMatrix(Vector v, boolean is3D) {
     return is3D ? new DMatrixRMaj(new double[]{v.x(), v.y(), v.z()}) : new DMatrixRMaj(new double[]{v.x(), v.y()});
   }
@@ -0,0 +1,201 @@
+package nub.ik.solver.trik;
+
+import nub.core.Node;
+import nub.core.constraint.Constraint;
+import nub.ik.solver.geometric.oldtrik.NodeInformation;
+import nub.primitives.Quaternion;
+import nub.primitives.Vector;
+
+import java.util.List;
+
+/**
+ * A TemporalCoherence exploits the fact that in continuous trajectories (e.g. a hand
+ * following a moving object) the target of a TRIK solver barely changes between frames.
+ * <p>
+ * It performs three tasks on the solver Context:
+ * <ol>
+ * <li>Change detection: the target is considered to have changed only when it moved more than
+ * a tolerance (by default the solver max error) from the target of the last solve. Otherwise the
+ * solver does not even reset.</li>
+ * <li>Warm start: the last converged solution is kept and used to seed the next solve whenever it is
+ * closer to the new target than the current pose of the chain (e.g. when the chain was modified by
+ * other means, such as an animation). A solve is skipped entirely if the chain (or the seed) is already
+ * within the tolerance.</li>
+ * <li>Prediction: the target velocity (per solver call) is estimated from the target displacement
+ * between consecutive resets or skips, divided by the number of solver calls in between, and the
+ * target is extrapolated by a given number of calls (see setPrediction), so that the chain anticipates
+ * the target and the next solve is likely to be skipped.</li>
+ * </ol>
+ */
+public class TemporalCoherence {
+    protected Context _context;
+    protected float _tolerance = -1; //if negative the solver max error is used
+    protected float _angularTolerance = 0.5f; //in degrees, only used when the context considers the direction
+    protected float _prediction = 0; //number of solves to extrapolate
+
+    protected Vector _lastPosition, _velocity = new Vector();
+    protected int _elapsed = 0; //solver calls (see changed) since the last velocity estimation
+    protected Quaternion[] _solution; //last converged rotations of the chain
+    protected boolean _hasSolution = false;
+
+    //statistics
+    protected long _resets, _skips, _warmStarts;
+
+    public TemporalCoherence(Context context){
+        _context = context;
+        _solution = new Quaternion[context.chain().size()];
+        for(int i = 0; i < _solution.length; i++) _solution[i] = new Quaternion();
+    }
+
+    public Context context(){
+        return _context;
+    }
+
+    /**
+     * Sets the distance the target must move (w.r.t. the target of the last solve) to be considered as changed.
+     * Pass a negative value to use the solver max error (the default).
+     * */
+    public void setTolerance(float tolerance){
+        _tolerance = tolerance;
+    }
+
+    public float tolerance(float maxError){
+        return _tolerance < 0 ? maxError : _tolerance;
+    }
+
+    public void setAngularTolerance(float degrees){
+        _angularTolerance = degrees;
+    }
+
+    public float angularTolerance(){
+        return _angularTolerance;
+    }
+
+    /**
+     * Sets the number of solver calls the target is extrapolated by (0, the default, disables the prediction).
+     * */
+    public void setPrediction(float solves){
+        _prediction = Math.max(0, solves);
+    }
+
+    public float prediction(){
+        return _prediction;
+    }
+
+    public Vector velocity(){
+        return _velocity;
+    }
+
+    public long resets(){
+        return _resets;
+    }
+
+    public long skips(){
+        return _skips;
+    }
+
+    public long warmStarts(){
+        return _warmStarts;
+    }
+
+    /**
+     * Discards the velocity estimation and the last converged solution.
+     * */
+    public void clear(){
+        _lastPosition = null;
+        _velocity.set(0, 0, 0);
+        _elapsed = 0;
+        _hasSolution = false;
+    }
+
+    /**
+     * Returns true if the target moved (or rotated) more than the tolerance w.r.t. the target of the last solve.
+     * It's meant to be called once per solver call, which is used to measure the velocity of the target.
+     * */
+    public boolean changed(float maxError){
+        _elapsed++;
+        Node target = _context.target(), previous = _context.previousTarget();
+        if(target == null) return false;
+        if(previous == null) return true;
+        if(Context.positionError(previous.position(), target.position()) > tolerance(maxError)) return true;
+        return _context.direction() && Context.orientationError(previous.orientation(), target.orientation(), true) > _angularTolerance;
+    }
+
+    /**
+     * Must be called once the context is reset towards a new target (i.e. once its world target is updated):
+     * updates the velocity estimation, extrapolates the world target and seeds the usable chain.
+     * Returns the error of the usable chain w.r.t the world target.
+     * */
+    public float reset(){
+        _resets++;
+        Node worldTarget = _context.worldTarget();
+        Vector position = worldTarget.position().get();
+        _estimate(position);
+
+        if(_prediction > 0){
+            Vector predicted = _velocity.get();
+            predicted.multiply(_prediction);
+            predicted.add(position);
+            worldTarget.setPosition(predicted);
+        }
+
+        List<NodeInformation> usable = _context.usableChainInformation();
+        int last = _context.last();
+        float error = _context.error(usable.get(last), worldTarget);
+        if(_hasSolution){
+            _write(_solution, _context.usableChain());
+            NodeInformation._updateCache(usable);
+            float seeded = _context.error(usable.get(last), worldTarget);
+            if(seeded < error){
+                _warmStarts++;
+                error = seeded;
+            } else{
+                //keep the current pose
+                _context.copyChainState(_context.chainInformation(), usable);
+                NodeInformation._copyCache(_context.chainInformation(), usable);
+            }
+        }
+        return error;
+    }
+
+    /**
+     * Registers a skipped solve (i.e. one whose seed was already within the tolerance). The velocity
+     * estimation is updated as well, unless it was already updated by {@link #reset()} in the same call.
+     * */
+    public void skip(){
+        _skips++;
+        if(_elapsed > 0) _estimate(_context.worldTarget().position());
+    }
+
+    //the target displacement since the last estimation is averaged over the solver calls in between
+    protected void _estimate(Vector position){
+        if(_lastPosition != null){
+            Vector.subtract(position, _lastPosition, _velocity);
+            _velocity.divide(Math.max(1, _elapsed));
+        } else{
+            _velocity.set(0, 0, 0);
+        }
+        _lastPosition = position.get();
+        _elapsed = 0;
+    }
+
+    /**
+     * Keeps the current rotations of the usable chain as the last converged solution.
+     * */
+    public void store(){
+        List<Node> chain = _context.usableChain();
+        for(int i = 0; i < chain.size(); i++) _solution[i].set(chain.get(i).rotation());
+        _hasSolution = true;
+    }
+
+    protected static void _write(Quaternion[] rotations, List<Node> chain){
+        for(int i = 0; i < chain.size(); i++){
+            //bypass the constraint (stored rotations already satisfy it)
+            Node node = chain.get(i);
+            Constraint constraint = node.constraint();
+            node.setConstraint(null);
+            node.setRotation(rotations[i].get());
+            node.setConstraint(constraint);
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package nub.ik.solver.trik.implementations;
 
 import nub.core.Node;
+import nub.core.constraint.Constraint;
 import nub.ik.solver.Solver;
 import nub.ik.solver.geometric.oldtrik.NodeInformation;
 import nub.ik.solver.trik.Context;
+import nub.ik.solver.trik.TemporalCoherence;
 import nub.ik.solver.trik.heuristic.*;
 import nub.primitives.Quaternion;
 import nub.primitives.Vector;
@@ -30,6 +32,9 @@ public class SimpleTRIK extends Solver {
     protected int _stepCounter;
     protected boolean  _enableTwist = true;
 
+    //Temporal coherence (disabled by default)
+    protected TemporalCoherence _coherence;
+
 
     public void enableDeadLockResolution(boolean enable){
         _enableDeadLockResolution = enable;
@@ -138,6 +143,19 @@ public class SimpleTRIK extends Solver {
         return _context;
     }
 
+    /**
+     * Enables or disables the temporal coherence layer (see {@link TemporalCoherence}), i.e. tolerance based change
+     * detection, warm start from the last converged solution and target prediction.
+     * */
+    public void enableTemporalCoherence(boolean enable){
+        if(enable && _coherence == null) _coherence = new TemporalCoherence(_context);
+        else if(!enable) _coherence = null;
+    }
+
+    public TemporalCoherence temporalCoherence(){
+        return _coherence;
+    }
+
     public boolean enableTwist(){
         return _enableTwist;
     }
@@ -256,6 +274,7 @@ public class SimpleTRIK extends Solver {
         _previousBest = _best;
 
         if(error() <= _maxError){
+            if(_coherence != null) _coherence.store();
             return true;
         }
         return  false;
@@ -266,10 +285,12 @@ public class SimpleTRIK extends Solver {
         if(_context.singleStep()) System.out.println("Current : " + _current + " best " + _best);
         if (_current < _best) {
             for (int i = 0; i < _context.chain().size(); i++) {
-                _context.chain().get(i).rotation()._quaternion[0] = _context.usableChain().get(i).rotation()._quaternion[0];
-                _context.chain().get(i).rotation()._quaternion[1] = _context.usableChain().get(i).rotation()._quaternion[1];
-                _context.chain().get(i).rotation()._quaternion[2] = _context.usableChain().get(i).rotation()._quaternion[2];
-                _context.chain().get(i).rotation()._quaternion[3] = _context.usableChain().get(i).rotation()._quaternion[3];
+                //bypass the constraint (usable chain rotations already satisfy it) but keep the node cache updated
+                Node node = _context.chain().get(i);
+                Constraint constraint = node.constraint();
+                node.setConstraint(null);
+                node.setRotation(_context.usableChain().get(i).rotation().get());
+                node.setConstraint(constraint);
             }
             NodeInformation._copyCache(_context.usableChainInformation(), _context.chainInformation());
             _best = _current;
@@ -284,6 +305,7 @@ public class SimpleTRIK extends Solver {
         } else if (_context.previousTarget() == null) {
             return true;
         }
+        if(_coherence != null) return _coherence.changed(_maxError);
         return !(_context.previousTarget().position().matches(_context.target().position()) && _context.previousTarget().orientation().matches(_context.target().orientation()));
     }
 
@@ -319,6 +341,26 @@ public class SimpleTRIK extends Solver {
         }
         _previousBest = 10e10f;
 
+        if(_coherence != null && _context.target() != null){
+            if(_best <= _maxError){
+                //the chain already reaches the target (e.g. it was predicted by the previous solve)
+                _coherence.skip();
+                _iterations = _maxIterations;
+            } else{
+                //the world target may be extrapolated and the usable chain seeded with the last solution
+                float seeded = _coherence.reset();
+                _best = context().error(_context.chainInformation().get(_context.last()), _context.worldTarget());
+                if(seeded < _best){
+                    _current = seeded;
+                    _update();
+                }
+                if(_best <= _maxError){
+                    _coherence.skip();
+                    _iterations = _maxIterations;
+                }
+            }
+        }
+
         if(_context.singleStep()) _stepCounter = 0;
 
         if(!_disable_order_swapping && ((_heuristicMode == HeuristicMode.BACK_AND_FORTH || _heuristicMode == HeuristicMode.FINAL || _heuristicMode == HeuristicMode.EXPRESSIVE_FINAL) && context().topToBottom() == false)){
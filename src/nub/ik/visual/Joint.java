@@ -119,6 +119,10 @@ public class Joint extends Node {
     _isRoot = isRoot;
   }
 
+  public boolean isRoot() {
+    return _isRoot;
+  }
+
   public float radius() {
     return _radius;
   }
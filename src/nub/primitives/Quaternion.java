@@ -446,12 +446,41 @@ public class Quaternion {
    * @param b the second Quaternion
    */
   public static Quaternion multiply(Quaternion a, Quaternion b) {
+    return multiply(a, b, null);
+  }
+
+  /**
+   * Same as {@code return multiply(a, b, target)}.
+   *
+   * @see #multiply(Quaternion, Quaternion, Quaternion)
+   */
+  public static Quaternion compose(Quaternion a, Quaternion b, Quaternion target) {
+    return multiply(a, b, target);
+  }
+
+  /**
+   * Stores the (normalized) product of quaternions {@code a} and {@code b} into {@code target}.
+   * {@code target} may be {@code a} or {@code b}.
+   *
+   * @param a      the first Quaternion
+   * @param b      the second Quaternion
+   * @param target the target quaternion (if null, a new quaternion will be created)
+   * @return the product of a and b
+   */
+  public static Quaternion multiply(Quaternion a, Quaternion b, Quaternion target) {
     float x, y, z, w;
     w = a._quaternion[3] * b._quaternion[3] - a._quaternion[0] * b._quaternion[0] - a._quaternion[1] * b._quaternion[1] - a._quaternion[2] * b._quaternion[2];
     x = a._quaternion[3] * b._quaternion[0] + b._quaternion[3] * a._quaternion[0] + a._quaternion[1] * b._quaternion[2] - a._quaternion[2] * b._quaternion[1];
     y = a._quaternion[3] * b._quaternion[1] + b._quaternion[3] * a._quaternion[1] - a._quaternion[0] * b._quaternion[2] + a._quaternion[2] * b._quaternion[0];
     z = a._quaternion[3] * b._quaternion[2] + b._quaternion[3] * a._quaternion[2] + a._quaternion[0] * b._quaternion[1] - a._quaternion[1] * b._quaternion[0];
-    return new Quaternion(x, y, z, w);
+    if (target == null)
+      return new Quaternion(x, y, z, w);
+    target._quaternion[0] = x;
+    target._quaternion[1] = y;
+    target._quaternion[2] = z;
+    target._quaternion[3] = w;
+    target.normalize();
+    return target;
   }
 
   /**
@@ -579,22 +608,19 @@ public class Quaternion {
    * @param vector the Vector
    */
   public Vector rotate(Vector vector) {
-    float q00 = 2.0f * this._quaternion[0] * this._quaternion[0];
-    float q11 = 2.0f * this._quaternion[1] * this._quaternion[1];
-    float q22 = 2.0f * this._quaternion[2] * this._quaternion[2];
-
-    float q01 = 2.0f * this._quaternion[0] * this._quaternion[1];
-    float q02 = 2.0f * this._quaternion[0] * this._quaternion[2];
-    float q03 = 2.0f * this._quaternion[0] * this._quaternion[3];
-
-    float q12 = 2.0f * this._quaternion[1] * this._quaternion[2];
-    float q13 = 2.0f * this._quaternion[1] * this._quaternion[3];
-
-    float q23 = 2.0f * this._quaternion[2] * this._quaternion[3];
+    return rotate(vector, null);
+  }
 
-    return new Vector((1.0f - q11 - q22) * vector._vector[0] + (q01 - q23) * vector._vector[1] + (q02 + q13) * vector._vector[2],
-        (q01 + q23) * vector._vector[0] + (1.0f - q22 - q00) * vector._vector[1] + (q12 - q03) * vector._vector[2],
-        (q02 - q13) * vector._vector[0] + (q12 + q03) * vector._vector[1] + (1.0f - q11 - q00) * vector._vector[2]);
+  /**
+   * Stores the image of {@code vector} by the quaternion rotation into {@code target}.
+   * {@code target} may be {@code vector}.
+   *
+   * @param vector the Vector
+   * @param target the target vector (if null, a new vector will be created)
+   * @return the rotated vector
+   */
+  public Vector rotate(Vector vector, Vector target) {
+    return _rotate(this._quaternion[0], this._quaternion[1], this._quaternion[2], this._quaternion[3], vector, target);
   }
 
   /**
@@ -605,9 +631,48 @@ public class Quaternion {
    * @param vector the Vector
    */
   public Vector inverseRotate(Vector vector) {
-    Quaternion tempQuaternion = new Quaternion(this._quaternion[0], this._quaternion[1], this._quaternion[2], this._quaternion[3]);
-    tempQuaternion.invert();
-    return tempQuaternion.rotate(vector);
+    return inverseRotate(vector, null);
+  }
+
+  /**
+   * Stores the image of {@code vector} by the quaternion {@link #inverse()} rotation into
+   * {@code target}. {@code target} may be {@code vector}.
+   *
+   * @param vector the Vector
+   * @param target the target vector (if null, a new vector will be created)
+   * @return the inverse rotated vector
+   */
+  public Vector inverseRotate(Vector vector, Vector target) {
+    float norm = norm();
+    if (norm == 0)
+      return _rotate(0, 0, 0, 1, vector, target);
+    return _rotate(-this._quaternion[0] / norm, -this._quaternion[1] / norm, -this._quaternion[2] / norm, this._quaternion[3] / norm, vector, target);
+  }
+
+  /**
+   * Used by {@link #rotate(Vector, Vector)} and {@link #inverseRotate(Vector, Vector)}.
+   */
+  protected static Vector _rotate(float x, float y, float z, float w, Vector vector, Vector target) {
+    float q00 = 2.0f * x * x;
+    float q11 = 2.0f * y * y;
+    float q22 = 2.0f * z * z;
+
+    float q01 = 2.0f * x * y;
+    float q02 = 2.0f * x * z;
+    float q03 = 2.0f * x * w;
+
+    float q12 = 2.0f * y * z;
+    float q13 = 2.0f * y * w;
+
+    float q23 = 2.0f * z * w;
+
+    float vx = (1.0f - q11 - q22) * vector._vector[0] + (q01 - q23) * vector._vector[1] + (q02 + q13) * vector._vector[2];
+    float vy = (q01 + q23) * vector._vector[0] + (1.0f - q22 - q00) * vector._vector[1] + (q12 - q03) * vector._vector[2];
+    float vz = (q02 - q13) * vector._vector[0] + (q12 + q03) * vector._vector[1] + (1.0f - q11 - q00) * vector._vector[2];
+    if (target == null)
+      return new Vector(vx, vy, vz);
+    target.set(vx, vy, vz);
+    return target;
   }
 
   /**
@@ -26,6 +26,10 @@ package nub.timing;
  * since it will not necessarily run every frame.
  * <p>
  * Call {@link TimingHandler#unregisterTask(Task)} to cancel the task.
+ * <p>
+ * The resources read and written by the task may be declared with {@link #declareReads(Object...)}
+ * and {@link #declareWrites(Object...)} so that independent tasks could be executed in parallel,
+ * see {@link TimingHandler#enableParallelExecution(boolean)}.
  */
 abstract public class Task {
   protected TimingHandler _timingHandler;
@@ -35,6 +39,8 @@ abstract public class Task {
   protected long _counter;
   protected long _period;
   protected long _startTime;
+  // declared accesses, null when undeclared
+  protected Object[] _reads, _writes;
 
   /**
    * Constructs a sequential recurrent task with a {@link #period()} of 40ms
@@ -63,6 +69,17 @@ abstract public class Task {
    * (see {@link nub.timing.TimingHandler#handle()}).
    */
   protected boolean _execute() {
+    boolean result = _isDue();
+    if (result)
+      _run();
+    return result;
+  }
+
+  /**
+   * Tells whether or not the task should be executed at the current frame, according to its
+   * {@link #period()}. Used by {@link #_execute()}.
+   */
+  protected boolean _isDue() {
     boolean result = false;
     if (_active) {
       long elapsedTime = System.nanoTime() - _startTime;
@@ -78,14 +95,81 @@ abstract public class Task {
       if (result)
         _counter++;
     }
-    if (result) {
-      execute();
-      if (!_recurrence)
-        _active = false;
-    }
     return result;
   }
 
+  /**
+   * Calls {@link #execute()} and deactivates the task if it isn't {@link #isRecurrent()}.
+   * Used by {@link #_execute()}.
+   */
+  protected void _run() {
+    execute();
+    if (!_recurrence)
+      _active = false;
+  }
+
+  /**
+   * Declares the resources (e.g., nodes) read by {@link #execute()}. Calling it, even without
+   * arguments, declares the task accesses (see {@link #areAccessesDeclared()}).
+   * <p>
+   * Declaring a node also declares its whole branch, i.e., the task is assumed to read the
+   * world transformation of the node descendants.
+   *
+   * @see #declareWrites(Object...)
+   * @see TimingHandler#enableParallelExecution(boolean)
+   */
+  public void declareReads(Object... resources) {
+    _reads = resources;
+    if (_writes == null)
+      _writes = new Object[0];
+  }
+
+  /**
+   * Declares the resources (e.g., nodes) written by {@link #execute()}. Calling it, even without
+   * arguments, declares the task accesses (see {@link #areAccessesDeclared()}).
+   * <p>
+   * Declaring a node also declares its whole branch, i.e., the task is assumed to modify the
+   * node descendants, or at least their world transformations.
+   *
+   * @see #declareReads(Object...)
+   * @see TimingHandler#enableParallelExecution(boolean)
+   */
+  public void declareWrites(Object... resources) {
+    _writes = resources;
+    if (_reads == null)
+      _reads = new Object[0];
+  }
+
+  /**
+   * Returns the resources read by the task.
+   *
+   * @see #declareReads(Object...)
+   */
+  public Object[] reads() {
+    return _reads;
+  }
+
+  /**
+   * Returns the resources written by the task.
+   *
+   * @see #declareWrites(Object...)
+   */
+  public Object[] writes() {
+    return _writes;
+  }
+
+  /**
+   * Returns {@code true} if the task accesses have been declared and {@code false} otherwise.
+   * Tasks whose accesses are undeclared (the default) are assumed to conflict with any
+   * other task.
+   *
+   * @see #declareReads(Object...)
+   * @see #declareWrites(Object...)
+   */
+  public boolean areAccessesDeclared() {
+    return _reads != null && _writes != null;
+  }
+
   /**
    * Sets the task {@link #period()} in milliseconds and call {@link #run()}.
    * If task {@link #isRecurrent()} the {@link #execute()} method
@@ -11,13 +11,25 @@
 
 package nub.timing;
 
+import nub.core.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * A timing handler holds a {@link #tasks()} with all the tasks
  * scheduled to be performed in the future (one single time or periodically).
  * <p>
  * A timing handler should be used as a static scene instance.
+ * <p>
+ * Non-concurrent tasks are executed by {@link #handle()} on the calling thread in the order
+ * they were registered. Enable {@link #enableParallelExecution(boolean)} to execute the tasks
+ * whose accesses are declared (see {@link Task#declareReads(Object...)} and
+ * {@link Task#declareWrites(Object...)}) on a shared work-stealing pool.
  */
 public class TimingHandler {
   /**
@@ -36,25 +48,234 @@ public class TimingHandler {
   // T i m e r P o o l
   protected HashSet<Task> _tasks;
 
+  // Parallel execution
+  protected boolean _parallel;
+  protected ForkJoinPool _pool = ForkJoinPool.commonPool();
+  protected ArrayList<Task> _due = new ArrayList<Task>();
+  protected int[] _waves = new int[16];
+  protected Task[] _batch = new Task[16];
+
   /**
    * Main constructor.
    */
   public TimingHandler() {
-    _tasks = new HashSet<Task>();
+    _tasks = new LinkedHashSet<Task>();
   }
 
   /**
    * Handler's main method. It should be called from within your main event loop.
    * It recomputes the frame rate, and executes all non-concurrent tasks found in
    * the {@link #tasks()}.
+   *
+   * @see #enableParallelExecution(boolean)
    */
   public void handle() {
     _updateFrameRate();
+    if (isParallelExecutionEnabled()) {
+      _handleParallel();
+      return;
+    }
     for (Task task : _tasks)
       if (!task.isConcurrent())
         task._execute();
   }
 
+  /**
+   * Used by {@link #handle()} when {@link #isParallelExecutionEnabled()}. The due tasks are
+   * scheduled into waves: each task goes right after the last wave holding a task registered
+   * before it which it conflicts with (see {@link #_conflict(Task, Task)}). The waves are then
+   * executed one after the other, the tasks within a wave in parallel.
+   */
+  protected void _handleParallel() {
+    _due.clear();
+    for (Task task : _tasks)
+      if (!task.isConcurrent() && task._isDue())
+        _due.add(task);
+    int size = _due.size();
+    if (_waves.length < size) {
+      _waves = new int[Math.max(size, 2 * _waves.length)];
+      _batch = new Task[_waves.length];
+    }
+    int waves = 0;
+    for (int i = 0; i < size; i++) {
+      int wave = 0;
+      Task task = _due.get(i);
+      for (int j = 0; j < i; j++)
+        if (_waves[j] >= wave && _conflict(task, _due.get(j)))
+          wave = _waves[j] + 1;
+      _waves[i] = wave;
+      waves = Math.max(waves, wave + 1);
+    }
+    Task[] batch = _batch;
+    for (int wave = 0; wave < waves; wave++) {
+      int count = 0;
+      for (int i = 0; i < size; i++)
+        if (_waves[i] == wave)
+          batch[count++] = _due.get(i);
+      if (count == 1)
+        batch[0]._run();
+      else {
+        // refresh the world transformation cache of the declared branches, which
+        // would otherwise be lazily updated (and hence written) by concurrent readers
+        for (int i = 0; i < count; i++) {
+          _refresh(batch[i].reads());
+          _refresh(batch[i].writes());
+        }
+        _pool.invoke(new Batch(batch, 0, count));
+      }
+    }
+    Arrays.fill(batch, null);
+  }
+
+  /**
+   * Executes a range of non-conflicting tasks by recursive splitting.
+   */
+  protected static class Batch extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    protected Task[] _batch;
+    protected int _from, _to;
+
+    protected Batch(Task[] batch, int from, int to) {
+      _batch = batch;
+      _from = from;
+      _to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (_to - _from == 1)
+        _batch[_from]._run();
+      else {
+        int middle = (_from + _to) / 2;
+        invokeAll(new Batch(_batch, _from, middle), new Batch(_batch, middle, _to));
+      }
+    }
+  }
+
+  /**
+   * Used by {@link #_handleParallel()}. Refreshes the world transformation cache of the whole
+   * branch of each declared node, since declaring a node covers its branch (see
+   * {@link #_overlap(Object, Object)}): tasks only reading the same branch don't conflict, and
+   * would otherwise lazily update the cache of the same dirty descendants concurrently.
+   */
+  protected static void _refresh(Object[] resources) {
+    for (Object resource : resources)
+      if (resource instanceof Node)
+        _refresh((Node) resource);
+  }
+
+  /**
+   * Used by {@link #_refresh(Object[])}.
+   */
+  protected static void _refresh(Node node) {
+    node.magnitude();
+    if (node.children() != null)
+      for (Node child : node.children())
+        _refresh(child);
+  }
+
+  /**
+   * Returns {@code true} if the tasks may not be executed in parallel, i.e., if any of them has
+   * undeclared accesses or if one of them writes a resource the other reads or writes.
+   *
+   * @see Task#areAccessesDeclared()
+   */
+  protected static boolean _conflict(Task task1, Task task2) {
+    if (!task1.areAccessesDeclared() || !task2.areAccessesDeclared())
+      return true;
+    return _overlap(task1.writes(), task2.writes()) || _overlap(task1.writes(), task2.reads()) || _overlap(task1.reads(), task2.writes());
+  }
+
+  /**
+   * Used by {@link #_conflict(Task, Task)}.
+   */
+  protected static boolean _overlap(Object[] resources1, Object[] resources2) {
+    for (Object resource1 : resources1)
+      for (Object resource2 : resources2)
+        if (_overlap(resource1, resource2))
+          return true;
+    return false;
+  }
+
+  /**
+   * Used by {@link #_overlap(Object[], Object[])}. Nodes overlap when they belong to the same
+   * branch, since modifying a node modifies the world transformation of its descendants.
+   */
+  protected static boolean _overlap(Object resource1, Object resource2) {
+    if (resource1 == resource2)
+      return true;
+    if (resource1 instanceof Node && resource2 instanceof Node)
+      return ((Node) resource1).isAncestor((Node) resource2) || ((Node) resource2).isAncestor((Node) resource1);
+    return false;
+  }
+
+  /**
+   * Same as {@code enableParallelExecution(true)}.
+   *
+   * @see #enableParallelExecution(boolean)
+   */
+  public void enableParallelExecution() {
+    enableParallelExecution(true);
+  }
+
+  /**
+   * Same as {@code enableParallelExecution(false)}.
+   *
+   * @see #enableParallelExecution(boolean)
+   */
+  public void disableParallelExecution() {
+    enableParallelExecution(false);
+  }
+
+  /**
+   * Enables or disables the parallel execution of the non-concurrent tasks according to
+   * {@code flag}. When enabled, the tasks due at the current frame whose accesses don't
+   * conflict (see {@link Task#declareReads(Object...)} and {@link Task#declareWrites(Object...)})
+   * are executed in parallel on the {@link #pool()}, and {@link #handle()} returns once all of
+   * them have been executed (i.e., it acts as a frame barrier).
+   * <p>
+   * Conflicting tasks, including those with undeclared accesses, are executed in their
+   * registration order, so that the results are the same as with the sequential execution
+   * as long as the task accesses are correctly declared. Note that all the tasks due at the
+   * current frame are selected before executing any of them.
+   *
+   * @see #isParallelExecutionEnabled()
+   * @see #setPool(ForkJoinPool)
+   */
+  public void enableParallelExecution(boolean flag) {
+    _parallel = flag;
+  }
+
+  /**
+   * Returns {@code true} if the non-concurrent tasks are executed in parallel and
+   * {@code false} otherwise.
+   *
+   * @see #enableParallelExecution(boolean)
+   */
+  public boolean isParallelExecutionEnabled() {
+    return _parallel;
+  }
+
+  /**
+   * Returns the pool used to execute the tasks in parallel. Default is the
+   * {@link ForkJoinPool#commonPool()}.
+   *
+   * @see #enableParallelExecution(boolean)
+   */
+  public ForkJoinPool pool() {
+    return _pool;
+  }
+
+  /**
+   * Sets the pool used to execute the tasks in parallel.
+   *
+   * @see #enableParallelExecution(boolean)
+   */
+  public void setPool(ForkJoinPool pool) {
+    _pool = pool;
+  }
+
   /**
    * Returns the task set.
    */
@@ -0,0 +1,300 @@
+package ik.benchmark;
+
+import ik.basic.Util;
+import nub.core.Node;
+import nub.core.constraint.Constraint;
+import nub.ik.solver.Solver;
+import nub.ik.solver.evolutionary.BioIk;
+import nub.ik.solver.evolutionary.ESSolver;
+import nub.ik.solver.evolutionary.GASolver;
+import nub.ik.solver.evolutionary.HAEASolver;
+import nub.ik.solver.evolutionary.HillClimbingSolver;
+import nub.ik.solver.geometric.CCDSolver;
+import nub.ik.solver.geometric.ChainSolver;
+import nub.ik.solver.geometric.TreeSolver;
+import nub.ik.solver.numerical.DLSTreeSolver;
+import nub.ik.solver.numerical.PseudoInverseSolver;
+import nub.ik.solver.numerical.SDLSSolver;
+import nub.ik.solver.numerical.TransposeSolver;
+import nub.ik.solver.trik.implementations.SimpleTRIK;
+import nub.primitives.Quaternion;
+import nub.primitives.Vector;
+
+import java.io.FileNotFoundException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Headless and reproducible benchmark of the IK solvers.
+ * <p>
+ * For each solver, chain length, constraint type and seed, a detached chain is generated and
+ * solved towards a set of seeded random targets (the end effector positions of randomly posed
+ * copies of the chain). Each target is solved from the rest pose by calling {@code solve()}
+ * (one iteration per call) until the solver converges or reaches the maximum number of
+ * iterations. The whole workload is executed {@code warmup} times before being measured, so
+ * that the results are not biased by the JIT compilation.
+ * <p>
+ * Results are printed as CSV (one row per solver configuration) with the following columns:
+ * mean ns per {@code solve()}, mean iterations to converge, allocated bytes per
+ * {@code solve()} (when supported by the JVM), mean and max final error (relative to the
+ * bone length), converged targets ratio and status (e.g., the exception thrown by solvers that
+ * don't support the configuration). The standard output of the solvers is discarded.
+ * <p>
+ * Usage (all arguments are optional, lists are comma separated):
+ * <pre>
+ * {@code
+ * java ik.benchmark.SolverBenchmark solvers=CCD,FABRIK,TRIK_FINAL lengths=4,8,16 constraints=NONE,HINGE,MIX
+ *      seeds=0,1,2 targets=20 iterations=50 warmup=2 out=results.csv
+ * }
+ * </pre>
+ * Solver names are those of {@link Kind} ({@code solvers=ALL} by default). Constraint names
+ * are those of {@link Util.ConstraintType}.
+ */
+public class SolverBenchmark {
+    public enum Kind {
+        CCD, FABRIK, TREE, DLS, SDLS, PINV, TRANSPOSE, HC, ES, GA, HAEA, BIOIK,
+        TRIK_CCD, TRIK_FORWARD, TRIK_LOOK_AHEAD_FORWARD, TRIK_BACKWARD, TRIK_FORWARD_TRIANGULATION,
+        TRIK_BACKWARD_TRIANGULATION, TRIK_FORWARD_CCD_DOUBLE_PASS, TRIK_BACK_AND_FORTH, TRIK_CCD_BACK_AND_FORTH,
+        TRIK_CCDT_BACK_AND_FORTH, TRIK_BACK_AND_FORTH_T, TRIK_FINAL, TRIK_EXPRESSIVE_FINAL
+    }
+
+    public static float boneLength = 50;
+    public static float maxError = 0.01f;
+
+    protected List<Kind> _kinds = new ArrayList<Kind>(Arrays.asList(Kind.values()));
+    protected int[] _lengths = {4, 8, 16};
+    protected List<Util.ConstraintType> _constraints = new ArrayList<Util.ConstraintType>(Arrays.asList(Util.ConstraintType.NONE, Util.ConstraintType.MIX));
+    protected int[] _seeds = {0, 1, 2};
+    protected int _targets = 20;
+    protected int _iterations = 50;
+    protected int _warmup = 2;
+    protected PrintStream _out = System.out;
+
+    /**
+     * Results of a single configuration.
+     */
+    public static class Result {
+        public long solves, nanos, bytes, iterations;
+        public int targets, converged;
+        public double error, maxError;
+
+        protected void add(Result other) {
+            solves += other.solves;
+            nanos += other.nanos;
+            bytes = bytes < 0 || other.bytes < 0 ? -1 : bytes + other.bytes;
+            iterations += other.iterations;
+            targets += other.targets;
+            converged += other.converged;
+            error += other.error;
+            maxError = Math.max(maxError, other.maxError);
+        }
+    }
+
+    public static void main(String[] args) throws FileNotFoundException {
+        SolverBenchmark benchmark = new SolverBenchmark();
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            String key = pair[0], value = pair.length > 1 ? pair[1] : "";
+            switch (key) {
+                case "solvers":
+                    if (!value.equalsIgnoreCase("ALL")) {
+                        benchmark._kinds.clear();
+                        for (String name : value.split(",")) benchmark._kinds.add(Kind.valueOf(name.trim().toUpperCase()));
+                    }
+                    break;
+                case "lengths":
+                    benchmark._lengths = _parse(value);
+                    break;
+                case "constraints":
+                    benchmark._constraints.clear();
+                    for (String name : value.split(",")) benchmark._constraints.add(Util.ConstraintType.valueOf(name.trim().toUpperCase()));
+                    break;
+                case "seeds":
+                    benchmark._seeds = _parse(value);
+                    break;
+                case "targets":
+                    benchmark._targets = Integer.parseInt(value);
+                    break;
+                case "iterations":
+                    benchmark._iterations = Integer.parseInt(value);
+                    break;
+                case "warmup":
+                    benchmark._warmup = Integer.parseInt(value);
+                    break;
+                case "out":
+                    benchmark._out = new PrintStream(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+        }
+        benchmark.run();
+        if (benchmark._out != System.out) benchmark._out.close();
+    }
+
+    protected static int[] _parse(String value) {
+        String[] values = value.split(",");
+        int[] result = new int[values.length];
+        for (int i = 0; i < values.length; i++) result[i] = Integer.parseInt(values[i].trim());
+        return result;
+    }
+
+    public void run() {
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+        try {
+            _out.println("solver,joints,constraint,seeds,targets,ns_per_solve,iterations_to_converge,bytes_per_solve,mean_error,max_error,converged,status");
+            for (Kind kind : _kinds) {
+                for (int length : _lengths) {
+                    for (Util.ConstraintType constraint : _constraints) {
+                        Result total = new Result();
+                        String status = "OK";
+                        try {
+                            for (int i = 0; i < _warmup; i++)
+                                for (int seed : _seeds) measure(kind, length, constraint, seed);
+                            for (int seed : _seeds) total.add(measure(kind, length, constraint, seed));
+                        } catch (RuntimeException exception) {
+                            status = exception.getClass().getSimpleName();
+                        }
+                        _out.println(String.format(Locale.ROOT, "%s,%d,%s,%d,%d,%.1f,%.2f,%s,%.6f,%.6f,%.3f,%s",
+                                kind, length, constraint, _seeds.length, total.targets,
+                                (double) total.nanos / Math.max(1, total.solves),
+                                (double) total.iterations / Math.max(1, total.targets),
+                                total.bytes < 0 ? "NA" : String.format(Locale.ROOT, "%.1f", (double) total.bytes / Math.max(1, total.solves)),
+                                total.error / Math.max(1, total.targets), total.maxError,
+                                (double) total.converged / Math.max(1, total.targets), status));
+                        _out.flush();
+                    }
+                }
+            }
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+
+    /**
+     * Solves {@link #_targets} seeded random targets with a fresh chain of {@code length}
+     * joints and the given {@code constraint} type.
+     */
+    public Result measure(Kind kind, int length, Util.ConstraintType constraint, int seed) {
+        List<Node> chain = Util.generateDetachedChain(length, boneLength, seed, -1);
+        Util.generateConstraints(chain, constraint, seed, true);
+        Node endEffector = chain.get(length - 1);
+        Node target = Node.detach(new Vector(), new Quaternion(), 1);
+        List<Vector> targets = _targets(chain, seed);
+        Quaternion[] rest = new Quaternion[length];
+        for (int i = 0; i < length; i++) rest[i] = chain.get(i).rotation().get();
+
+        Solver solver = create(kind, chain);
+        solver.setMaxIterations(_iterations);
+        solver.setTimesPerFrame(1);
+        solver.setMaxError(maxError * boneLength);
+        solver.setMinDistance(-1);
+        target.setPosition(endEffector.position());
+        solver.setTarget(endEffector, target);
+
+        Result result = new Result();
+        result.bytes = _allocatedBytes() < 0 ? -1 : 0;
+        for (Vector position : targets) {
+            _pose(chain, rest);
+            target.setPosition(position);
+            solver.change(true);
+            long bytes = _allocatedBytes();
+            long start = System.nanoTime();
+            long solves = 0;
+            do {
+                solves++;
+            } while (!solver.solve() && solves < _iterations);
+            long nanos = System.nanoTime() - start;
+            if (result.bytes >= 0) result.bytes += _allocatedBytes() - bytes;
+            result.nanos += nanos;
+            result.solves += solves;
+            result.iterations += solver.lastIteration();
+            float error = Vector.distance(endEffector.position(), position) / boneLength;
+            result.error += error;
+            result.maxError = Math.max(result.maxError, error);
+            if (error <= maxError) result.converged++;
+            result.targets++;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the end effector positions of {@link #_targets} randomly posed copies of the chain.
+     */
+    protected List<Vector> _targets(List<Node> chain, int seed) {
+        Random random = new Random(seed);
+        List<Node> copy = Util.detachedCopy(chain);
+        Quaternion[] rest = new Quaternion[copy.size()];
+        for (int i = 0; i < rest.length; i++) rest[i] = copy.get(i).rotation().get();
+        List<Vector> targets = new ArrayList<Vector>();
+        for (int t = 0; t < _targets; t++) {
+            _pose(copy, rest);
+            for (int i = 0; i < copy.size() - 1; i++) {
+                Vector axis = new Vector(2 * random.nextFloat() - 1, 2 * random.nextFloat() - 1, 2 * random.nextFloat() - 1);
+                //constraints (if any) are satisfied by rotate
+                copy.get(i).rotate(new Quaternion(axis, (float) ((2 * random.nextFloat() - 1) * Math.PI / 2)));
+            }
+            targets.add(copy.get(copy.size() - 1).position().get());
+        }
+        return targets;
+    }
+
+    protected static void _pose(List<Node> chain, Quaternion[] rotations) {
+        for (int i = 0; i < chain.size(); i++) {
+            Node joint = chain.get(i);
+            Constraint constraint = joint.constraint();
+            joint.setConstraint(null);
+            joint.setRotation(rotations[i].get());
+            joint.setConstraint(constraint);
+        }
+    }
+
+    protected static long _allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported())
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return -1;
+    }
+
+    public static Solver create(Kind kind, List<Node> chain) {
+        switch (kind) {
+            case CCD:
+                return new CCDSolver(chain, false);
+            case FABRIK:
+                return new ChainSolver(chain);
+            case TREE:
+                return new TreeSolver(chain.get(0));
+            case DLS:
+                return new DLSTreeSolver(chain.get(0));
+            case SDLS:
+                return new SDLSSolver(chain);
+            case PINV:
+                return new PseudoInverseSolver(chain);
+            case TRANSPOSE:
+                return new TransposeSolver(chain);
+            case HC:
+                return new HillClimbingSolver(5, Math.toRadians(5), chain);
+            case ES:
+                return new ESSolver(Math.toRadians(5), chain);
+            case GA:
+                return new GASolver(chain, 10);
+            case HAEA:
+                return new HAEASolver(chain, 10, true);
+            case BIOIK:
+                return new BioIk(chain, 10, 4);
+            default:
+                return new SimpleTRIK(chain, SimpleTRIK.HeuristicMode.valueOf(kind.name().substring("TRIK_".length())));
+        }
+    }
+}
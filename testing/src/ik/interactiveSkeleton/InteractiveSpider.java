@@ -75,8 +75,7 @@ public class InteractiveSpider extends PApplet {
             float x = scene.pApplet().random(-scene.radius(), scene.radius());
             float z = scene.pApplet().random(-scene.radius(), scene.radius());
 
-            shape.translation().setX(x);
-            shape.translation().setZ(z);
+            shape.setTranslation(x, shape.translation().y(), z);
 
             shape.rotate(new Quaternion(new Vector(0,1,0), scene.pApplet().random(-PI, PI)));
 
@@ -102,13 +101,13 @@ public class InteractiveSpider extends PApplet {
 
         public void keepInside(){
             if(shape.translation().x() > scene.radius()) {
-                shape.translation().setX(-scene.radius() + scene.radius()*0.1f);
+                shape.setTranslation(-scene.radius() + scene.radius()*0.1f, shape.translation().y(), shape.translation().z());
             } else if(shape.translation().x() < -scene.radius()) {
-                shape.translation().setX(scene.radius() - scene.radius()*0.1f);
+                shape.setTranslation(scene.radius() - scene.radius()*0.1f, shape.translation().y(), shape.translation().z());
             } else if(shape.translation().z() > scene.radius()) {
-                shape.translation().setZ(-scene.radius() + scene.radius()*0.1f);
+                shape.setTranslation(shape.translation().x(), shape.translation().y(), -scene.radius() + scene.radius()*0.1f);
             } else if(shape.translation().z() < -scene.radius()) {
-                shape.translation().setZ(scene.radius() - scene.radius()*0.1f);
+                shape.setTranslation(shape.translation().x(), shape.translation().y(), scene.radius() - scene.radius()*0.1f);
             }
         }
 